@@ -24,6 +24,10 @@ classdef Polypheny < handle
                 end
                 PolyWrapper.polyConnection = javaObject( "polyphenyconnector.PolyphenyConnection",host, int32( port ), user, password );
                 PolyWrapper.queryExecutor = javaObject( "polyphenyconnector.QueryExecutor", PolyWrapper.polyConnection );
+
+                % Loads the driver classes and JIT compiles the decoder on a background thread with its own
+                % connection, so the first real query already runs at steady-state speed.
+                PolyWrapper.queryExecutor.prewarmAsync( [] );
             
             catch ME %Matlab Exception
                 disp( "Error: " + ME.message )
@@ -33,13 +37,20 @@ classdef Polypheny < handle
         
 
         
-        function matlab_result = query( PolyWrapper, language, namespace, queryStr )
+        function matlab_result = query( PolyWrapper, language, namespace, queryStr, graphFields )
             % query( POLYWRAPPER, QUERYSTR ): Execute query via QueryExecutor.java
             % POLYWRAPPER:             The PolyWrapper Matlab object
             % LANGUAGE:                The language of the query string -> SQL, mongo, Cypher
             % QUERYSTR:                The queryStr set by the user
+            % GRAPHFIELDS:             (optional, Cypher) what to attach to the nodes and edges of a graph result besides
+            %                          the categorical Labels: "Ids", "Properties" (one JSON object per element) and/or
+            %                          property keys (one column each). Default: nothing, which keeps 10M-edge graphs cheap.
             % @return matlab_result:   The result of the query -> return type differs for SQL,Mongo and Cypher
 
+            if nargin < 5
+                graphFields = strings( 0 );
+            end
+
 
             try
                 
@@ -57,6 +68,7 @@ classdef Polypheny < handle
                         % Unpack the "Heist" package
                         rawColNames = cell( java_result(1) ); % Raw column names directly from Java
                         colData  = cell( java_result(3) ); % This is an Object array of primitive arrays
+                        colData = Polypheny.unpackColumns( colData, java_result(2) );
 
                         if isempty( colData )
                             matlab_result = table();
@@ -84,8 +96,27 @@ classdef Polypheny < handle
                             matlab_result = string( java_result );
 
                     case "cypher"
-                        % TODO: integrate once Cypher executor is ready
-                        error( "Cypher not supported yet." );
+                        % Java returns: GraphResult for nodes/edges, the SQL package for tabular results,
+                        % List<String> for documents or a double for update counts
+                        java_result = PolyWrapper.queryExecutor.executeCypher( namespace, queryStr );
+
+                        if isa( java_result, 'polyphenyconnector.GraphResult' )
+                            matlab_result = Polypheny.graphToDigraph( java_result, string( graphFields ) );
+                        elseif isempty( java_result )
+                            matlab_result = table();
+                        elseif isa( java_result, 'java.lang.Object[]' )
+                            rawColNames = cell( java_result(1) );
+                            colData = cell( java_result(3) );
+                            colData = Polypheny.unpackColumns( colData, java_result(2) );
+                            cleanColNames = matlab.lang.makeValidName( rawColNames );
+                            cleanColNames = matlab.lang.makeUniqueStrings( cleanColNames, {}, namelengthmax );
+                            s = cell2struct( colData(:), cleanColNames(:), 1 );
+                            matlab_result = struct2table( s );
+                        elseif isnumeric( java_result )
+                            matlab_result = java_result;
+                        else
+                            matlab_result = string( java_result );
+                        end
 
                     otherwise
                         error( "Unsupported language: %s", language );
@@ -96,9 +127,164 @@ classdef Polypheny < handle
             end
         end
 
-        function matlab_result = queryBatch( PolyWrapper, language, namespace, queryList )
+        function matlab_result = queryPartitioned( PolyWrapper, queryStr, partitionColumn, numPartitions, bounds )
+            % queryPartitioned( POLYWRAPPER, QUERYSTR, PARTITIONCOLUMN, NUMPARTITIONS, BOUNDS ): Read a huge table with parallel range scans
+            % QUERYSTR:        The SQL SELECT query
+            % PARTITIONCOLUMN: Numeric column of the result used to split the scan, e.g. "id"
+            % NUMPARTITIONS:   Number of concurrent scans, each on its own connection
+            % BOUNDS:          (optional) [lower, upper] of PARTITIONCOLUMN, discovered with MIN/MAX if omitted. They only
+            %                  place the split points: the first and last scan are open-ended, so every row is read
+            %
+            % Returns: table with the rows of all partitions in partition order
+            if nargin < 5
+                java_result = PolyWrapper.queryExecutor.executeSqlPartitioned( queryStr, partitionColumn, int32( numPartitions ) );
+            else
+                java_result = PolyWrapper.queryExecutor.executeSqlPartitioned( queryStr, partitionColumn, int32( numPartitions ), double( bounds(1) ), double( bounds(2) ) );
+            end
+
+            if isempty( java_result )
+                matlab_result = table();
+                return;
+            end
+            rawColNames = cell( java_result(1) );
+            colData = cell( java_result(3) );
+            colData = Polypheny.unpackColumns( colData, java_result(2) );
+            cleanColNames = matlab.lang.makeUniqueStrings( matlab.lang.makeValidName( rawColNames ), {}, namelengthmax );
+            matlab_result = struct2table( cell2struct( colData(:), cleanColNames(:), 1 ) );
+        end
+
+        function handle = queryLazy( PolyWrapper, queryStr )
+            % queryLazy( POLYWRAPPER, QUERYSTR ): Execute a SQL query and decode columns only when they are requested
+            % QUERYSTR: The SQL query, e.g. a SELECT * over wide DOCUMENT or BINARY columns
+            %
+            % Returns: Java LazyResult handle (empty for an empty result). Usage:
+            %   names = string( handle.getColumnNames() );
+            %   x     = handle.getColumn( "x" );            % numeric columns arrive as double
+            %   s     = string( handle.getColumn( "name" ) ); % text columns as Java String[]
+            handle = PolyWrapper.queryExecutor.executeSqlLazy( queryStr );
+        end
+
+        function cursor = mongoCursor( PolyWrapper, namespace, queryStr, fetchSize, paths )
+            % mongoCursor( POLYWRAPPER, NAMESPACE, QUERYSTR, FETCHSIZE, PATHS ): Read a Mongo find page by page
+            % NAMESPACE: The Mongo namespace
+            % QUERYSTR:  A Mongo read, e.g. db.people.find({})
+            % FETCHSIZE: Documents per fetch from the server
+            % PATHS:     (optional) string array of paths -> every page is columnar instead of JSON
+            %
+            % Returns: Java MongoCursor handle, memory stays bounded for collections of any size. Usage:
+            %   while cursor.hasNext()
+            %       docs = string( cursor.next( 10000 ) );   % or cursor.next( 10000 ) as package with PATHS
+            %   end
+            %   cursor.close();
+            if nargin < 5
+                cursor = PolyWrapper.queryExecutor.openMongoCursor( string( namespace ), string( queryStr ), int32( fetchSize ) );
+            else
+                cursor = PolyWrapper.queryExecutor.openMongoCursor( string( namespace ), string( queryStr ), int32( fetchSize ), cellstr( string( paths ) ) );
+            end
+        end
+
+        function matlab_result = queryPaths( PolyWrapper, namespace, queryStr, paths )
+            % queryPaths( POLYWRAPPER, NAMESPACE, QUERYSTR, PATHS ): Run a Mongo query and extract only some fields of the documents
+            % NAMESPACE: The Mongo namespace
+            % QUERYSTR:  The Mongo query, e.g. db.people.find({})
+            % PATHS:     string array of paths, e.g. ["name", "address.city", "scores[0]"]
+            %
+            % Returns: table with one column per path (numeric paths as double with NaN for missing values, others as string)
+            paths = string( paths );
+            java_result = PolyWrapper.queryExecutor.executeMongo( 'mongo', namespace, queryStr, cellstr( paths ) );
+            if isnumeric( java_result )
+                matlab_result = java_result;
+                return;
+            end
+            colData = cell( java_result(3) );
+            for c = 1:numel( colData )
+                if ~isnumeric( colData{c} )
+                    colData{c} = string( colData{c} );
+                end
+                colData{c} = colData{c}(:);
+            end
+            cleanColNames = matlab.lang.makeUniqueStrings( matlab.lang.makeValidName( cellstr( paths ) ), {}, namelengthmax );
+            matlab_result = table( colData{:}, 'VariableNames', cleanColNames );
+        end
+
+        function [X, names, other] = queryMatrix( PolyWrapper, queryStr )
+            % queryMatrix( POLYWRAPPER, QUERYSTR ): Execute a SQL query and return its numeric columns as one matrix
+            % QUERYSTR:   The SQL query, e.g. a feature pull with hundreds of numeric columns
+            %
+            % Returns: X      rows x numericColumns double matrix (a bare double for scalar queries)
+            %          names  string array with the names of the columns of X
+            %          other  table with the non-numeric columns
+            java_result = PolyWrapper.queryExecutor.executeSqlPacked( queryStr );
+            names = strings( 1, 0 );
+            other = table();
+
+            if isempty( java_result )
+                X = zeros( 0, 0 );
+                return;
+            end
+            if isnumeric( java_result )
+                % Scalar fast path: Java returned a bare Double
+                X = java_result;
+                return;
+            end
+
+            % All numeric columns crossed the bridge as ONE double[] -> one reshape, no per column conversion
+            dims = double( java_result(3) );
+            X = reshape( double( java_result(2) ), dims(1), dims(2) );
+            names = string( java_result(1) )';
+
+            otherNames = cell( java_result(4) );
+            if ~isempty( otherNames )
+                otherData = cell( java_result(5) );
+                cleanColNames = matlab.lang.makeUniqueStrings( matlab.lang.makeValidName( otherNames ), {}, namelengthmax );
+                other = struct2table( cell2struct( otherData(:), cleanColNames(:), 1 ) );
+            end
+        end
+
+        function results = runScript( PolyWrapper, script, inTransaction )
+            % runScript( POLYWRAPPER, SCRIPT, INTRANSACTION ): Run a whole SQL script in one call
+            % SCRIPT:        SQL statements separated by ; (; inside quotes and comments are fine)
+            % INTRANSACTION: (optional) true to run all statements in one transaction, rolled back on any failure
+            %
+            % Returns: cell array with one entry per statement: a table for statements with a result set,
+            %          the update count for all others
+            if nargin < 3
+                inTransaction = false;
+            end
+            java_result = PolyWrapper.queryExecutor.executeScript( string( script ), logical( inTransaction ) );
+            results = cell( 1, numel( java_result ) );
+            for k = 1:numel( java_result )
+                entry = java_result(k);
+                if isnumeric( entry )
+                    results{k} = entry;
+                else
+                    results{k} = Polypheny.packageToTable( entry );
+                end
+            end
+        end
+
+        function results = queryTables( PolyWrapper, queryList, parallelism )
+            % queryTables( POLYWRAPPER, QUERYLIST, PARALLELISM ): Run many SELECT queries in one call
+            % QUERYLIST:   cell array or string array of SELECT queries, e.g. one per entity
+            % PARALLELISM: (optional) number of queries running at the same time on separate connections, default 1
+            %
+            % Returns: cell array of tables in the order of QUERYLIST
+            if nargin < 3
+                parallelism = 1;
+            end
+            java_result = PolyWrapper.queryExecutor.executeQueryBatch( string( queryList ), int32( parallelism ) );
+            results = cell( size( queryList ) );
+            for k = 1:numel( java_result )
+                results{k} = Polypheny.packageToTable( java_result(k) );
+            end
+        end
+
+        function matlab_result = queryBatch( PolyWrapper, language, namespace, queryList, chunkSize, commitPerChunk )
             % queryBatch( POLYWRAPPER, QUERYLIST ): Execute batch of non-SELECT statements
-            % QUERYLIST: A cell array of SQL strings ( INSERT, UPDATE, DELETE, etc. )
+            % QUERYLIST:      A cell array of SQL strings ( INSERT, UPDATE, DELETE, etc. )
+            % CHUNKSIZE:      (optional) SQL: statements sent per round trip, default 10000
+            %                 Mongo: statements kept in flight without waiting for their response, default 1
+            % COMMITPERCHUNK: (optional, SQL only) true commits every chunk on its own, false (default) runs all or nothing
             %
             % Returns: int array with rows affected per statement
 
@@ -113,13 +299,24 @@ classdef Polypheny < handle
 
             switch lower(language)
                 case "sql"
-                    java_result = PolyWrapper.queryExecutor.executeBatchSql( javaList );
+                    if nargin < 5
+                        java_result = PolyWrapper.queryExecutor.executeBatchSql( javaList );
+                    else
+                        if nargin < 6
+                            commitPerChunk = false;
+                        end
+                        java_result = PolyWrapper.queryExecutor.executeBatchSql( javaList, int32( chunkSize ), logical( commitPerChunk ) );
+                    end
                     %matlab_result = double(java_result(:))';
                     vals = double(java_result(:));   % convert Java int[] to MATLAB column vector
                     matlab_result = array2table(vals, 'VariableNames', {'RowsAffected'});
 
                 case "mongo"
-                    java_result = PolyWrapper.queryExecutor.executeBatchMongo( string(namespace), javaList );
+                    if nargin < 5
+                        java_result = PolyWrapper.queryExecutor.executeBatchMongo( string(namespace), javaList );
+                    else
+                        java_result = PolyWrapper.queryExecutor.executeBatchMongo( string(namespace), javaList, int32( chunkSize ) );
+                    end
                     matlab_result = string( java_result ); % outer list
 
                 case "cypher"
@@ -130,14 +327,298 @@ classdef Polypheny < handle
             end
 
         end
-        
+
+        function count = mongoBulkInsert( PolyWrapper, namespace, collection, T, batchSize )
+            % mongoBulkInsert( POLYWRAPPER, NAMESPACE, COLLECTION, T, BATCHSIZE ): Insert every row of a table as one document
+            % NAMESPACE:  The Mongo namespace
+            % COLLECTION: The target collection
+            % T:          MATLAB table, each variable becomes a document field. <missing> strings, NaN and []
+            %             in cell columns are stored as null
+            % BATCHSIZE:  (optional) Documents per insertMany statement, default 10000
+            %
+            % Returns: the number of inserted documents
+
+            if nargin < 5
+                batchSize = 10000;
+            end
+            if ~istable( T )
+                error( 'mongoBulkInsert expects a MATLAB table' );
+            end
+
+            fieldNames = T.Properties.VariableNames;
+            columns = javaArray( 'java.lang.Object', numel( fieldNames ) );
+            for i = 1:numel( fieldNames )
+                column = T.( fieldNames{i} );
+                if isstring( column )
+                    isNull = ismissing( column );
+                    column( isNull ) = "";
+                    column = cellstr( column );
+                elseif iscell( column )
+                    isNull = cellfun( @( v ) isnumeric( v ) && isempty( v ), column );
+                end
+                if iscell( column )
+                    % Elements that are not set stay Java null, which Java stores as a null field
+                    columns( i ) = javaArray( 'java.lang.String', numel( column ) );
+                    for j = find( ~isNull(:) )'
+                        columns( i )( j ) = java.lang.String( column{j} );
+                    end
+                else
+                    columns( i ) = column(:);
+                end
+            end
+
+            count = PolyWrapper.queryExecutor.mongoBulkInsert( string( namespace ), string( collection ), string( fieldNames ), columns, int32( batchSize ) );
+        end
+
+        function inserter = openInserter( PolyWrapper, table, columns, types, flushRows, flushSeconds )
+            % openInserter( POLYWRAPPER, TABLE, COLUMNS, TYPES, FLUSHROWS, FLUSHSECONDS ): Buffered inserter for rows produced one at a time
+            % TABLE:        The target table, e.g. "sensors.readings"
+            % COLUMNS:      string array of target columns, [] for a positional insert
+            % TYPES:        string array of column types, e.g. ["int64", "double", "string"]
+            % FLUSHROWS:    (optional) Rows per background batch, default 10000
+            % FLUSHSECONDS: (optional) Longest time a row waits in the buffer, default 1
+            %
+            % Returns: Java BufferedInserter handle. Rows are sent in batches on a background thread, so a loop
+            % is no longer bound by one round trip per row. Usage:
+            %   inserter.addRow( [t, value] );              % all-numeric row, no boxing
+            %   inserter.addRow( { t, "sensor-1", true } ); % mixed row
+            %   inserter.flush( );                          % wait until everything is written
+            %   inserter.close( );                          % flush the rest and release the connection
+            % A failed background batch is reported as error by the next call on the inserter.
+            if nargin < 5
+                flushRows = 10000;
+            end
+            if nargin < 6
+                flushSeconds = 1;
+            end
+            if isempty( columns )
+                columns = string.empty;
+            end
+            inserter = PolyWrapper.queryExecutor.openInserter( string( table ), string( columns ), string( types ), int32( flushRows ), double( flushSeconds ) );
+        end
+
+        function stats = importFile( PolyWrapper, path, table, format, varargin )
+            % importFile( POLYWRAPPER, PATH, TABLE, FORMAT, NAME, VALUE, ... ): Stream a file into a table inside Java
+            % PATH:    Path to the CSV or raw binary file
+            % TABLE:   Target table, e.g. "sensors.readings"
+            % FORMAT:  "csv" or "binary"
+            % NAME/VALUE options: "columns", "types", "delimiter", "header", "byteOrder", "batchSize",
+            %                     "commitInterval", "chunkSize", "threads", "skipRows"
+            %
+            % Returns: struct with rowsCommitted, bytesParsed, seconds and rowsPerSecond
+
+            if mod( numel( varargin ), 2 ) ~= 0
+                error( 'importFile expects name/value pairs as options' );
+            end
+            options = strings( 1, numel( varargin ) / 2 );
+            for i = 1:2:numel( varargin )
+                value = varargin{i+1};
+                if iscell( value ) || ( isstring( value ) && numel( value ) > 1 )
+                    value = strjoin( string( value ), "," );
+                end
+                options( (i+1)/2 ) = string( varargin{i} ) + "=" + string( value );
+            end
+
+            java_result = PolyWrapper.queryExecutor.importFile( string( path ), string( table ), string( format ), options );
+            stats = struct( 'rowsCommitted', java_result(1), 'bytesParsed', java_result(2), ...
+                            'seconds', java_result(3), 'rowsPerSecond', java_result(4) );
+        end
+
+        function stats = prewarm( PolyWrapper, queryList )
+            % prewarm( POLYWRAPPER, QUERYLIST ): Prepare the given SQL statements and warm up the connector now (blocking)
+            % QUERYLIST: (optional) cell array of SQL strings the session is going to run
+            %
+            % Returns: struct with seconds, preparedStatements, decodeCalls and decodeQuery (0 if every value type was
+            % warmed up, higher values if the server only accepted a fallback query with fewer types, -1 if none)
+            if nargin < 2
+                queryList = {};
+            end
+            java_result = PolyWrapper.queryExecutor.prewarm( string( queryList ) );
+            stats = struct( 'seconds', java_result(1), 'preparedStatements', java_result(2), 'decodeCalls', java_result(3), ...
+                            'decodeQuery', java_result(4) );
+        end
+
+        function begin( PolyWrapper )
+            % begin( POLYWRAPPER ): Open a transaction, every following call runs inside it until commit or rollback
+            % Grouping many writes into one commit is much faster than the commit per statement of the default
+            % auto commit mode. Batch methods (queryBatch, runScript, mongoBulkInsert, importFile) join the
+            % transaction instead of committing on their own.
+            PolyWrapper.polyConnection.beginTransaction( );
+        end
+
+        function commit( PolyWrapper )
+            % commit( POLYWRAPPER ): Commit the open transaction and return to auto commit mode
+            PolyWrapper.polyConnection.commitTransaction( );
+        end
+
+        function rollback( PolyWrapper, savepointName )
+            % rollback( POLYWRAPPER, SAVEPOINTNAME ): Undo the open transaction and return to auto commit mode
+            % SAVEPOINTNAME: (optional) only undo the work done since this savepoint, the transaction stays open
+            if nargin < 2
+                PolyWrapper.polyConnection.rollbackTransaction( );
+            else
+                PolyWrapper.polyConnection.rollbackToSavepoint( string( savepointName ) );
+            end
+        end
+
+        function savepoint( PolyWrapper, savepointName )
+            % savepoint( POLYWRAPPER, SAVEPOINTNAME ): Mark a point in the open transaction to roll back to
+            PolyWrapper.polyConnection.setSavepoint( string( savepointName ) );
+        end
+
+        function setBlobMode( PolyWrapper, mode, directory )
+            % setBlobMode( POLYWRAPPER, MODE, DIRECTORY ): How query returns BINARY/FILE/IMAGE/VIDEO/AUDIO columns
+            % MODE:      "bytes" (default, cell array of uint8) or "file": every blob is streamed to a file in a new
+            %            subdirectory of DIRECTORY per result and the column holds a table of Path and Bytes, so large
+            %            media pulls need constant memory
+            % DIRECTORY: (only for "file") directory for the files, created if missing
+            if nargin < 3
+                directory = "";
+            end
+            PolyWrapper.queryExecutor.setBlobMode( string( mode ), string( directory ) );
+        end
+
+        function setQueryTimeout( PolyWrapper, seconds )
+            % setQueryTimeout( POLYWRAPPER, SECONDS ): Deadline for every following call, 0 disables it
+            % A call that runs past its deadline is cancelled on the server and fails with "Query cancelled: ..."
+            PolyWrapper.queryExecutor.setQueryTimeout( double( seconds ) );
+        end
+
+        function setMemoryBudget( PolyWrapper, softMB, hardMB, failAtSoftLimit )
+            % setMemoryBudget( POLYWRAPPER, SOFTMB, HARDMB, FAILATSOFTLIMIT ): Limit how large a single decoded result may grow
+            % SOFTMB:          From this size on a parallel decode continues row by row without extra buffers; all other
+            %                  calls only record a warning (see the warning field of memoryStatus), unless FAILATSOFTLIMIT is set
+            % HARDMB:          Before a result would grow past this size the call fails with an error naming the projected size
+            % FAILATSOFTLIMIT: (optional) true to fail at SOFTMB already
+            if nargin < 4
+                failAtSoftLimit = false;
+            end
+            PolyWrapper.queryExecutor.setMemoryBudget( double( softMB ), double( hardMB ), logical( failAtSoftLimit ) );
+        end
+
+        function status = memoryStatus( PolyWrapper )
+            % memoryStatus( POLYWRAPPER ): Estimated result sizes, memory budgets and JVM heap headroom, all in MB
+            java_result = PolyWrapper.queryExecutor.getMemoryStatus( );
+            status = struct( 'lastQueryMB', java_result(1), 'allQueriesMB', java_result(2), 'softMB', java_result(3), ...
+                             'hardMB', java_result(4), 'globalSoftMB', java_result(5), 'globalHardMB', java_result(6), ...
+                             'heapHeadroomMB', java_result(7), 'maxHeapMB', java_result(8), ...
+                             'warning', string( PolyWrapper.queryExecutor.getLastMemoryWarning( ) ) );
+        end
+
+        function setTrace( PolyWrapper, path, thresholdMs, sampleRate )
+            % setTrace( POLYWRAPPER, PATH, THRESHOLDMS, SAMPLERATE ): Log slow queries as JSON lines to a local file
+            % PATH:        The log file, rotated at 10 MB (5 old files are kept). "" switches the log off
+            % THRESHOLDMS: Every call taking at least this long is logged with its time per phase
+            % SAMPLERATE:  (optional) Fraction of the faster calls that is logged as well, default 0
+            if strlength( string( path ) ) == 0
+                PolyWrapper.queryExecutor.disableTrace( );
+                return;
+            end
+            if nargin < 4
+                sampleRate = 0;
+            end
+            PolyWrapper.queryExecutor.enableTrace( string( path ), double( thresholdMs ), double( sampleRate ), 10, int32( 5 ) );
+        end
+
+        function cancelled = cancel( PolyWrapper )
+            % cancel( POLYWRAPPER ): Cancel the running call of this connection, e.g. from a timer callback
+            % Returns: true if a call was running and got cancelled
+            cancelled = PolyWrapper.queryExecutor.cancelCurrent( );
+        end
+
+        function keepalive( PolyWrapper, seconds )
+            % keepalive( POLYWRAPPER, SECONDS ): Ping the connection in the background after SECONDS of idling
+            % and reconnect if the server dropped it, so the first query after a pause is as fast as any other.
+            % SECONDS = 0 stops the keepalive.
+            if seconds > 0
+                PolyWrapper.polyConnection.startKeepalive( double( seconds ) );
+            else
+                PolyWrapper.polyConnection.stopKeepalive( );
+            end
+        end
+
         function close( PolyWrapper )
             % close( POLYWRAPPER ): Close the Java connection
             % POLYWRAPPER: The PolyWrapper Matlab object
+            PolyWrapper.queryExecutor.disableTrace( ); % writes and closes the slow query log, if any
             PolyWrapper.polyConnection.close( );
         end
     end
 
+    methods ( Static, Access = private )
+        function colData = unpackColumns( colData, typeNames )
+            % unpackColumns( COLDATA, TYPENAMES ): Unpack the columns that cross the bridge as two arrays
+            % Ragged numeric ARRAY columns { values, offsets } -> one vector per row
+            % Blob columns written to files { paths, bytes }  -> nested table with the variables Path and Bytes
+            typeNames = string( typeNames );
+            for c = find( startsWith( typeNames(:)', "ragged" ) )
+                parts = cell( colData{c} );
+                offsets = double( parts{2} );
+                colData{c} = mat2cell( parts{1}(:), diff( offsets(:) ), 1 );
+            end
+            for c = find( typeNames(:)' == "file" )
+                parts = cell( colData{c} );
+                colData{c} = table( string( parts{1} ), double( parts{2} ), 'VariableNames', {'Path', 'Bytes'} );
+            end
+        end
+
+        function G = graphToDigraph( graphResult, graphFields )
+            % graphToDigraph( GRAPHRESULT, GRAPHFIELDS ): Build a digraph from a GraphResult
+            % Only the int arrays cross the bridge by default: the edge endpoints and the label codes, which become
+            % categoricals over the (small) label dictionary. Ids and properties are built in Java on first request and
+            % only converted if they are listed in GRAPHFIELDS.
+            labelDictionary = string( graphResult.getLabelDictionary() );
+            labelDictionary = labelDictionary(:);
+            named = find( labelDictionary ~= "" ) - 1; % elements without label stay <undefined>
+            NodeTable = table( categorical( double( graphResult.getNodeLabelCodes() ), named, labelDictionary( named + 1 ) ), ...
+                               'VariableNames', {'Labels'} );
+            % Edge endpoints are 0-based node indices -> +1 for MATLAB
+            src = double( graphResult.getEdgeSource() ) + 1;
+            tgt = double( graphResult.getEdgeTarget() ) + 1;
+            EdgeTable = table( [src(:), tgt(:)], ...
+                               categorical( double( graphResult.getEdgeLabelCodes() ), named, labelDictionary( named + 1 ) ), ...
+                               'VariableNames', {'EndNodes', 'Labels'} );
+            for field = graphFields(:)'
+                switch field
+                    case "Ids"
+                        NodeTable.Id = string( graphResult.getNodeIds() );
+                        EdgeTable.Id = string( graphResult.getEdgeIds() );
+                    case "Properties"
+                        NodeTable.Properties = string( graphResult.getNodeProperties() );
+                        EdgeTable.Properties = string( graphResult.getEdgeProperties() );
+                    otherwise
+                        name = matlab.lang.makeValidName( field );
+                        NodeTable.( name ) = Polypheny.propertyColumn( graphResult.getNodeProperty( field ) );
+                        EdgeTable.( name ) = Polypheny.propertyColumn( graphResult.getEdgeProperty( field ) );
+                end
+            end
+            G = digraph( EdgeTable, NodeTable );
+        end
+
+        function column = propertyColumn( javaColumn )
+            % propertyColumn( JAVACOLUMN ): double[] stays numeric (NaN where missing), String[] becomes a string column
+            if isnumeric( javaColumn )
+                column = javaColumn(:);
+            else
+                column = string( javaColumn );
+                column = column(:);
+            end
+        end
+
+        function T = packageToTable( java_result )
+            % packageToTable( JAVA_RESULT ): Turn the Object[]{ colNames, typeNames, columns } package into a table
+            if isempty( java_result )
+                T = table();
+                return;
+            end
+            rawColNames = cell( java_result(1) );
+            colData = cell( java_result(3) );
+            colData = Polypheny.unpackColumns( colData, java_result(2) );
+            cleanColNames = matlab.lang.makeUniqueStrings( matlab.lang.makeValidName( rawColNames ), {}, namelengthmax );
+            T = struct2table( cell2struct( colData(:), cleanColNames(:), 1 ) );
+        end
+    end
+
     methods ( Static )
         function flag = hasPolypheny( )
             % HASPOLYPHENY Returns true if Polypheny Java classes are available because the exist( 'polyphenyconnector.PolyphenyConnection','class' )
@@ -216,6 +216,22 @@ classdef PolyphenyWrapperTestMQL < matlab.unittest.TestCase
             testCase.verifyTrue(decoded{2}.count==1);
         end
 
+        function testBulkInsertKeepsMissingStringsAsNull(testCase)
+            T = table( [1;2;3], ["Alice"; missing; ""], 'VariableNames', {'id','name'} );
+            count = testCase.conn.mongoBulkInsert("mongotest","unittest_collection",T);
+            testCase.verifyEqual(count,3);
+
+            docs = testCase.conn.query("mongo","mongotest",'db.unittest_collection.find({"id":2})');
+            decoded = jsondecode(docs(1));
+            testCase.verifyTrue(isfield(decoded,'name'));
+            testCase.verifyEmpty(decoded.name); % JSON null, not ""
+            testCase.verifyTrue(contains(docs(1),'"name":null'));
+
+            % An empty string stays an empty string
+            docs = testCase.conn.query("mongo","mongotest",'db.unittest_collection.find({"id":3})');
+            testCase.verifyTrue(contains(docs(1),'"name":""'));
+        end
+
         function testSyntaxErrorThrows(testCase)
             badQuery = 'db.unittest_collection.insertOne({"foo":123)'; % invalid JSON
             testCase.verifyError(@() testCase.conn.query("mongo","mongotest",badQuery),?MException);
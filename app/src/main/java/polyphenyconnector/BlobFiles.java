@@ -0,0 +1,98 @@
+package polyphenyconnector;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/*
+ * Streams the BINARY/FILE/IMAGE/VIDEO/AUDIO values of one result to files instead of into byte[] (QueryExecutor.setBlobMode( "file",
+ * directory )). Every value is written from the protobuf data of the current frame straight to its file, no byte[] copy of it is ever
+ * made, so a media pull needs about one frame of memory however many blobs it returns. Every result gets a new directory
+ * <directory>/q<n>_<random> (n counts the results of the executor, the random part is chosen by Files.createTempDirectory), so no two
+ * results, executors or MATLAB sessions ever write into the same one. In it, the file of row r of the c-th column "img" is
+ * c<c>_img_<r>.bin (c and r 1-based); the column index keeps duplicate column names apart. Existing files are never replaced.
+ * The column returned to MATLAB is Object[]{ String[] paths, double[] bytes }, NULL values have a null path and NaN bytes.
+ */
+
+final class BlobFiles {
+
+    /**
+     * Writes one value to the stream and returns its size in bytes.
+     */
+    interface Source {
+
+        long writeTo( OutputStream out ) throws IOException;
+
+    }
+
+
+    private final Path directory;
+    private final String[] prefixes;
+    private final long[] rows;
+
+
+    BlobFiles( Path directory, long resultNumber, String[] colNames ) throws IOException {
+        this.directory = Files.createTempDirectory( directory, "q" + resultNumber + "_" );
+        this.prefixes = new String[colNames.length];
+        this.rows = new long[colNames.length];
+        for ( int c = 0; c < colNames.length; c++ ) {
+            prefixes[c] = "c" + ( c + 1 ) + "_" + colNames[c].replaceAll( "[^A-Za-z0-9_-]", "_" ) + "_";
+        }
+    }
+
+
+    /**
+     * @return Object[]{ String path, Double bytes } of the file the next row of the column was written to
+     */
+    Object[] write( int colIndex, Source source ) throws IOException {
+        Path file = directory.resolve( prefixes[colIndex] + ( ++rows[colIndex] ) + ".bin" );
+        long bytes;
+        try ( OutputStream out = Files.newOutputStream( file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE ) ) {
+            bytes = source.writeTo( out );
+        }
+        return new Object[]{ file.toString(), (double) bytes };
+    }
+
+
+    /**
+     * A NULL value: no file, but the row numbers of the following files stay aligned with the rows.
+     */
+    Object[] skip( int colIndex ) {
+        rows[colIndex]++;
+        return null;
+    }
+
+
+    /**
+     * Copies a stream (the JDBC Blob fallback) in 64 KB steps and returns the number of bytes.
+     */
+    static long copy( InputStream in, OutputStream out ) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long bytes = 0;
+        for ( int n = in.read( buffer ); n >= 0; n = in.read( buffer ) ) {
+            out.write( buffer, 0, n );
+            bytes += n;
+        }
+        return bytes;
+    }
+
+
+    /**
+     * @return Object[]{ String[] paths, double[] bytes } for the rows returned by write and skip
+     */
+    static Object[] toColumn( List<?> list ) {
+        String[] paths = new String[list.size()];
+        double[] bytes = new double[list.size()];
+        for ( int r = 0; r < paths.length; r++ ) {
+            Object[] entry = (Object[]) list.get( r );
+            paths[r] = entry == null ? null : (String) entry[0];
+            bytes[r] = entry == null ? Double.NaN : (Double) entry[1];
+        }
+        return new Object[]{ paths, bytes };
+    }
+
+}
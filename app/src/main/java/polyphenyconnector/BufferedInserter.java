@@ -0,0 +1,488 @@
+package polyphenyconnector;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+import polyphenyconnector.FileImporter.ColumnType;
+import polyphenyconnector.FileImporter.ParsedChunk;
+
+/*
+ * Write-behind inserter for rows that are produced one at a time (e.g. inside a MATLAB acquisition loop):
+ * - addRow/addColumns only copy the values into primitive column buffers (the ParsedChunk layout of the FileImporter), no round trip.
+ * - Once flushRows rows are buffered, or flushSeconds after the first unflushed row, the buffer is handed to a background writer thread
+ *   and a fresh one is filled meanwhile. The writer inserts it through one batched PreparedStatement and commits it.
+ * - Backpressure: at most maxPendingBatches handed off buffers wait for the writer. If the server falls behind, the next hand-off blocks
+ *   the caller until one of them is written, so memory stays bounded by (maxPendingBatches + 1) * flushRows rows.
+ * - A failed background flush is remembered and thrown by the next call (addRow, addColumns, flush or close), with the number of rows
+ *   that were not inserted. The inserter stays usable afterwards.
+ * The buffer is guarded by a ReentrantLock rather than the monitor: a caller blocked by backpressure holds it, and the shared timer
+ * thread must be able to skip such an inserter (tryLock) instead of waiting for it and stalling the timers of all other inserters.
+ * The writer uses its own connection (a sibling of the executor's one), so the MATLAB thread can keep querying while it writes. Its
+ * batches are therefore committed independently of any transaction open on the executor's connection.
+ */
+
+public class BufferedInserter implements AutoCloseable {
+
+    // The timer only hands buffers off, the writing happens on the writer thread, so one timer thread serves all inserters.
+    private static final class Timer {
+
+        static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor( runnable -> {
+            Thread thread = new Thread( runnable, "polypheny-inserter-timer" );
+            thread.setDaemon( true );
+            return thread;
+        } );
+    }
+
+
+    private final PolyphenyConnection connection;
+    private final String table;
+    private final ColumnType[] types;
+    private final String insertSql;
+    private final int flushRows;
+    private final long flushNanos;
+
+    private final ScheduledExecutorService writer;
+    private final Semaphore pendingSlots;
+    private final ScheduledFuture<?> timer;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private ParsedChunk current;
+    private long firstUnflushedNanos;
+    private boolean closed;
+
+    // Writer thread state
+    private PreparedStatement statement;
+    private Connection preparedOn;
+
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+    private final AtomicLong rowsBuffered = new AtomicLong();
+    private final AtomicLong rowsInserted = new AtomicLong();
+    private final AtomicLong rowsFailed = new AtomicLong();
+    private final AtomicLong batchesWritten = new AtomicLong();
+
+
+    /**
+     * @param connection The connection the writer inserts through, owned (and closed) by the inserter
+     * @param table The (optionally namespace qualified) target table
+     * @param columns The target columns, null for a positional insert
+     * @param typeNames One FileImporter column type per column (double, int64, boolean, string, auto, ...)
+     * @param flushRows Rows per background batch
+     * @param flushSeconds Longest time a row waits in the buffer, 0 or less to flush by size only
+     * @param maxPendingBatches Handed off batches that may wait for the writer before the caller is blocked
+     */
+    BufferedInserter( PolyphenyConnection connection, String table, String[] columns, String[] typeNames, int flushRows, double flushSeconds, int maxPendingBatches ) {
+        if ( flushRows <= 0 || maxPendingBatches <= 0 ) {
+            throw new IllegalArgumentException( "flushRows and maxPendingBatches must be positive." );
+        }
+        if ( typeNames == null || typeNames.length == 0 ) {
+            throw new IllegalArgumentException( "The inserter needs one column type per column." );
+        }
+        if ( columns != null && columns.length != typeNames.length ) {
+            throw new IllegalArgumentException( "The inserter got " + columns.length + " column names but " + typeNames.length + " column types." );
+        }
+        this.connection = connection;
+        this.table = table;
+        this.types = new ColumnType[typeNames.length];
+        for ( int c = 0; c < typeNames.length; c++ ) {
+            types[c] = ColumnType.parse( typeNames[c] );
+        }
+        this.insertSql = FileImporter.insertStatement( table, columns, types.length );
+        this.flushRows = flushRows;
+        this.flushNanos = flushSeconds > 0 ? (long) ( flushSeconds * 1e9 ) : 0;
+        this.pendingSlots = new Semaphore( maxPendingBatches );
+        this.current = new ParsedChunk( types, flushRows, 0 );
+        this.writer = Executors.newSingleThreadScheduledExecutor( runnable -> {
+            Thread thread = new Thread( runnable, "polypheny-inserter" );
+            thread.setDaemon( true );
+            return thread;
+        } );
+        long period = flushNanos > 0 ? Math.max( flushNanos / 4, TimeUnit.MILLISECONDS.toNanos( 10 ) ) : 0;
+        this.timer = period > 0 ? Timer.SCHEDULER.scheduleWithFixedDelay( this::flushIfDue, period, period, TimeUnit.NANOSECONDS ) : null;
+    }
+
+
+    /**
+     * @Description
+     * - Buffers one row. Values may be Double (NaN is stored as NULL), any other Number, Boolean, String or null.
+     *
+     * @param values One value per column
+     */
+    public void addRow( Object[] values ) {
+        lock.lock();
+        try {
+            beginCall();
+            if ( values.length != types.length ) {
+                throw new IllegalArgumentException( "Row has " + values.length + " values, the inserter into " + table + " has " + types.length + " columns." );
+            }
+            int row = current.rows;
+            try {
+                for ( int c = 0; c < types.length; c++ ) {
+                    store( current, c, row, values[c] );
+                }
+            } catch ( RuntimeException e ) {
+                clearRow( row );
+                throw e;
+            }
+            rowAdded();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * @Description
+     * - Buffers one all-numeric row, e.g. a MATLAB double vector. Cheaper than addRow( Object[] ) since nothing is boxed.
+     */
+    public void addRow( double[] values ) {
+        lock.lock();
+        try {
+            beginCall();
+            if ( values.length != types.length ) {
+                throw new IllegalArgumentException( "Row has " + values.length + " values, the inserter into " + table + " has " + types.length + " columns." );
+            }
+            int row = current.rows;
+            try {
+                for ( int c = 0; c < types.length; c++ ) {
+                    store( current, c, row, values[c] );
+                }
+            } catch ( RuntimeException e ) {
+                clearRow( row );
+                throw e;
+            }
+            rowAdded();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * @Description
+     * - Buffers a small chunk of rows given as equally long columns: double[] (NaN → NULL), float[], long[], int[], short[], byte[],
+     * boolean[], String[] or Object[].
+     *
+     * @param columns columns[c] holds the values of the c-th column for all rows of the chunk
+     */
+    public void addColumns( Object[] columns ) {
+        lock.lock();
+        try {
+            beginCall();
+            if ( columns.length != types.length ) {
+                throw new IllegalArgumentException( "Got " + columns.length + " columns, the inserter into " + table + " has " + types.length + "." );
+            }
+            int rows = columns.length == 0 ? 0 : java.lang.reflect.Array.getLength( columns[0] );
+            for ( int c = 1; c < columns.length; c++ ) {
+                if ( java.lang.reflect.Array.getLength( columns[c] ) != rows ) {
+                    throw new IllegalArgumentException( "Column " + ( c + 1 ) + " has " + java.lang.reflect.Array.getLength( columns[c] ) + " entries, expected " + rows + "." );
+                }
+            }
+            for ( int r = 0; r < rows; r++ ) {
+                int row = current.rows;
+                try {
+                    storeRow( columns, r, row );
+                } catch ( RuntimeException e ) {
+                    clearRow( row );
+                    throw new IllegalArgumentException( "Row " + ( r + 1 ) + " of the chunk: " + e.getMessage() + " The rows before it are buffered.", e );
+                }
+                rowAdded();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    private void storeRow( Object[] columns, int r, int row ) {
+        for ( int c = 0; c < columns.length; c++ ) {
+            Object column = columns[c];
+            if ( column instanceof double[] ) {
+                store( current, c, row, ( (double[]) column )[r] );
+            } else if ( column instanceof float[] ) {
+                store( current, c, row, ( (float[]) column )[r] );
+            } else if ( column instanceof long[] ) {
+                store( current, c, row, (Object) ( (long[]) column )[r] );
+            } else if ( column instanceof int[] ) {
+                store( current, c, row, (Object) (long) ( (int[]) column )[r] );
+            } else if ( column instanceof short[] ) {
+                store( current, c, row, (Object) (long) ( (short[]) column )[r] );
+            } else if ( column instanceof byte[] ) {
+                store( current, c, row, (Object) (long) ( (byte[]) column )[r] );
+            } else if ( column instanceof boolean[] ) {
+                store( current, c, row, (Object) ( (boolean[]) column )[r] );
+            } else if ( column instanceof Object[] ) {
+                store( current, c, row, ( (Object[]) column )[r] );
+            } else {
+                throw new IllegalArgumentException( "Unsupported column type for the inserter: " + column.getClass().getSimpleName() );
+            }
+        }
+    }
+
+
+    /**
+     * A row that could not be stored completely is dropped: its NULL marks must not leak into the next row at the same position.
+     */
+    private void clearRow( int row ) {
+        for ( boolean[] nulls : current.nulls ) {
+            if ( nulls != null ) {
+                nulls[row] = false;
+            }
+        }
+    }
+
+
+    /**
+     * @Description
+     * - Writes everything buffered so far and waits until the writer is done with it.
+     *
+     * @throws RuntimeException if a background flush failed since the last call
+     */
+    public void flush() {
+        lock.lock();
+        try {
+            beginCall();
+            handOff( true );
+        } finally {
+            lock.unlock();
+        }
+        awaitWriter();
+        throwFailure();
+    }
+
+
+    /**
+     * @Description
+     * - Flushes the remaining rows, stops the writer and closes its connection. Calling close twice does nothing.
+     *
+     * @throws RuntimeException if the final or an earlier background flush failed
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if ( closed ) {
+                return;
+            }
+            closed = true;
+            if ( timer != null ) {
+                timer.cancel( false );
+            }
+            handOff( true );
+        } finally {
+            lock.unlock();
+        }
+        try {
+            awaitWriter();
+        } finally {
+            writer.shutdown();
+            connection.close();
+        }
+        throwFailure();
+    }
+
+
+    /**
+     * @return double[]{ rowsBuffered, rowsInserted, batchesWritten, rowsFailed }: rows waiting in the buffers, rows committed by the
+     * writer, batches committed and rows of failed batches (not inserted).
+     */
+    public double[] getStats() {
+        return new double[]{ rowsBuffered.get(), rowsInserted.get(), batchesWritten.get(), rowsFailed.get() };
+    }
+
+
+    private void beginCall() {
+        if ( closed ) {
+            throw new IllegalStateException( "The inserter into " + table + " is closed." );
+        }
+        throwFailure();
+    }
+
+
+    private void throwFailure() {
+        RuntimeException e = failure.getAndSet( null );
+        if ( e != null ) {
+            throw e;
+        }
+    }
+
+
+    private void rowAdded() {
+        if ( current.rows++ == 0 ) {
+            firstUnflushedNanos = System.nanoTime();
+        }
+        rowsBuffered.incrementAndGet();
+        if ( current.rows == flushRows ) {
+            handOff( true );
+        }
+    }
+
+
+    private void flushIfDue() {
+        // the timer never waits: a caller holding the lock is adding rows or blocked by backpressure, a flush is on its way anyway
+        if ( !lock.tryLock() ) {
+            return;
+        }
+        try {
+            if ( !closed && current.rows > 0 && System.nanoTime() - firstUnflushedNanos >= flushNanos ) {
+                handOff( false ); // same if all slots are taken
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * @Description
+     * - Passes the current buffer to the writer and starts a new one.
+     *
+     * @param wait true to block until a pending slot is free (backpressure), false to give up if none is
+     */
+    private void handOff( boolean wait ) {
+        if ( current.rows == 0 ) {
+            return;
+        }
+        if ( wait ) {
+            pendingSlots.acquireUninterruptibly();
+        } else if ( !pendingSlots.tryAcquire() ) {
+            return;
+        }
+        ParsedChunk batch = current;
+        current = new ParsedChunk( types, flushRows, 0 );
+        writer.execute( () -> {
+            try {
+                write( batch );
+            } finally {
+                pendingSlots.release();
+            }
+        } );
+    }
+
+
+    /**
+     * Blocks until the writer has finished everything handed off before: it runs the tasks in order, so an empty task marks the end.
+     */
+    private void awaitWriter() {
+        try {
+            writer.submit( () -> {
+            } ).get();
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( "Interrupted while waiting for the inserter into " + table + " to flush.", e );
+        } catch ( ExecutionException e ) {
+            throw new RuntimeException( e.getCause().getMessage(), e.getCause() );
+        }
+    }
+
+
+    /**
+     * Runs on the writer thread: one batched insert and one commit per buffer. A failed buffer is rolled back and reported.
+     */
+    private void write( ParsedChunk batch ) {
+        connection.beginUse();
+        try {
+            connection.openIfNeeded();
+            Connection jdbc = connection.getConnection();
+            if ( preparedOn != jdbc ) {
+                // first batch, or the connection was replaced after the server dropped it
+                if ( statement != null ) {
+                    try {
+                        statement.close();
+                    } catch ( SQLException ignored ) {
+                        // best effort, the old connection is usually gone already
+                    }
+                    statement = null;
+                }
+                statement = jdbc.prepareStatement( insertSql );
+                preparedOn = jdbc;
+            }
+            connection.beginTransaction();
+            try {
+                for ( int row = 0; row < batch.rows; row++ ) {
+                    FileImporter.bindRow( statement, batch, types, row );
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                connection.commitTransaction();
+            } catch ( SQLException | RuntimeException e ) {
+                try {
+                    statement.clearBatch();
+                    connection.rollbackTransaction();
+                } catch ( Exception rollbackException ) {
+                    e.addSuppressed( rollbackException );
+                }
+                throw e;
+            }
+            rowsInserted.addAndGet( batch.rows );
+            batchesWritten.incrementAndGet();
+        } catch ( Exception e ) {
+            rowsFailed.addAndGet( batch.rows );
+            RuntimeException reported = new RuntimeException( "Background flush into " + table + " failed, " + batch.rows + " rows were not inserted ("
+                    + rowsFailed.get() + " so far): " + e.getMessage(), e );
+            failure.compareAndSet( null, reported ); // an earlier failure that was not reported yet keeps precedence, the count covers both
+        } finally {
+            connection.endUse();
+            rowsBuffered.addAndGet( -batch.rows );
+        }
+    }
+
+
+    private void store( ParsedChunk chunk, int c, int row, double value ) {
+        if ( Double.isNaN( value ) ) {
+            chunk.markNull( c, row );
+            return;
+        }
+        ColumnType type = types[c];
+        if ( type.isFloatingPoint() ) {
+            ( (double[]) chunk.columns[c] )[row] = value;
+        } else if ( type == ColumnType.BOOLEAN ) {
+            ( (long[]) chunk.columns[c] )[row] = value != 0 ? 1 : 0;
+        } else if ( type.isInteger() ) {
+            ( (long[]) chunk.columns[c] )[row] = (long) value;
+        } else if ( type == ColumnType.STRING ) {
+            ( (String[]) chunk.columns[c] )[row] = value == Math.rint( value ) && Math.abs( value ) < 1e15 ? Long.toString( (long) value ) : Double.toString( value );
+        } else {
+            ( (Object[]) chunk.columns[c] )[row] = value;
+        }
+    }
+
+
+    private void store( ParsedChunk chunk, int c, int row, Object value ) {
+        if ( value == null ) {
+            chunk.markNull( c, row );
+            return;
+        }
+        if ( value instanceof Double || value instanceof Float ) {
+            store( chunk, c, row, ( (Number) value ).doubleValue() );
+            return;
+        }
+        ColumnType type = types[c];
+        if ( type == ColumnType.STRING ) {
+            ( (String[]) chunk.columns[c] )[row] = value.toString();
+        } else if ( type == ColumnType.AUTO ) {
+            ( (Object[]) chunk.columns[c] )[row] = value instanceof Number ? (Object) ( (Number) value ).longValue() : value;
+        } else if ( value instanceof Boolean ) {
+            store( chunk, c, row, (Boolean) value ? 1.0 : 0.0 );
+        } else if ( value instanceof Number ) {
+            if ( type.isFloatingPoint() ) {
+                ( (double[]) chunk.columns[c] )[row] = ( (Number) value ).doubleValue();
+            } else {
+                ( (long[]) chunk.columns[c] )[row] = type == ColumnType.BOOLEAN ? ( ( (Number) value ).longValue() != 0 ? 1 : 0 ) : ( (Number) value ).longValue();
+            }
+        } else {
+            throw new IllegalArgumentException( "Value " + value + " (" + value.getClass().getSimpleName() + ") does not fit the " + type.name().toLowerCase()
+                    + " column " + ( c + 1 ) + " of the inserter into " + table + "." );
+        }
+    }
+
+}
@@ -0,0 +1,174 @@
+package polyphenyconnector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.polypheny.jdbc.dependency.prism.ProtoDocument;
+import org.polypheny.jdbc.dependency.prism.ProtoList;
+import org.polypheny.jdbc.dependency.prism.ProtoValue;
+
+/*
+ * Pulls single values out of raw DOCUMENT values by path, e.g. "a.b[3].c", WITHOUT turning the documents into JSON:
+ * - A path is parsed once into segments: a key ("a") or a list index ("[3]").
+ * - For every document the path is walked directly over ProtoDocument/ProtoList. The leaf is kept as raw ProtoValue reference; the
+ *   conversion into double[]/String[] happens once per path at the end (QueryExecutor.protoColumnToJava).
+ * - Key lookup cache: documents of one collection/column almost always have the same shape, i.e. the key "b" sits at the same entry
+ *   position in every document. Each key segment remembers the position where it was found last and checks it first, so the usual
+ *   lookup is O(1) instead of a scan over all entries. Differently shaped documents fall back to the scan and update the cache.
+ */
+
+final class DocumentPaths {
+
+    private final String[] paths;
+    private final Object[][] segments;        // per path: String (key) or Integer (list index)
+    private final int[][] lastPosition;       // per path and key segment: entry position the key was found at last
+    private final List<List<ProtoValue>> leaves;
+
+
+    DocumentPaths( String[] paths ) {
+        this.paths = paths.clone();
+        this.segments = new Object[paths.length][];
+        this.lastPosition = new int[paths.length][];
+        this.leaves = new ArrayList<>( paths.length );
+        for ( int p = 0; p < paths.length; p++ ) {
+            segments[p] = parse( paths[p] );
+            lastPosition[p] = new int[segments[p].length];
+            leaves.add( new ArrayList<ProtoValue>() );
+        }
+    }
+
+
+    /**
+     * @Description
+     * - Parses "a.b[3].c" into { "a", "b", 3, "c" }. A leading "[0]" addresses a list root.
+     */
+    static Object[] parse( String path ) {
+        if ( path == null || path.isEmpty() ) {
+            throw new IllegalArgumentException( "Document paths must not be empty." );
+        }
+        List<Object> parsed = new ArrayList<>();
+        int i = 0;
+        int length = path.length();
+        while ( i < length ) {
+            char c = path.charAt( i );
+            if ( c == '.' ) {
+                i++;
+            } else if ( c == '[' ) {
+                int close = path.indexOf( ']', i );
+                if ( close < 0 ) {
+                    throw new IllegalArgumentException( "Missing ']' in document path " + path );
+                }
+                try {
+                    parsed.add( Integer.parseInt( path.substring( i + 1, close ).trim() ) );
+                } catch ( NumberFormatException e ) {
+                    throw new IllegalArgumentException( "Invalid list index in document path " + path );
+                }
+                i = close + 1;
+            } else {
+                int end = i;
+                while ( end < length && path.charAt( end ) != '.' && path.charAt( end ) != '[' ) {
+                    end++;
+                }
+                parsed.add( path.substring( i, end ) );
+                i = end;
+            }
+        }
+        return parsed.toArray();
+    }
+
+
+    String[] getPaths() {
+        return paths.clone();
+    }
+
+
+    /**
+     * @Description
+     * - Walks every path over one document and records the leaf values (null if a path does not exist in this document).
+     */
+    void add( ProtoValue root ) {
+        for ( int p = 0; p < segments.length; p++ ) {
+            leaves.get( p ).add( walk( root, p ) );
+        }
+    }
+
+
+    void add( ProtoDocument root ) {
+        for ( int p = 0; p < segments.length; p++ ) {
+            leaves.get( p ).add( walk( root, p ) );
+        }
+    }
+
+
+    /**
+     * @return The recorded leaf values of the p-th path, one per added document.
+     */
+    List<ProtoValue> leaves( int p ) {
+        return leaves.get( p );
+    }
+
+
+    private ProtoValue walk( ProtoValue root, int p ) {
+        if ( root == null ) {
+            return null;
+        }
+        ProtoValue current = root;
+        Object[] path = segments[p];
+        for ( int s = 0; s < path.length && current != null; s++ ) {
+            current = step( current, p, s );
+        }
+        return current;
+    }
+
+
+    private ProtoValue walk( ProtoDocument root, int p ) {
+        Object[] path = segments[p];
+        if ( !( path[0] instanceof String ) ) {
+            return null;
+        }
+        ProtoValue current = lookup( root, (String) path[0], p, 0 );
+        for ( int s = 1; s < path.length && current != null; s++ ) {
+            current = step( current, p, s );
+        }
+        return current;
+    }
+
+
+    private ProtoValue step( ProtoValue current, int p, int s ) {
+        Object segment = segments[p][s];
+        if ( segment instanceof String ) {
+            return current.getValueCase() == ProtoValue.ValueCase.DOCUMENT ? lookup( current.getDocument(), (String) segment, p, s ) : null;
+        }
+        if ( current.getValueCase() != ProtoValue.ValueCase.LIST ) {
+            return null;
+        }
+        ProtoList list = current.getList();
+        int index = (Integer) segment;
+        return index >= 0 && index < list.getValuesCount() ? list.getValues( index ) : null;
+    }
+
+
+    /**
+     * Finds the value of key in doc, trying the position the key had in the previous document first.
+     */
+    private ProtoValue lookup( ProtoDocument doc, String key, int p, int s ) {
+        int count = doc.getEntriesCount();
+        int cached = lastPosition[p][s];
+        if ( cached < count && keyEquals( doc.getEntries( cached ).getKey(), key ) ) {
+            return doc.getEntries( cached ).getValue();
+        }
+        for ( int i = 0; i < count; i++ ) {
+            if ( i != cached && keyEquals( doc.getEntries( i ).getKey(), key ) ) {
+                lastPosition[p][s] = i;
+                return doc.getEntries( i ).getValue();
+            }
+        }
+        return null;
+    }
+
+
+    private static boolean keyEquals( ProtoValue key, String expected ) {
+        return key.getValueCase() == ProtoValue.ValueCase.STRING && expected.equals( key.getString().getString() );
+    }
+
+}
@@ -0,0 +1,188 @@
+package polyphenyconnector;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+
+import org.polypheny.jdbc.PolyphenyResultSet;
+import org.polypheny.jdbc.dependency.prism.ProtoValue;
+import org.polypheny.jdbc.types.TypedValue;
+
+/*
+ * LOCKPICKING, done once:
+ * The connector reads the raw ProtoValue of every cell instead of letting the driver build Java objects for it. For that it needs two
+ * private members of the driver: PolyphenyResultSet.accessValue(int) and the field TypedValue.serialized. Calling them through
+ * Method.invoke/Field.get on every cell is slow (boxing of the arguments, megamorphic call sites). Instead this class resolves them
+ * ONCE into static final MethodHandles. The JIT treats static final MethodHandles as constants and inlines invokeExact like a normal call.
+ *
+ * If a future driver renames or changes these members, nothing breaks: the class falls back to the public JDBC getObject(...) path and
+ * reports so through describe().
+ */
+
+final class DriverAccess {
+
+    enum Mode {
+        METHOD_HANDLE, // private driver members resolved into MethodHandles (fast path)
+        JDBC_FALLBACK  // internals not available, cells are read with ResultSet.getObject(...)
+    }
+
+
+    // Driver versions the private members were verified against. Other versions are still used if the members resolve with the expected
+    // signatures, but describe() flags them as unverified.
+    private static final List<String> VERIFIED_VERSIONS = Arrays.asList( "2.3" );
+
+    // Set -Dpolypheny.connector.accessor=jdbc to force the fallback path, e.g. to rule out the lockpick when debugging.
+    private static final String FORCE_PROPERTY = "polypheny.connector.accessor";
+
+    private static final MethodHandle ACCESS_VALUE; // (PolyphenyResultSet, int) -> TypedValue
+    private static final MethodHandle PROTO_GETTER; // (TypedValue) -> ProtoValue
+    private static final Mode MODE;
+    private static final String DRIVER_VERSION;
+    private static final String REASON;
+
+    static {
+        DRIVER_VERSION = detectDriverVersion();
+        MethodHandle accessValue = null;
+        MethodHandle protoGetter = null;
+        String reason = null;
+
+        if ( "jdbc".equalsIgnoreCase( System.getProperty( FORCE_PROPERTY ) ) ) {
+            reason = "forced by -D" + FORCE_PROPERTY + "=jdbc";
+        } else {
+            try {
+                Method method = PolyphenyResultSet.class.getDeclaredMethod( "accessValue", int.class );
+                method.setAccessible( true );
+                Field field = TypedValue.class.getDeclaredField( "serialized" );
+                field.setAccessible( true );
+
+                MethodHandles.Lookup lookup = MethodHandles.lookup();
+                // asType(...) pins the exact signature: if the driver changed a return type, this throws and we fall back.
+                accessValue = lookup.unreflect( method ).asType( MethodType.methodType( TypedValue.class, PolyphenyResultSet.class, int.class ) );
+                protoGetter = lookup.unreflectGetter( field ).asType( MethodType.methodType( ProtoValue.class, TypedValue.class ) );
+            } catch ( Throwable e ) {
+                accessValue = null;
+                protoGetter = null;
+                reason = "driver internals changed: " + e;
+            }
+        }
+
+        ACCESS_VALUE = accessValue;
+        PROTO_GETTER = protoGetter;
+        MODE = accessValue != null ? Mode.METHOD_HANDLE : Mode.JDBC_FALLBACK;
+        if ( MODE == Mode.METHOD_HANDLE && !isVerified( DRIVER_VERSION ) ) {
+            reason = "driver version not verified, internals resolved with the expected signatures";
+        }
+        REASON = reason;
+    }
+
+
+    private DriverAccess() {
+    }
+
+
+    private static boolean isVerified( String version ) {
+        for ( String verified : VERIFIED_VERSIONS ) {
+            if ( version.equals( verified ) || version.startsWith( verified + "." ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * @Description
+     * - Whether the fast path (raw ProtoValues via MethodHandles) is active. If false, callers must use ResultSet.getObject(...).
+     */
+    static boolean isAvailable() {
+        return MODE == Mode.METHOD_HANDLE;
+    }
+
+
+    static Mode getMode() {
+        return MODE;
+    }
+
+
+    static String getDriverVersion() {
+        return DRIVER_VERSION;
+    }
+
+
+    /**
+     * @Description
+     * - Human readable description of the active accessor path, e.g. "METHOD_HANDLE (driver 2.3)".
+     */
+    static String describe() {
+        return MODE + " (driver " + DRIVER_VERSION + ")" + ( REASON != null ? ": " + REASON : "" );
+    }
+
+
+    /**
+     * @Description
+     * - Calls the private PolyphenyResultSet.accessValue(columnIndex) on the current row. Unlike the old reflective call a failure is
+     * not swallowed to null but reported.
+     *
+     * @param resultSet The result set positioned on the row to read
+     * @param columnIndex The 1-based column index
+     * @return The TypedValue the driver holds for this cell
+     */
+    static TypedValue accessValue( PolyphenyResultSet resultSet, int columnIndex ) throws SQLException {
+        try {
+            return (TypedValue) ACCESS_VALUE.invokeExact( resultSet, columnIndex );
+        } catch ( SQLException | RuntimeException e ) {
+            throw e;
+        } catch ( Throwable e ) {
+            throw new SQLException( "Reading column " + columnIndex + " through the driver internals failed.", e );
+        }
+    }
+
+
+    /**
+     * @Description
+     * - Reads the private TypedValue.serialized field, i.e. the raw ProtoValue of the cell.
+     */
+    static ProtoValue rawProto( TypedValue tv ) {
+        try {
+            return (ProtoValue) PROTO_GETTER.invokeExact( tv );
+        } catch ( RuntimeException e ) {
+            throw e;
+        } catch ( Throwable e ) {
+            throw new RuntimeException( "Reading the raw ProtoValue through the driver internals failed.", e );
+        }
+    }
+
+
+    /**
+     * @Description
+     * - Finds the version of the registered Polypheny JDBC driver. The manifest version is preferred, the Driver major/minor version is
+     * used if the JAR has no manifest entry.
+     */
+    private static String detectDriverVersion() {
+        Package driverPackage = PolyphenyResultSet.class.getPackage();
+        if ( driverPackage != null && driverPackage.getImplementationVersion() != null ) {
+            return driverPackage.getImplementationVersion();
+        }
+        try {
+            Enumeration<Driver> drivers = DriverManager.getDrivers();
+            while ( drivers.hasMoreElements() ) {
+                Driver driver = drivers.nextElement();
+                if ( driver.getClass().getName().startsWith( "org.polypheny.jdbc" ) ) {
+                    return driver.getMajorVersion() + "." + driver.getMinorVersion();
+                }
+            }
+        } catch ( Exception ignored ) {
+            // no version information available, handled below
+        }
+        return "unknown";
+    }
+
+}
@@ -0,0 +1,57 @@
+package polyphenyconnector;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+ * Threads for the concurrent features whose tasks mostly WAIT for the server: the partitions of executeSqlPartitioned, the workers of
+ * a parallel executeQueryBatch and the background prewarm.
+ * The connector is packaged as multi-release JAR. This is the Java 8 version: bounded pools of daemon platform threads. On Java 21 and
+ * newer the JVM loads META-INF/versions/21/polyphenyconnector/ExecutionThreads.class instead (source in src/main/java21), which runs the
+ * same tasks on virtual threads, so many concurrent lookups do not need a pool that is sized and tuned for them.
+ * CPU-bound work (the DecodePool, the FileImporter parsers) stays on platform threads on every JVM.
+ */
+
+final class ExecutionThreads {
+
+    private ExecutionThreads() {
+    }
+
+
+    /**
+     * @return true if the tasks run on virtual threads, i.e. this is the Java 21 version of the class.
+     */
+    static boolean isVirtual() {
+        return false;
+    }
+
+
+    /**
+     * @Description
+     * - Executor for waiting (I/O-bound) tasks. On this JVM: a pool of at most maxConcurrency daemon threads named name-1, name-2, ...
+     *
+     * @param name The thread name prefix, e.g. "polypheny-partition"
+     * @param maxConcurrency The number of tasks that will run at the same time
+     */
+    static ExecutorService newExecutor( String name, int maxConcurrency ) {
+        int[] count = { 0 };
+        return Executors.newFixedThreadPool( maxConcurrency, runnable -> {
+            Thread thread = new Thread( runnable, name + "-" + ( ++count[0] ) );
+            thread.setDaemon( true );
+            return thread;
+        } );
+    }
+
+
+    /**
+     * @Description
+     * - Starts one waiting task in the background, e.g. the prewarm. It never keeps the JVM (MATLAB) from exiting.
+     */
+    static Thread start( String name, Runnable task ) {
+        Thread thread = new Thread( task, name );
+        thread.setDaemon( true );
+        thread.start();
+        return thread;
+    }
+
+}
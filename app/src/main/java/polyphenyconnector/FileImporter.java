@@ -0,0 +1,824 @@
+package polyphenyconnector;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Streaming file import:
+ * 1. The file is cut into chunks of roughly chunkSize bytes. Chunk borders are moved to the next line break (CSV) or to the next
+ *    record border (binary) so that no row is ever split between two chunks.
+ * 2. Every chunk is memory-mapped and parsed on a pool of parser threads into primitive column arrays (double[], long[], String[]).
+ * 3. The calling thread takes the parsed chunks IN FILE ORDER and feeds them into one batched PreparedStatement INSERT, committing
+ *    every commitInterval rows. Only a bounded window of parsed chunks is ever held in memory.
+ * The data never passes through the MATLAB workspace: MATLAB only hands over the path and receives the counters at the end.
+ */
+
+public class FileImporter {
+
+    /**
+     * @Description
+     * - The column types the importer understands. For the binary format the size is the number of bytes one value occupies in a
+     * record. STRING and AUTO can only be used for delimited text (AUTO parses integers to long, decimals to double and keeps the rest
+     * as String).
+     */
+    enum ColumnType {
+        DOUBLE( 8 ), FLOAT( 4 ), INT8( 1 ), INT16( 2 ), INT32( 4 ), INT64( 8 ), UINT8( 1 ), UINT16( 2 ), UINT32( 4 ), BOOLEAN( 1 ), STRING( -1 ), AUTO( -1 );
+
+        final int size;
+
+
+        ColumnType( int size ) {
+            this.size = size;
+        }
+
+
+        boolean isFloatingPoint() {
+            return this == DOUBLE || this == FLOAT;
+        }
+
+
+        boolean isInteger() {
+            return size > 0 && !isFloatingPoint();
+        }
+
+
+        static ColumnType parse( String name ) {
+            switch ( name.trim().toLowerCase() ) {
+                case "double":
+                    return DOUBLE;
+                case "single":
+                case "float":
+                    return FLOAT;
+                case "int8":
+                    return INT8;
+                case "int16":
+                    return INT16;
+                case "int":
+                case "int32":
+                    return INT32;
+                case "long":
+                case "int64":
+                    return INT64;
+                case "uint8":
+                    return UINT8;
+                case "uint16":
+                    return UINT16;
+                case "uint32":
+                    return UINT32;
+                case "logical":
+                case "boolean":
+                    return BOOLEAN;
+                case "string":
+                case "char":
+                    return STRING;
+                case "auto":
+                    return AUTO;
+                default:
+                    throw new IllegalArgumentException( "Unknown column type: " + name );
+            }
+        }
+    }
+
+
+    /**
+     * @Description
+     * - One parsed chunk of the file in column-based layout. columns[i] is a double[], long[], String[] or Object[] depending on the
+     * ColumnType of the i-th column. nulls[i] is only allocated when the i-th column actually contained an empty field.
+     */
+    static final class ParsedChunk {
+
+        final Object[] columns;
+        final boolean[][] nulls;
+        final long bytes;
+        int rows;
+
+
+        ParsedChunk( ColumnType[] types, int capacity, long bytes ) {
+            this.columns = new Object[types.length];
+            this.nulls = new boolean[types.length][];
+            this.bytes = bytes;
+            for ( int c = 0; c < types.length; c++ ) {
+                columns[c] = newColumn( types[c], capacity );
+            }
+        }
+
+
+        void ensureCapacity( ColumnType[] types, int needed ) {
+            int capacity = capacity( columns[0] );
+            if ( needed <= capacity ) {
+                return;
+            }
+            int newCapacity = Math.max( needed, capacity * 2 );
+            for ( int c = 0; c < columns.length; c++ ) {
+                Object grown = newColumn( types[c], newCapacity );
+                System.arraycopy( columns[c], 0, grown, 0, rows );
+                columns[c] = grown;
+                if ( nulls[c] != null ) {
+                    nulls[c] = Arrays.copyOf( nulls[c], newCapacity );
+                }
+            }
+        }
+
+
+        void markNull( int col, int row ) {
+            if ( nulls[col] == null ) {
+                nulls[col] = new boolean[capacity( columns[col] )];
+            }
+            nulls[col][row] = true;
+        }
+
+
+        boolean isNull( int col, int row ) {
+            return nulls[col] != null && nulls[col][row];
+        }
+
+
+        private static Object newColumn( ColumnType type, int capacity ) {
+            if ( type.isFloatingPoint() ) {
+                return new double[capacity];
+            }
+            if ( type.isInteger() ) {
+                return new long[capacity];
+            }
+            if ( type == ColumnType.STRING ) {
+                return new String[capacity];
+            }
+            return new Object[capacity];
+        }
+
+
+        private static int capacity( Object column ) {
+            return java.lang.reflect.Array.getLength( column );
+        }
+    }
+
+
+    private static final int DEFAULT_BATCH_SIZE = 10_000;
+    private static final long DEFAULT_COMMIT_INTERVAL = 100_000;
+    private static final long DEFAULT_CHUNK_SIZE = 32L * 1024 * 1024;
+
+    private final PolyphenyConnection polyconnection;
+
+    // Progress counters. They are written by the import thread (and the parser threads for bytesParsed) and can be read at any time
+    // through getProgress(), e.g. from a second MATLAB session thread or a Java timer.
+    private final AtomicLong bytesParsed = new AtomicLong();
+    private final AtomicLong rowsInserted = new AtomicLong();
+    private final AtomicLong rowsCommitted = new AtomicLong();
+    private volatile long totalBytes = 0;
+    private volatile long startNanos = 0;
+    private volatile long endNanos = 0;
+
+
+    /**
+     * @Description
+     * - Constructor
+     *
+     * @param polyconnection: PolyphenyConnection object that holds the connection details to the Database. The import runs over this
+     * connection inside its own transaction.
+     **/
+    public FileImporter( PolyphenyConnection polyconnection ) {
+        this.polyconnection = polyconnection;
+    }
+
+
+    /**
+     * @Description
+     * - Imports a delimited text file ("csv") or a file of fixed-size binary records ("binary") into an existing table. The file is
+     * memory-mapped and parsed in parallel chunks, the rows are inserted through one batched PreparedStatement and committed every
+     * commitInterval rows. Options are passed as "key=value" Strings:
+     * - columns=a,b,c      Target columns. CSV default: the header line. Binary default: positional insert.
+     * - types=double,int32 Column types (double, float/single, int8..int64, uint8..uint32, boolean, string, auto). CSV default: auto.
+     * - delimiter=,        Field delimiter for CSV (\t is accepted for tabs). Fields may be "quoted" ("" escapes a quote), but a
+     *                      quoted field must not contain a line break: rows are found by line breaks, such a file is rejected.
+     * - header=true        Whether the first CSV line holds the column names.
+     * - byteOrder=little   Byte order of binary records (little or big).
+     * - batchSize=10000    Rows per executeBatch() round trip.
+     * - commitInterval=100000 Rows per commit.
+     * - chunkSize=33554432 Bytes per parsed chunk, at most 2^31-1 (one memory-mapped buffer).
+     * - threads=N          Number of parser threads (default: number of cores).
+     * - skipRows=N         Skips the first N data rows, e.g. to resume after a failed import at the last reported commit.
+     * Inside a transaction opened with PolyphenyConnection.beginTransaction the import does not commit at all: the rows become part of
+     * the transaction (rowsCommitted stays 0, getProgress reports them as rowsInserted).
+     *
+     * @param path The path of the file to import
+     * @param table The (optionally namespace qualified) target table
+     * @param format "csv" or "binary"
+     * @param options "key=value" options as described above. May be null.
+     * @return double[]{ rowsCommitted, bytesParsed, elapsedSeconds, rowsPerSecond, totalBytes, rowsInserted }, see getProgress()
+     */
+    public double[] importFile( String path, String table, String format, String[] options ) {
+        return importFile( path, table, format, options, QueryDeadline.start( 0 ) );
+    }
+
+
+    /**
+     * @Description
+     * - Same as importFile( path, table, format, options ), but the import can be cancelled through the given deadline. The deadline is
+     * checked before every parsed chunk and a running executeBatch is cancelled on the server.
+     */
+    double[] importFile( String path, String table, String format, String[] options, QueryDeadline deadline ) {
+        Map<String, String> opts = parseOptions( options );
+        boolean binary;
+        switch ( format == null ? "" : format.trim().toLowerCase() ) {
+            case "csv":
+            case "text":
+            case "delimited":
+                binary = false;
+                break;
+            case "binary":
+            case "raw":
+                binary = true;
+                break;
+            default:
+                throw new IllegalArgumentException( "Unsupported import format: " + format + ". Use \"csv\" or \"binary\"." );
+        }
+
+        int batchSize = Integer.parseInt( opts.getOrDefault( "batchsize", String.valueOf( DEFAULT_BATCH_SIZE ) ) );
+        long commitInterval = Long.parseLong( opts.getOrDefault( "commitinterval", String.valueOf( DEFAULT_COMMIT_INTERVAL ) ) );
+        long chunkSize = Long.parseLong( opts.getOrDefault( "chunksize", String.valueOf( DEFAULT_CHUNK_SIZE ) ) );
+        int threads = Integer.parseInt( opts.getOrDefault( "threads", String.valueOf( Runtime.getRuntime().availableProcessors() ) ) );
+        long skipRows = Long.parseLong( opts.getOrDefault( "skiprows", "0" ) );
+        if ( batchSize <= 0 || commitInterval <= 0 || chunkSize <= 0 || threads <= 0 ) {
+            throw new IllegalArgumentException( "batchSize, commitInterval, chunkSize and threads must be positive." );
+        }
+        if ( chunkSize > Integer.MAX_VALUE ) {
+            throw new IllegalArgumentException( "chunkSize must not exceed " + Integer.MAX_VALUE + " bytes, a chunk is parsed from one memory-mapped buffer." );
+        }
+
+        bytesParsed.set( 0 );
+        rowsInserted.set( 0 );
+        rowsCommitted.set( 0 );
+        endNanos = 0;
+        startNanos = System.nanoTime();
+
+        ExecutorService parsers = null;
+        try ( FileChannel channel = FileChannel.open( Paths.get( path ), StandardOpenOption.READ ) ) {
+            totalBytes = channel.size();
+
+            // 1. Work out the layout: column names, column types and the byte offset where the data starts.
+            String[] columns = opts.containsKey( "columns" ) ? splitList( opts.get( "columns" ) ) : null;
+            ColumnType[] types = opts.containsKey( "types" ) ? parseTypes( splitList( opts.get( "types" ) ) ) : null;
+            byte delimiter = parseDelimiter( opts.getOrDefault( "delimiter", "," ) );
+            ByteOrder order = "big".equalsIgnoreCase( opts.getOrDefault( "byteorder", "little" ) ) ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+            long dataStart = 0;
+
+            if ( binary ) {
+                if ( types == null ) {
+                    throw new IllegalArgumentException( "Binary import requires the types=... option." );
+                }
+                for ( ColumnType type : types ) {
+                    if ( type.size < 0 ) {
+                        throw new IllegalArgumentException( "Binary import only supports fixed-size numeric types, got " + type );
+                    }
+                }
+            } else {
+                boolean header = Boolean.parseBoolean( opts.getOrDefault( "header", "true" ) );
+                byte[] firstLine = readLine( channel, 0 );
+                if ( header ) {
+                    dataStart = firstLine.length < totalBytes ? firstLine.length + 1 : totalBytes;
+                    if ( columns == null ) {
+                        columns = splitFields( firstLine, delimiter );
+                    }
+                }
+                int width = columns != null ? columns.length : types != null ? types.length : splitFields( firstLine, delimiter ).length;
+                if ( types == null ) {
+                    types = new ColumnType[width];
+                    Arrays.fill( types, ColumnType.AUTO );
+                }
+            }
+            if ( columns != null && columns.length != types.length ) {
+                throw new IllegalArgumentException( "importFile got " + columns.length + " column names but " + types.length + " column types." );
+            }
+            final ColumnType[] columnTypes = types;
+
+            // 2. Cut the file into chunks that never split a row.
+            List<long[]> chunks = binary ? binaryChunks( dataStart, totalBytes, recordSize( types ), chunkSize ) : textChunks( channel, dataStart, totalBytes, chunkSize );
+
+            // 3. Parse in parallel, insert in file order. The window bounds the number of parsed chunks held in memory.
+            parsers = Executors.newFixedThreadPool( threads, runnable -> {
+                Thread thread = new Thread( runnable, "polypheny-import-parser" );
+                thread.setDaemon( true );
+                return thread;
+            } );
+            int window = threads * 2;
+            ArrayDeque<Future<ParsedChunk>> pending = new ArrayDeque<>( window );
+            int nextChunk = 0;
+
+            // Inside an open transaction the import becomes part of it: no intermediate commits, the owner commits or rolls back.
+            boolean own = polyconnection.beginOrJoinTransaction();
+            Connection connection = polyconnection.getConnection();
+            try ( PreparedStatement statement = connection.prepareStatement( insertStatement( table, columns, types.length ) ) ) {
+                deadline.attach( statement );
+                int inBatch = 0;
+                long sinceCommit = 0;
+                long toSkip = skipRows;
+
+                while ( nextChunk < chunks.size() || !pending.isEmpty() ) {
+                    while ( nextChunk < chunks.size() && pending.size() < window ) {
+                        final long[] chunk = chunks.get( nextChunk++ );
+                        pending.add( parsers.submit( () -> binary ? parseBinary( channel, chunk[0], chunk[1], columnTypes, order ) : parseText( channel, chunk[0], chunk[1], columnTypes, delimiter ) ) );
+                    }
+                    deadline.check();
+                    ParsedChunk parsed = pending.poll().get();
+                    bytesParsed.addAndGet( parsed.bytes );
+
+                    for ( int row = 0; row < parsed.rows; row++ ) {
+                        if ( toSkip > 0 ) {
+                            toSkip--;
+                            continue;
+                        }
+                        bindRow( statement, parsed, columnTypes, row );
+                        statement.addBatch();
+                        inBatch++;
+                        sinceCommit++;
+                        if ( inBatch == batchSize ) {
+                            statement.executeBatch();
+                            rowsInserted.addAndGet( inBatch );
+                            inBatch = 0;
+                        }
+                        if ( own && sinceCommit >= commitInterval ) {
+                            if ( inBatch > 0 ) {
+                                statement.executeBatch();
+                                rowsInserted.addAndGet( inBatch );
+                                inBatch = 0;
+                            }
+                            connection.commit();
+                            rowsCommitted.addAndGet( sinceCommit );
+                            sinceCommit = 0;
+                        }
+                    }
+                }
+                if ( inBatch > 0 ) {
+                    statement.executeBatch();
+                    rowsInserted.addAndGet( inBatch );
+                }
+                if ( own ) {
+                    polyconnection.commitTransaction();
+                    rowsCommitted.addAndGet( sinceCommit );
+                }
+            } catch ( Exception e ) {
+                if ( !own ) {
+                    throw new RuntimeException( "Import of " + path + " failed after " + rowsInserted.get() + " inserted rows. The open transaction was kept and holds them, commit or roll it back: " + e.getMessage(), e );
+                }
+                try {
+                    polyconnection.rollbackTransaction();
+                } catch ( Exception rollbackException ) {
+                    throw new RuntimeException( "Import failed AND rollback failed: " + rollbackException.getMessage(), e );
+                }
+                throw new RuntimeException( "Import of " + path + " failed after " + rowsCommitted.get() + " committed rows (resume with skipRows=" + ( skipRows + rowsCommitted.get() ) + "): " + e.getMessage(), e );
+            }
+        } catch ( IOException e ) {
+            throw new RuntimeException( "Failed to read import file " + path + ": " + e.getMessage(), e );
+        } catch ( SQLException e ) {
+            throw new RuntimeException( "Failed to manage import transaction", e );
+        } finally {
+            endNanos = System.nanoTime();
+            if ( parsers != null ) {
+                parsers.shutdownNow();
+            }
+        }
+        return getProgress();
+    }
+
+
+    /**
+     * @Description
+     * - Returns the progress and throughput of the running (or last) import. Safe to call from any thread while an import runs.
+     *
+     * - rowsPerSecond is computed from the inserted rows, so it is also meaningful for an import inside an open transaction.
+     *
+     * @return double[]{ rowsCommitted, bytesParsed, elapsedSeconds, rowsPerSecond, totalBytes, rowsInserted }
+     */
+    public double[] getProgress() {
+        long end = endNanos != 0 ? endNanos : System.nanoTime();
+        double seconds = startNanos == 0 ? 0 : ( end - startNanos ) / 1e9;
+        double inserted = rowsInserted.get();
+        return new double[]{ rowsCommitted.get(), bytesParsed.get(), seconds, seconds > 0 ? inserted / seconds : 0, totalBytes, inserted };
+    }
+
+
+    /**
+     * @Description
+     * - Builds "INSERT INTO table ("a", "b") VALUES (?, ?)". Without column names the insert is positional. The column names come
+     * from the file header, so they are quoted as identifiers: spaces, reserved words and quotes cannot break the statement.
+     */
+    static String insertStatement( String table, String[] columns, int width ) {
+        StringBuilder sb = new StringBuilder( "INSERT INTO " ).append( table );
+        if ( columns != null ) {
+            sb.append( " (" );
+            for ( int i = 0; i < columns.length; i++ ) {
+                sb.append( i == 0 ? "" : ", " ).append( quoteIdentifier( columns[i] ) );
+            }
+            sb.append( ")" );
+        }
+        sb.append( " VALUES (" );
+        for ( int i = 0; i < width; i++ ) {
+            sb.append( i == 0 ? "?" : ", ?" );
+        }
+        return sb.append( ")" ).toString();
+    }
+
+
+    /**
+     * @Description
+     * - Quotes a column name as SQL identifier, an embedded " is doubled.
+     */
+    static String quoteIdentifier( String name ) {
+        return "\"" + name.replace( "\"", "\"\"" ) + "\"";
+    }
+
+
+    static void bindRow( PreparedStatement statement, ParsedChunk parsed, ColumnType[] types, int row ) throws SQLException {
+        for ( int c = 0; c < types.length; c++ ) {
+            int param = c + 1;
+            if ( parsed.isNull( c, row ) ) {
+                statement.setNull( param, sqlType( types[c] ) );
+                continue;
+            }
+            Object column = parsed.columns[c];
+            if ( types[c] == ColumnType.BOOLEAN ) {
+                statement.setBoolean( param, ( (long[]) column )[row] != 0 );
+            } else if ( types[c].isFloatingPoint() ) {
+                statement.setDouble( param, ( (double[]) column )[row] );
+            } else if ( types[c].isInteger() ) {
+                statement.setLong( param, ( (long[]) column )[row] );
+            } else if ( types[c] == ColumnType.STRING ) {
+                statement.setString( param, ( (String[]) column )[row] );
+            } else {
+                Object value = ( (Object[]) column )[row];
+                if ( value instanceof Long ) {
+                    statement.setLong( param, (Long) value );
+                } else if ( value instanceof Double ) {
+                    statement.setDouble( param, (Double) value );
+                } else if ( value instanceof Boolean ) {
+                    statement.setBoolean( param, (Boolean) value );
+                } else {
+                    statement.setString( param, value.toString() );
+                }
+            }
+        }
+    }
+
+
+    /**
+     * The JDBC type a NULL of the column is bound with. AUTO columns have no type of their own (the non-NULL values may be numbers or
+     * text), so their NULLs are bound untyped and the server takes the type of the target column.
+     */
+    private static int sqlType( ColumnType type ) {
+        if ( type == ColumnType.BOOLEAN ) {
+            return Types.BOOLEAN;
+        }
+        if ( type.isFloatingPoint() ) {
+            return Types.DOUBLE;
+        }
+        if ( type.isInteger() ) {
+            return Types.BIGINT;
+        }
+        return type == ColumnType.STRING ? Types.VARCHAR : Types.NULL;
+    }
+
+
+    // ─────────────────────────────
+    // Chunking
+    // ─────────────────────────────
+
+
+    private static List<long[]> binaryChunks( long start, long size, int recordSize, long chunkSize ) {
+        if ( ( size - start ) % recordSize != 0 ) {
+            throw new IllegalArgumentException( "Binary file size " + size + " is not a multiple of the record size " + recordSize + " given by types=..." );
+        }
+        long step = Math.max( 1, chunkSize / recordSize ) * recordSize;
+        List<long[]> chunks = new ArrayList<>();
+        for ( long position = start; position < size; position += step ) {
+            chunks.add( new long[]{ position, Math.min( size, position + step ) } );
+        }
+        return chunks;
+    }
+
+
+    private static List<long[]> textChunks( FileChannel channel, long start, long size, long chunkSize ) throws IOException {
+        List<long[]> chunks = new ArrayList<>();
+        long position = start;
+        ByteBuffer probe = ByteBuffer.allocate( 64 * 1024 );
+        while ( position < size ) {
+            long end = Math.min( size, position + chunkSize );
+            // move the border behind the next line break so no row is split between two chunks
+            search:
+            while ( end < size ) {
+                probe.clear();
+                int read = channel.read( probe, end );
+                if ( read <= 0 ) {
+                    end = size;
+                    break;
+                }
+                for ( int i = 0; i < read; i++ ) {
+                    if ( probe.get( i ) == '\n' ) {
+                        end = end + i + 1;
+                        break search;
+                    }
+                }
+                end += read;
+            }
+            chunks.add( new long[]{ position, Math.min( end, size ) } );
+            position = end;
+        }
+        return chunks;
+    }
+
+
+    private static int recordSize( ColumnType[] types ) {
+        int size = 0;
+        for ( ColumnType type : types ) {
+            size += type.size;
+        }
+        return size;
+    }
+
+
+    // ─────────────────────────────
+    // Parsing
+    // ─────────────────────────────
+
+
+    private static ParsedChunk parseBinary( FileChannel channel, long start, long end, ColumnType[] types, ByteOrder order ) throws IOException {
+        MappedByteBuffer buffer = channel.map( FileChannel.MapMode.READ_ONLY, start, end - start );
+        buffer.order( order );
+        int rows = (int) ( ( end - start ) / recordSize( types ) );
+        ParsedChunk chunk = new ParsedChunk( types, rows, end - start );
+        for ( int row = 0; row < rows; row++ ) {
+            for ( int c = 0; c < types.length; c++ ) {
+                Object column = chunk.columns[c];
+                switch ( types[c] ) {
+                    case DOUBLE:
+                        ( (double[]) column )[row] = buffer.getDouble();
+                        break;
+                    case FLOAT:
+                        ( (double[]) column )[row] = buffer.getFloat();
+                        break;
+                    case INT8:
+                        ( (long[]) column )[row] = buffer.get();
+                        break;
+                    case INT16:
+                        ( (long[]) column )[row] = buffer.getShort();
+                        break;
+                    case INT32:
+                        ( (long[]) column )[row] = buffer.getInt();
+                        break;
+                    case INT64:
+                        ( (long[]) column )[row] = buffer.getLong();
+                        break;
+                    case UINT8:
+                    case BOOLEAN:
+                        ( (long[]) column )[row] = buffer.get() & 0xFFL;
+                        break;
+                    case UINT16:
+                        ( (long[]) column )[row] = buffer.getShort() & 0xFFFFL;
+                        break;
+                    case UINT32:
+                        ( (long[]) column )[row] = buffer.getInt() & 0xFFFFFFFFL;
+                        break;
+                    default:
+                        throw new IllegalStateException( "Unsupported binary type " + types[c] );
+                }
+            }
+        }
+        chunk.rows = rows;
+        return chunk;
+    }
+
+
+    private static ParsedChunk parseText( FileChannel channel, long start, long end, ColumnType[] types, byte delimiter ) throws IOException {
+        MappedByteBuffer buffer = channel.map( FileChannel.MapMode.READ_ONLY, start, end - start );
+        int length = (int) ( end - start );
+        // Estimate ~16 bytes per field to size the columns once; ensureCapacity() grows them if the estimate is too low.
+        ParsedChunk chunk = new ParsedChunk( types, Math.max( 16, length / ( 16 * types.length ) ), end - start );
+        byte[] scratch = new byte[256];
+
+        int position = 0;
+        while ( position < length ) {
+            int lineEnd = position;
+            while ( lineEnd < length && buffer.get( lineEnd ) != '\n' ) {
+                lineEnd++;
+            }
+            int contentEnd = lineEnd > position && buffer.get( lineEnd - 1 ) == '\r' ? lineEnd - 1 : lineEnd;
+            if ( contentEnd > position ) {
+                chunk.ensureCapacity( types, chunk.rows + 1 );
+                int row = chunk.rows;
+                int fieldStart = position;
+                for ( int c = 0; c < types.length; c++ ) {
+                    if ( fieldStart > contentEnd ) {
+                        throw new IllegalArgumentException( "Line at byte " + ( start + position ) + " has fewer than " + types.length + " fields." );
+                    }
+                    // Find the end of the field, honouring "quoted, fields" with "" as escaped quote.
+                    int fieldLength = 0;
+                    int cursor = fieldStart;
+                    boolean quoted = cursor < contentEnd && buffer.get( cursor ) == '"';
+                    if ( quoted ) {
+                        cursor++;
+                        boolean closed = false;
+                        while ( cursor < contentEnd ) {
+                            byte b = buffer.get( cursor++ );
+                            if ( b == '"' ) {
+                                if ( cursor < contentEnd && buffer.get( cursor ) == '"' ) {
+                                    cursor++;
+                                } else {
+                                    closed = true;
+                                    break;
+                                }
+                            }
+                            scratch = append( scratch, fieldLength++, b );
+                        }
+                        if ( !closed ) {
+                            // Rows are cut at line breaks (see textChunks), a line break inside quotes would split the row silently.
+                            throw new IllegalArgumentException( "Line at byte " + ( start + position ) + " has a quoted field without closing quote. Quoted fields spanning several lines are not supported." );
+                        }
+                        while ( cursor < contentEnd && buffer.get( cursor ) != delimiter ) {
+                            cursor++;
+                        }
+                    } else {
+                        while ( cursor < contentEnd && buffer.get( cursor ) != delimiter ) {
+                            scratch = append( scratch, fieldLength++, buffer.get( cursor++ ) );
+                        }
+                    }
+                    storeField( chunk, types[c], c, row, scratch, fieldLength, quoted );
+                    fieldStart = cursor + 1;
+                }
+                if ( fieldStart <= contentEnd ) {
+                    throw new IllegalArgumentException( "Line at byte " + ( start + position ) + " has more than " + types.length + " fields." );
+                }
+                chunk.rows++;
+            }
+            position = lineEnd + 1;
+        }
+        return chunk;
+    }
+
+
+    private static byte[] append( byte[] scratch, int index, byte b ) {
+        if ( index == scratch.length ) {
+            scratch = Arrays.copyOf( scratch, scratch.length * 2 );
+        }
+        scratch[index] = b;
+        return scratch;
+    }
+
+
+    private static void storeField( ParsedChunk chunk, ColumnType type, int col, int row, byte[] field, int length, boolean quoted ) {
+        Object column = chunk.columns[col];
+        if ( length == 0 && !quoted ) {
+            chunk.markNull( col, row );
+            return;
+        }
+        String text = new String( field, 0, length, StandardCharsets.UTF_8 );
+        if ( type == ColumnType.STRING ) {
+            ( (String[]) column )[row] = text;
+        } else if ( type == ColumnType.BOOLEAN ) {
+            String trimmed = text.trim();
+            ( (long[]) column )[row] = trimmed.equalsIgnoreCase( "true" ) || trimmed.equals( "1" ) ? 1 : 0;
+        } else if ( type.isFloatingPoint() ) {
+            ( (double[]) column )[row] = Double.parseDouble( text.trim() );
+        } else if ( type.isInteger() ) {
+            ( (long[]) column )[row] = Long.parseLong( text.trim() );
+        } else {
+            ( (Object[]) column )[row] = quoted ? text : inferValue( text );
+        }
+    }
+
+
+    /**
+     * @Description
+     * - Used for AUTO columns: integers become Long, decimals become Double, everything else stays a String.
+     */
+    private static Object inferValue( String text ) {
+        String trimmed = text.trim();
+        if ( trimmed.isEmpty() ) {
+            return text;
+        }
+        char first = trimmed.charAt( 0 );
+        if ( ( first < '0' || first > '9' ) && first != '-' && first != '+' && first != '.' ) {
+            return text;
+        }
+        try {
+            return Long.parseLong( trimmed );
+        } catch ( NumberFormatException notALong ) {
+            try {
+                return Double.parseDouble( trimmed );
+            } catch ( NumberFormatException notADouble ) {
+                return text;
+            }
+        }
+    }
+
+
+    // ─────────────────────────────
+    // Option helpers
+    // ─────────────────────────────
+
+
+    private static Map<String, String> parseOptions( String[] options ) {
+        Map<String, String> map = new HashMap<>();
+        if ( options == null ) {
+            return map;
+        }
+        for ( String option : options ) {
+            int eq = option.indexOf( '=' );
+            if ( eq <= 0 ) {
+                throw new IllegalArgumentException( "Import options must have the form key=value, got: " + option );
+            }
+            map.put( option.substring( 0, eq ).trim().toLowerCase(), option.substring( eq + 1 ) );
+        }
+        return map;
+    }
+
+
+    private static String[] splitList( String list ) {
+        String[] parts = list.split( "," );
+        for ( int i = 0; i < parts.length; i++ ) {
+            parts[i] = parts[i].trim();
+        }
+        return parts;
+    }
+
+
+    private static ColumnType[] parseTypes( String[] names ) {
+        ColumnType[] types = new ColumnType[names.length];
+        for ( int i = 0; i < names.length; i++ ) {
+            types[i] = ColumnType.parse( names[i] );
+        }
+        return types;
+    }
+
+
+    private static byte parseDelimiter( String delimiter ) {
+        if ( delimiter.equals( "\\t" ) || delimiter.equals( "\t" ) || delimiter.equalsIgnoreCase( "tab" ) ) {
+            return '\t';
+        }
+        if ( delimiter.length() != 1 || delimiter.charAt( 0 ) > 127 ) {
+            throw new IllegalArgumentException( "The CSV delimiter must be a single ASCII character, got: " + delimiter );
+        }
+        return (byte) delimiter.charAt( 0 );
+    }
+
+
+    /**
+     * @Description
+     * - Reads the first line starting at position, however long it is. A trailing '\r' is kept so that the caller can skip exactly
+     * length + 1 bytes.
+     */
+    private static byte[] readLine( FileChannel channel, long position ) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate( 64 * 1024 );
+        byte[] line = new byte[0];
+        int length = 0;
+        while ( true ) {
+            buffer.clear();
+            int read = channel.read( buffer, position + length );
+            if ( read <= 0 ) {
+                return Arrays.copyOf( line, length );
+            }
+            int end = 0;
+            while ( end < read && buffer.get( end ) != '\n' ) {
+                end++;
+            }
+            if ( length + end > line.length ) {
+                line = Arrays.copyOf( line, Math.max( length + end, line.length * 2 ) );
+            }
+            buffer.flip();
+            buffer.get( line, length, end );
+            length += end;
+            if ( end < read ) {
+                return Arrays.copyOf( line, length );
+            }
+        }
+    }
+
+
+    private static String[] splitFields( byte[] line, byte delimiter ) {
+        String text = new String( line, StandardCharsets.UTF_8 );
+        if ( text.endsWith( "\r" ) ) {
+            text = text.substring( 0, text.length() - 1 );
+        }
+        String[] fields = text.split( java.util.regex.Pattern.quote( String.valueOf( (char) delimiter ) ), -1 );
+        for ( int i = 0; i < fields.length; i++ ) {
+            String field = fields[i].trim();
+            if ( field.length() >= 2 && field.startsWith( "\"" ) && field.endsWith( "\"" ) ) {
+                field = field.substring( 1, field.length() - 1 );
+            }
+            fields[i] = field;
+        }
+        return fields;
+    }
+
+}
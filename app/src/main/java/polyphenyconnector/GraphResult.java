@@ -0,0 +1,336 @@
+package polyphenyconnector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.polypheny.jdbc.dependency.prism.ProtoEdge;
+import org.polypheny.jdbc.dependency.prism.ProtoEntry;
+import org.polypheny.jdbc.dependency.prism.ProtoNode;
+import org.polypheny.jdbc.dependency.prism.ProtoValue;
+
+/*
+ * Columnar representation of a graph result (Cypher):
+ * - Nodes are stored as parallel arrays: nodeIds[i], getNodeLabels()[i], getNodeProperties()[i] describe the i-th node.
+ * - Edges are stored as parallel arrays as well, but their endpoints are NODE INDICES (0-based) instead of node ids, so MATLAB can hand
+ *   edgeSource + 1 and edgeTarget + 1 straight to graph/digraph.
+ * - The edges are sorted by source node (CSR layout): the outgoing edges of node i are the edges edgeOffsets[i] .. edgeOffsets[i+1]-1.
+ * - Labels (joined with ':') are dictionary encoded: one int code per node and edge into getLabelDictionary(), a graph has few of them.
+ * - Properties stay in the protobuf entries of the result until they are asked for, either as one JSON object per element
+ *   (getNodeProperties, getEdgeProperties) or as one column per property key (getNodeProperty, getEdgeProperty). Edge ids are read the
+ *   same way. Decoding a graph therefore creates no String and no JSON per edge.
+ */
+
+public class GraphResult {
+
+    private final String[] nodeIds;
+    private final String[] labelDictionary;
+    private final int[] nodeLabelCodes;
+    private final ProtoNode[] nodes; // null for endpoints that were not part of the node list
+    private final int[] edgeSource;
+    private final int[] edgeTarget;
+    private final int[] edgeLabelCodes;
+    private final ProtoEdge[] edges;
+    private final int[] edgeOffsets;
+
+    private String[] nodeProperties;
+    private String[] edgeIds;
+    private String[] edgeProperties;
+
+
+    GraphResult( String[] nodeIds, String[] labelDictionary, int[] nodeLabelCodes, ProtoNode[] nodes, int[] edgeSource, int[] edgeTarget, int[] edgeLabelCodes, ProtoEdge[] edges, int[] edgeOffsets ) {
+        this.nodeIds = nodeIds;
+        this.labelDictionary = labelDictionary;
+        this.nodeLabelCodes = nodeLabelCodes;
+        this.nodes = nodes;
+        this.edgeSource = edgeSource;
+        this.edgeTarget = edgeTarget;
+        this.edgeLabelCodes = edgeLabelCodes;
+        this.edges = edges;
+        this.edgeOffsets = edgeOffsets;
+    }
+
+
+    public int getNodeCount() {
+        return nodeIds.length;
+    }
+
+
+    public int getEdgeCount() {
+        return edgeSource.length;
+    }
+
+
+    public String[] getNodeIds() {
+        return nodeIds;
+    }
+
+
+    /**
+     * @return The distinct labels of the nodes and edges, each joined with ':' ("" for none)
+     */
+    public String[] getLabelDictionary() {
+        return labelDictionary;
+    }
+
+
+    /**
+     * @return The 0-based index into getLabelDictionary() of the labels of every node
+     */
+    public int[] getNodeLabelCodes() {
+        return nodeLabelCodes;
+    }
+
+
+    /**
+     * @return The 0-based index into getLabelDictionary() of the labels of every edge (CSR order)
+     */
+    public int[] getEdgeLabelCodes() {
+        return edgeLabelCodes;
+    }
+
+
+    public String[] getNodeLabels() {
+        return decodeLabels( nodeLabelCodes );
+    }
+
+
+    /**
+     * @return The properties of every node as JSON object, built on the first call
+     */
+    public synchronized String[] getNodeProperties() {
+        if ( nodeProperties == null ) {
+            JsonWriter json = JsonWriter.local();
+            String[] properties = new String[nodes.length];
+            for ( int i = 0; i < nodes.length; i++ ) {
+                properties[i] = nodes[i] == null ? "{}" : toJson( json, nodes[i].getPropertiesList() );
+            }
+            nodeProperties = properties;
+        }
+        return nodeProperties;
+    }
+
+
+    /**
+     * @param key The property key
+     * @return The property of every node as column: double[] if all its values are numeric (missing or NULL → NaN), String[] otherwise
+     */
+    public Object getNodeProperty( String key ) {
+        List<ProtoValue> values = new ArrayList<>( nodes.length );
+        for ( ProtoNode node : nodes ) {
+            values.add( node == null ? null : property( node.getPropertiesList(), key ) );
+        }
+        return column( values );
+    }
+
+
+    /**
+     * @return The 0-based node index of the source of every edge, sorted ascending (CSR order).
+     */
+    public int[] getEdgeSource() {
+        return edgeSource;
+    }
+
+
+    /**
+     * @return The 0-based node index of the target of every edge.
+     */
+    public int[] getEdgeTarget() {
+        return edgeTarget;
+    }
+
+
+    public synchronized String[] getEdgeIds() {
+        if ( edgeIds == null ) {
+            String[] ids = new String[edges.length];
+            for ( int e = 0; e < edges.length; e++ ) {
+                ids[e] = edges[e].getId();
+            }
+            edgeIds = ids;
+        }
+        return edgeIds;
+    }
+
+
+    public String[] getEdgeLabels() {
+        return decodeLabels( edgeLabelCodes );
+    }
+
+
+    /**
+     * @return The properties of every edge as JSON object, built on the first call
+     */
+    public synchronized String[] getEdgeProperties() {
+        if ( edgeProperties == null ) {
+            JsonWriter json = JsonWriter.local();
+            String[] properties = new String[edges.length];
+            for ( int e = 0; e < edges.length; e++ ) {
+                properties[e] = toJson( json, edges[e].getPropertiesList() );
+            }
+            edgeProperties = properties;
+        }
+        return edgeProperties;
+    }
+
+
+    /**
+     * @param key The property key
+     * @return The property of every edge (CSR order) as column, see getNodeProperty
+     */
+    public Object getEdgeProperty( String key ) {
+        List<ProtoValue> values = new ArrayList<>( edges.length );
+        for ( ProtoEdge edge : edges ) {
+            values.add( property( edge.getPropertiesList(), key ) );
+        }
+        return column( values );
+    }
+
+
+    /**
+     * @return CSR row pointer of length nodeCount + 1: the outgoing edges of node i are edgeOffsets[i] .. edgeOffsets[i+1]-1.
+     */
+    public int[] getEdgeOffsets() {
+        return edgeOffsets;
+    }
+
+
+    private String[] decodeLabels( int[] codes ) {
+        String[] labels = new String[codes.length];
+        for ( int i = 0; i < codes.length; i++ ) {
+            labels[i] = labelDictionary[codes[i]];
+        }
+        return labels;
+    }
+
+
+    private static String toJson( JsonWriter json, List<ProtoEntry> entries ) {
+        try {
+            return json.toJson( entries );
+        } catch ( Exception e ) {
+            throw new RuntimeException( "Converting graph properties to JSON failed: " + e.getMessage(), e );
+        }
+    }
+
+
+    private static ProtoValue property( List<ProtoEntry> entries, String key ) {
+        for ( ProtoEntry entry : entries ) {
+            ProtoValue k = entry.getKey();
+            if ( k.getValueCase() == ProtoValue.ValueCase.STRING && k.getString().getString().equals( key ) ) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+
+    private static Object column( List<ProtoValue> values ) {
+        try {
+            return QueryExecutor.protoColumnToJava( values )[1];
+        } catch ( Exception e ) {
+            throw new RuntimeException( "Converting the graph property failed: " + e.getMessage(), e );
+        }
+    }
+
+
+    /**
+     * @Description
+     * - Open addressing hash map from node id to node index. Ids are Strings, but the indices are kept in a plain int[] so no Integer is
+     * ever boxed, which matters for results with millions of nodes.
+     */
+    static final class IdIndex {
+
+        private String[] keys;
+        private int[] values;
+        private int size;
+
+
+        IdIndex( int expected ) {
+            int capacity = Integer.highestOneBit( Math.max( 16, expected * 2 ) - 1 ) << 1;
+            keys = new String[capacity];
+            values = new int[capacity];
+        }
+
+
+        /**
+         * @return The index stored for id, or -1 if the id is unknown.
+         */
+        int get( String id ) {
+            int mask = keys.length - 1;
+            for ( int slot = mix( id.hashCode() ) & mask; keys[slot] != null; slot = ( slot + 1 ) & mask ) {
+                if ( keys[slot].equals( id ) ) {
+                    return values[slot];
+                }
+            }
+            return -1;
+        }
+
+
+        /**
+         * @return The index already stored for id, or value after storing it.
+         */
+        int putIfAbsent( String id, int value ) {
+            if ( ( size + 1 ) * 2 > keys.length ) {
+                grow();
+            }
+            int mask = keys.length - 1;
+            int slot = mix( id.hashCode() ) & mask;
+            while ( keys[slot] != null ) {
+                if ( keys[slot].equals( id ) ) {
+                    return values[slot];
+                }
+                slot = ( slot + 1 ) & mask;
+            }
+            keys[slot] = id;
+            values[slot] = value;
+            size++;
+            return value;
+        }
+
+
+        private void grow() {
+            String[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new String[oldKeys.length * 2];
+            values = new int[oldKeys.length * 2];
+            size = 0;
+            for ( int i = 0; i < oldKeys.length; i++ ) {
+                if ( oldKeys[i] != null ) {
+                    putIfAbsent( oldKeys[i], oldValues[i] );
+                }
+            }
+        }
+
+
+        private static int mix( int hash ) {
+            return hash ^ ( hash >>> 16 );
+        }
+    }
+
+
+    /**
+     * @Description
+     * - Builds the CSR order of the edges by a counting sort over the source index: edgeOffsets gets the prefix sums of the out-degrees
+     * and the returned permutation lists the original edge positions in CSR order.
+     *
+     * @param source The 0-based source node index of every edge (in arrival order)
+     * @param nodeCount The number of nodes
+     * @param edgeOffsets Output: array of length nodeCount + 1 that receives the CSR row pointer
+     * @return order[k] = position (in arrival order) of the k-th edge in CSR order
+     */
+    static int[] csrOrder( int[] source, int nodeCount, int[] edgeOffsets ) {
+        Arrays.fill( edgeOffsets, 0 );
+        for ( int s : source ) {
+            edgeOffsets[s + 1]++;
+        }
+        for ( int i = 0; i < nodeCount; i++ ) {
+            edgeOffsets[i + 1] += edgeOffsets[i];
+        }
+        int[] next = Arrays.copyOf( edgeOffsets, nodeCount );
+        int[] order = new int[source.length];
+        for ( int e = 0; e < source.length; e++ ) {
+            order[next[source[e]]++] = e;
+        }
+        return order;
+    }
+
+}
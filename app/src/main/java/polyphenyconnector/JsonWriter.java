@@ -0,0 +1,508 @@
+package polyphenyconnector;
+
+import java.util.HashMap;
+import java.util.List;
+
+import org.polypheny.jdbc.dependency.prism.ProtoDocument;
+import org.polypheny.jdbc.dependency.prism.ProtoEntry;
+import org.polypheny.jdbc.dependency.prism.ProtoList;
+import org.polypheny.jdbc.dependency.prism.ProtoValue;
+import org.polypheny.jdbc.types.TypedValue;
+
+/*
+ * Turns raw LIST/DOCUMENT values (and graph properties) into JSON that MATLAB can jsondecode, in one pass over the ProtoValues:
+ * - Everything is written into one reusable char[] per thread (local()), the only allocation per value is the final String.
+ * - Strings are escaped in a single pass (quotes, backslashes AND control characters). Strings without anything to escape are copied
+ *   in bulk.
+ * - INTEGER/LONG are formatted natively (42, not 42.0, and longs keep all their digits). Integral doubles are written the same way,
+ *   other doubles with the fewest digits that read back to the same double (see shortest(...)).
+ * - Document keys are encoded once ("key": with quotes, escapes and colon) and reused for every further document with that key.
+ * - DATE/TIME/TIMESTAMP go through TypedValue.asString() like in DriverToJava, so they carry the driver's time zone handling and
+ *   read the same in documents as in relational results.
+ */
+
+final class JsonWriter {
+
+    private static final int INITIAL_CAPACITY = 16 * 1024;
+    private static final int MAX_RETAINED_CAPACITY = 1024 * 1024; // bigger buffers are dropped after use instead of kept per thread
+    private static final int MAX_CACHED_KEYS = 4096;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final char[] BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+    private static final ThreadLocal<JsonWriter> LOCAL = ThreadLocal.withInitial( JsonWriter::new );
+
+    private char[] buf = new char[INITIAL_CAPACITY];
+    private int len;
+    private final HashMap<String, char[]> encodedKeys = new HashMap<>();
+
+
+    /**
+     * @return The writer of the calling thread. Not to be shared between threads.
+     */
+    static JsonWriter local() {
+        return LOCAL.get();
+    }
+
+
+    String toJson( ProtoValue v ) throws Exception {
+        len = 0;
+        value( v );
+        return finish();
+    }
+
+
+    String toJson( ProtoDocument doc ) throws Exception {
+        len = 0;
+        document( doc );
+        return finish();
+    }
+
+
+    /**
+     * @Description
+     * - Writes a numeric list that was already decoded to a primitive array (NaN → null), for ARRAY columns that fall back to JSON.
+     */
+    String toJson( double[] values ) {
+        len = 0;
+        append( '[' );
+        for ( int i = 0; i < values.length; i++ ) {
+            if ( i > 0 ) {
+                append( ',' );
+            }
+            writeDouble( values[i] );
+        }
+        append( ']' );
+        return finish();
+    }
+
+
+    String toJson( float[] values ) {
+        len = 0;
+        append( '[' );
+        for ( int i = 0; i < values.length; i++ ) {
+            if ( i > 0 ) {
+                append( ',' );
+            }
+            writeFloat( values[i] );
+        }
+        append( ']' );
+        return finish();
+    }
+
+
+    /**
+     * @Description
+     * - Writes the bare entry list that graph nodes and edges use for their properties as a JSON object.
+     */
+    String toJson( List<ProtoEntry> entries ) throws Exception {
+        len = 0;
+        ensure( 2 );
+        buf[len++] = '{';
+        for ( int i = 0; i < entries.size(); i++ ) {
+            if ( i > 0 ) {
+                append( ',' );
+            }
+            entry( entries.get( i ) );
+        }
+        append( '}' );
+        return finish();
+    }
+
+
+    /**
+     * @Description
+     * - Escapes a string for the inside of a JSON string literal in one pass. Returns the string itself if nothing needs escaping.
+     */
+    static String escape( String s ) {
+        int first = firstEscape( s );
+        if ( first == s.length() ) {
+            return s;
+        }
+        StringBuilder sb = new StringBuilder( s.length() + 16 );
+        sb.append( s, 0, first );
+        for ( int i = first; i < s.length(); i++ ) {
+            char c = s.charAt( i );
+            if ( c == '"' || c == '\\' ) {
+                sb.append( '\\' ).append( c );
+            } else if ( c < 0x20 ) {
+                switch ( c ) {
+                    case '\n':
+                        sb.append( "\\n" );
+                        break;
+                    case '\r':
+                        sb.append( "\\r" );
+                        break;
+                    case '\t':
+                        sb.append( "\\t" );
+                        break;
+                    case '\b':
+                        sb.append( "\\b" );
+                        break;
+                    case '\f':
+                        sb.append( "\\f" );
+                        break;
+                    default:
+                        sb.append( "\\u00" ).append( HEX[c >> 4] ).append( HEX[c & 0xF] );
+                }
+            } else {
+                sb.append( c );
+            }
+        }
+        return sb.toString();
+    }
+
+
+    private String finish() {
+        String json = new String( buf, 0, len );
+        if ( buf.length > MAX_RETAINED_CAPACITY ) {
+            buf = new char[INITIAL_CAPACITY];
+        }
+        len = 0;
+        return json;
+    }
+
+
+    private void value( ProtoValue v ) throws Exception {
+        switch ( v.getValueCase() ) {
+            case BOOLEAN:
+                append( v.getBoolean().getBoolean() ? "true" : "false" );
+                return;
+            case INTEGER:
+                writeLong( v.getInteger().getInteger() );
+                return;
+            case LONG:
+                writeLong( v.getLong().getLong() );
+                return;
+            case BIG_DECIMAL:
+                // Exact decimal instead of a double, JSON numbers have no precision limit
+                java.math.BigInteger unscaled = new java.math.BigInteger( v.getBigDecimal().getUnscaledValue().toByteArray() );
+                append( new java.math.BigDecimal( unscaled, v.getBigDecimal().getScale() ).toString() );
+                return;
+            case FLOAT:
+                writeFloat( v.getFloat().getFloat() );
+                return;
+            case DOUBLE:
+                writeDouble( v.getDouble().getDouble() );
+                return;
+            case DATE:
+            case TIME:
+            case TIMESTAMP:
+                // the driver converts with the time zone of the JVM, the same as DriverToJava does for relational columns
+                append( '"' );
+                append( new TypedValue( v ).asString() );
+                append( '"' );
+                return;
+            case INTERVAL:
+                // [months, milliseconds] keeps both components intact
+                append( '[' );
+                writeLong( v.getInterval().getMonths() );
+                append( ',' );
+                writeLong( v.getInterval().getMilliseconds() );
+                append( ']' );
+                return;
+            case STRING:
+                writeString( v.getString().getString() );
+                return;
+            case BINARY:
+                writeBase64( v.getBinary().getBinary().toByteArray() );
+                return;
+            case FILE:
+                writeBase64( v.getFile().getBinary().toByteArray() );
+                return;
+            case NULL:
+                append( "null" );
+                return;
+            case LIST:
+                list( v.getList() );
+                return;
+            case DOCUMENT:
+                document( v.getDocument() );
+                return;
+            case VALUE_NOT_SET:
+                throw new RuntimeException( "Internal Error: JSON conversion failed. Reason: VALUE_NOT_SET case was hit." );
+            default:
+                throw new java.sql.SQLException( "Internal Error: JSON conversion failed. Reason: Unhandled or unexpected type." + v.getValueCase() );
+        }
+    }
+
+
+    private void list( ProtoList list ) throws Exception {
+        append( '[' );
+        if ( list != null ) {
+            int size = list.getValuesCount();
+            for ( int i = 0; i < size; i++ ) {
+                if ( i > 0 ) {
+                    append( ',' );
+                }
+                value( list.getValues( i ) );
+            }
+        }
+        append( ']' );
+    }
+
+
+    private void document( ProtoDocument doc ) throws Exception {
+        append( '{' );
+        if ( doc != null ) {
+            int count = doc.getEntriesCount();
+            for ( int i = 0; i < count; i++ ) {
+                if ( i > 0 ) {
+                    append( ',' );
+                }
+                entry( doc.getEntries( i ) );
+            }
+        }
+        append( '}' );
+    }
+
+
+    private void entry( ProtoEntry entry ) throws Exception {
+        ProtoValue key = entry.getKey();
+        if ( key.getValueCase() == ProtoValue.ValueCase.STRING ) {
+            char[] encoded = encodedKey( key.getString().getString() );
+            ensure( encoded.length );
+            System.arraycopy( encoded, 0, buf, len, encoded.length );
+            len += encoded.length;
+        } else {
+            value( key );
+            append( ':' );
+        }
+        value( entry.getValue() );
+    }
+
+
+    /**
+     * Returns "key": with quotes and escapes, encoded once per distinct key.
+     */
+    private char[] encodedKey( String key ) {
+        char[] encoded = encodedKeys.get( key );
+        if ( encoded == null ) {
+            String escaped = escape( key );
+            encoded = new char[escaped.length() + 3];
+            encoded[0] = '"';
+            escaped.getChars( 0, escaped.length(), encoded, 1 );
+            encoded[encoded.length - 2] = '"';
+            encoded[encoded.length - 1] = ':';
+            if ( encodedKeys.size() >= MAX_CACHED_KEYS ) {
+                encodedKeys.clear(); // documents with generated keys must not grow the cache forever
+            }
+            encodedKeys.put( key, encoded );
+        }
+        return encoded;
+    }
+
+
+    private void writeString( String s ) {
+        int n = s.length();
+        int first = firstEscape( s );
+        ensure( n + 2 );
+        buf[len++] = '"';
+        s.getChars( 0, first, buf, len );
+        len += first;
+        for ( int i = first; i < n; i++ ) {
+            char c = s.charAt( i );
+            if ( c == '"' || c == '\\' ) {
+                ensure( n - i + 2 );
+                buf[len++] = '\\';
+                buf[len++] = c;
+            } else if ( c < 0x20 ) {
+                ensure( n - i + 6 );
+                buf[len++] = '\\';
+                switch ( c ) {
+                    case '\n':
+                        buf[len++] = 'n';
+                        break;
+                    case '\r':
+                        buf[len++] = 'r';
+                        break;
+                    case '\t':
+                        buf[len++] = 't';
+                        break;
+                    case '\b':
+                        buf[len++] = 'b';
+                        break;
+                    case '\f':
+                        buf[len++] = 'f';
+                        break;
+                    default:
+                        buf[len++] = 'u';
+                        buf[len++] = '0';
+                        buf[len++] = '0';
+                        buf[len++] = HEX[c >> 4];
+                        buf[len++] = HEX[c & 0xF];
+                }
+            } else {
+                buf[len++] = c; // every escape above reserved room for all remaining characters
+            }
+        }
+        append( '"' );
+    }
+
+
+    private static int firstEscape( String s ) {
+        int n = s.length();
+        for ( int i = 0; i < n; i++ ) {
+            char c = s.charAt( i );
+            if ( c == '"' || c == '\\' || c < 0x20 ) {
+                return i;
+            }
+        }
+        return n;
+    }
+
+
+    /**
+     * Formats a long into the buffer without going through a String.
+     */
+    private void writeLong( long value ) {
+        if ( value == Long.MIN_VALUE ) {
+            append( "-9223372036854775808" );
+            return;
+        }
+        ensure( 20 );
+        if ( value < 0 ) {
+            buf[len++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for ( long rest = value / 10; rest > 0; rest /= 10 ) {
+            digits++;
+        }
+        int pos = len + digits;
+        do {
+            buf[--pos] = (char) ( '0' + value % 10 );
+            value /= 10;
+        } while ( value > 0 );
+        len += digits;
+    }
+
+
+    private void writeDouble( double value ) {
+        if ( Double.isNaN( value ) || Double.isInfinite( value ) ) {
+            append( "null" ); // JSON has no NaN/Inf
+        } else if ( value == Math.rint( value ) && Math.abs( value ) < 1e15 ) {
+            writeLong( (long) value );
+        } else {
+            append( shortest( value ) );
+        }
+    }
+
+
+    /**
+     * The shortest decimal that reads back to value. Double.toString always round-trips, but up to JDK 18 it sometimes writes one or
+     * two digits more than needed (JDK-4511638, e.g. 1.0E23 comes out as 9.999999999999999E22). Those extra digits only ever show
+     * up in 16 and 17 digit outputs, so only these are searched for a shorter form: if a p digit decimal reads back to value, the p
+     * digit decimal nearest to value does as well, and if p digits are enough, so are p + 1, so a binary search over p finds the
+     * shortest one.
+     */
+    static String shortest( double value ) {
+        String s = Double.toString( value );
+        int exponentAt = s.indexOf( 'E' );
+        int significant = 0;
+        int lastNonZero = -1;
+        boolean leading = true;
+        for ( int i = 0, end = exponentAt < 0 ? s.length() : exponentAt; i < end; i++ ) {
+            char c = s.charAt( i );
+            if ( c < '0' || c > '9' || ( leading && c == '0' ) ) {
+                continue;
+            }
+            leading = false;
+            significant++;
+            if ( c != '0' ) {
+                lastNonZero = significant;
+            }
+        }
+        if ( lastNonZero < 16 ) {
+            return s;
+        }
+
+        java.math.BigDecimal exact = new java.math.BigDecimal( value );
+        int lo = 1;
+        int hi = lastNonZero;
+        while ( lo < hi ) {
+            int mid = ( lo + hi ) >>> 1;
+            if ( exact.round( new java.math.MathContext( mid, java.math.RoundingMode.HALF_EVEN ) ).doubleValue() == value ) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        if ( lo == lastNonZero ) {
+            return s; // Double.toString was the shortest already
+        }
+        java.math.BigDecimal best = exact.round( new java.math.MathContext( lo, java.math.RoundingMode.HALF_EVEN ) );
+
+        // Same layout as Double.toString: plain from 10^-3 to 10^7, scientific otherwise
+        best = best.stripTrailingZeros();
+        double magnitude = Math.abs( value );
+        if ( magnitude >= 1e-3 && magnitude < 1e7 ) {
+            return best.toPlainString();
+        }
+        String unscaled = best.unscaledValue().abs().toString();
+        int exponent = unscaled.length() - 1 - best.scale();
+        StringBuilder sb = new StringBuilder( unscaled.length() + 8 );
+        if ( value < 0 ) {
+            sb.append( '-' );
+        }
+        sb.append( unscaled.charAt( 0 ) ).append( '.' );
+        sb.append( unscaled.length() > 1 ? unscaled.substring( 1 ) : "0" );
+        return sb.append( 'E' ).append( exponent ).toString();
+    }
+
+
+    private void writeFloat( float value ) {
+        if ( Float.isNaN( value ) || Float.isInfinite( value ) ) {
+            append( "null" );
+        } else if ( value == Math.rint( value ) && Math.abs( value ) < 1e15 ) {
+            writeLong( (long) value );
+        } else {
+            append( Float.toString( value ) ); // shortest digits of the float, not of its widened double
+        }
+    }
+
+
+    private void writeBase64( byte[] bytes ) {
+        ensure( ( bytes.length + 2 ) / 3 * 4 + 2 );
+        buf[len++] = '"';
+        int i = 0;
+        for ( ; i + 2 < bytes.length; i += 3 ) {
+            int bits = ( bytes[i] & 0xFF ) << 16 | ( bytes[i + 1] & 0xFF ) << 8 | ( bytes[i + 2] & 0xFF );
+            buf[len++] = BASE64[bits >>> 18];
+            buf[len++] = BASE64[( bits >>> 12 ) & 0x3F];
+            buf[len++] = BASE64[( bits >>> 6 ) & 0x3F];
+            buf[len++] = BASE64[bits & 0x3F];
+        }
+        int rest = bytes.length - i;
+        if ( rest > 0 ) {
+            int bits = ( bytes[i] & 0xFF ) << 16 | ( rest == 2 ? ( bytes[i + 1] & 0xFF ) << 8 : 0 );
+            buf[len++] = BASE64[bits >>> 18];
+            buf[len++] = BASE64[( bits >>> 12 ) & 0x3F];
+            buf[len++] = rest == 2 ? BASE64[( bits >>> 6 ) & 0x3F] : '=';
+            buf[len++] = '=';
+        }
+        buf[len++] = '"';
+    }
+
+
+    private void append( char c ) {
+        ensure( 1 );
+        buf[len++] = c;
+    }
+
+
+    private void append( String s ) {
+        int n = s.length();
+        ensure( n );
+        s.getChars( 0, n, buf, len );
+        len += n;
+    }
+
+
+    private void ensure( int extra ) {
+        if ( len + extra > buf.length ) {
+            buf = java.util.Arrays.copyOf( buf, Math.max( buf.length * 2, len + extra ) );
+        }
+    }
+
+}
@@ -0,0 +1,160 @@
+package polyphenyconnector;
+
+import java.util.Arrays;
+
+import org.polypheny.jdbc.types.TypedValue;
+
+/*
+ * Handle to a SQL result whose columns are decoded on demand (see QueryExecutor.executeSqlLazy):
+ * - The executor reads the rows once and keeps only the raw TypedValue of every cell (the driver keeps the ProtoValue inside it, nothing
+ *   is deserialized yet).
+ * - getColumn(name) decodes that one column with the same DriverToJava logic as executeSql, caches the primitive array and drops the
+ *   raw cells of the column, so every column is decoded at most once and memory shrinks as columns are used.
+ * Wide DOCUMENT or BINARY columns that are never requested are therefore never turned into JSON or copied.
+ */
+
+public class LazyResult {
+
+    private final QueryExecutor decoder;
+    private final String[] colNames;
+    private final String[] colTypeNames;
+    private final int rowCount;
+
+    private final TypedValue[][] cells;               // cells[c][r], null once column c is decoded
+    private final Object[] decoded;                   // primitive column arrays, filled on first request
+    private final String[] instantiatedColumnTypes;   // type of decoded[c], e.g. "double" or "String"
+
+
+    LazyResult( QueryExecutor decoder, String[] colNames, String[] colTypeNames, TypedValue[][] cells, int rowCount ) {
+        this.decoder = decoder;
+        this.colNames = colNames;
+        this.colTypeNames = colTypeNames;
+        this.cells = cells;
+        this.rowCount = rowCount;
+        this.decoded = new Object[colNames.length];
+        this.instantiatedColumnTypes = new String[colNames.length];
+    }
+
+
+    /**
+     * @Description
+     * - Wraps an already decoded executeSql package, e.g. when the driver internals are not available and the result had to be read
+     * through the JDBC fallback.
+     */
+    static LazyResult ofDecoded( QueryExecutor decoder, Object[] result ) {
+        String[] names = (String[]) result[0];
+        Object[] columns = (Object[]) result[2];
+        int rows = columns.length == 0 ? 0 : java.lang.reflect.Array.getLength( columns[0] );
+        LazyResult lazy = new LazyResult( decoder, names, ( (String[]) result[1] ).clone(), new TypedValue[names.length][], rows );
+        for ( int c = 0; c < names.length; c++ ) {
+            lazy.decoded[c] = columns[c];
+            lazy.instantiatedColumnTypes[c] = ( (String[]) result[1] )[c];
+        }
+        return lazy;
+    }
+
+
+    public String[] getColumnNames() {
+        return colNames.clone();
+    }
+
+
+    /**
+     * @return The Polypheny type names of the columns (e.g. INTEGER, DOCUMENT), known without decoding anything.
+     */
+    public String[] getColumnTypeNames() {
+        return colTypeNames.clone();
+    }
+
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+
+    public boolean isDecoded( String name ) {
+        return decoded[indexOf( name )] != null;
+    }
+
+
+    /**
+     * @Description
+     * - Returns the column as the same primitive array executeSql would return for it (double[], String[], byte[][], double[][]),
+     * decoding it on the first request.
+     *
+     * @param name The column name as in getColumnNames()
+     */
+    public Object getColumn( String name ) {
+        return getColumn( indexOf( name ) );
+    }
+
+
+    /**
+     * @param index The 0-based column index
+     */
+    public synchronized Object getColumn( int index ) {
+        if ( index < 0 || index >= colNames.length ) {
+            throw new IndexOutOfBoundsException( "Column index " + index + " out of range, the result has " + colNames.length + " columns." );
+        }
+        if ( decoded[index] == null ) {
+            Object[] column = decoder.decodeLazyColumn( cells[index], rowCount, colTypeNames[index] );
+            instantiatedColumnTypes[index] = (String) column[0];
+            decoded[index] = column[1];
+            cells[index] = null; // the raw cells are not needed anymore
+        }
+        return decoded[index];
+    }
+
+
+    /**
+     * @Description
+     * - The raw cells of a column that was not decoded yet, e.g. for QueryExecutor.extractPaths.
+     */
+    synchronized TypedValue[] rawColumn( String name ) {
+        int index = indexOf( name );
+        if ( cells[index] == null ) {
+            throw new IllegalStateException( "Column " + name + " was already decoded, its raw values are gone. Extract paths before calling getColumn." );
+        }
+        return cells[index];
+    }
+
+
+    /**
+     * @return The Java type of the decoded column (e.g. "double", "String"), decoding it if necessary.
+     */
+    public String getColumnType( String name ) {
+        int index = indexOf( name );
+        getColumn( index );
+        return instantiatedColumnTypes[index];
+    }
+
+
+    /**
+     * @Description
+     * - Decodes all remaining columns and returns the result in the executeSql format Object[]{ colNames, instantiatedColumnTypes,
+     * resultColumns }.
+     */
+    public synchronized Object[] toPackage() {
+        Object[] columns = new Object[colNames.length];
+        for ( int c = 0; c < colNames.length; c++ ) {
+            columns[c] = getColumn( c );
+        }
+        return new Object[]{ colNames.clone(), instantiatedColumnTypes.clone(), columns };
+    }
+
+
+    private int indexOf( String name ) {
+        for ( int c = 0; c < colNames.length; c++ ) {
+            if ( colNames[c].equals( name ) ) {
+                return c;
+            }
+        }
+        for ( int c = 0; c < colNames.length; c++ ) {
+            if ( colNames[c].equalsIgnoreCase( name ) ) {
+                return c;
+            }
+        }
+        throw new IllegalArgumentException( "Unknown column " + name + ", the result has the columns " + Arrays.toString( colNames ) );
+    }
+
+}
@@ -0,0 +1,245 @@
+package polyphenyconnector;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Admission control for decoded results. All sessions of a MATLAB process share one JVM heap, so one oversized executeSql must not be
+ * able to take the whole process down:
+ * - Every execution opens a Reservation and charges the (estimated) bytes of what it decoded so far, once per decode frame. The bytes
+ *   count against the budget of the query AND against a process wide counter over all executors.
+ * - Soft budget (per query or all queries): a parallel decode switches to row-by-row streaming (no buffered raw frames, no parallel
+ *   decode slots); the other decode paths hold no such buffers and only record a warning. If failAtSoftLimit is set, the query is
+ *   aborted right there on every path.
+ * - Hard budget: the query is aborted with a BudgetExceededException BEFORE the next frame is decoded, if the projected size (decoded
+ *   bytes plus one more frame) would exceed it. The message names the projected size, the budgets and the current heap headroom.
+ * The estimates are the retained sizes of the decoded Java values (boxes, Strings, arrays) plus the primitive copy made at the end, not
+ * exact measurements; they are meant to stop runaway results, not to account for every byte.
+ */
+
+final class MemoryGovernor {
+
+    private static final long MB = 1024L * 1024L;
+    private static final long MAX_HEAP = Runtime.getRuntime().maxMemory();
+
+    // Bytes currently charged by all running executions of all executors in this JVM, and the budgets over all of them.
+    private static final AtomicLong GLOBAL_CHARGED = new AtomicLong();
+    private static volatile long globalSoftBytes = MAX_HEAP / 2;
+    private static volatile long globalHardBytes = MAX_HEAP / 4 * 3;
+
+    // Per query defaults of one executor
+    private volatile long softBytes = MAX_HEAP / 4;
+    private volatile long hardBytes = MAX_HEAP / 2;
+    private volatile boolean failAtSoftLimit = false;
+
+    private volatile long lastCharged;
+    private volatile String lastWarning = "";
+
+
+    /**
+     * Thrown when a result would exceed a hard memory budget.
+     */
+    static final class BudgetExceededException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+
+        BudgetExceededException( String message ) {
+            super( message );
+        }
+
+    }
+
+
+    void setBudget( long softBytes, long hardBytes, boolean failAtSoftLimit ) {
+        validate( softBytes, hardBytes );
+        this.softBytes = softBytes;
+        this.hardBytes = hardBytes;
+        this.failAtSoftLimit = failAtSoftLimit;
+    }
+
+
+    /**
+     * Takes over the per query budgets of another executor, e.g. for the executors of a partitioned read.
+     */
+    void inherit( MemoryGovernor parent ) {
+        setBudget( parent.softBytes, parent.hardBytes, parent.failAtSoftLimit );
+    }
+
+
+    static void setGlobalBudget( long softBytes, long hardBytes ) {
+        validate( softBytes, hardBytes );
+        globalSoftBytes = softBytes;
+        globalHardBytes = hardBytes;
+    }
+
+
+    private static void validate( long softBytes, long hardBytes ) {
+        if ( softBytes <= 0 || hardBytes <= 0 ) {
+            throw new IllegalArgumentException( "Memory budgets must be positive." );
+        }
+        if ( softBytes > hardBytes ) {
+            throw new IllegalArgumentException( "The soft memory budget must not be larger than the hard budget." );
+        }
+    }
+
+
+    /**
+     * @param hardOverride Hard budget of this one query in bytes, 0 or less for the default of the executor
+     */
+    Reservation open( String operation, long hardOverride ) {
+        long hard = hardOverride > 0 ? hardOverride : hardBytes;
+        return new Reservation( operation, Math.min( softBytes, hard ), hard, failAtSoftLimit );
+    }
+
+
+    /**
+     * @return double[]{ lastQueryMB, allQueriesMB, softMB, hardMB, globalSoftMB, globalHardMB, heapHeadroomMB, maxHeapMB }
+     */
+    double[] status() {
+        return new double[]{ mb( lastCharged ), mb( GLOBAL_CHARGED.get() ), mb( softBytes ), mb( hardBytes ), mb( globalSoftBytes ), mb( globalHardBytes ), mb( heapHeadroom() ), mb( MAX_HEAP ) };
+    }
+
+
+    String lastWarning() {
+        return lastWarning;
+    }
+
+
+    /**
+     * Heap the JVM can still hand out: the maximum heap minus what is allocated right now (garbage included, so this is a lower bound).
+     */
+    static long heapHeadroom() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.maxMemory() - ( runtime.totalMemory() - runtime.freeMemory() );
+    }
+
+
+    /**
+     * @Description
+     * - Estimates the retained bytes of one decoded row from the values that were decoded last: boxed numbers, Strings (UTF-16), byte[],
+     * double[] and float[] are counted with their object headers plus the reference in the column list, and the primitive column copy that
+     * mapArrayListToPrimitive makes at the end. Up to 8 of the last rows of every column are sampled.
+     */
+    static long estimateRowBytes( List<? extends List<?>> columns ) {
+        long bytes = 0;
+        for ( List<?> column : columns ) {
+            int size = column.size();
+            int samples = Math.min( 8, size );
+            if ( samples == 0 ) {
+                continue;
+            }
+            long sampled = 0;
+            for ( int i = size - samples; i < size; i++ ) {
+                sampled += estimateBytes( column.get( i ) );
+            }
+            bytes += sampled / samples;
+        }
+        return bytes;
+    }
+
+
+    static long estimateBytes( Object value ) {
+        if ( value == null ) {
+            return 16;
+        }
+        if ( value instanceof Number || value instanceof Boolean ) {
+            return 32; // box + reference + the slot in the primitive column
+        }
+        if ( value instanceof String ) {
+            return 64 + 2L * ( (String) value ).length();
+        }
+        if ( value instanceof byte[] ) {
+            return 32 + ( (byte[]) value ).length;
+        }
+        if ( value instanceof double[] ) {
+            return 32 + 8L * ( (double[]) value ).length;
+        }
+        if ( value instanceof float[] ) {
+            return 32 + 4L * ( (float[]) value ).length;
+        }
+        return 64;
+    }
+
+
+    private static double mb( long bytes ) {
+        return bytes / (double) MB;
+    }
+
+
+    /**
+     * The bytes charged by one running execution. Closing it releases them from the process wide counter.
+     */
+    final class Reservation implements AutoCloseable {
+
+        private final String operation;
+        private final long soft;
+        private final long hard;
+        private final boolean failAtSoft;
+        private long charged;
+        private long rows;
+        private boolean softReached;
+
+
+        private Reservation( String operation, long soft, long hard, boolean failAtSoft ) {
+            this.operation = operation;
+            this.soft = soft;
+            this.hard = hard;
+            this.failAtSoft = failAtSoft;
+        }
+
+
+        /**
+         * @Description
+         * - Charges the bytes of the rows decoded since the last call and checks whether one more frame of the same size still fits.
+         *
+         * @param bytes The estimated bytes of the newly decoded rows
+         * @param newRows The number of newly decoded rows (or documents)
+         * @return true once the soft budget of the query or of all queries is reached: the caller should continue without buffering
+         * @throws BudgetExceededException if the projected size exceeds a hard budget, or the soft one with failAtSoftLimit
+         */
+        boolean charge( long bytes, long newRows ) {
+            charged += bytes;
+            rows += newRows;
+            lastCharged = charged;
+            long global = GLOBAL_CHARGED.addAndGet( bytes );
+
+            long projected = charged + bytes;
+            if ( projected > hard ) {
+                throw exceeded( "the hard budget of the query", projected, hard );
+            }
+            if ( global + bytes > globalHardBytes ) {
+                throw exceeded( "the hard budget of all queries", global + bytes, globalHardBytes );
+            }
+            if ( !softReached && ( charged > soft || global > globalSoftBytes ) ) {
+                softReached = true;
+                boolean own = charged > soft;
+                if ( failAtSoft ) {
+                    throw exceeded( own ? "the soft budget of the query" : "the soft budget of all queries", own ? charged : global, own ? soft : globalSoftBytes );
+                }
+                lastWarning = String.format( Locale.ROOT, "%s passed %s after %d rows (%.1f MB decoded) and continued. JVM heap headroom %.1f MB.",
+                        operation, own ? "the soft budget of the query" : "the soft budget of all queries", rows, mb( charged ), mb( heapHeadroom() ) );
+            }
+            return softReached;
+        }
+
+
+        private BudgetExceededException exceeded( String budget, long projected, long limit ) {
+            return new BudgetExceededException( String.format( Locale.ROOT,
+                    "%s would exceed %s: projected at least %.1f MB decoded after %d rows, budget %.1f MB (all queries: %.1f of %.1f MB). "
+                            + "JVM heap headroom %.1f MB of %.1f MB. Reduce the result (LIMIT, fewer columns), read it with executeSqlPartitioned or "
+                            + "executeSqlLazy, or raise the budget with setMemoryBudget.",
+                    operation, budget, mb( projected ), rows, mb( limit ), mb( GLOBAL_CHARGED.get() ), mb( globalHardBytes ), mb( heapHeadroom() ), mb( MAX_HEAP ) ) );
+        }
+
+
+        @Override
+        public void close() {
+            GLOBAL_CHARGED.addAndGet( -charged );
+            charged = 0;
+        }
+
+    }
+
+}
@@ -0,0 +1,197 @@
+package polyphenyconnector;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.polypheny.jdbc.PrismInterfaceClient;
+import org.polypheny.jdbc.dependency.prism.Frame;
+import org.polypheny.jdbc.dependency.prism.ProtoDocument;
+
+/*
+ * Handle to a Mongo result that is read page by page (see QueryExecutor.openMongoCursor):
+ * - The statement stays open on the server. The cursor holds the documents of at most one Prism frame; when they are used up, the next
+ *   frame of fetchSize documents is requested with fetchResult and the previous one is dropped.
+ * - next(maxDocs) returns up to maxDocs documents, as JSON Strings or, if the cursor was opened with paths, as the columnar package of
+ *   executeMongo( language, namespace, query, paths ). The conversion and the Prism calls run on the QueryExecutor that opened the
+ *   cursor, with its timeout, cancelCurrent() and error translation.
+ * A scan of any size therefore needs the memory of one frame plus one page. The server statement is closed when the last document was
+ * returned or by close().
+ * A page that fails (timeout, cancelCurrent(), a failed fetch) returns nothing and loses nothing: its documents are returned by the
+ * next call. The statement lives on the connection the cursor was opened on; once that connection was replaced (keepalive, read retry,
+ * close and reopen) the cursor fails with "invalidated by a reconnect".
+ */
+
+public class MongoCursor implements AutoCloseable {
+
+    private final QueryExecutor executor;
+    final PrismInterfaceClient client;
+    final int statementId;
+    final int networkTimeout;
+    final int fetchSize;
+    final String[] paths;
+    final long generation;
+
+    private List<ProtoDocument> carried = Collections.emptyList(); // taken by a page that failed, returned first
+    private List<ProtoDocument> page;
+    private int position;
+    private boolean lastFrame;
+    private boolean closed;
+    private boolean finished; // closed because the last document was returned
+    private long returned;
+
+
+    MongoCursor( QueryExecutor executor, PrismInterfaceClient client, long generation, int statementId, int networkTimeout, int fetchSize, String[] paths, Frame first ) {
+        this.executor = executor;
+        this.generation = generation;
+        this.client = client;
+        this.statementId = statementId;
+        this.networkTimeout = networkTimeout;
+        this.fetchSize = fetchSize;
+        this.paths = paths == null ? null : paths.clone();
+        setFrame( first );
+    }
+
+
+    /**
+     * @Description
+     * - The next page: up to maxDocs documents, fewer only at the end of the result. An exhausted cursor returns an empty page.
+     *
+     * @param maxDocs The maximum number of documents of the page
+     * @return List<String> of JSON documents, or Object[]{ paths, instantiatedColumnTypes, resultColumns } if opened with paths
+     */
+    public synchronized Object next( int maxDocs ) {
+        if ( maxDocs <= 0 ) {
+            throw new IllegalArgumentException( "maxDocs must be positive." );
+        }
+        if ( closed && !finished ) {
+            throw new IllegalStateException( "The cursor is closed." );
+        }
+        Object result = executor.nextMongoPage( this, maxDocs );
+        if ( buffered() == 0 && lastFrame && !closed ) {
+            finished = true;
+            close();
+        }
+        return result;
+    }
+
+
+    /**
+     * @return true while another call of next can return documents
+     */
+    public synchronized boolean hasNext() {
+        return !closed && ( buffered() > 0 || !lastFrame );
+    }
+
+
+    /**
+     * @return The number of documents returned by next so far
+     */
+    public synchronized long getDocumentsReturned() {
+        return returned;
+    }
+
+
+    /**
+     * @Description
+     * - Closes the statement on the server. Idempotent; called by next once the last document was returned.
+     */
+    @Override
+    public synchronized void close() {
+        if ( closed ) {
+            return;
+        }
+        closed = true;
+        carried = Collections.emptyList();
+        page = Collections.emptyList();
+        position = 0;
+        try {
+            executor.closeMongoStatement( this );
+        } catch ( Exception ignored ) {
+            // best effort: the server drops the statement with the connection anyway
+        }
+    }
+
+
+    // ─────────────────────────────
+    // State used by QueryExecutor.nextMongoPage, always under the lock of next
+    // ─────────────────────────────
+
+
+    /**
+     * @return The number of documents held by the cursor that were not returned yet
+     */
+    int buffered() {
+        return carried.size() + page.size() - position;
+    }
+
+
+    boolean hasMoreFrames() {
+        return !lastFrame && !closed;
+    }
+
+
+    /**
+     * Replaces the used up frame by the next one.
+     */
+    void setFrame( Frame frame ) {
+        if ( frame.getResultCase() != Frame.ResultCase.DOCUMENT_FRAME ) {
+            throw new UnsupportedOperationException( "A Mongo cursor needs a document result, got " + frame.getResultCase() );
+        }
+        page = frame.getDocumentFrame().getDocumentsList();
+        position = 0;
+        lastFrame = frame.getIsLast();
+    }
+
+
+    /**
+     * Takes up to count documents: those of a failed page first, then those of the current frame. They count as returned only once
+     * delivered is called, until then putBack hands them back.
+     */
+    List<ProtoDocument> take( int count ) {
+        if ( !carried.isEmpty() ) {
+            int n = Math.min( count, carried.size() );
+            List<ProtoDocument> documents = new ArrayList<>( carried.subList( 0, n ) );
+            carried = carried.subList( n, carried.size() );
+            return documents;
+        }
+        int end = position + Math.min( count, page.size() - position );
+        List<ProtoDocument> documents = page.subList( position, end );
+        position = end;
+        return documents;
+    }
+
+
+    /**
+     * The page was built: its documents are returned.
+     */
+    void delivered( int count ) {
+        returned += count;
+    }
+
+
+    /**
+     * The page failed: its documents go back in front of the ones still held, in order.
+     */
+    void putBack( List<ProtoDocument> documents ) {
+        if ( documents.isEmpty() || closed ) {
+            return;
+        }
+        List<ProtoDocument> kept = new ArrayList<>( documents.size() + carried.size() );
+        kept.addAll( documents );
+        kept.addAll( carried );
+        carried = kept;
+    }
+
+
+    /**
+     * The connection the statement lived on was replaced: the statement is gone, so nothing is left to read or to close.
+     */
+    void invalidate() {
+        closed = true;
+        carried = Collections.emptyList();
+        page = Collections.emptyList();
+        position = 0;
+    }
+
+}
@@ -1,6 +1,12 @@
 package polyphenyconnector;
 
 import java.sql.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class PolyphenyConnection {
 
@@ -8,6 +14,29 @@ public class PolyphenyConnection {
     private final String host, url, username, password;
     private final int port;
 
+    // Liveness: an open connection is validated with Connection.isValid(...) at most once per validationInterval, so a server restart or
+    // an idle timeout is noticed before the next query instead of failing it. isValid costs one round trip, hence the rate limit.
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+    private volatile long validationIntervalNanos = TimeUnit.SECONDS.toNanos( 1 );
+    private volatile long lastValidatedNanos = 0;
+    private volatile long lastUsedNanos = 0;
+
+    // Number of executions, cursor pages and inserter batches currently using the connection. The keepalive never pings a busy
+    // connection: a long query is not idle however long ago openIfNeeded was called.
+    private final AtomicInteger inUse = new AtomicInteger();
+
+    // Counts the physical connections opened so far. Server side state (e.g. the statement of a MongoCursor) lives only as long as the
+    // connection it was created on, a changed generation tells that it is gone.
+    private volatile long generation = 0;
+
+    // Set while a transaction is open. A lost connection is never replaced silently inside a transaction, the work done in it is gone.
+    private volatile boolean inTransaction = false;
+
+    // Savepoints of the open transaction by name, in creation order. They die with the transaction.
+    private final Map<String, Savepoint> savepoints = new LinkedHashMap<>();
+
+    private ScheduledExecutorService keepalive;
+
 
     /**
      * @Description
@@ -37,16 +66,186 @@ public class PolyphenyConnection {
      * use for large numbers of queries, as it eliminates the ~10ms matlab-java crossover that opening and
      * closing a connection from matlab would create. For 1M queries that avoids 1M*10ms = ~10 000sec=2.8 hrs
      * of overhead.
+     * - An already open connection is validated at most once per validation interval (see setValidationInterval). A dead connection
+     * is replaced by a new one, unless a transaction is open: then the call fails because the transaction was lost with the connection.
      * 
      **/
-    public void openIfNeeded() {
+    public synchronized void openIfNeeded() {
+        long now = System.nanoTime();
+        lastUsedNanos = now;
         if ( connection == null ) {
-            try {
-                connection = DriverManager.getConnection( url, username, password );
-            } catch ( SQLException e ) {
-                throw new RuntimeException( "Failed to open connection", e );
+            connect();
+            return;
+        }
+        if ( now - lastValidatedNanos < validationIntervalNanos ) {
+            return;
+        }
+        if ( !validate() ) {
+            if ( inTransaction ) {
+                discard();
+                endTransaction();
+                throw new RuntimeException( "Connection to " + host + ":" + port + " was lost during an open transaction. The transaction was rolled back." );
             }
+            discard();
+            connect();
+        }
+    }
+
+
+    private void connect() {
+        try {
+            connection = DriverManager.getConnection( url, username, password );
+            generation++;
+            lastValidatedNanos = System.nanoTime();
+        } catch ( SQLException e ) {
+            throw new RuntimeException( "Failed to open connection", e );
+        }
+    }
+
+
+    /**
+     * Checks the open connection with one round trip and remembers when it was last known to be alive.
+     */
+    private boolean validate() {
+        try {
+            if ( connection.isValid( VALIDATION_TIMEOUT_SECONDS ) ) {
+                lastValidatedNanos = System.nanoTime();
+                return true;
+            }
+        } catch ( SQLException ignored ) {
+            // treated as dead
+        }
+        return false;
+    }
+
+
+    /**
+     * Drops a dead connection. Closing it may fail as well, which does not matter anymore.
+     */
+    private void discard() {
+        try {
+            connection.close();
+        } catch ( SQLException ignored ) {
+            // the connection is dead anyway
+        }
+        connection = null;
+    }
+
+
+    /**
+     * @Description
+     * - Called after a query failed: validates the connection right away (ignoring the rate limit) and replaces it if it is dead. Used
+     * by the QueryExecutor to retry idempotent reads transparently. Never reconnects inside an open transaction.
+     * 
+     * @return true if the connection was dead and has been replaced, i.e. retrying the failed read makes sense.
+     */
+    public synchronized boolean reconnectIfLost() {
+        if ( connection == null || inTransaction || validate() ) {
+            return false;
         }
+        discard();
+        connect();
+        return true;
+    }
+
+
+    /**
+     * @Description
+     * - Sets how often openIfNeeded validates an open connection. 0 validates before every use.
+     * 
+     * @param seconds Minimum time between two validations
+     */
+    public void setValidationInterval( double seconds ) {
+        if ( seconds < 0 || Double.isNaN( seconds ) ) {
+            throw new IllegalArgumentException( "The validation interval must not be negative." );
+        }
+        validationIntervalNanos = (long) ( seconds * 1e9 );
+    }
+
+
+    /**
+     * @Description
+     * - Starts a background thread that keeps the connection warm during idle periods: whenever the connection has not been used for
+     * intervalSeconds, it is validated and, if the server dropped it, reconnected. That way the first query after a long idle period
+     * does not pay for the validation or a full handshake. A running keepalive is replaced.
+     * - The idle time counts from the end of the last use. While a query, a cursor page or an inserter batch runs, the connection is
+     * never pinged.
+     * 
+     * @param intervalSeconds Idle time after which the connection is pinged
+     */
+    public synchronized void startKeepalive( double intervalSeconds ) {
+        if ( intervalSeconds <= 0 || Double.isNaN( intervalSeconds ) ) {
+            throw new IllegalArgumentException( "The keepalive interval must be positive." );
+        }
+        stopKeepalive();
+        long intervalNanos = (long) ( intervalSeconds * 1e9 );
+        keepalive = Executors.newSingleThreadScheduledExecutor( runnable -> {
+            Thread thread = new Thread( runnable, "polypheny-keepalive-" + host + ":" + port );
+            thread.setDaemon( true );
+            return thread;
+        } );
+        keepalive.scheduleWithFixedDelay( () -> ping( intervalNanos ), intervalNanos, intervalNanos, TimeUnit.NANOSECONDS );
+    }
+
+
+    /**
+     * @Description
+     * - Stops the keepalive thread if one is running.
+     */
+    public synchronized void stopKeepalive() {
+        if ( keepalive != null ) {
+            keepalive.shutdownNow();
+            keepalive = null;
+        }
+    }
+
+
+    /**
+     * @return The number of the physical connection currently in use, see generation
+     */
+    long generation() {
+        return generation;
+    }
+
+
+    /**
+     * Marks the connection as busy until the matching endUse. Call it before openIfNeeded: a ping that is already running then finishes
+     * before the connection is used (both are synchronized), and no new one starts.
+     */
+    void beginUse() {
+        inUse.incrementAndGet();
+    }
+
+
+    void endUse() {
+        inUse.decrementAndGet();
+        lastUsedNanos = System.nanoTime();
+    }
+
+
+    private synchronized void ping( long idleNanos ) {
+        long now = System.nanoTime();
+        if ( connection == null || inTransaction || inUse.get() > 0 || now - lastUsedNanos < idleNanos || now - lastValidatedNanos < idleNanos ) {
+            return; // closed, busy or recently validated anyway
+        }
+        try {
+            if ( !validate() ) {
+                discard();
+                connect();
+            }
+        } catch ( RuntimeException e ) {
+            // server still down, openIfNeeded tries again on the next use
+        }
+    }
+
+
+    /**
+     * @Description
+     * - Creates a second, independent (lazily opened) connection to the same server with the same credentials, e.g. for the concurrent
+     * partitions of QueryExecutor.executeSqlPartitioned. The caller closes it.
+     */
+    PolyphenyConnection openSibling() {
+        return new PolyphenyConnection( host, port, username, password );
     }
 
 
@@ -76,6 +275,7 @@ public class PolyphenyConnection {
      * 
      **/
     public void close() {
+        stopKeepalive();
         try {
             if ( connection != null && !connection.isClosed() ) {
                 connection.close();
@@ -84,6 +284,7 @@ public class PolyphenyConnection {
             throw new RuntimeException( "Failed to close connection: " + e.getMessage() );
         } finally {
             connection = null;
+            endTransaction();
         }
     }
 
@@ -102,46 +303,171 @@ public class PolyphenyConnection {
 
     /**
      * @Description
-     * - Begins Database transaction. This is necessary to expose here because we need it to control flow in
-     * Batch queries handled in the QueryExecutor class later.
+     * - Begins a Database transaction: auto commit is switched off until commitTransaction or rollbackTransaction. Every statement the
+     * QueryExecutor runs on this connection in between becomes part of the transaction, including the batch methods, which then join it
+     * instead of committing on their own (see beginOrJoinTransaction).
      * 
      * @throws SQLException
+     * @throws IllegalStateException if a transaction is already open
      */
     public void beginTransaction() throws SQLException {
         openIfNeeded();
+        if ( inTransaction ) {
+            throw new IllegalStateException( "A transaction is already open on this connection. Commit or roll it back first." );
+        }
         connection.setAutoCommit( false );
+        inTransaction = true;
     }
 
 
     /**
      * @Description
-     * - Commits Database transaction. This is necessary to expose here because we need it to control flow in
-     * Batch queries handled in the QueryExecutor class later.
+     * - Used by the QueryExecutor for operations that need all-or-nothing semantics (batches, scripts, imports): opens a transaction
+     * unless one is open already, in which case the operation runs inside it.
      * 
+     * @return true if this call opened the transaction and the caller has to commit or roll it back, false if the caller joined an
+     * open transaction and must leave committing to its owner.
      * @throws SQLException
      */
+    boolean beginOrJoinTransaction() throws SQLException {
+        openIfNeeded();
+        if ( inTransaction ) {
+            return false;
+        }
+        connection.setAutoCommit( false );
+        inTransaction = true;
+        return true;
+    }
+
+
+    /**
+     * @Description
+     * - Commits Database transaction and switches auto commit back on.
+     * 
+     * @throws SQLException
+     * @throws IllegalStateException if no transaction is open
+     */
     public void commitTransaction() throws SQLException {
+        requireTransaction( "commit" );
         connection.commit();
         connection.setAutoCommit( true );
-
+        endTransaction();
     }
 
 
     /**
      * @Description
-     * - Rolls back Database transaction. This is necessary to expose here because we need it to control flow in
-     * Batch queries handled in the QueryExecutor class later.
+     * - Rolls back Database transaction and switches auto commit back on.
      * 
      * @throws SQLException
+     * @throws IllegalStateException if no transaction is open
      */
     public void rollbackTransaction() throws SQLException {
-        connection.rollback();
-        connection.setAutoCommit( true );
+        requireTransaction( "roll back" );
+        try {
+            connection.rollback();
+            connection.setAutoCommit( true );
+        } finally {
+            endTransaction();
+        }
+    }
+
+
+    /**
+     * @Description
+     * - Marks a point inside the open transaction that rollbackToSavepoint( name ) can return to. Setting a savepoint with a name that
+     * exists already moves it.
+     * 
+     * @param name The name of the savepoint
+     * @throws SQLException if the server does not support savepoints
+     */
+    public synchronized void setSavepoint( String name ) throws SQLException {
+        requireTransaction( "set a savepoint" );
+        try {
+            Savepoint previous = savepoints.remove( name );
+            if ( previous != null ) {
+                connection.releaseSavepoint( previous );
+            }
+            savepoints.put( name, connection.setSavepoint( name ) );
+        } catch ( SQLFeatureNotSupportedException e ) {
+            throw new SQLFeatureNotSupportedException( "The server does not support savepoints. Use rollbackTransaction to undo the whole transaction.", e );
+        }
+    }
+
+
+    /**
+     * @Description
+     * - Undoes everything done in the open transaction after the savepoint was set. The transaction stays open, the savepoint stays
+     * valid and savepoints set after it are dropped.
+     * 
+     * @param name The name of the savepoint
+     * @throws SQLException
+     */
+    public synchronized void rollbackToSavepoint( String name ) throws SQLException {
+        requireTransaction( "roll back to a savepoint" );
+        Savepoint savepoint = savepoints.get( name );
+        if ( savepoint == null ) {
+            throw new IllegalArgumentException( "Unknown savepoint " + name + ", the open transaction has the savepoints " + savepoints.keySet() );
+        }
+        connection.rollback( savepoint );
+        boolean later = false;
+        for ( java.util.Iterator<String> it = savepoints.keySet().iterator(); it.hasNext(); ) {
+            if ( later ) {
+                it.next();
+                it.remove();
+            } else {
+                later = it.next().equals( name );
+            }
+        }
+    }
+
+
+    /**
+     * @Description
+     * - Drops a savepoint of the open transaction, the work done since it stays part of the transaction.
+     * 
+     * @param name The name of the savepoint
+     * @throws SQLException
+     */
+    public synchronized void releaseSavepoint( String name ) throws SQLException {
+        requireTransaction( "release a savepoint" );
+        Savepoint savepoint = savepoints.remove( name );
+        if ( savepoint == null ) {
+            throw new IllegalArgumentException( "Unknown savepoint " + name + ", the open transaction has the savepoints " + savepoints.keySet() );
+        }
+        connection.releaseSavepoint( savepoint );
     }
 
 
     public void setAutoCommit( boolean AutoCommitMode ) throws SQLException {
         connection.setAutoCommit( AutoCommitMode );
+        if ( AutoCommitMode ) {
+            endTransaction();
+        } else {
+            inTransaction = true;
+        }
+    }
+
+
+    private void requireTransaction( String action ) {
+        if ( !inTransaction || connection == null ) {
+            throw new IllegalStateException( "Cannot " + action + ": no transaction is open. Start one with beginTransaction." );
+        }
+    }
+
+
+    private synchronized void endTransaction() {
+        inTransaction = false;
+        savepoints.clear();
+    }
+
+
+    /**
+     * @Description
+     * - Whether a transaction is open, i.e. auto commit was switched off by beginTransaction or setAutoCommit( false ).
+     */
+    public boolean inTransaction() {
+        return inTransaction;
     }
 
 }
@@ -0,0 +1,208 @@
+package polyphenyconnector;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Deadline and cancellation state of ONE running execution (executeSql, executeMongo, a batch, ...).
+ * A running execution can be stopped in three places:
+ * 1. While the server executes a JDBC statement: the attached Statement is cancelled with Statement.cancel().
+ * 2. While the thread waits for a Prism response (CallbackQueue.takeNext, fetchResult): the waiting thread is interrupted, and the Prism
+ *    calls themselves only get the remaining time as their timeout, so the server drops them at the deadline as well.
+ * 3. While results are decoded: the decode loops call check() between frames.
+ * The deadline is enforced by a single daemon watchdog thread that calls cancel(...) when it is reached; cancelCurrent() of the
+ * QueryExecutor calls the same cancel(...) from any thread.
+ */
+
+final class QueryDeadline {
+
+    // The watchdog lives in a holder class so its thread is only started once the first deadline is set.
+    private static final class Watchdog {
+
+        static final ScheduledThreadPoolExecutor SCHEDULER = new ScheduledThreadPoolExecutor( 1, runnable -> {
+            Thread thread = new Thread( runnable, "polypheny-query-watchdog" );
+            thread.setDaemon( true );
+            return thread;
+        } );
+
+        static {
+            // cancelled watchdogs of finished queries must not pile up in the queue
+            SCHEDULER.setRemoveOnCancelPolicy( true );
+        }
+    }
+
+
+    private final Thread thread;
+    private final long timeoutMillis;
+    private final long deadlineNanos;
+    private final ScheduledFuture<?> watchdog;
+
+    private volatile Statement statement;
+    private volatile boolean waiting;
+    private volatile String cancelReason;
+
+
+    private QueryDeadline( long timeoutMillis ) {
+        this.thread = Thread.currentThread();
+        this.timeoutMillis = timeoutMillis;
+        this.deadlineNanos = timeoutMillis > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( timeoutMillis ) : Long.MAX_VALUE;
+        this.watchdog = timeoutMillis > 0
+                ? Watchdog.SCHEDULER.schedule( () -> cancel( "deadline of " + timeoutMillis + " ms exceeded" ), timeoutMillis, TimeUnit.MILLISECONDS )
+                : null;
+    }
+
+
+    /**
+     * @Description
+     * - Starts the deadline of an execution on the calling thread.
+     *
+     * @param timeoutMillis The time the whole execution (server execution, every fetch and the decoding) may take. 0 or less: no
+     * deadline, the execution can still be cancelled.
+     */
+    static QueryDeadline start( long timeoutMillis ) {
+        return new QueryDeadline( timeoutMillis );
+    }
+
+
+    /**
+     * @Description
+     * - Stops the watchdog. If the execution was cancelled while the thread waited, a pending interrupt is cleared so it does not leak
+     * into the next call on the same (MATLAB) thread.
+     */
+    void finish() {
+        if ( watchdog != null ) {
+            watchdog.cancel( false );
+        }
+        statement = null;
+        if ( cancelReason != null && Thread.currentThread() == thread ) {
+            Thread.interrupted();
+        }
+    }
+
+
+    /**
+     * @Description
+     * - Registers the JDBC statement that is executed next, so cancel(...) can stop it on the server. The statement also gets the
+     * remaining time as query timeout (in whole seconds, rounded up) as a second, server side guard.
+     */
+    void attach( Statement statement ) {
+        this.statement = statement;
+        if ( timeoutMillis > 0 ) {
+            try {
+                statement.setQueryTimeout( (int) Math.max( 1, ( remainingMillis() + 999 ) / 1000 ) );
+            } catch ( SQLException ignored ) {
+                // not every driver version supports query timeouts, the watchdog still cancels the statement
+            }
+        }
+        if ( cancelReason != null ) {
+            cancelStatement( statement );
+        }
+    }
+
+
+    /**
+     * @Description
+     * - The timeout to hand to a Prism call: the remaining time, but never more than the network timeout of the connection.
+     *
+     * @param networkTimeout The network timeout of the connection in ms, 0 means none
+     */
+    int prismTimeout( int networkTimeout ) {
+        if ( timeoutMillis <= 0 ) {
+            return networkTimeout;
+        }
+        int remaining = (int) Math.max( 1, Math.min( Integer.MAX_VALUE, remainingMillis() ) );
+        return networkTimeout > 0 ? Math.min( networkTimeout, remaining ) : remaining;
+    }
+
+
+    /**
+     * @Description
+     * - Marks the start/end of a blocking wait for a Prism response. Only inside such a wait is the thread interrupted by cancel(...).
+     */
+    void beginWait() {
+        check();
+        waiting = true;
+    }
+
+
+    void endWait() {
+        waiting = false;
+        if ( cancelReason != null ) {
+            Thread.interrupted();
+        }
+    }
+
+
+    /**
+     * @Description
+     * - Throws a CancellationException if the execution was cancelled or its deadline passed. Called between frames and chunks.
+     */
+    void check() {
+        if ( cancelReason == null && System.nanoTime() - deadlineNanos > 0 ) {
+            cancel( "deadline of " + timeoutMillis + " ms exceeded" );
+        }
+        if ( cancelReason != null ) {
+            throw new CancellationException( "Query cancelled: " + cancelReason );
+        }
+    }
+
+
+    boolean isCancelled() {
+        return cancelReason != null;
+    }
+
+
+    /**
+     * @Description
+     * - Turns the failure of a cancelled execution into a CancellationException that keeps the original failure as cause. Drivers
+     * report a cancelled statement as an ordinary SQLException, so without this the user would see an obscure error.
+     */
+    CancellationException cancellation( Exception cause ) {
+        if ( cause instanceof CancellationException ) {
+            return (CancellationException) cause;
+        }
+        CancellationException e = new CancellationException( "Query cancelled: " + cancelReason );
+        e.initCause( cause );
+        return e;
+    }
+
+
+    /**
+     * @Description
+     * - Cancels the execution. Safe to call from any thread and more than once; the first reason is kept.
+     */
+    void cancel( String reason ) {
+        synchronized ( this ) {
+            if ( cancelReason != null ) {
+                return;
+            }
+            cancelReason = reason;
+        }
+        Statement current = statement;
+        if ( current != null ) {
+            cancelStatement( current );
+        }
+        if ( waiting ) {
+            thread.interrupt();
+        }
+    }
+
+
+    private long remainingMillis() {
+        return TimeUnit.NANOSECONDS.toMillis( deadlineNanos - System.nanoTime() );
+    }
+
+
+    private static void cancelStatement( Statement statement ) {
+        try {
+            statement.cancel();
+        } catch ( SQLException ignored ) {
+            // statement already finished or closed, the decode loops stop at their next check()
+        }
+    }
+
+}
@@ -1,13 +1,22 @@
 package polyphenyconnector;
 
+import java.math.BigDecimal;
 import java.sql.*;
 // Add this
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.polypheny.jdbc.types.*;
 import org.polypheny.jdbc.PolyConnection;
 import org.polypheny.jdbc.PolyphenyResultSet;
 import org.polypheny.jdbc.PrismInterfaceClient;
+import org.polypheny.jdbc.dependency.prism.ProtoList;
 import org.polypheny.jdbc.dependency.prism.ProtoValue;
 import org.polypheny.jdbc.multimodel.DocumentResult;
 import org.polypheny.jdbc.multimodel.PolyStatement;
@@ -15,9 +24,6 @@ import org.polypheny.jdbc.multimodel.ScalarResult;
 import org.polypheny.jdbc.dependency.prism.ProtoDocument;
 import org.polypheny.jdbc.multimodel.Result;
 
-import java.lang.reflect.Field;       // For accessing private variables
-import java.lang.reflect.Method;      // (Optional) if you need to call private methods
-
 /*
  * Internal Driver Logic:
  * 1. A ResultSet contains a Frame.
@@ -32,58 +38,139 @@ public class QueryExecutor {
 
     private PolyphenyConnection polyconnection;
 
-    // LOCKPICKING The Field is the address or the coordinate of where the data of the "ProtoValue serialized" existing in the TypedValue class actually lives. This address is fixed forever as long as the JAR doesn't change. We need this variable to store the different ProtoValues from the TypedValue class later.
-    private static final Field PROTO_FIELD;
-    // LOCKPICKING Similarly we also need to bypass the driver to access PolyphenyResultSet.accessValue() which returns the TypedValue form of a certain column of a result set. 
-    private static final Method ACCESS_VALUE_METHOD;
-
-    // LOCKPICKING This runs ONCE to find the coordinate of the PROTO_FIELD and reflect the function.
-    static {
-        try {
-            // Field Heist 
-            PROTO_FIELD = TypedValue.class.getDeclaredField( "serialized" );
-            PROTO_FIELD.setAccessible( true );
-
-            // LOCKINGPICKING The function accessValue(...) from the PolyphenyResultSet class is private, so we must using reflection to get around the Driver to access the TypedValue
-            ACCESS_VALUE_METHOD = PolyphenyResultSet.class.getDeclaredMethod( "accessValue", int.class );
-            ACCESS_VALUE_METHOD.setAccessible( true );
-        } catch ( Exception e ) {
-            throw new RuntimeException( "Lockpick failed. Check driver version.", e );
-        }
+    // The importer of the running or last importFile call, kept so getImportProgress() can be polled while the import runs.
+    private volatile FileImporter lastImport;
+
+    // Parallel decode settings, see setParallelDecode(...). With the defaults a result is decoded in parallel from ~25 columns on.
+    private long parallelDecodeThreshold = 100_000;
+    private int decodeFrameRows = 4096;
+
+    // How blob columns are returned, see setBlobMode(...): "byte[]", "ByteBuffer" or "file", the directory of the files, the number of
+    // results written to files so far and the BlobFiles of the running decode (only touched by the executing thread).
+    private volatile String blobMode = "byte[]";
+    private volatile java.nio.file.Path blobDirectory;
+    private final java.util.concurrent.atomic.AtomicLong blobResults = new java.util.concurrent.atomic.AtomicLong();
+    private BlobFiles blobFiles;
+
+    // Chunked batch execution: statements per executeBatch() round trip and the progress of the running (or last) batch.
+    private static final int DEFAULT_BATCH_CHUNK_SIZE = 10_000;
+
+    // Rows/documents requested per Prism fetchResult call when a result spans more than one frame.
+    private static final int PRISM_FETCH_SIZE = 10_000;
+
+    // Bytes a decoded graph element adds on top of its protobuf message: id reference, label code, index slot (nodes) and endpoint,
+    // label, order and CSR copies (edges).
+    private static final long GRAPH_NODE_BYTES = 40;
+    private static final long GRAPH_EDGE_BYTES = 48;
+
+    // Bytes one cell of a relational Cypher frame or one extracted document path adds: the ProtoValue reference kept until the column is
+    // built plus its slot in the final double[] or String[] (Strings themselves are shared with the protobuf message).
+    private static final long FRAME_CELL_BYTES = 24;
+
+    // Largest double[] the JVMs allocate (some reserve header words in the array), the limit of a packed numeric result.
+    static final long MAX_PACKED_VALUES = Integer.MAX_VALUE - 8;
+    private volatile int batchChunksTotal = 0;
+    private volatile int batchChunksDone = 0;
+    private volatile int batchChunksCommitted = 0;
+    private volatile int batchResumeIndex = 0; // first statement of the running (or last) batch that is not committed
+
+    // Batches, scripts and imports that run inside a transaction opened with PolyphenyConnection.beginTransaction join it: they neither
+    // commit nor roll it back, a failure leaves it to its owner.
+    private static final String OPEN_TRANSACTION_KEPT = " The open transaction was kept and may hold part of the work, commit or roll it back.";
+
+    // Deadline for every call that does not pass its own timeout (0 = none), see setQueryTimeout(...), and the execution that
+    // cancelCurrent() stops.
+    private volatile long defaultTimeoutMillis = 0;
+    private final AtomicReference<QueryDeadline> running = new AtomicReference<>();
+
+    // Result size admission control, see setMemoryBudget(...), and the reservation of the running execution.
+    private final MemoryGovernor memory = new MemoryGovernor();
+    private final AtomicReference<MemoryGovernor.Reservation> reservation = new AtomicReference<>();
+
+    // Slow query log, see enableTrace(...), and the trace of the running execution (only touched by the executing thread).
+    private volatile QueryTracer tracer;
+    private QueryTracer.Trace trace;
+
+    // Prewarm: the running (or finished) background prewarm, see prewarmAsync(...). Holds double[]{ seconds, prepared, decodeCalls,
+    // decodeQuery }.
+    private volatile java.util.concurrent.CompletableFuture<double[]> prewarm;
+
+    // Synthetic decode calls per column during prewarm. The JIT compiles a method after ~10 000 invocations (C2), so this is enough to
+    // get DriverToJava and the JSON walkers compiled before the first real query.
+    private static final int PREWARM_DECODE_ITERATIONS = 12_000;
+
+    // Queries whose single row covers the type branches of DriverToJava. The first one the server accepts is used, the later ones are
+    // fallbacks for servers that reject some of the literals.
+    private static final String[] PREWARM_QUERIES = {
+            "SELECT TRUE AS b, CAST( 1 AS INTEGER ) AS i, CAST( 1 AS BIGINT ) AS l, CAST( 1.5 AS DECIMAL( 10, 2 ) ) AS bd, CAST( 1.5 AS REAL ) AS f, "
+                    + "CAST( 1.5 AS DOUBLE ) AS d, 'prewarm' AS s, DATE '2024-01-01' AS dt, TIME '12:00:00' AS t, TIMESTAMP '2024-01-01 12:00:00' AS ts, "
+                    + "ARRAY[ 1, 2 ] AS lst",
+            "SELECT TRUE AS b, CAST( 1 AS INTEGER ) AS i, CAST( 1 AS BIGINT ) AS l, CAST( 1.5 AS DOUBLE ) AS d, 'prewarm' AS s",
+            "SELECT 1 AS i" };
+
+    // Driver and multimodel classes the first query would otherwise load on the critical path.
+    private static final String[] PREWARM_CLASSES = {
+            "org.polypheny.jdbc.PolyphenyDriver",
+            "org.polypheny.jdbc.PolyConnection",
+            "org.polypheny.jdbc.PolyphenyStatement",
+            "org.polypheny.jdbc.PolyphenyPreparedStatement",
+            "org.polypheny.jdbc.PolyphenyResultSet",
+            "org.polypheny.jdbc.PolyphenyResultSetMetadata",
+            "org.polypheny.jdbc.types.TypedValue",
+            "org.polypheny.jdbc.multimodel.PolyStatement",
+            "org.polypheny.jdbc.multimodel.Result",
+            "org.polypheny.jdbc.multimodel.DocumentResult",
+            "org.polypheny.jdbc.multimodel.ScalarResult",
+            "org.polypheny.jdbc.utils.CallbackQueue",
+            "org.polypheny.jdbc.dependency.prism.ProtoValue",
+            "org.polypheny.jdbc.dependency.prism.ProtoDocument",
+            "org.polypheny.jdbc.dependency.prism.Frame",
+            "org.polypheny.jdbc.dependency.prism.StatementResponse" };
+
+    // Mongo operations without side effects. Only those are retried after the connection was lost.
+    private static final Set<String> MONGO_READ_OPERATIONS = new HashSet<>( Arrays.asList( "find", "findOne", "count", "countDocuments", "estimatedDocumentCount", "distinct" ) );
+
+
+    // The ForkJoinPool for parallel decoding lives in a holder class so its threads are only started once a wide result is decoded.
+    private static final class DecodePool {
+
+        static final ForkJoinPool POOL = new ForkJoinPool( Runtime.getRuntime().availableProcessors() );
     }
 
-
     /**
      * LOCKPICKING This function is used for getting the TypedValue directly out of the PolyphenyResultSet. Calling the private accessValue(i)
-     * via reflection on the PolyphenyResultSet. That way we avoid the massive overhead for large nested documents. The driver naturally wraps
+     * through the MethodHandle resolved once in DriverAccess. That way we avoid the massive overhead for large nested documents. The driver naturally wraps
      * such a nested document into TypedValue which will then resolve to PolyDocument which again will resolve to many (Key, TypedValue) pairs.
      * Since neither TypedValue nor PolyDocument offer any functionality to cast this Object to a String we circumvent this because both of
      * those objects are essentially dead weight and parse the original ProtoValue to avoid the overhead of having to unwrap all those
      * TypedValue objects into whatever the Driver casts them to.
      */
-    private TypedValue getTypedValue( PolyphenyResultSet polyphenyResultSet, int columnIndex ) {
-        try {
-            return (TypedValue) ACCESS_VALUE_METHOD.invoke( polyphenyResultSet, columnIndex );
-        } catch ( Exception e ) {
-            // If the lockpick fails, we return null so the loop can handle the error
-            return null;
-        }
+    private TypedValue getTypedValue( PolyphenyResultSet polyphenyResultSet, int columnIndex ) throws SQLException {
+        return DriverAccess.accessValue( polyphenyResultSet, columnIndex );
     }
 
 
     /**
-     * LOCKPICKING This function is used to get the raw ProtoValue from a TypedValue object. This runs for EVERY row to save the object in the
-     * the coordinate PROTO_FIELD and thus we aim to bypass the driver which forbids us to see ProtoValue on a specific instance
+     * LOCKPICKING This function is used to get the raw ProtoValue from a TypedValue object. This runs for EVERY cell, so it goes through
+     * the MethodHandle resolved once in DriverAccess instead of Field.get.
      * 
      * @param tv
      * @return
      */
     private ProtoValue getRawProto( TypedValue tv ) {
-        try {
-            return (ProtoValue) PROTO_FIELD.get( tv );
-        } catch ( Exception e ) {
-            return null;
-        }
+        return DriverAccess.rawProto( tv );
+    }
+
+
+    /**
+     * @Description
+     * Reports which accessor path is used to read result cells: the MethodHandle fast path over the driver internals or the public JDBC
+     * getObject(...) fallback, together with the detected driver version.
+     * 
+     * @return e.g. "METHOD_HANDLE (driver 2.3)"
+     */
+    public static String getAccessorInfo() {
+        return DriverAccess.describe();
     }
 
 
@@ -115,22 +202,80 @@ public class QueryExecutor {
      * @throws Exception
      */
     public <T> Object executeSql( String query ) {
+        return executeSql( query, defaultTimeoutMillis / 1000.0 );
+    }
+
+
+    /**
+     * @Description
+     * Same as executeSql( query ), but the call must finish within timeoutSeconds. The deadline covers the server execution and the
+     * decoding of the result; once it passes the statement is cancelled and a CancellationException is thrown.
+     * 
+     * @param query The SQL query String
+     * @param timeoutSeconds The deadline of this call in seconds. 0 means no deadline.
+     * @return See executeSql( query )
+     */
+    public <T> Object executeSql( String query, double timeoutSeconds ) {
+        return executeSql( query, timeoutSeconds, 0 );
+    }
+
+
+    /**
+     * @Description
+     * Same as executeSql( query, timeoutSeconds ), with its own hard memory budget for this one result instead of the one set with
+     * setMemoryBudget. The query is aborted before the decoded result would grow past maxResultMB.
+     * 
+     * @param maxResultMB The hard memory budget of this query in MB. 0 means the default budget of the executor.
+     */
+    public <T> Object executeSql( String query, double timeoutSeconds, double maxResultMB ) {
+        if ( maxResultMB < 0 || Double.isNaN( maxResultMB ) ) {
+            throw new IllegalArgumentException( "maxResultMB must not be negative." );
+        }
+        return executeSql( query, timeoutSeconds, (long) ( maxResultMB * 1024 * 1024 ), false );
+    }
+
+
+    /**
+     * Runs the query with one retry for reads after a lost connection. packed selects the decode of executeSqlPacked.
+     */
+    private Object executeSql( String query, double timeoutSeconds, long hardOverride, boolean packed ) {
+        try {
+            return runSql( query, timeoutSeconds, hardOverride, packed );
+        } catch ( RuntimeException e ) {
+            // A read (SELECT or WITH) can safely run twice: if it failed because the server dropped the connection, reconnect and retry once.
+            if ( !( e instanceof CancellationException ) && !( e instanceof MemoryGovernor.BudgetExceededException ) && ( startsWithKeyword( query, "SELECT" ) || startsWithKeyword( query, "WITH" ) ) && polyconnection.reconnectIfLost() ) {
+                return runSql( query, timeoutSeconds, hardOverride, packed );
+            }
+            throw e;
+        }
+    }
+
+
+    private Object runSql( String query, double timeoutSeconds, long hardOverride, boolean packed ) {
+        QueryDeadline deadline = beginExecution( timeoutSeconds, hardOverride );
+        traceStart( "sql", null, query );
         try {
             polyconnection.openIfNeeded();
+            traceLap( QueryTracer.Trace.CONNECT );
             Connection connection = polyconnection.getConnection();
             if ( connection == null || connection.isClosed() ) {
                 throw new RuntimeException( "Database connection is closed or null." );
             }
 
             try ( Statement statement = connection.createStatement() ) {
+                deadline.attach( statement );
 
                 // returns true if result of query is a ResultSet and false if its an update count or no ResultSet (see execute() function doc):
                 // https://docs.polypheny.com/en/latest/drivers/jdbc/relational/statement#execute
                 boolean isResultSet = statement.execute( query );
+                traceLap( QueryTracer.Trace.EXECUTE );
 
                 if ( isResultSet ) {
                     // --- CASE 1: SELECt etc. (Returns rows in table format) ---
                     try ( ResultSet resultSet = statement.getResultSet() ) {
+                        if ( packed ) {
+                            return handlePackedResultSet( (PolyphenyResultSet) resultSet );
+                        }
                         return handleResultSet( (PolyphenyResultSet) resultSet ); // this handles the ResultSet casting to Java types 
 
                     }
@@ -139,6 +284,12 @@ public class QueryExecutor {
                     // --- CASE 2: INSERT / UPDATE / DELETE (No rows returned) ---
                     // We return a Long so MATLAB can easily handle it as a number
                     double count = statement.getLargeUpdateCount();
+                    if ( trace != null ) {
+                        trace.addRows( (long) count, 0 );
+                    }
+                    if ( packed ) {
+                        return count; // scalar fast path
+                    }
                     String[] colNames = new String[]{ "numberOfRowsAffected" };
                     String[] instantiatedColumnTypes = new String[]{ "double" };
 
@@ -153,388 +304,2042 @@ public class QueryExecutor {
                   */
             }
         } catch ( SQLException e ) {
-            throw translateException( e );
+            throw deadline.isCancelled() ? deadline.cancellation( e ) : translateException( e );
+        } catch ( MemoryGovernor.BudgetExceededException e ) {
+            throw e;
         } catch ( Exception e ) {
-            throw new RuntimeException( "Internal Connector Error: " + e.getMessage(), e );
+            throw deadline.isCancelled() ? deadline.cancellation( e ) : new RuntimeException( "Internal Connector Error: " + e.getMessage(), e );
+        } finally {
+            endExecution( deadline );
         }
     }
 
 
-    //TODO: parametrize those statements
-    public Object executeMongo( String language, String namespace, String query ) {
-        try {
-            polyconnection.openIfNeeded();
-
-            // 1. Get the raw client directly from the unwrapped PolyConnection
-            PolyConnection polyConnection = polyconnection.getConnection().unwrap( PolyConnection.class );
-            PrismInterfaceClient client = polyConnection.getPrismInterfaceClient();
-
-            // 2. Prepare the callback queue just like PolyStatement does internally
-            // Note: CallbackQueue and Response are part of the org.polypheny.jdbc packages
-            org.polypheny.jdbc.utils.CallbackQueue<org.polypheny.jdbc.dependency.prism.StatementResponse> callback = new org.polypheny.jdbc.utils.CallbackQueue<>( org.polypheny.jdbc.dependency.prism.Response::getStatementResponse );
-
-            int timeout = polyConnection.getNetworkTimeout();
-
-            // 3. Execute the statement - this sends the gRPC request
-            client.executeUnparameterizedStatement( namespace, language, query, callback, timeout );
-
-            // 4. Retrieve the response directly from the queue
-            org.polypheny.jdbc.dependency.prism.StatementResponse response;
-            do {
-                response = (org.polypheny.jdbc.dependency.prism.StatementResponse) callback.takeNext();
-                // We ignore the statementId management here for simplicity as we aren't using prepared statements
-            } while ( !response.hasResult() );
-
-            // 5. Await completion to ensure the network stream is finished
-            callback.awaitCompletion();
-
-            org.polypheny.jdbc.dependency.prism.StatementResult result = response.getResult();
-
-            // 6. Check for the raw Protobuf data: the Frame
-            if ( result.hasFrame() ) {
-                org.polypheny.jdbc.dependency.prism.Frame rawFrame = result.getFrame();
+    /**
+     * @Description
+     * Executes a SQL query like executeSql, but packs the result for MATLAB in as few bridge crossings as possible:
+     * - All numeric columns are copied into ONE contiguous column-major double[] (rows x numericColumns), so MATLAB gets the whole
+     * matrix in a single crossing and one reshape(packed, dims(1), dims(2)).
+     * - The remaining (String, binary, interval, ...) columns are returned separately in the usual column form.
+     * - Scalar fast path: a result with one row and one numeric column (e.g. SELECT COUNT(*) or an update count) is returned as a bare
+     * Double.
+     * The numeric values are decoded straight into blocks of the packed layout, see handlePackedResultSet, so the result is not held
+     * twice. A result of more than MAX_PACKED_VALUES (2^31 - 9) numeric values does not fit one Java array and fails with a clear message.
+     * 
+     * @param query The SQL query String
+     * @return Double for scalar results, null for empty results, otherwise
+     * Object[]{ String[] numericNames, double[] packed, int[]{ rows, numericColumns }, String[] otherNames, Object[] otherColumns }
+     */
+    public Object executeSqlPacked( String query ) {
+        return executeSql( query, defaultTimeoutMillis / 1000.0, 0, true );
+    }
 
-                if ( rawFrame.getResultCase() == org.polypheny.jdbc.dependency.prism.Frame.ResultCase.DOCUMENT_FRAME ) {
-                    // Advantage: No DocumentResult or PolyDocument objects were ever created.
-                    List<ProtoDocument> rawDocs = rawFrame.getDocumentFrame().getDocumentsList();
-                    return protoDocumentListToJava( rawDocs );
-                }
 
-                // Handle Relational Frame if necessary (optional fallback)
-                throw new UnsupportedOperationException( "Relational results in Mongo execution not supported by this bypass." );
-            } else {
-                //TODO: switch to a long here or convert it into String maybe.
-                // CASE: Scalar Result (e.g., an update count)
-                return (double) result.getScalar();
+    /**
+     * @Description
+     * Executes a SQL query but decodes nothing up front: the rows are read once and only the raw TypedValue (i.e. the undecoded
+     * ProtoValue) of every cell is kept. The returned LazyResult decodes a column on its first getColumn(name) call and caches it, so a
+     * SELECT * over wide DOCUMENT or BINARY columns only costs the columns that are actually used.
+     * The raw cells count against the memory budget, the last partial frame included. Reads are retried once after a lost connection,
+     * as in executeSql.
+     * 
+     * @param query The SQL query String
+     * @return A LazyResult, or null for an empty result. Statements without result set (e.g. UPDATE) return an already decoded
+     * LazyResult with the numberOfRowsAffected column.
+     */
+    public LazyResult executeSqlLazy( String query ) {
+        if ( !DriverAccess.isAvailable() ) {
+            // no raw cells without the driver internals: decode eagerly through the JDBC fallback
+            Object result = executeSql( query );
+            return result == null ? null : LazyResult.ofDecoded( this, (Object[]) result );
+        }
+        try {
+            return runSqlLazy( query );
+        } catch ( RuntimeException e ) {
+            // the same single retry of reads after a lost connection as executeSql
+            if ( !( e instanceof CancellationException ) && !( e instanceof MemoryGovernor.BudgetExceededException ) && ( startsWithKeyword( query, "SELECT" ) || startsWithKeyword( query, "WITH" ) ) && polyconnection.reconnectIfLost() ) {
+                return runSqlLazy( query );
             }
-
-        } catch ( SQLException e ) {
-            throw translateException( e );
-        } catch ( Exception e ) {
-            throw new RuntimeException( "Direct Mongo execution failed: " + e.getMessage(), e );
+            throw e;
         }
     }
-    /*
-    // check that this function works.
-    public Object executeMongo( String language, String namespace, String query ) {
+
+
+    private LazyResult runSqlLazy( String query ) {
+        QueryDeadline deadline = beginExecution( defaultTimeoutMillis / 1000.0 );
+        traceStart( "sql", null, query );
         try {
             polyconnection.openIfNeeded();
+            traceLap( QueryTracer.Trace.CONNECT );
             Connection connection = polyconnection.getConnection();
-            PolyConnection polyConnection = connection.unwrap( PolyConnection.class );
-            PolyStatement polyStatement = polyConnection.createPolyStatement();
-    
-            // 1. Execute and get the Result base object
-            Result result = polyStatement.execute( namespace, language, query );
-    
-            switch ( result.getResultType() ) {
-                case DOCUMENT:
-                    // --- THE HEIST STARTS HERE ---
-                    // 2. Lockpick the private 'frame' field from the Result base class to iterate the frames directly instead of walking the slow driver stuff.
-                    Field frameField = org.polypheny.jdbc.multimodel.Result.class.getDeclaredField( "frame" );
-                    frameField.setAccessible( true );
-                    org.polypheny.jdbc.dependency.prism.Frame rawFrame = (org.polypheny.jdbc.dependency.prism.Frame) frameField.get( result );
-    
-                    // 3. Verify it's actually a document frame
-                    if ( rawFrame.getResultCase() == org.polypheny.jdbc.dependency.prism.Frame.ResultCase.DOCUMENT_FRAME ) {
-                        // 4. Get the raw List<ProtoDocument> - NO PolyDocuments or HashMaps created yet!
-                        List<ProtoDocument> rawDocs = rawFrame.getDocumentFrame().getDocumentsList();
-    
-                        // 5. Walk the raw Protobufs directly to JSON for MATLAB
-                        return RawDocumentsToMatlab( rawDocs );
+            try ( Statement statement = connection.createStatement() ) {
+                deadline.attach( statement );
+                boolean isResultSet = statement.execute( query );
+                traceLap( QueryTracer.Trace.EXECUTE );
+                if ( !isResultSet ) {
+                    Object[] resultColumns = new Object[]{ new double[]{ statement.getLargeUpdateCount() } };
+                    return LazyResult.ofDecoded( this, new Object[]{ new String[]{ "numberOfRowsAffected" }, new String[]{ "double" }, resultColumns } );
+                }
+                try ( ResultSet resultSet = statement.getResultSet() ) {
+                    ResultSetMetaData meta = resultSet.getMetaData();
+                    int colCount = meta.getColumnCount();
+                    String[] colNames = new String[colCount];
+                    String[] colTypeNames = new String[colCount];
+                    for ( int i = 1; i <= colCount; i++ ) {
+                        colNames[i - 1] = meta.getColumnName( i );
+                        colTypeNames[i - 1] = meta.getColumnTypeName( i );
                     }
-    
-                case SCALAR:
-                    ScalarResult scalarResult = result.unwrap( ScalarResult.class );
-                    return (double) scalarResult.getScalar();
-    
-                default:
-                    throw new UnsupportedOperationException( "Unhandled result type: " + result.getResultType() );
+
+                    // column-major cell buffers, grown by doubling
+                    TypedValue[][] cells = new TypedValue[colCount][1024];
+                    int rows = 0;
+                    PolyphenyResultSet polyphenyResultSet = (PolyphenyResultSet) resultSet;
+                    QueryTracer.Trace trace = this.trace;
+                    while ( trace == null ? resultSet.next() : trace.next( resultSet ) ) {
+                        if ( rows == cells[0].length ) {
+                            for ( int c = 0; c < colCount; c++ ) {
+                                cells[c] = Arrays.copyOf( cells[c], rows * 2 );
+                            }
+                        }
+                        for ( int i = 1; i <= colCount; i++ ) {
+                            cells[i - 1][rows] = getTypedValue( polyphenyResultSet, i );
+                        }
+                        if ( ++rows % decodeFrameRows == 0 ) {
+                            deadline.check();
+                            admit( lazyRowBytes( cells, rows - 1 ) * decodeFrameRows, decodeFrameRows );
+                        }
+                    }
+                    int rest = rows % decodeFrameRows;
+                    if ( rest > 0 ) {
+                        // the last, partial frame is held as well
+                        admit( lazyRowBytes( cells, rows - 1 ) * rest, rest );
+                    }
+                    if ( trace != null ) {
+                        trace.lap( QueryTracer.Trace.DECODE ); // the columns themselves are decoded later, on request
+                        trace.addRows( rows, 0 );
+                    }
+                    return rows == 0 ? null : new LazyResult( this, colNames, colTypeNames, cells, rows );
+                }
             }
         } catch ( SQLException e ) {
-            throw translateException( e );
+            throw deadline.isCancelled() ? deadline.cancellation( e ) : translateException( e );
+        } catch ( MemoryGovernor.BudgetExceededException e ) {
+            throw e;
         } catch ( Exception e ) {
-            throw new RuntimeException( "Mongo execution failed: " + e.getMessage(), e );
+            throw deadline.isCancelled() ? deadline.cancellation( e ) : new RuntimeException( "Internal Connector Error: " + e.getMessage(), e );
+        } finally {
+            endExecution( deadline );
         }
     }
-    */
-
 
-    //TODO check that this function works
-    private List<String> protoDocumentListToJava( List<ProtoDocument> rawDocs ) throws Exception {
-        List<String> jsonDocuments = new ArrayList<>( rawDocs.size() );
-        StringBuilder sb = new StringBuilder( 1024 * 64 ); // Reuse buffer
 
-        for ( ProtoDocument doc : rawDocs ) {
-            sb.setLength( 0 );
-            // Call your existing recursive walker directly on the raw ProtoDocument
-            protoDocumentToJson( doc, sb );
-            jsonDocuments.add( sb.toString() );
+    /**
+     * The raw cells are what a LazyResult holds on to: TypedValue + ProtoValue per cell, estimated from the given row.
+     */
+    private long lazyRowBytes( TypedValue[][] cells, int row ) {
+        long rowBytes = 0;
+        for ( TypedValue[] column : cells ) {
+            rowBytes += 64 + getRawProto( column[row] ).getSerializedSize();
         }
-        return jsonDocuments;
+        return rowBytes;
     }
 
 
     /**
-     * Helper function that handles the ResultSet casting to Java types that align well with what we need to cast types to Matlab in a
-     * performant way. Had we left this function in the .execute(query) as is, the indentation would have made it hard to read.
+     * @Description
+     * Decodes one column of a LazyResult exactly like handleResultSet decodes it.
      * 
-     * @param <T>
-     * @param resultSet The resultSet returned by the driver.
-     * @return The finished tabled result with all Java types as entries. It is now ready to be cast to Matlab
-     * @throws Exception Will be treated by execute(query)
+     * @param cells The raw cells of the column
+     * @param rows The number of valid cells
+     * @param polyphenyTypeName The column type name from the result set meta data
+     * @return Object[]{ String instantiatedColumnType, Object primitiveColumn }
      */
     @SuppressWarnings("unchecked")
-    public <T> Object handleResultSet( PolyphenyResultSet resultSet ) throws Exception {
-        ResultSetMetaData meta = resultSet.getMetaData();
-        int colCount = meta.getColumnCount();
-
-        // ─────────────────────────────
-        // Case 1: Empty Result
-        // ─────────────────────────────
-        if ( !resultSet.next() ) {
-            //System.out.println( "Empty result set." );
-            return null;
+    <T> Object[] decodeLazyColumn( TypedValue[] cells, int rows, String polyphenyTypeName ) {
+        String[] types = new String[1];
+        ArrayList<T> column = createJavaTypeArrayList( polyphenyTypeName, types, 0 );
+        column.ensureCapacity( rows );
+        JsonWriter json = JsonWriter.local();
+        try {
+            for ( int r = 0; r < rows; r++ ) {
+                column.add( (T) DriverToJava( cells[r], json, types, 0 ) );
+            }
+        } catch ( Exception e ) {
+            throw new RuntimeException( "Decoding the column failed: " + e.getMessage(), e );
         }
+        Object primitive = mapArrayListToPrimitive( column, types, 0 );
+        return new Object[]{ types[0], primitive };
+    }
 
-        // ─────────────────────────────
-        // Case 2: Tabular Result (≥1 column, ≥1 row)
-        // ─────────────────────────────
-        String[] colNames = new String[colCount]; // saves the column names to name the columns later
-        String[] colTypeNames = new String[colCount]; // saves the columnTypeNames from Protobuf (e.g. DOCUMENT, STRING, INT,...)
-        String[] instantiatedColumnTypes = new String[colCount]; //saves what type T createJavaTypeArrayList used for the i-th column represented by ArrayList<T>
-        List<ArrayList<T>> columnList = new ArrayList<>( colCount ); // this is the java table that stores every Column in an ArrayList<?>
 
-        for ( int i = 1; i <= colCount; i++ ) {
+    /**
+     * @Description
+     * Pulls the values at the given paths (e.g. "a.b[3].c") out of a DOCUMENT column of a lazy result. The raw ProtoDocuments are
+     * walked directly, no document is ever serialized to JSON. Every path becomes one column: double[] if all its values are numeric
+     * (missing or NULL → NaN), String[] otherwise (nested values as JSON).
+     * 
+     * @param result A result of executeSqlLazy whose column was not decoded yet
+     * @param column The DOCUMENT column
+     * @param paths The paths to extract
+     * @return Object[]{ String[] paths, String[] instantiatedColumnTypes, Object[] columns }, the same package as executeSql
+     */
+    public Object extractPaths( LazyResult result, String column, String[] paths ) {
+        TypedValue[] cells = result.rawColumn( column );
+        DocumentPaths walker = new DocumentPaths( paths );
+        int rows = result.getRowCount();
+        for ( int r = 0; r < rows; r++ ) {
+            walker.add( getRawProto( cells[r] ) );
+        }
+        return pathsToJava( walker );
+    }
 
-            //Saves the columnName (e.g. "Student_ID or "Birthdate") of the i-th column of the ResultSet
-            colNames[i - 1] = meta.getColumnName( i );
 
-            //Saves the columnTypeName (e.g. BINARY, INTEGER) of the i-th column of the ResultSet.
-            colTypeNames[i - 1] = meta.getColumnTypeName( i );
+    /**
+     * @Description
+     * Runs a Mongo query and extracts only the given paths from the returned documents, straight from the raw Prism frames. Pulling 3
+     * fields out of a million large documents this way skips serializing all other fields. All frames of the result are fetched.
+     * Runs like executeMongo( language, namespace, query ): same timeout, tracing, memory budget and read retry after a dropped connection.
+     * 
+     * @param language The query language, "mongo"
+     * @param namespace The Mongo namespace
+     * @param query The Mongo query, e.g. db.c.find({})
+     * @param paths The paths to extract, e.g. { "name", "address.city", "scores[0]" }
+     * @return The same package as extractPaths, or a double for scalar results (e.g. update counts)
+     */
+    public Object executeMongo( String language, String namespace, String query, String[] paths ) {
+        if ( paths == null ) {
+            throw new IllegalArgumentException( "paths must not be null." );
+        }
+        return executeMongo( language, namespace, query, defaultTimeoutMillis / 1000.0, paths );
+    }
 
-            //This creates the proper frame to cast our data into. We changed to a column-based framework to increase performance and reduce
-            //object instantiation. This way we can avoid Object[][] and instead work with Object[]
-            columnList.add( createJavaTypeArrayList( colTypeNames[i - 1], instantiatedColumnTypes, i - 1 ) );
+
+    /**
+     * Walks the documents of one frame and charges the extracted values against the memory budget of the running execution.
+     */
+    private void addDocuments( DocumentPaths walker, List<ProtoDocument> documents ) {
+        for ( ProtoDocument document : documents ) {
+            walker.add( document );
         }
-        PolyphenyResultSet polyphenyResultSet = (PolyphenyResultSet) resultSet;
+        admit( documents.size() * walker.getPaths().length * FRAME_CELL_BYTES, documents.size() );
+    }
 
-        // We pass the function a StringBuilder as the case LIST and DOCUMENT can be massively 
-        // nested. Would we have a DOCUMENT with 10 000 entries that have a nesting level of 3 and each contain 10 000 items themselves we 
-        // would instantiate 10 000^3 objects otherwise. This way we only instantiate 1 and if we don't need it we only wasted 1MB.
-        StringBuilder sb = new StringBuilder( 1024 * 1024 );
-        do {
-            for ( int i = 1; i <= colCount; i++ ) {
-                try {
-                    //0. Making sure that the StringBuilder is empty; otherwise it will just append everything which would be wrong. 
-                    sb.setLength( 0 );
 
-                    //1. Retrieve the TypedValue using our LOCKPICK function.
-                    TypedValue tv = getTypedValue( polyphenyResultSet, i );
+    private Object[] pathsToJava( DocumentPaths walker ) {
+        String[] paths = walker.getPaths();
+        String[] instantiatedColumnTypes = new String[paths.length];
+        Object[] resultColumns = new Object[paths.length];
+        try {
+            for ( int p = 0; p < paths.length; p++ ) {
+                Object[] column = protoColumnToJava( walker.leaves( p ) );
+                instantiatedColumnTypes[p] = (String) column[0];
+                resultColumns[p] = column[1];
+            }
+        } catch ( Exception e ) {
+            throw new RuntimeException( "Converting the extracted paths failed: " + e.getMessage(), e );
+        }
+        return new Object[]{ paths, instantiatedColumnTypes, resultColumns };
+    }
+
 
-                    //2. Convert it using our DriverToJava logic.
-                    Object convertedValue = DriverToJava( tv, sb, instantiatedColumnTypes, i );
+    /**
+     * @Description
+     * Executes a large single-table read as numPartitions range scans that run concurrently, each on its own connection, so the
+     * extraction uses several server workers and decode threads instead of one stream. The bounds of partitionColumn are discovered
+     * with one MIN/MAX query first. See executeSqlPartitioned( query, partitionColumn, numPartitions, lowerBound, upperBound ).
+     * 
+     * @param query The SELECT query. It is wrapped as subquery, so it may contain joins, filters and projections.
+     * @param partitionColumn A numeric column of the query result, ideally indexed and evenly distributed (e.g. an id).
+     * @param numPartitions Number of concurrent range scans
+     * @return The same package as executeSql, with the rows of all partitions in partition order
+     */
+    public Object executeSqlPartitioned( String query, String partitionColumn, int numPartitions ) {
+        if ( numPartitions <= 0 ) {
+            throw new IllegalArgumentException( "numPartitions must be positive." );
+        }
+        Object[] bounds = partitionBounds( query, partitionColumn );
+        if ( bounds == null ) {
+            // no non-NULL value: one scan is all there is to do
+            return executeSql( query );
+        }
+        return executePartitions( query, partitionQueries( query, partitionColumn, numPartitions, (BigDecimal) bounds[0], (BigDecimal) bounds[1], (Boolean) bounds[2] ) );
+    }
 
-                    // 3. Shove it into the bucket (List<ArrayList<T>> handles the Object)
-                    columnList.get( i - 1 ).add( (T) convertedValue );
 
-                } catch ( Exception e ) {
-                    // Fallback: If the heist fails, use the slow, safe JDBC way
-                    throw new RuntimeException( "Conversion logic has failed in QueryExecutor.execute(...)." + e );
+    /**
+     * Reads MIN and MAX of the partition column exactly: integral columns (TINYINT to BIGINT, DECIMAL without scale) as BigDecimal, so
+     * BIGINT keys above 2^53 are not rounded the way a double would round them.
+     * 
+     * @return Object[]{ BigDecimal lowerBound, BigDecimal upperBound, Boolean integral }, or null if the column holds no non-NULL value
+     */
+    private Object[] partitionBounds( String query, String partitionColumn ) {
+        String sql = "SELECT MIN( " + partitionColumn + " ) AS lo, MAX( " + partitionColumn + " ) AS hi FROM ( " + query + " ) AS partitioned";
+        QueryDeadline deadline = beginExecution( defaultTimeoutMillis / 1000.0 );
+        traceStart( "sql", null, sql );
+        try {
+            polyconnection.openIfNeeded();
+            traceLap( QueryTracer.Trace.CONNECT );
+            try ( Statement statement = polyconnection.getConnection().createStatement() ) {
+                deadline.attach( statement );
+                try ( ResultSet resultSet = statement.executeQuery( sql ) ) {
+                    traceLap( QueryTracer.Trace.EXECUTE );
+                    if ( !resultSet.next() ) {
+                        return null;
+                    }
+                    ResultSetMetaData meta = resultSet.getMetaData();
+                    boolean integral;
+                    switch ( meta.getColumnType( 1 ) ) {
+                        case Types.TINYINT:
+                        case Types.SMALLINT:
+                        case Types.INTEGER:
+                        case Types.BIGINT:
+                            integral = true;
+                            break;
+                        case Types.DECIMAL:
+                        case Types.NUMERIC:
+                            integral = meta.getScale( 1 ) == 0;
+                            break;
+                        default:
+                            integral = false;
+                    }
+                    BigDecimal lowerBound = boundValue( resultSet, 1, integral );
+                    BigDecimal upperBound = boundValue( resultSet, 2, integral );
+                    if ( lowerBound == null || upperBound == null ) {
+                        return null;
+                    }
+                    return new Object[]{ lowerBound, upperBound, integral };
                 }
             }
-        } while ( resultSet.next() );
-
-        // Ensure that the colNames and rows have the same number of columns
-        if ( colNames.length != columnList.size() ) {
-            throw new RuntimeException( "Mismatch of colNames and rowData in Queryexecutor.execute(...)" );
+        } catch ( SQLException e ) {
+            throw deadline.isCancelled() ? deadline.cancellation( e ) : translateException( e );
+        } finally {
+            endExecution( deadline );
         }
+    }
 
-        Object[] resultColumns = new Object[colCount];
-        for ( int i = 0; i < colCount; i++ ) {
-            resultColumns[i] = mapArrayListToPrimitive( columnList.get( i ), instantiatedColumnTypes, i );
+
+    private static BigDecimal boundValue( ResultSet resultSet, int column, boolean integral ) throws SQLException {
+        if ( integral ) {
+            return resultSet.getBigDecimal( column );
         }
-        // Return the names and the column data separately
-        return new Object[]{ colNames, instantiatedColumnTypes, resultColumns };
+        double value = resultSet.getDouble( column );
+        return resultSet.wasNull() ? null : BigDecimal.valueOf( value );
     }
 
 
     /**
+     * @Description
+     * Partitioned read with explicit bounds. [lowerBound, upperBound] is cut into numPartitions ranges, the query is rewritten into one
+     * range predicate per partition:
+     *      SELECT * FROM ( query ) AS partitioned WHERE col >= lo AND col < hi
+     * The first partition is open downwards (col < hi OR col IS NULL), the last one upwards (col >= lo), so every row is read exactly
+     * once even if the bounds are off or the table changed since they were determined; the bounds only place the split points. The
+     * run concurrently on separate connections; the column arrays are concatenated in partition order. The executor deadline covers
+     * the whole call and cancelCurrent() cancels all partitions. While a transaction is open the partitions are read one after the other
+     * on its connection instead, so they see its uncommitted writes.
      * 
-     * This function maps all the entries to the correct output type.
-     * 
-     * @param sb We pass the function a StringBuilder as the case LIST and DOCUMENT can be massively nested. Would we have a DOCUMENT with 10 000 entries that
-     * have a nesting level of 3 and each contain 10 000 items themselves we would instantiate >10 000^3 objects otherwise. This way we only
-     * instantiate 1 and if we don't need it we only wasted 1MB.
-     * @param tv The TypedValue object we received from one column entry in the current row
-     * @param instantiatedColumnTypes Saves what type T createJavaTypeArrayList used for the i-th column represented by ArrayList<T>
-     * @param colIndex the colIndex we are looking at currently.
-     * @return A java type that is mapped so that it fits into the ArrayList<T> that holds all the column entries
-     * @throws SQLException
+     * @return The same package as executeSql, or null if no partition returned rows
      */
-    public Object DriverToJava( TypedValue tv, StringBuilder sb, String[] instantiatedColumnTypes, int colIndex ) throws Exception {
+    public Object executeSqlPartitioned( String query, String partitionColumn, int numPartitions, double lowerBound, double upperBound ) {
+        if ( numPartitions <= 0 ) {
+            throw new IllegalArgumentException( "numPartitions must be positive." );
+        }
+        if ( upperBound < lowerBound || Double.isNaN( lowerBound ) || Double.isNaN( upperBound ) ) {
+            throw new IllegalArgumentException( "upperBound must not be smaller than lowerBound." );
+        }
+        return executePartitions( query, partitionQueries( query, partitionColumn, numPartitions, lowerBound, upperBound ) );
+    }
 
-        // Use the found ValueCase for the ProtoValue class to decide the shortcut
-        String typeName = tv.getValueCase().name();
-        ProtoValue raw = getRawProto( tv );
-        /*    BOOLEAN(1),
-              INTEGER(2),
-              LONG(3),
-              BIG_DECIMAL(12),
-              FLOAT(7),
-              DOUBLE(6),
-              DATE(5),
-              TIME(9),
-              TIMESTAMP(10),
-              INTERVAL(13),
-              STRING(8),
-              BINARY(4),
-              NULL(11),
-              LIST(16),
-              DOCUMENT(18),
-              FILE(19),
-              VALUE_NOT_SET(0); */
 
-        // case 1
-        if ( typeName.equals( "BOOLEAN" ) ) {
-            boolean result = raw.getBoolean().getBoolean();
-            return result ? 1 : 0;
-        }
-        // case 2
-        if ( typeName.equals( "INTEGER" ) ) {
-            double result = (double) raw.getInteger().getInteger();
-            return result;
+    private Object executePartitions( String query, String[] partitionQueries ) {
+        if ( polyconnection.inTransaction() ) {
+            // Sibling connections would not see the uncommitted writes of the open transaction: read the partitions on its connection.
+            Object[] parts = new Object[partitionQueries.length];
+            for ( int p = 0; p < parts.length; p++ ) {
+                Object part = executeSql( partitionQueries[p] );
+                parts[p] = part == null ? Boolean.FALSE : part;
+            }
+            return concatPartitions( parts );
         }
 
-        // case 3
-        if ( typeName.equals( "LONG" ) ) {
-            double result = (double) raw.getLong().getLong();
-            return result;
-        }
+        java.util.concurrent.ExecutorService pool = ExecutionThreads.newExecutor( "polypheny-partition", partitionQueries.length );
+        List<QueryExecutor> executors = new ArrayList<>( partitionQueries.length );
+        List<Future<Object>> futures = new ArrayList<>( partitionQueries.length );
+        QueryDeadline deadline = beginExecution( defaultTimeoutMillis / 1000.0 );
+        traceStart( "sql", null, query );
+        try {
+            for ( String partitionQuery : partitionQueries ) {
+                QueryExecutor executor = new QueryExecutor( polyconnection.openSibling() );
+                executor.setParallelDecode( parallelDecodeThreshold, decodeFrameRows );
+                executor.memory.inherit( memory );
+                executors.add( executor );
+                futures.add( pool.submit( () -> {
+                    try {
+                        return executor.executeSql( partitionQuery );
+                    } finally {
+                        executor.polyconnection.close();
+                    }
+                } ) );
+            }
 
-        // TODO: casting it to DOUBLE might lead to imprecision issues.
-        // case 12
-        if ( typeName.equals( "BIG_DECIMAL" ) ) {
+            Object[] parts = new Object[futures.size()];
+            for ( int p = 0; p < parts.length; p++ ) {
+                while ( parts[p] == null ) {
+                    try {
+                        // wake up regularly so a deadline or cancelCurrent() reaches the partitions
+                        Object part = futures.get( p ).get( 100, java.util.concurrent.TimeUnit.MILLISECONDS );
+                        parts[p] = part == null ? Boolean.FALSE : part;
+                    } catch ( java.util.concurrent.TimeoutException e ) {
+                        deadline.check();
+                    }
+                }
+            }
+            return concatPartitions( parts );
 
-            // 1. Get the Scale (power of 10)
-            int scale = raw.getBigDecimal().getScale();
+        } catch ( Exception e ) {
+            for ( QueryExecutor executor : executors ) {
+                executor.cancelCurrent();
+            }
+            pool.shutdownNow(); // interrupts the tasks that still wait, e.g. for a sibling connection
+            if ( deadline.isCancelled() ) {
+                throw deadline.cancellation( e );
+            }
+            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            throw new RuntimeException( "Partitioned execution failed: " + cause.getMessage(), cause );
+        } finally {
+            endExecution( deadline );
+            pool.shutdown();
+        }
+    }
 
-            // 2. Get the bits of the unscaled integer
-            byte[] unscaledBytes = raw.getBigDecimal().getUnscaledValue().toByteArray();
 
-            // 3. Reconstruct the number
-            java.math.BigInteger unscaledInt = new java.math.BigInteger( unscaledBytes );
-            java.math.BigDecimal bigDecimal = new java.math.BigDecimal( unscaledInt, scale );
-            double doubleResult = bigDecimal.doubleValue();
+    /**
+     * Bounds given from MATLAB: whole numbers are taken as the bounds of an integral column.
+     */
+    static String[] partitionQueries( String query, String partitionColumn, int numPartitions, double lowerBound, double upperBound ) {
+        boolean integral = lowerBound == Math.rint( lowerBound ) && upperBound == Math.rint( upperBound );
+        return partitionQueries( query, partitionColumn, numPartitions, BigDecimal.valueOf( lowerBound ), BigDecimal.valueOf( upperBound ), integral );
+    }
 
-            // 4. Return as double for MATLAB
-            return doubleResult;
-        }
 
-        //case 7
-        if ( typeName.equals( "FLOAT" ) ) {
-            double result = (double) raw.getFloat().getFloat();
-            return result;
+    /**
+     * Rewrites the query into numPartitions range predicates on partitionColumn that together cover every row exactly once: the inner
+     * split points lie in [lowerBound, upperBound], the first and last partition are open-ended. Integral bounds get integral split
+     * points, so no partition boundary falls between two ids. The arithmetic is exact (BigDecimal), the split points are written with
+     * toPlainString, so neither large BIGINT keys nor an exponent ever reach the SQL text.
+     */
+    static String[] partitionQueries( String query, String partitionColumn, int numPartitions, BigDecimal lowerBound, BigDecimal upperBound, boolean integral ) {
+        BigDecimal span = upperBound.subtract( lowerBound );
+        if ( integral ) {
+            // never more partitions than distinct values
+            span = span.add( BigDecimal.ONE );
+            numPartitions = span.compareTo( BigDecimal.valueOf( numPartitions ) ) < 0 ? Math.max( 1, span.intValue() ) : numPartitions;
         }
-        //case 6
-        if ( typeName.equals( "DOUBLE" ) ) {
-            double result = (double) raw.getDouble().getDouble();
-            return result;
+        if ( numPartitions == 1 ) {
+            return new String[]{ query };
+        }
+        String[] queries = new String[numPartitions];
+        String from = "SELECT * FROM ( " + query + " ) AS partitioned WHERE ";
+        BigDecimal parts = BigDecimal.valueOf( numPartitions );
+        String lo = null;
+        for ( int p = 0; p < numPartitions; p++ ) {
+            String hi = null;
+            if ( p < numPartitions - 1 ) {
+                BigDecimal offset = span.multiply( BigDecimal.valueOf( p + 1 ) );
+                offset = integral ? offset.divideToIntegralValue( parts ) : offset.divide( parts, java.math.MathContext.DECIMAL128 );
+                hi = lowerBound.add( offset ).stripTrailingZeros().toPlainString();
+            }
+            if ( p == 0 ) {
+                queries[p] = from + partitionColumn + " < " + hi + " OR " + partitionColumn + " IS NULL";
+            } else if ( hi == null ) {
+                queries[p] = from + partitionColumn + " >= " + lo;
+            } else {
+                queries[p] = from + partitionColumn + " >= " + lo + " AND " + partitionColumn + " < " + hi;
+            }
+            lo = hi;
         }
+        return queries;
+    }
 
-        //case 5 - For this case use the asString() function of TypedValue because the Driver actually implements functionality for timezones
-        if ( typeName.equals( "DATE" ) ) {
-            String result = tv.asString();
-            return result;
+
+    /**
+     * Concatenates the column arrays of the partition results (executeSql packages, Boolean.FALSE for empty partitions) in order.
+     */
+    private static Object concatPartitions( Object[] parts ) {
+        List<Object[]> results = new ArrayList<>( parts.length );
+        for ( Object part : parts ) {
+            if ( part instanceof Object[] ) {
+                results.add( (Object[]) part );
+            }
+        }
+        if ( results.isEmpty() ) {
+            return null;
+        }
+        if ( results.size() == 1 ) {
+            return results.get( 0 );
+        }
+        Object[] first = results.get( 0 );
+        int colCount = ( (Object[]) first[2] ).length;
+        String[] instantiatedColumnTypes = ( (String[]) first[1] ).clone();
+        Object[] resultColumns = new Object[colCount];
+        for ( int c = 0; c < colCount; c++ ) {
+            if ( isListColumn( results, c ) ) {
+                // ARRAY columns: the partitions may have come out as matrices of different widths, ragged or as JSON
+                List<Object> rows = new ArrayList<>();
+                for ( Object[] result : results ) {
+                    listColumnRows( ( (Object[]) result[2] )[c], ( (String[]) result[1] )[c], rows );
+                }
+                resultColumns[c] = listColumnToPrimitive( rows, instantiatedColumnTypes, c );
+                continue;
+            }
+            int total = 0;
+            for ( Object[] result : results ) {
+                total += java.lang.reflect.Array.getLength( ( (Object[]) result[2] )[c] );
+            }
+            Object column = java.lang.reflect.Array.newInstance( ( (Object[]) first[2] )[c].getClass().getComponentType(), total );
+            int offset = 0;
+            for ( Object[] result : results ) {
+                Object part = ( (Object[]) result[2] )[c];
+                int length = java.lang.reflect.Array.getLength( part );
+                System.arraycopy( part, 0, column, offset, length );
+                offset += length;
+            }
+            resultColumns[c] = column;
         }
+        return new Object[]{ first[0], instantiatedColumnTypes, resultColumns };
+    }
 
-        //case 9 - For this case use the asString() function of TypedValue because the Driver actually implements functionality for timezones
-        if ( typeName.equals( "TIME" ) ) {
-            String result = tv.asString();
-            return result;
+
+    private static boolean isListColumn( List<Object[]> results, int c ) {
+        String type = ( (String[]) results.get( 0 )[1] )[c];
+        for ( Object[] result : results ) {
+            String partType = ( (String[]) result[1] )[c];
+            if ( !partType.equals( type ) || ( partType.endsWith( "]" ) && !partType.equals( "byte[]" ) ) ) {
+                return true;
+            }
         }
-        // case 10 - For this case use the asString() function of TypedValue because the Driver actually implements functionality for timezones
-        if ( typeName.equals( "TIMESTAMP" ) ) {
-            String result = tv.asString();
-            return result;
+        return false;
+    }
+
+
+    /**
+     * Appends the rows of one materialized ARRAY column (see listColumnToPrimitive) to rows: a double[]/float[] or a String per row.
+     */
+    private static void listColumnRows( Object column, String type, List<Object> rows ) {
+        if ( type.startsWith( "ragged" ) ) {
+            Object values = ( (Object[]) column )[0];
+            int[] offsets = (int[]) ( (Object[]) column )[1];
+            for ( int r = 0; r + 1 < offsets.length; r++ ) {
+                Object row = java.lang.reflect.Array.newInstance( values.getClass().getComponentType(), offsets[r + 1] - offsets[r] );
+                System.arraycopy( values, offsets[r], row, 0, offsets[r + 1] - offsets[r] );
+                rows.add( row );
+            }
+        } else {
+            rows.addAll( Arrays.asList( (Object[]) column ) );
         }
-        // case 13
-        if ( typeName.equals( "INTERVAL" ) ) {
-            if ( raw == null )
-                return null;
+    }
 
-            // We return a 2-element array to keep BOTH components perfectly intact.
-            // Index 0: Months (Year-Month interval)
-            // Index 1: Milliseconds (Day-Time interval)
-            return new double[]{
-                    (double) raw.getInterval().getMonths(),
-                    (double) raw.getInterval().getMilliseconds()
-            };
+
+    /**
+     * @Description
+     * Runs a Mongo find or aggregate and returns a cursor that reads the result page by page instead of all at once: MongoCursor.next(
+     * maxDocs ) returns the next documents as JSON Strings and fetches further frames of fetchSize documents from the server only when
+     * the previous one is used up. Memory stays bounded by one frame plus one page for collections of any size. The first frame is sent
+     * with the response of the statement, its size is chosen by the server.
+     * 
+     * @param namespace The Mongo namespace
+     * @param query The Mongo query, e.g. db.c.find({}). Only reads (find, aggregate, distinct, ...) may be opened as cursor.
+     * @param fetchSize Documents per fetchResult call to the server
+     * @return The cursor. The caller closes it unless it reads it to the end.
+     */
+    public MongoCursor openMongoCursor( String namespace, String query, int fetchSize ) {
+        return openMongoCursor( namespace, query, fetchSize, null );
+    }
+
+
+    /**
+     * @Description
+     * Same as openMongoCursor( namespace, query, fetchSize ), but every page is returned as the columnar package of executeMongo(
+     * language, namespace, query, paths ): one double[] or String[] per path, no JSON.
+     * 
+     * @param paths The paths to extract, e.g. { "name", "address.city", "scores[0]" }, null for JSON documents
+     */
+    public MongoCursor openMongoCursor( String namespace, String query, int fetchSize, String[] paths ) {
+        if ( fetchSize <= 0 ) {
+            throw new IllegalArgumentException( "fetchSize must be positive." );
         }
-        // case 8
-        if ( typeName.equals( "STRING" ) ) {
-            String result = raw.getString().getString();
-            return result;
+        String operation = extractMongoOperation( query );
+        if ( !MONGO_READ_OPERATIONS.contains( operation ) && !operation.equals( "aggregate" ) ) {
+            throw new IllegalArgumentException( "Only reads can be opened as cursor, got " + ( operation.isEmpty() ? query : operation ) + ". Use executeMongo." );
+        }
+        if ( paths != null ) {
+            new DocumentPaths( paths ); // fail on a malformed path before the query runs
         }
+        QueryDeadline deadline = beginExecution( defaultTimeoutMillis / 1000.0 );
+        traceStart( "mongo", namespace, query );
+        try {
+            polyconnection.openIfNeeded();
+            traceLap( QueryTracer.Trace.CONNECT );
+            PolyConnection polyConnection = polyconnection.getConnection().unwrap( PolyConnection.class );
+            PrismInterfaceClient client = polyConnection.getPrismInterfaceClient();
+            int networkTimeout = polyConnection.getNetworkTimeout();
 
-        // case 4
-        if ( typeName.equals( "BINARY" ) ) {
-            byte[] result = raw.getBinary().getBinary().toByteArray();
-            return result;
+            org.polypheny.jdbc.dependency.prism.StatementResponse response = awaitStatementResponse( sendStatement( client, "mongo", namespace, query, deadline.prismTimeout( networkTimeout ) ), deadline );
+            traceLap( QueryTracer.Trace.EXECUTE );
+            org.polypheny.jdbc.dependency.prism.StatementResult result = response.getResult();
+            if ( !result.hasFrame() || result.getFrame().getResultCase() != org.polypheny.jdbc.dependency.prism.Frame.ResultCase.DOCUMENT_FRAME ) {
+                client.closeStatement( response.getStatementId(), networkTimeout );
+                throw new UnsupportedOperationException( "The query returned " + ( result.hasFrame() ? "a " + result.getFrame().getResultCase() : "the scalar " + result.getScalar() ) + " instead of documents. Use executeMongo." );
+            }
+            return new MongoCursor( this, client, polyconnection.generation(), response.getStatementId(), networkTimeout, fetchSize, paths, result.getFrame() );
+
+        } catch ( SQLException e ) {
+            throw deadline.isCancelled() ? deadline.cancellation( e ) : translateException( e );
+        } catch ( RuntimeException e ) {
+            throw deadline.isCancelled() ? deadline.cancellation( e ) : e;
+        } catch ( Exception e ) {
+            throw deadline.isCancelled() ? deadline.cancellation( e ) : new RuntimeException( "Opening the Mongo cursor failed: " + e.getMessage(), e );
+        } finally {
+            endExecution( deadline );
         }
+    }
 
-        // case 11 
-        if ( typeName.equals( "NULL" ) ) {
-            if ( instantiatedColumnTypes[colIndex] == "String" ) {
-                return null;
+
+    /**
+     * @Description
+     * Reads the next page of a MongoCursor: takes documents from its current frame and fetches the next frame from the server whenever
+     * it is used up, until maxDocs documents are collected or the result ends. Runs as an execution of this executor, so the default
+     * timeout and cancelCurrent() apply to every page. The documents count as returned only once the page is built; a page that fails
+     * hands them back to the cursor for the next call.
+     */
+    Object nextMongoPage( MongoCursor cursor, int maxDocs ) {
+        if ( cursor.generation != polyconnection.generation() ) {
+            cursor.invalidate();
+            throw new IllegalStateException( "The Mongo cursor was invalidated by a reconnect: its statement lived on the previous connection. Open a new cursor." );
+        }
+        QueryDeadline deadline = beginExecution( defaultTimeoutMillis / 1000.0 );
+        List<ProtoDocument> documents = new ArrayList<>( Math.min( maxDocs, Math.max( cursor.fetchSize, cursor.buffered() ) ) );
+        try {
+            while ( documents.size() < maxDocs ) {
+                if ( cursor.buffered() > 0 ) {
+                    documents.addAll( cursor.take( maxDocs - documents.size() ) );
+                    continue;
+                }
+                if ( !cursor.hasMoreFrames() ) {
+                    break;
+                }
+                deadline.beginWait();
+                try {
+                    cursor.setFrame( cursor.client.fetchResult( cursor.statementId, deadline.prismTimeout( cursor.networkTimeout ), cursor.fetchSize ) );
+                } finally {
+                    deadline.endWait();
+                }
             }
-            if ( instantiatedColumnTypes[colIndex] == "byte[]" ) {
-                return null;
+            Object page;
+            if ( cursor.paths == null ) {
+                page = protoDocumentListToJava( documents );
+            } else {
+                DocumentPaths walker = new DocumentPaths( cursor.paths );
+                addDocuments( walker, documents );
+                page = pathsToJava( walker );
             }
-            if ( instantiatedColumnTypes[colIndex] == "Double" ) {
-                return Double.NaN;
+            cursor.delivered( documents.size() );
+            return page;
+
+        } catch ( SQLException e ) {
+            cursor.putBack( documents );
+            throw deadline.isCancelled() ? deadline.cancellation( e ) : translateException( e );
+        } catch ( Exception e ) {
+            cursor.putBack( documents );
+            throw deadline.isCancelled() ? deadline.cancellation( e ) : new RuntimeException( "Reading the Mongo cursor failed: " + e.getMessage(), e );
+        } finally {
+            endExecution( deadline );
+        }
+    }
+
+
+    /**
+     * Closes the server statement of a MongoCursor, with the connection marked as in use so the keepalive does not ping it meanwhile.
+     */
+    void closeMongoStatement( MongoCursor cursor ) throws Exception {
+        polyconnection.beginUse();
+        try {
+            cursor.client.closeStatement( cursor.statementId, cursor.networkTimeout );
+        } finally {
+            polyconnection.endUse();
+        }
+    }
+
+
+    //TODO: parametrize those statements
+    public Object executeMongo( String language, String namespace, String query ) {
+        return executeMongo( language, namespace, query, defaultTimeoutMillis / 1000.0 );
+    }
+
+
+    /**
+     * @Description
+     * Same as executeMongo( language, namespace, query ), but the call must finish within timeoutSeconds. The Prism call only gets the
+     * remaining time as its timeout and the wait for the response is interrupted at the deadline.
+     * 
+     * @param timeoutSeconds The deadline of this call in seconds. 0 means no deadline.
+     */
+    public Object executeMongo( String language, String namespace, String query, double timeoutSeconds ) {
+        return executeMongo( language, namespace, query, timeoutSeconds, null );
+    }
+
+
+    /**
+     * Runs a Mongo statement with the read retry: reads (find, count, ...) are retried once on a fresh connection if the server dropped
+     * the old one. With paths, the documents are reduced to the values at those paths (see executeMongo( language, namespace, query,
+     * paths )), otherwise they are returned as JSON.
+     */
+    private Object executeMongo( String language, String namespace, String query, double timeoutSeconds, String[] paths ) {
+        try {
+            return runMongo( language, namespace, query, timeoutSeconds, paths );
+        } catch ( RuntimeException e ) {
+            if ( !( e instanceof CancellationException ) && !( e instanceof MemoryGovernor.BudgetExceededException ) && MONGO_READ_OPERATIONS.contains( extractMongoOperation( query ) ) && polyconnection.reconnectIfLost() ) {
+                return runMongo( language, namespace, query, timeoutSeconds, paths );
             }
-            if ( instantiatedColumnTypes[colIndex] == "double[]" ) {
-                return new double[]{ Double.NaN, Double.NaN };
+            throw e;
+        }
+    }
+
+
+    private Object runMongo( String language, String namespace, String query, double timeoutSeconds, String[] paths ) {
+        QueryDeadline deadline = beginExecution( timeoutSeconds );
+        traceStart( language, namespace, query );
+        try {
+            polyconnection.openIfNeeded();
+            traceLap( QueryTracer.Trace.CONNECT );
+
+            // 1. Get the raw client directly from the unwrapped PolyConnection
+            PolyConnection polyConnection = polyconnection.getConnection().unwrap( PolyConnection.class );
+            PrismInterfaceClient client = polyConnection.getPrismInterfaceClient();
+            int networkTimeout = polyConnection.getNetworkTimeout();
+
+            // 2. + 3. Send the statement, then 4. - 6. wait for its response and convert it
+            org.polypheny.jdbc.utils.CallbackQueue<org.polypheny.jdbc.dependency.prism.StatementResponse> callback = sendStatement( client, language, namespace, query, deadline.prismTimeout( networkTimeout ) );
+            if ( paths == null ) {
+                return awaitMongoResult( callback, deadline );
             }
+            return awaitMongoPaths( client, networkTimeout, callback, deadline, new DocumentPaths( paths ) );
 
+        } catch ( SQLException e ) {
+            throw deadline.isCancelled() ? deadline.cancellation( e ) : translateException( e );
+        } catch ( MemoryGovernor.BudgetExceededException e ) {
+            throw e;
+        } catch ( Exception e ) {
+            throw deadline.isCancelled() ? deadline.cancellation( e ) : new RuntimeException( "Direct Mongo execution failed: " + e.getMessage(), e );
+        } finally {
+            endExecution( deadline );
         }
-        // case 16
-        if ( typeName.equals( "LIST" ) ) {
-            // Use the binary walker to build the JSON string for the list
-            protoListToJson( raw.getList(), sb );
-            return raw != null ? sb.toString() : "[]";
+    }
+
+
+    /**
+     * @Description
+     * Blocks until the response of a statement sent by sendStatement arrived, then walks all its document frames and extracts the paths,
+     * straight from the raw Prism frames. Scalar results (e.g. update counts) are returned as double.
+     */
+    private Object awaitMongoPaths( PrismInterfaceClient client, int networkTimeout, org.polypheny.jdbc.utils.CallbackQueue<org.polypheny.jdbc.dependency.prism.StatementResponse> callback, QueryDeadline deadline, DocumentPaths walker ) throws Exception {
+        org.polypheny.jdbc.dependency.prism.StatementResponse response = awaitStatementResponse( callback, deadline );
+        traceLap( QueryTracer.Trace.EXECUTE );
+        org.polypheny.jdbc.dependency.prism.StatementResult result = response.getResult();
+        if ( !result.hasFrame() ) {
+            return (double) result.getScalar();
         }
-        // case 18
-        if ( typeName.equals( "DOCUMENT" ) ) {
-            protoDocumentToJson( raw.getDocument(), sb );
-            return raw != null ? sb.toString() : "{}";
+        org.polypheny.jdbc.dependency.prism.Frame frame = result.getFrame();
+        while ( true ) {
+            if ( frame.getResultCase() != org.polypheny.jdbc.dependency.prism.Frame.ResultCase.DOCUMENT_FRAME ) {
+                throw new UnsupportedOperationException( "Path extraction needs a document result, got " + frame.getResultCase() );
+            }
+            addDocuments( walker, frame.getDocumentFrame().getDocumentsList() );
+            if ( frame.getIsLast() ) {
+                break;
+            }
+            deadline.beginWait();
+            try {
+                frame = client.fetchResult( response.getStatementId(), deadline.prismTimeout( networkTimeout ), PRISM_FETCH_SIZE );
+            } finally {
+                deadline.endWait();
+            }
         }
+        traceLap( QueryTracer.Trace.FETCH );
+        return pathsToJava( walker );
+    }
 
-        // case 19
-        if ( typeName.equals( "FILE" ) ) {
-            // Use the binary walker to build the JSON string for the list
-            byte[] file = raw.getFile().getBinary().toByteArray();
-            return file;
+
+    /**
+     * @Description
+     * Sends one statement over the Prism interface WITHOUT waiting for the answer. The returned queue receives the response once the
+     * server is done, so several statements can be in flight at the same time (see executeBatchMongo).
+     * 
+     * @return The callback queue the response of this statement will arrive in
+     */
+    private org.polypheny.jdbc.utils.CallbackQueue<org.polypheny.jdbc.dependency.prism.StatementResponse> sendStatement( PrismInterfaceClient client, String language, String namespace, String query, int timeout ) throws Exception {
+        // 2. Prepare the callback queue just like PolyStatement does internally
+        // Note: CallbackQueue and Response are part of the org.polypheny.jdbc packages
+        org.polypheny.jdbc.utils.CallbackQueue<org.polypheny.jdbc.dependency.prism.StatementResponse> callback = new org.polypheny.jdbc.utils.CallbackQueue<>( org.polypheny.jdbc.dependency.prism.Response::getStatementResponse );
+
+        // 3. Execute the statement - this sends the gRPC request
+        client.executeUnparameterizedStatement( namespace, language, query, callback, timeout );
+        return callback;
+    }
+
+
+    /**
+     * @Description
+     * Blocks until the response of a statement sent by sendStatement arrived and returns the response that carries the result. The wait
+     * is interrupted if the deadline passes or the execution is cancelled.
+     */
+    private org.polypheny.jdbc.dependency.prism.StatementResponse awaitStatementResponse( org.polypheny.jdbc.utils.CallbackQueue<org.polypheny.jdbc.dependency.prism.StatementResponse> callback, QueryDeadline deadline ) throws Exception {
+        deadline.beginWait();
+        try {
+            // 4. Retrieve the response directly from the queue
+            org.polypheny.jdbc.dependency.prism.StatementResponse response;
+            do {
+                response = (org.polypheny.jdbc.dependency.prism.StatementResponse) callback.takeNext();
+                // We ignore the statementId management here for simplicity as we aren't using prepared statements
+            } while ( !response.hasResult() );
+
+            // 5. Await completion to ensure the network stream is finished
+            callback.awaitCompletion();
+            return response;
+        } finally {
+            deadline.endWait();
         }
-        // case 0
-        if ( typeName.equals( "VALUE_NOT_SET" ) ) {
-            throw new RuntimeException( "Internal Error: DriverToJava failed. Reason: VALUE_NOT_SET case was hit." );
+    }
+
+
+    /**
+     * @Description
+     * Blocks until the response of a statement sent by sendStatement arrived and converts it: document frames become a List<String> of JSON
+     * documents, scalar results a double.
+     */
+    private Object awaitMongoResult( org.polypheny.jdbc.utils.CallbackQueue<org.polypheny.jdbc.dependency.prism.StatementResponse> callback, QueryDeadline deadline ) throws Exception {
+        org.polypheny.jdbc.dependency.prism.StatementResult result = awaitStatementResponse( callback, deadline ).getResult();
+        traceLap( QueryTracer.Trace.EXECUTE );
+
+        // 6. Check for the raw Protobuf data: the Frame
+        if ( result.hasFrame() ) {
+            org.polypheny.jdbc.dependency.prism.Frame rawFrame = result.getFrame();
+
+            if ( rawFrame.getResultCase() == org.polypheny.jdbc.dependency.prism.Frame.ResultCase.DOCUMENT_FRAME ) {
+                // Advantage: No DocumentResult or PolyDocument objects were ever created.
+                List<ProtoDocument> rawDocs = rawFrame.getDocumentFrame().getDocumentsList();
+                return protoDocumentListToJava( rawDocs );
+            }
+
+            // Handle Relational Frame if necessary (optional fallback)
+            throw new UnsupportedOperationException( "Relational results in Mongo execution not supported by this bypass." );
+        } else {
+            //TODO: switch to a long here or convert it into String maybe.
+            // CASE: Scalar Result (e.g., an update count)
+            return (double) result.getScalar();
+        }
+    }
+
+
+    /**
+     * @Description
+     * Executes a Cypher query over the Prism interface. The result type depends on what the query returns:
+     * - graph results (nodes/edges) → GraphResult with columnar node arrays and CSR-ordered edge index arrays
+     * - tabular results (e.g. RETURN n.name, count(*)) → the same Object[]{ colNames, instantiatedColumnTypes, resultColumns } package as executeSql
+     * - document results → List<String> of JSON documents
+     * - no result (e.g. CREATE) → the update count as double
+     * All frames of the result are fetched, not only the first one.
+     *
+     * @param namespace The graph namespace
+     * @param query The Cypher query
+     * @return GraphResult, Object[], List<String> or Double as described above
+     */
+    public Object executeCypher( String namespace, String query ) {
+        return executeCypher( namespace, query, defaultTimeoutMillis / 1000.0 );
+    }
+
+
+    /**
+     * @Description
+     * Same as executeCypher( namespace, query ), but the call must finish within timeoutSeconds. The deadline covers the execution, every
+     * fetch of a further frame and the decoding.
+     * 
+     * @param timeoutSeconds The deadline of this call in seconds. 0 means no deadline.
+     */
+    public Object executeCypher( String namespace, String query, double timeoutSeconds ) {
+        QueryDeadline deadline = beginExecution( timeoutSeconds );
+        traceStart( "cypher", namespace, query );
+        try {
+            polyconnection.openIfNeeded();
+            traceLap( QueryTracer.Trace.CONNECT );
+            PolyConnection polyConnection = polyconnection.getConnection().unwrap( PolyConnection.class );
+            PrismInterfaceClient client = polyConnection.getPrismInterfaceClient();
+            int networkTimeout = polyConnection.getNetworkTimeout();
+
+            org.polypheny.jdbc.dependency.prism.StatementResponse response = awaitStatementResponse( sendStatement( client, "cypher", namespace, query, deadline.prismTimeout( networkTimeout ) ), deadline );
+            traceLap( QueryTracer.Trace.EXECUTE );
+            org.polypheny.jdbc.dependency.prism.StatementResult result = response.getResult();
+            if ( !result.hasFrame() ) {
+                return (double) result.getScalar();
+            }
+
+            // Collect every frame of the result, the first one only holds the first fetch size rows.
+            List<org.polypheny.jdbc.dependency.prism.Frame> frames = new ArrayList<>();
+            org.polypheny.jdbc.dependency.prism.Frame frame = result.getFrame();
+            frames.add( frame );
+            try {
+                while ( !frame.getIsLast() ) {
+                    deadline.beginWait();
+                    try {
+                        frame = client.fetchResult( response.getStatementId(), deadline.prismTimeout( networkTimeout ), PRISM_FETCH_SIZE );
+                    } finally {
+                        deadline.endWait();
+                    }
+                    frames.add( frame );
+                }
+            } finally {
+                // everything is read (or the read failed): the statement is of no further use on the server
+                try {
+                    client.closeStatement( response.getStatementId(), networkTimeout );
+                } catch ( Exception ignored ) {
+                    // best effort: the server drops the statement with the connection anyway
+                }
+            }
+            traceLap( QueryTracer.Trace.FETCH );
+
+            switch ( frames.get( 0 ).getResultCase() ) {
+                case GRAPH_FRAME:
+                    return graphFramesToJava( frames );
+                case RELATIONAL_FRAME:
+                    return relationalFramesToJava( frames );
+                case DOCUMENT_FRAME:
+                    List<ProtoDocument> documents = new ArrayList<>();
+                    for ( org.polypheny.jdbc.dependency.prism.Frame f : frames ) {
+                        documents.addAll( f.getDocumentFrame().getDocumentsList() );
+                    }
+                    return protoDocumentListToJava( documents );
+                default:
+                    throw new UnsupportedOperationException( "Unhandled Cypher result frame: " + frames.get( 0 ).getResultCase() );
+            }
+
+        } catch ( SQLException e ) {
+            throw deadline.isCancelled() ? deadline.cancellation( e ) : translateException( e );
+        } catch ( Exception e ) {
+            throw deadline.isCancelled() ? deadline.cancellation( e ) : new RuntimeException( "Cypher execution failed: " + e.getMessage(), e );
+        } finally {
+            endExecution( deadline );
+        }
+    }
+
+
+    /**
+     * @Description
+     * Decodes graph frames into a GraphResult in one pass over the nodes and one over the edges. Node ids are mapped to indices with a
+     * primitive IdIndex, edge endpoints that are not part of the node list (e.g. RETURN r) are added as nodes without labels/properties.
+     * Labels are dictionary encoded, properties and edge ids stay in the protobuf nodes and edges until GraphResult is asked for them.
+     * Finally the edges are brought into CSR order (sorted by source index) with a counting sort.
+     */
+    private GraphResult graphFramesToJava( List<org.polypheny.jdbc.dependency.prism.Frame> frames ) throws Exception {
+        int nodeEstimate = 0;
+        int edgeCount = 0;
+        for ( org.polypheny.jdbc.dependency.prism.Frame frame : frames ) {
+            nodeEstimate += frame.getGraphFrame().getNodesList().size();
+            edgeCount += frame.getGraphFrame().getEdgesList().size();
+        }
+
+        GraphResult.IdIndex index = new GraphResult.IdIndex( nodeEstimate + edgeCount );
+        GraphResult.IdIndex labelIndex = new GraphResult.IdIndex( 16 );
+        List<String> labels = new ArrayList<>();
+        List<String> nodeIds = new ArrayList<>( nodeEstimate );
+        List<org.polypheny.jdbc.dependency.prism.ProtoNode> nodes = new ArrayList<>( nodeEstimate );
+        int[] nodeLabelCodes = new int[nodeEstimate];
+
+        // 1. Nodes: id → index
+        for ( org.polypheny.jdbc.dependency.prism.Frame frame : frames ) {
+            checkCancelled();
+            List<org.polypheny.jdbc.dependency.prism.ProtoNode> frameNodes = frame.getGraphFrame().getNodesList();
+            for ( org.polypheny.jdbc.dependency.prism.ProtoNode node : frameNodes ) {
+                int i = nodeIds.size();
+                if ( index.putIfAbsent( node.getId(), i ) == i ) {
+                    nodeIds.add( node.getId() );
+                    nodes.add( node );
+                    nodeLabelCodes[i] = labelCode( labelIndex, labels, node.getLabelsList() );
+                }
+            }
+            admit( frameNodes.size() * GRAPH_NODE_BYTES, frameNodes.size() );
+        }
+        int listed = nodeIds.size();
+
+        // 2. Edges: endpoints → node indices (arrival order)
+        int[] source = new int[edgeCount];
+        int[] target = new int[edgeCount];
+        int[] edgeLabelCodes = new int[edgeCount];
+        org.polypheny.jdbc.dependency.prism.ProtoEdge[] edges = new org.polypheny.jdbc.dependency.prism.ProtoEdge[edgeCount];
+        int e = 0;
+        for ( org.polypheny.jdbc.dependency.prism.Frame frame : frames ) {
+            checkCancelled();
+            List<org.polypheny.jdbc.dependency.prism.ProtoEdge> frameEdges = frame.getGraphFrame().getEdgesList();
+            for ( org.polypheny.jdbc.dependency.prism.ProtoEdge edge : frameEdges ) {
+                source[e] = nodeIndex( index, edge.getSource(), nodeIds, nodes );
+                target[e] = nodeIndex( index, edge.getTarget(), nodeIds, nodes );
+                edgeLabelCodes[e] = labelCode( labelIndex, labels, edge.getLabelsList() );
+                edges[e] = edge;
+                e++;
+            }
+            admit( frameEdges.size() * GRAPH_EDGE_BYTES, frameEdges.size() );
+        }
+
+        // 3. CSR order
+        int nodeCount = nodeIds.size();
+        int[] offsets = new int[nodeCount + 1];
+        int[] order = GraphResult.csrOrder( source, nodeCount, offsets );
+        int[] csrSource = new int[edgeCount];
+        int[] csrTarget = new int[edgeCount];
+        int[] csrLabelCodes = new int[edgeCount];
+        org.polypheny.jdbc.dependency.prism.ProtoEdge[] csrEdges = new org.polypheny.jdbc.dependency.prism.ProtoEdge[edgeCount];
+        for ( int k = 0; k < edgeCount; k++ ) {
+            int from = order[k];
+            csrSource[k] = source[from];
+            csrTarget[k] = target[from];
+            csrLabelCodes[k] = edgeLabelCodes[from];
+            csrEdges[k] = edges[from];
+        }
+
+        // Endpoint nodes added in step 2 have no labels
+        int[] nodeCodes = Arrays.copyOf( nodeLabelCodes, nodeCount );
+        if ( nodeCount > listed ) {
+            Arrays.fill( nodeCodes, listed, nodeCount, labelCode( labelIndex, labels, Collections.<String>emptyList() ) );
+        }
+        return new GraphResult( nodeIds.toArray( new String[0] ), labels.toArray( new String[0] ), nodeCodes, nodes.toArray( new org.polypheny.jdbc.dependency.prism.ProtoNode[0] ), csrSource, csrTarget, csrLabelCodes, csrEdges, offsets );
+    }
+
+
+    /**
+     * @return The code of the labels (joined with ':') in the label dictionary, which is extended on first sight
+     */
+    private static int labelCode( GraphResult.IdIndex labelIndex, List<String> labels, List<String> elementLabels ) {
+        String joined = elementLabels.isEmpty() ? "" : elementLabels.size() == 1 ? elementLabels.get( 0 ) : String.join( ":", elementLabels );
+        int code = labelIndex.putIfAbsent( joined, labels.size() );
+        if ( code == labels.size() ) {
+            labels.add( joined );
+        }
+        return code;
+    }
+
+
+    private static int nodeIndex( GraphResult.IdIndex index, String id, List<String> nodeIds, List<org.polypheny.jdbc.dependency.prism.ProtoNode> nodes ) {
+        int known = index.putIfAbsent( id, nodeIds.size() );
+        if ( known == nodeIds.size() ) {
+            nodeIds.add( id );
+            nodes.add( null );
+        }
+        return known;
+    }
+
+
+    /**
+     * @Description
+     * Decodes relational frames into the same column-based package that handleResultSet produces. Columns that only hold numbers,
+     * booleans and NULLs become double[] (NULL → NaN), every other column becomes String[] (nested values as JSON).
+     */
+    private Object relationalFramesToJava( List<org.polypheny.jdbc.dependency.prism.Frame> frames ) throws Exception {
+        List<org.polypheny.jdbc.dependency.prism.ColumnMeta> meta = frames.get( 0 ).getRelationalFrame().getColumnMetaList();
+        int colCount = meta.size();
+        List<List<ProtoValue>> columns = new ArrayList<>( colCount );
+        for ( int c = 0; c < colCount; c++ ) {
+            columns.add( new ArrayList<ProtoValue>() );
+        }
+        for ( org.polypheny.jdbc.dependency.prism.Frame frame : frames ) {
+            checkCancelled();
+            List<org.polypheny.jdbc.dependency.prism.Row> rows = frame.getRelationalFrame().getRowsList();
+            for ( org.polypheny.jdbc.dependency.prism.Row row : rows ) {
+                List<ProtoValue> values = row.getValuesList();
+                for ( int c = 0; c < colCount; c++ ) {
+                    columns.get( c ).add( values.get( c ) );
+                }
+            }
+            admit( rows.size() * colCount * FRAME_CELL_BYTES, rows.size() );
+        }
+        if ( colCount == 0 || columns.get( 0 ).isEmpty() ) {
+            return null;
+        }
+
+        String[] colNames = new String[colCount];
+        String[] instantiatedColumnTypes = new String[colCount];
+        Object[] resultColumns = new Object[colCount];
+        for ( int c = 0; c < colCount; c++ ) {
+            colNames[c] = meta.get( c ).getColumnLabel();
+            Object[] column = protoColumnToJava( columns.get( c ) );
+            instantiatedColumnTypes[c] = (String) column[0];
+            resultColumns[c] = column[1];
+        }
+        return new Object[]{ colNames, instantiatedColumnTypes, resultColumns };
+    }
+
+
+    /**
+     * @Description
+     * Converts a column of raw ProtoValues: if it only holds numbers, booleans and NULLs it becomes a double[] (NULL → NaN), otherwise
+     * a String[] (strings as they are, nested values as JSON, NULL → null). A Java null entry (e.g. a missing document path) counts as NULL.
+     * 
+     * @return Object[]{ String instantiatedColumnType, Object column }
+     */
+    static Object[] protoColumnToJava( List<ProtoValue> values ) throws Exception {
+        boolean numeric = true;
+        for ( ProtoValue v : values ) {
+            if ( v == null ) {
+                continue;
+            }
+            switch ( v.getValueCase() ) {
+                case BOOLEAN:
+                case INTEGER:
+                case LONG:
+                case FLOAT:
+                case DOUBLE:
+                case BIG_DECIMAL:
+                case NULL:
+                    break;
+                default:
+                    numeric = false;
+            }
+        }
+        if ( numeric ) {
+            double[] column = new double[values.size()];
+            for ( int r = 0; r < column.length; r++ ) {
+                ProtoValue v = values.get( r );
+                column[r] = v == null ? Double.NaN : protoNumberToDouble( v );
+            }
+            return new Object[]{ "double", column };
+        }
+        JsonWriter json = JsonWriter.local();
+        String[] column = new String[values.size()];
+        for ( int r = 0; r < column.length; r++ ) {
+            ProtoValue v = values.get( r );
+            if ( v == null || v.getValueCase() == ProtoValue.ValueCase.NULL ) {
+                column[r] = null;
+            } else if ( v.getValueCase() == ProtoValue.ValueCase.STRING ) {
+                column[r] = v.getString().getString();
+            } else {
+                column[r] = json.toJson( v );
+            }
+        }
+        return new Object[]{ "String", column };
+    }
+
+
+    /**
+     * @Description
+     * Converts a numeric, boolean or NULL ProtoValue to double the same way DriverToJava does (booleans → 1/0, NULL → NaN).
+     */
+    private static double protoNumberToDouble( ProtoValue v ) {
+        switch ( v.getValueCase() ) {
+            case BOOLEAN:
+                return v.getBoolean().getBoolean() ? 1 : 0;
+            case INTEGER:
+                return v.getInteger().getInteger();
+            case LONG:
+                return v.getLong().getLong();
+            case FLOAT:
+                return v.getFloat().getFloat();
+            case DOUBLE:
+                return v.getDouble().getDouble();
+            case BIG_DECIMAL:
+                java.math.BigInteger unscaledInt = new java.math.BigInteger( v.getBigDecimal().getUnscaledValue().toByteArray() );
+                return new java.math.BigDecimal( unscaledInt, v.getBigDecimal().getScale() ).doubleValue();
+            default:
+                return Double.NaN;
+        }
+    }
+
+
+    /**
+     * @Description
+     * Decodes the elements of one ARRAY value if they are all numbers, booleans (1/0) or NULLs (NaN): a float[] if every non-NULL
+     * element is a FLOAT (e.g. REAL embeddings, half the memory of double), a double[] otherwise.
+     *
+     * @return The float[] or double[], or null if the list holds anything else (strings, nested lists, documents)
+     */
+    private static Object protoListToNumbers( ProtoList list ) {
+        int size = list.getValuesCount();
+        boolean floats = true;
+        for ( int i = 0; i < size; i++ ) {
+            switch ( list.getValues( i ).getValueCase() ) {
+                case FLOAT:
+                case NULL:
+                    break;
+                case BOOLEAN:
+                case INTEGER:
+                case LONG:
+                case DOUBLE:
+                case BIG_DECIMAL:
+                    floats = false;
+                    break;
+                default:
+                    return null;
+            }
+        }
+        if ( floats && size > 0 ) {
+            float[] values = new float[size];
+            for ( int i = 0; i < size; i++ ) {
+                ProtoValue v = list.getValues( i );
+                values[i] = v.getValueCase() == ProtoValue.ValueCase.FLOAT ? v.getFloat().getFloat() : Float.NaN;
+            }
+            return values;
+        }
+        double[] values = new double[size];
+        for ( int i = 0; i < size; i++ ) {
+            values[i] = protoNumberToDouble( list.getValues( i ) );
+        }
+        return values;
+    }
+
+
+    /*
+    // check that this function works.
+    public Object executeMongo( String language, String namespace, String query ) {
+        try {
+            polyconnection.openIfNeeded();
+            Connection connection = polyconnection.getConnection();
+            PolyConnection polyConnection = connection.unwrap( PolyConnection.class );
+            PolyStatement polyStatement = polyConnection.createPolyStatement();
+    
+            // 1. Execute and get the Result base object
+            Result result = polyStatement.execute( namespace, language, query );
+    
+            switch ( result.getResultType() ) {
+                case DOCUMENT:
+                    // --- THE HEIST STARTS HERE ---
+                    // 2. Lockpick the private 'frame' field from the Result base class to iterate the frames directly instead of walking the slow driver stuff.
+                    Field frameField = org.polypheny.jdbc.multimodel.Result.class.getDeclaredField( "frame" );
+                    frameField.setAccessible( true );
+                    org.polypheny.jdbc.dependency.prism.Frame rawFrame = (org.polypheny.jdbc.dependency.prism.Frame) frameField.get( result );
+    
+                    // 3. Verify it's actually a document frame
+                    if ( rawFrame.getResultCase() == org.polypheny.jdbc.dependency.prism.Frame.ResultCase.DOCUMENT_FRAME ) {
+                        // 4. Get the raw List<ProtoDocument> - NO PolyDocuments or HashMaps created yet!
+                        List<ProtoDocument> rawDocs = rawFrame.getDocumentFrame().getDocumentsList();
+    
+                        // 5. Walk the raw Protobufs directly to JSON for MATLAB
+                        return RawDocumentsToMatlab( rawDocs );
+                    }
+    
+                case SCALAR:
+                    ScalarResult scalarResult = result.unwrap( ScalarResult.class );
+                    return (double) scalarResult.getScalar();
+    
+                default:
+                    throw new UnsupportedOperationException( "Unhandled result type: " + result.getResultType() );
+            }
+        } catch ( SQLException e ) {
+            throw translateException( e );
+        } catch ( Exception e ) {
+            throw new RuntimeException( "Mongo execution failed: " + e.getMessage(), e );
+        }
+    }
+    */
+
+
+    //TODO check that this function works
+    private List<String> protoDocumentListToJava( List<ProtoDocument> rawDocs ) throws Exception {
+        List<String> jsonDocuments = new ArrayList<>( rawDocs.size() );
+        JsonWriter json = JsonWriter.local(); // Reuse buffer
+
+        long bytes = 0;
+        for ( ProtoDocument doc : rawDocs ) {
+            String document = json.toJson( doc );
+            jsonDocuments.add( document );
+            bytes += MemoryGovernor.estimateBytes( document );
+            if ( jsonDocuments.size() % decodeFrameRows == 0 ) {
+                admit( bytes, decodeFrameRows );
+                bytes = 0;
+            }
+        }
+        admit( bytes, jsonDocuments.size() % decodeFrameRows );
+        QueryTracer.Trace trace = this.trace;
+        if ( trace != null ) {
+            long total = 0;
+            for ( String document : jsonDocuments ) {
+                total += MemoryGovernor.estimateBytes( document );
+            }
+            trace.lap( QueryTracer.Trace.DECODE );
+            trace.addRows( jsonDocuments.size(), total );
+        }
+        return jsonDocuments;
+    }
+
+
+    /**
+     * Helper function that handles the ResultSet casting to Java types that align well with what we need to cast types to Matlab in a
+     * performant way. Had we left this function in the .execute(query) as is, the indentation would have made it hard to read.
+     * 
+     * @param <T>
+     * @param resultSet The resultSet returned by the driver.
+     * @return The finished tabled result with all Java types as entries. It is now ready to be cast to Matlab
+     * @throws Exception Will be treated by execute(query)
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Object handleResultSet( PolyphenyResultSet resultSet ) throws Exception {
+        QueryTracer.Trace trace = this.trace;
+        ResultSetMetaData meta = resultSet.getMetaData();
+        int colCount = meta.getColumnCount();
+
+        // ─────────────────────────────
+        // Case 1: Empty Result
+        // ─────────────────────────────
+        if ( !resultSet.next() ) {
+            //System.out.println( "Empty result set." );
+            return null;
+        }
+
+        // ─────────────────────────────
+        // Case 2: Tabular Result (≥1 column, ≥1 row)
+        // ─────────────────────────────
+        String[] colNames = new String[colCount]; // saves the column names to name the columns later
+        String[] colTypeNames = new String[colCount]; // saves the columnTypeNames from Protobuf (e.g. DOCUMENT, STRING, INT,...)
+        String[] instantiatedColumnTypes = new String[colCount]; //saves what type T createJavaTypeArrayList used for the i-th column represented by ArrayList<T>
+        List<ArrayList<T>> columnList = new ArrayList<>( colCount ); // this is the java table that stores every Column in an ArrayList<?>
+
+        for ( int i = 1; i <= colCount; i++ ) {
+
+            //Saves the columnName (e.g. "Student_ID or "Birthdate") of the i-th column of the ResultSet
+            colNames[i - 1] = meta.getColumnName( i );
+
+            //Saves the columnTypeName (e.g. BINARY, INTEGER) of the i-th column of the ResultSet.
+            colTypeNames[i - 1] = meta.getColumnTypeName( i );
+
+            //This creates the proper frame to cast our data into. We changed to a column-based framework to increase performance and reduce
+            //object instantiation. This way we can avoid Object[][] and instead work with Object[]
+            columnList.add( createJavaTypeArrayList( colTypeNames[i - 1], instantiatedColumnTypes, i - 1 ) );
+        }
+        PolyphenyResultSet polyphenyResultSet = (PolyphenyResultSet) resultSet;
+        prepareBlobColumns( colNames, instantiatedColumnTypes );
+
+        // Wide or large results are buffered frame by frame (decodeFrameRows rows at a time) and decoded in parallel. The decision is
+        // made once per result: only if a full frame would hold at least parallelDecodeThreshold cells is it worth to fan out. Results
+        // written to files are decoded in row order, so the file names follow the rows.
+        boolean parallel = parallelDecodeThreshold > 0 && (long) colCount * decodeFrameRows >= parallelDecodeThreshold && blobFiles == null;
+
+        // Cancellation, the deadline and the memory budget are checked once per decodeFrameRows rows, i.e. between frames.
+        long rowsRead = 0;
+
+        // Rows still to be decoded row by row after the parallel loop stopped at the soft memory budget
+        boolean streamRest = false;
+
+        if ( !DriverAccess.isAvailable() ) {
+            // The driver internals could not be resolved (see getAccessorInfo()), so use the slow but safe public JDBC way.
+            do {
+                if ( ++rowsRead % decodeFrameRows == 0 ) {
+                    checkCancelled();
+                    admit( MemoryGovernor.estimateRowBytes( columnList ) * decodeFrameRows, decodeFrameRows );
+                }
+                for ( int i = 1; i <= colCount; i++ ) {
+                    columnList.get( i - 1 ).add( (T) jdbcToJava( resultSet.getObject( i ), instantiatedColumnTypes, i - 1 ) );
+                }
+            } while ( trace == null ? resultSet.next() : trace.next( resultSet ) );
+        } else if ( parallel ) {
+            TypedValue[][] frame = new TypedValue[decodeFrameRows][];
+            int buffered = 0;
+            do {
+                TypedValue[] row = new TypedValue[colCount];
+                for ( int i = 1; i <= colCount; i++ ) {
+                    row[i - 1] = getTypedValue( polyphenyResultSet, i );
+                }
+                frame[buffered++] = row;
+                if ( buffered == decodeFrameRows ) {
+                    checkCancelled();
+                    decodeFrame( frame, buffered, colCount, columnList, instantiatedColumnTypes );
+                    buffered = 0;
+                    if ( admit( MemoryGovernor.estimateRowBytes( columnList ) * decodeFrameRows, decodeFrameRows ) ) {
+                        // Soft budget reached: stop holding a frame of raw rows (and the parallel slots) next to the decoded columns
+                        streamRest = true;
+                        break;
+                    }
+                }
+            } while ( trace == null ? resultSet.next() : trace.next( resultSet ) );
+            if ( buffered > 0 ) {
+                decodeFrame( frame, buffered, colCount, columnList, instantiatedColumnTypes );
+            }
+            streamRest = streamRest && resultSet.next();
+        }
+        if ( DriverAccess.isAvailable() && ( !parallel || streamRest ) ) {
+            // LIST and DOCUMENT values can be massively nested, so they are all written through the one reusable JsonWriter of this
+            // thread instead of a new buffer per call or per value.
+            JsonWriter json = JsonWriter.local();
+            do {
+                if ( ++rowsRead % decodeFrameRows == 0 ) {
+                    checkCancelled();
+                    admit( MemoryGovernor.estimateRowBytes( columnList ) * decodeFrameRows, decodeFrameRows );
+                }
+                for ( int i = 1; i <= colCount; i++ ) {
+                    try {
+                        //1. Retrieve the TypedValue using our LOCKPICK function.
+                        TypedValue tv = getTypedValue( polyphenyResultSet, i );
+
+                        //2. Convert it using our DriverToJava logic.
+                        Object convertedValue = DriverToJava( tv, json, instantiatedColumnTypes, i - 1 );
+
+                        // 3. Shove it into the bucket (List<ArrayList<T>> handles the Object)
+                        columnList.get( i - 1 ).add( (T) convertedValue );
+
+                    } catch ( Exception e ) {
+                        // Fallback: If the heist fails, use the slow, safe JDBC way
+                        throw new RuntimeException( "Conversion logic has failed in QueryExecutor.execute(...)." + e );
+                    }
+                }
+            } while ( trace == null ? resultSet.next() : trace.next( resultSet ) );
+        }
+
+        // Ensure that the colNames and rows have the same number of columns
+        if ( colNames.length != columnList.size() ) {
+            throw new RuntimeException( "Mismatch of colNames and rowData in Queryexecutor.execute(...)" );
+        }
+
+        long rowCount = 0;
+        long decodedBytes = 0;
+        if ( trace != null ) {
+            rowCount = columnList.get( 0 ).size();
+            decodedBytes = MemoryGovernor.estimateRowBytes( columnList ) * rowCount;
+            trace.lap( QueryTracer.Trace.DECODE );
+        }
+
+        Object[] resultColumns = new Object[colCount];
+        for ( int i = 0; i < colCount; i++ ) {
+            resultColumns[i] = mapArrayListToPrimitive( columnList.get( i ), instantiatedColumnTypes, i );
+        }
+        if ( trace != null ) {
+            trace.lap( QueryTracer.Trace.MATERIALIZE );
+            trace.addRows( rowCount, decodedBytes );
+        }
+        // Return the names and the column data separately
+        return new Object[]{ colNames, instantiatedColumnTypes, resultColumns };
+    }
+
+
+    /**
+     * Blob columns as views or files instead of byte[], see setBlobMode(...). Opens the BlobFiles of this result if needed.
+     */
+    private void prepareBlobColumns( String[] colNames, String[] instantiatedColumnTypes ) throws java.io.IOException {
+        String blobs = blobMode;
+        blobFiles = null;
+        for ( int i = 0; i < instantiatedColumnTypes.length; i++ ) {
+            if ( instantiatedColumnTypes[i] == "byte[]" && blobs != "byte[]" ) {
+                instantiatedColumnTypes[i] = blobs;
+                if ( blobs == "file" && blobFiles == null ) {
+                    blobFiles = new BlobFiles( blobDirectory, blobResults.incrementAndGet(), colNames );
+                }
+            }
+        }
+    }
+
+
+    /**
+     * @Description
+     * The decode of executeSqlPacked. The numeric columns are written straight from the row loop into column-major blocks of
+     * decodeFrameRows rows, so no value is boxed and no per column double[] is built. Once the row count is known the blocks are copied
+     * into the packed array and dropped one by one. The other columns are decoded as in handleResultSet (without the parallel decode).
+     * 
+     * @return null for an empty result, a Double for one row with one numeric column, the packed Object[] otherwise (see
+     * executeSqlPacked)
+     */
+    @SuppressWarnings("unchecked")
+    private <T> Object handlePackedResultSet( PolyphenyResultSet resultSet ) throws Exception {
+        QueryTracer.Trace trace = this.trace;
+        ResultSetMetaData meta = resultSet.getMetaData();
+        int colCount = meta.getColumnCount();
+        if ( !resultSet.next() ) {
+            return null;
+        }
+
+        String[] colNames = new String[colCount];
+        String[] instantiatedColumnTypes = new String[colCount];
+        List<ArrayList<T>> otherColumns = new ArrayList<>();
+        int[] slot = new int[colCount]; // position among the numeric (>= 0) or the other columns (-1 - position)
+        int numericCount = 0;
+        for ( int i = 1; i <= colCount; i++ ) {
+            colNames[i - 1] = meta.getColumnName( i );
+            ArrayList<T> column = createJavaTypeArrayList( meta.getColumnTypeName( i ), instantiatedColumnTypes, i - 1 );
+            if ( instantiatedColumnTypes[i - 1] == "Double" ) {
+                slot[i - 1] = numericCount++;
+            } else {
+                slot[i - 1] = -1 - otherColumns.size();
+                otherColumns.add( column );
+            }
+        }
+        prepareBlobColumns( colNames, instantiatedColumnTypes );
+
+        int frameRows = decodeFrameRows;
+        List<double[]> blocks = new ArrayList<>();
+        double[] block = null;
+        int inBlock = frameRows;
+        long rows = 0;
+        JsonWriter json = JsonWriter.local();
+        do {
+            if ( inBlock == frameRows ) {
+                if ( rows > 0 ) {
+                    checkCancelled();
+                    admit( ( 8L * numericCount + MemoryGovernor.estimateRowBytes( otherColumns ) ) * frameRows, frameRows );
+                }
+                if ( ( rows + 1 ) * numericCount > MAX_PACKED_VALUES ) {
+                    throw packedTooLarge( rows + 1, numericCount ); // fail before decoding further blocks that could never be packed
+                }
+                block = new double[frameRows * numericCount];
+                blocks.add( block );
+                inBlock = 0;
+            }
+            for ( int i = 1; i <= colCount; i++ ) {
+                Object value = DriverAccess.isAvailable()
+                        ? DriverToJava( getTypedValue( resultSet, i ), json, instantiatedColumnTypes, i - 1 )
+                        : jdbcToJava( resultSet.getObject( i ), instantiatedColumnTypes, i - 1 );
+                if ( slot[i - 1] >= 0 ) {
+                    block[slot[i - 1] * frameRows + inBlock] = (Double) value;
+                } else {
+                    otherColumns.get( -1 - slot[i - 1] ).add( (T) value );
+                }
+            }
+            inBlock++;
+            rows++;
+        } while ( trace == null ? resultSet.next() : trace.next( resultSet ) );
+        admit( ( 8L * numericCount + MemoryGovernor.estimateRowBytes( otherColumns ) ) * inBlock, inBlock );
+        if ( trace != null ) {
+            trace.lap( QueryTracer.Trace.DECODE );
+        }
+
+        // Scalar fast path, e.g. SELECT COUNT(*)
+        if ( colCount == 1 && numericCount == 1 && rows == 1 ) {
+            return blocks.get( 0 )[0];
+        }
+
+        long values = Math.multiplyExact( rows, (long) numericCount );
+        if ( values > MAX_PACKED_VALUES ) {
+            throw packedTooLarge( rows, numericCount );
+        }
+        int rowCount = (int) rows;
+        double[] packed = new double[(int) values];
+        for ( int b = 0; b < blocks.size(); b++ ) {
+            double[] frame = blocks.get( b );
+            blocks.set( b, null ); // released as soon as it is copied
+            int from = b * frameRows;
+            int n = Math.min( frameRows, rowCount - from );
+            for ( int c = 0; c < numericCount; c++ ) {
+                // column-major: column c occupies packed[c * rows .. (c + 1) * rows - 1]
+                System.arraycopy( frame, c * frameRows, packed, c * rowCount + from, n );
+            }
+        }
+
+        String[] numericNames = new String[numericCount];
+        String[] otherNames = new String[otherColumns.size()];
+        Object[] otherData = new Object[otherColumns.size()];
+        for ( int i = 0; i < colCount; i++ ) {
+            if ( slot[i] >= 0 ) {
+                numericNames[slot[i]] = colNames[i];
+            } else {
+                otherNames[-1 - slot[i]] = colNames[i];
+                otherData[-1 - slot[i]] = mapArrayListToPrimitive( otherColumns.get( -1 - slot[i] ), instantiatedColumnTypes, i );
+            }
+        }
+        if ( trace != null ) {
+            trace.lap( QueryTracer.Trace.MATERIALIZE );
+            trace.addRows( rows, values * 8 );
+        }
+        return new Object[]{ numericNames, packed, new int[]{ rowCount, numericCount }, otherNames, otherData };
+    }
+
+
+    private static RuntimeException packedTooLarge( long rows, int numericCount ) {
+        return new RuntimeException( "The packed result would hold more than " + MAX_PACKED_VALUES + " numeric values (" + rows + " rows x "
+                + numericCount + " numeric columns), more than one Java array can. Use executeSql or executeSqlLazy, or select fewer rows." );
+    }
+
+
+    /**
+     * @Description
+     * Fallback for DriverToJava when the driver internals are not available: maps the object returned by the public
+     * ResultSet.getObject(...) onto the same bucket types that createJavaTypeArrayList chose for the column.
+     * 
+     * @param value The value returned by getObject(...)
+     * @param instantiatedColumnTypes Saves what type T createJavaTypeArrayList used for the i-th column represented by ArrayList<T>
+     * @param colIndex The 0-based column index
+     * @return A java type that is mapped so that it fits into the ArrayList<T> that holds all the column entries
+     */
+    private Object jdbcToJava( Object value, String[] instantiatedColumnTypes, int colIndex ) throws SQLException, java.io.IOException {
+        switch ( instantiatedColumnTypes[colIndex] ) {
+            case "Double":
+                if ( value == null ) {
+                    return Double.NaN;
+                }
+                if ( value instanceof Boolean ) {
+                    return (Boolean) value ? 1.0 : 0.0;
+                }
+                return ( (Number) value ).doubleValue();
+            case "byte[]":
+                if ( value instanceof Blob ) {
+                    Blob blob = (Blob) value;
+                    return blob.getBytes( 1, (int) blob.length() );
+                }
+                return value;
+            case "ByteBuffer":
+                if ( value instanceof Blob ) {
+                    Blob blob = (Blob) value;
+                    return java.nio.ByteBuffer.wrap( blob.getBytes( 1, (int) blob.length() ) ).asReadOnlyBuffer();
+                }
+                return value == null ? null : java.nio.ByteBuffer.wrap( (byte[]) value ).asReadOnlyBuffer();
+            case "file":
+                if ( value instanceof Blob ) {
+                    Blob blob = (Blob) value;
+                    return blobFiles.write( colIndex, out -> {
+                        try ( java.io.InputStream in = blob.getBinaryStream() ) {
+                            return BlobFiles.copy( in, out );
+                        } catch ( SQLException e ) {
+                            throw new java.io.IOException( e.getMessage(), e );
+                        }
+                    } );
+                }
+                if ( value == null ) {
+                    return blobFiles.skip( colIndex );
+                }
+                return blobFiles.write( colIndex, out -> {
+                    out.write( (byte[]) value );
+                    return ( (byte[]) value ).length;
+                } );
+            case "double[]":
+                // Intervals have no public numeric accessor in JDBC, we keep the shape of the fast path.
+                return new double[]{ Double.NaN, Double.NaN };
+            case "List":
+                if ( value instanceof Array ) {
+                    Object numbers = jdbcListToNumbers( (Object[]) ( (Array) value ).getArray() );
+                    if ( numbers != null ) {
+                        return numbers;
+                    }
+                }
+                return value == null ? null : value.toString();
+            default:
+                return value == null ? null : value.toString();
+        }
+    }
+
+
+    /**
+     * The elements of a java.sql.Array as float[] (all Float) or double[] (all numbers, booleans or nulls), null for anything else.
+     */
+    private static Object jdbcListToNumbers( Object[] elements ) {
+        boolean floats = elements.length > 0;
+        for ( Object element : elements ) {
+            if ( element != null && !( element instanceof Number ) && !( element instanceof Boolean ) ) {
+                return null;
+            }
+            floats = floats && ( element == null || element instanceof Float );
+        }
+        if ( floats ) {
+            float[] values = new float[elements.length];
+            for ( int i = 0; i < values.length; i++ ) {
+                values[i] = elements[i] == null ? Float.NaN : (Float) elements[i];
+            }
+            return values;
+        }
+        double[] values = new double[elements.length];
+        for ( int i = 0; i < values.length; i++ ) {
+            Object element = elements[i];
+            values[i] = element == null ? Double.NaN : element instanceof Boolean ? ( (Boolean) element ? 1 : 0 ) : ( (Number) element ).doubleValue();
+        }
+        return values;
+    }
+
+
+    /**
+     * @Description
+     * Decodes one buffered frame of rows on the DECODE_POOL. Wide frames are split by column, so every task owns whole columns and
+     * appends straight into their ArrayLists. Narrow frames (fewer columns than cores) are split into row ranges instead; those tasks
+     * write into a slot matrix that is appended in row order afterwards. Frames below parallelDecodeThreshold cells (e.g. the last,
+     * partial frame) are decoded on the calling thread.
+     * 
+     * @param frame The buffered rows. frame[r][c] is the TypedValue of the c-th column in the r-th row.
+     * @param rows The number of valid rows in frame
+     * @param colCount The number of columns
+     * @param columnList The column buckets created by createJavaTypeArrayList
+     * @param instantiatedColumnTypes Saves what type T createJavaTypeArrayList used for the i-th column represented by ArrayList<T>
+     * @throws Exception if the conversion of any cell fails
+     */
+    @SuppressWarnings("unchecked")
+    private <T> void decodeFrame( TypedValue[][] frame, int rows, int colCount, List<ArrayList<T>> columnList, String[] instantiatedColumnTypes ) throws Exception {
+        List<Callable<Void>> tasks = new ArrayList<>();
+        int parallelism = DecodePool.POOL.getParallelism();
+
+        if ( (long) rows * colCount < parallelDecodeThreshold ) {
+            JsonWriter json = JsonWriter.local();
+            for ( int r = 0; r < rows; r++ ) {
+                for ( int c = 0; c < colCount; c++ ) {
+                    columnList.get( c ).add( (T) DriverToJava( frame[r][c], json, instantiatedColumnTypes, c ) );
+                }
+            }
+            return;
+        }
+
+        if ( colCount >= parallelism ) {
+            // Partition by column: each task decodes whole columns, no shared state between the tasks.
+            for ( int c = 0; c < colCount; c++ ) {
+                final int col = c;
+                tasks.add( () -> {
+                    JsonWriter json = JsonWriter.local();
+                    ArrayList<T> bucket = columnList.get( col );
+                    bucket.ensureCapacity( bucket.size() + rows );
+                    for ( int r = 0; r < rows; r++ ) {
+                        bucket.add( (T) DriverToJava( frame[r][col], json, instantiatedColumnTypes, col ) );
+                    }
+                    return null;
+                } );
+            }
+            runDecodeTasks( tasks );
+            return;
+        }
+
+        // Partition by row range: every task fills its own rows of the slot matrix.
+        Object[][] slots = new Object[colCount][rows];
+        int rangeSize = ( rows + parallelism - 1 ) / parallelism;
+        for ( int start = 0; start < rows; start += rangeSize ) {
+            final int from = start;
+            final int to = Math.min( rows, start + rangeSize );
+            tasks.add( () -> {
+                JsonWriter json = JsonWriter.local();
+                for ( int r = from; r < to; r++ ) {
+                    for ( int c = 0; c < colCount; c++ ) {
+                        slots[c][r] = DriverToJava( frame[r][c], json, instantiatedColumnTypes, c );
+                    }
+                }
+                return null;
+            } );
+        }
+        runDecodeTasks( tasks );
+        for ( int c = 0; c < colCount; c++ ) {
+            ArrayList<T> bucket = columnList.get( c );
+            for ( int r = 0; r < rows; r++ ) {
+                bucket.add( (T) slots[c][r] );
+            }
+        }
+    }
+
+
+    /**
+     * Runs the decode tasks on the DECODE_POOL and rethrows the first failure.
+     */
+    private static void runDecodeTasks( List<Callable<Void>> tasks ) throws Exception {
+        for ( Future<Void> future : DecodePool.POOL.invokeAll( tasks ) ) {
+            try {
+                future.get();
+            } catch ( ExecutionException e ) {
+                Throwable cause = e.getCause();
+                throw cause instanceof Exception ? (Exception) cause : new RuntimeException( cause );
+            }
+        }
+    }
+
+
+    /**
+     * @Description
+     * Sets the threshold above which results are decoded in parallel. A result is decoded frame by frame in parallel if one full
+     * frame (frameRows rows times the number of columns) holds at least cellThreshold cells.
+     * 
+     * @param cellThreshold Minimum number of cells per frame for parallel decoding. 0 or less disables parallel decoding.
+     * @param frameRows Number of rows buffered and decoded together per frame.
+     */
+    public void setParallelDecode( long cellThreshold, int frameRows ) {
+        if ( frameRows <= 0 ) {
+            throw new IllegalArgumentException( "frameRows must be positive." );
+        }
+        this.parallelDecodeThreshold = cellThreshold;
+        this.decodeFrameRows = frameRows;
+    }
+
+
+    /**
+     * @Description
+     * Chooses how executeSql returns BINARY, VARBINARY, FILE, IMAGE, VIDEO and AUDIO columns:
+     * - "bytes" (default): byte[][], one copy of every value, which MATLAB receives as cell array of uint8.
+     * - "buffer": ByteBuffer[] of read-only views over the protobuf data of the driver, no copy at all. For Java callers; a view keeps
+     *   the frame it came from alive.
+     * - "file": every value is streamed from the protobuf data straight to a file in directory, the column becomes
+     *   Object[]{ String[] paths, double[] bytes }. Memory stays at about one frame however many and however large the blobs are.
+     *   Such results are decoded sequentially. Every result gets its own new subdirectory of directory, see BlobFiles for the names.
+     * Results of executeSqlPartitioned and of executeSqlLazy always use "bytes", parallel query batches use the mode of this executor.
+     *
+     * @param mode "bytes", "buffer" or "file"
+     * @param directory The directory for mode "file" (created if missing), ignored otherwise
+     */
+    public void setBlobMode( String mode, String directory ) {
+        switch ( mode ) {
+            case "bytes":
+                this.blobMode = "byte[]";
+                return;
+            case "buffer":
+                this.blobMode = "ByteBuffer";
+                return;
+            case "file":
+                if ( directory == null || directory.isEmpty() ) {
+                    throw new IllegalArgumentException( "Blob mode file needs a directory." );
+                }
+                try {
+                    this.blobDirectory = java.nio.file.Files.createDirectories( java.nio.file.Paths.get( directory ).toAbsolutePath().normalize() );
+                } catch ( java.io.IOException e ) {
+                    throw new RuntimeException( "Cannot create the blob directory " + directory + ": " + e.getMessage(), e );
+                }
+                this.blobMode = "file";
+                return;
+            default:
+                throw new IllegalArgumentException( "Unknown blob mode: " + mode + ". Use bytes, buffer or file." );
+        }
+    }
+
+
+    /**
+     * @Description
+     * Sets the deadline for every call of this executor that does not pass its own timeout. For batches, bulk inserts and scripts the
+     * deadline covers the whole call, not a single statement.
+     * 
+     * @param timeoutSeconds The deadline in seconds. 0 disables the deadline (default).
+     */
+    public void setQueryTimeout( double timeoutSeconds ) {
+        if ( timeoutSeconds < 0 || Double.isNaN( timeoutSeconds ) ) {
+            throw new IllegalArgumentException( "timeoutSeconds must not be negative." );
+        }
+        this.defaultTimeoutMillis = (long) Math.ceil( timeoutSeconds * 1000 );
+    }
+
+
+    public double getQueryTimeout() {
+        return defaultTimeoutMillis / 1000.0;
+    }
+
+
+    /**
+     * @Description
+     * Cancels the running execution of this executor. Meant to be called from a second thread or a MATLAB timer while the MATLAB
+     * thread is blocked in a query: a running JDBC statement is cancelled on the server, a wait for a Prism response is interrupted and
+     * the decoding stops at the next frame. The cancelled call throws a CancellationException; transactions of batches are rolled back.
+     * 
+     * @return true if an execution was running and got cancelled, false if nothing was running.
+     */
+    public boolean cancelCurrent() {
+        QueryDeadline deadline = running.get();
+        if ( deadline == null || deadline.isCancelled() ) {
+            return false;
+        }
+        deadline.cancel( "cancelled by cancelCurrent()" );
+        return true;
+    }
+
+
+    private QueryDeadline beginExecution( double timeoutSeconds ) {
+        return beginExecution( timeoutSeconds, 0 );
+    }
+
+
+    /**
+     * Starts the trace of the execution that was just begun, if tracing is enabled. Costs one volatile read otherwise.
+     */
+    private void traceStart( String language, String namespace, String query ) {
+        QueryTracer owner = tracer;
+        trace = owner == null ? null : owner.start( language, namespace, query );
+    }
+
+
+    private void traceLap( int phase ) {
+        QueryTracer.Trace current = trace;
+        if ( current != null ) {
+            current.lap( phase );
+        }
+    }
+
+
+    private QueryDeadline beginExecution( double timeoutSeconds, long hardMemoryOverride ) {
+        QueryDeadline deadline = QueryDeadline.start( (long) Math.ceil( timeoutSeconds * 1000 ) );
+        polyconnection.beginUse();
+        running.set( deadline );
+        reservation.set( memory.open( "The result", hardMemoryOverride ) );
+        return deadline;
+    }
+
+
+    private void endExecution( QueryDeadline deadline ) {
+        QueryTracer.Trace finished = trace;
+        QueryTracer owner = tracer;
+        if ( finished != null ) {
+            trace = null;
+            if ( owner != null ) {
+                owner.finish( finished, deadline.isCancelled() );
+            }
+        }
+        deadline.finish();
+        polyconnection.endUse();
+        running.compareAndSet( deadline, null );
+        MemoryGovernor.Reservation done = reservation.getAndSet( null );
+        if ( done != null ) {
+            done.close();
+        }
+    }
+
+
+    /**
+     * Charges newly decoded rows against the memory budget of the running execution.
+     * 
+     * @return true once the soft budget is reached and the decode should stop buffering
+     */
+    private boolean admit( long bytes, long rows ) {
+        MemoryGovernor.Reservation current = reservation.get();
+        return current != null && current.charge( bytes, rows );
+    }
+
+
+    /**
+     * @Description
+     * Sets the memory budget of every query of this executor. The decoded size of a result is estimated while it is read, once per
+     * decode frame:
+     * - at the soft budget a parallel decode (see setParallelDecode) decodes the rest of the result row by row without buffering raw
+     * frames. Every other decode (sequential SQL results, Mongo, Cypher, cursor pages) holds no extra buffers it could give up, there
+     * the soft budget only records the warning returned by getLastMemoryWarning(). With failAtSoftLimit the query is aborted instead,
+     * on every path,
+     * - before the result would grow past the hard budget the query is aborted with an error that names the projected size and the
+     * current JVM heap headroom.
+     * The defaults are 25% (soft) and 50% (hard) of the maximum JVM heap. executeSql( query, timeoutSeconds, maxResultMB ) overrides
+     * the hard budget for one query.
+     * 
+     * @param softMB The soft budget per query in MB
+     * @param hardMB The hard budget per query in MB
+     * @param failAtSoftLimit true to abort at the soft budget instead of continuing in streaming mode
+     */
+    public void setMemoryBudget( double softMB, double hardMB, boolean failAtSoftLimit ) {
+        memory.setBudget( (long) ( softMB * 1024 * 1024 ), (long) ( hardMB * 1024 * 1024 ), failAtSoftLimit );
+    }
+
+
+    public void setMemoryBudget( double softMB, double hardMB ) {
+        setMemoryBudget( softMB, hardMB, false );
+    }
+
+
+    /**
+     * @Description
+     * Sets the budgets over the results of ALL executors in this JVM (i.e. all MATLAB sessions of the process) that are being decoded at
+     * the same time. The defaults are 50% (soft) and 75% (hard) of the maximum JVM heap.
+     */
+    public static void setGlobalMemoryBudget( double softMB, double hardMB ) {
+        MemoryGovernor.setGlobalBudget( (long) ( softMB * 1024 * 1024 ), (long) ( hardMB * 1024 * 1024 ) );
+    }
+
+
+    /**
+     * @return double[]{ lastQueryMB, allQueriesMB, softMB, hardMB, globalSoftMB, globalHardMB, heapHeadroomMB, maxHeapMB }: the
+     * estimated size of the running (or last) result, the bytes of all results currently being decoded in this JVM, the budgets and the
+     * current JVM heap headroom.
+     */
+    public double[] getMemoryStatus() {
+        return memory.status();
+    }
+
+
+    /**
+     * @return The warning of the last query that passed its soft budget and continued, "" if there was none.
+     */
+    public String getLastMemoryWarning() {
+        return memory.lastWarning();
+    }
+
+
+    /**
+     * @return true if the partitions of executeSqlPartitioned, the workers of a parallel executeQueryBatch and prewarmAsync run on
+     * virtual threads (Java 21 and newer), false if they run on platform threads (Java 8 to 20).
+     */
+    public boolean usesVirtualThreads() {
+        return ExecutionThreads.isVirtual();
+    }
+
+
+    /**
+     * @Description
+     * Enables the slow query log of this executor: every execution that takes at least thresholdMs is written as one JSON line (time
+     * stamp, language, namespace, normalized query, rows, estimated bytes and the time per phase: connect, execute, fetch, decode,
+     * materialize) to a local file. The lines are written by a background thread, a query never waits for the disk.
+     * 
+     * @param path The log file, e.g. "/tmp/polypheny-slow.log"
+     * @param thresholdMs Executions at least this slow are always logged
+     */
+    public void enableTrace( String path, double thresholdMs ) {
+        enableTrace( path, thresholdMs, 0, 10, 5 );
+    }
+
+
+    /**
+     * @Description
+     * Same as enableTrace( path, thresholdMs ), with sampling of the fast executions and the rotation of the file.
+     * 
+     * @param sampleRate Fraction of the executions below the threshold that are logged as well (marked "sampled"), 0 for none
+     * @param maxFileMB The file is rotated (path → path.1 → ...) before it grows past this size
+     * @param maxFiles Number of rotated files kept next to the current one
+     */
+    public void enableTrace( String path, double thresholdMs, double sampleRate, double maxFileMB, int maxFiles ) {
+        QueryTracer previous = tracer;
+        try {
+            tracer = new QueryTracer( path, thresholdMs, sampleRate, maxFileMB, maxFiles );
+        } catch ( java.io.IOException e ) {
+            throw new RuntimeException( "Failed to open the trace log " + path + ": " + e.getMessage(), e );
+        }
+        if ( previous != null ) {
+            previous.close();
         }
-        throw new SQLException( "Internal Error: DriverToJava failed. Reason: Unhandled or unexpected type." + typeName );
     }
 
 
     /**
      * @Description
-     * Converts any ProtoValue or TypedValue to Json String format. There is a recursive call between protoValueToJson and protoDocumentToJson because protoValues can be protoDocuments which, in turn, contain ProtoValues.
+     * Stops the slow query log. The lines still queued are written, and the log file and its writer thread are closed once no other
+     * executor traces into the same file.
+     */
+    public void disableTrace() {
+        QueryTracer previous = tracer;
+        tracer = null;
+        if ( previous != null ) {
+            previous.close();
+        }
+    }
+
+
+    /**
+     * @return double[]{ linesWritten, linesDropped, currentFileBytes } of the trace log, or null if tracing is disabled. Lines are
+     * dropped when the writer falls more than 8192 lines behind or the file cannot be written.
+     */
+    public double[] getTraceStats() {
+        QueryTracer current = tracer;
+        return current == null ? null : current.stats();
+    }
+
+
+    /**
+     * Throws a CancellationException if the running execution was cancelled or ran past its deadline.
+     */
+    private void checkCancelled() {
+        QueryDeadline deadline = running.get();
+        if ( deadline != null ) {
+            deadline.check();
+        }
+    }
+
+
+    /**
+     * 
+     * This function maps all the entries to the correct output type.
      * 
-     * @param sb We pass the function a StringBuilder as the case LIST and DOCUMENT can be massively nested. Would we have a DOCUMENT with 10 000 entries that
-     * have a nesting level of 3 and each contain 10 000 items themselves we would instantiate >10 000^3 objects otherwise. This way we only
-     * instantiate 1 and if we don't need it we only wasted 1MB.
-     * @param v The ProtoValue that we want to convert to Json
+     * @param json We pass the function the JsonWriter of the thread as the case LIST and DOCUMENT can be massively nested. Would we have a DOCUMENT with
+     * 10 000 entries that have a nesting level of 3 and each contain 10 000 items themselves we would instantiate >10 000^3 objects otherwise.
+     * This way the JSON is written into one reused char[] and only the final String is allocated.
+     * @param tv The TypedValue object we received from one column entry in the current row
+     * @param instantiatedColumnTypes Saves what type T createJavaTypeArrayList used for the i-th column represented by ArrayList<T>
+     * @param colIndex The 0-based index of the column we are looking at currently.
+     * @return A java type that is mapped so that it fits into the ArrayList<T> that holds all the column entries
+     * @throws SQLException
      */
-    private void protoValueToJson( ProtoValue v, StringBuilder sb ) throws Exception {
-        // TODO: switch to the same cases as in ProtoValueToJson
+    public Object DriverToJava( TypedValue tv, JsonWriter json, String[] instantiatedColumnTypes, int colIndex ) throws Exception {
+
+        // Use the found ValueCase for the ProtoValue class to decide the shortcut
+        String typeName = tv.getValueCase().name();
+        ProtoValue raw = getRawProto( tv );
         /*    BOOLEAN(1),
               INTEGER(2),
               LONG(3),
@@ -552,36 +2357,33 @@ public class QueryExecutor {
               DOCUMENT(18),
               FILE(19),
               VALUE_NOT_SET(0); */
-        String typeName = v.getValueCase().name();
+
         // case 1
         if ( typeName.equals( "BOOLEAN" ) ) {
-            boolean result = v.getBoolean().getBoolean();
-            sb.append( result );
-            return;
+            boolean result = raw.getBoolean().getBoolean();
+            return result ? 1.0 : 0.0; // a Double like every other value of a "Double" column, not an Integer
         }
         // case 2
         if ( typeName.equals( "INTEGER" ) ) {
-            double result = (double) v.getInteger().getInteger();
-            sb.append( result );
-            return;
+            double result = (double) raw.getInteger().getInteger();
+            return result;
         }
 
         // case 3
         if ( typeName.equals( "LONG" ) ) {
-            double result = (double) v.getLong().getLong();
-            sb.append( result );
-            return;
+            double result = (double) raw.getLong().getLong();
+            return result;
         }
 
-        // TODO: fix the case when the unscaled bytes might exceed what double can represent
+        // TODO: casting it to DOUBLE might lead to imprecision issues.
         // case 12
         if ( typeName.equals( "BIG_DECIMAL" ) ) {
 
             // 1. Get the Scale (power of 10)
-            int scale = v.getBigDecimal().getScale();
+            int scale = raw.getBigDecimal().getScale();
 
             // 2. Get the bits of the unscaled integer
-            byte[] unscaledBytes = v.getBigDecimal().getUnscaledValue().toByteArray();
+            byte[] unscaledBytes = raw.getBigDecimal().getUnscaledValue().toByteArray();
 
             // 3. Reconstruct the number
             java.math.BigInteger unscaledInt = new java.math.BigInteger( unscaledBytes );
@@ -589,99 +2391,121 @@ public class QueryExecutor {
             double doubleResult = bigDecimal.doubleValue();
 
             // 4. Return as double for MATLAB
-            if ( Double.isInfinite( doubleResult ) || Double.isNaN( doubleResult ) ) {
-                // If it's out of bounds, maybe log it or return a specific error value
-                doubleResult = Double.NaN;
-            }
-            sb.append( doubleResult );
-            return;
+            return doubleResult;
         }
 
         //case 7
         if ( typeName.equals( "FLOAT" ) ) {
-            double result = (double) v.getFloat().getFloat();
-            sb.append( result );
-            return;
+            double result = (double) raw.getFloat().getFloat();
+            return result;
         }
         //case 6
         if ( typeName.equals( "DOUBLE" ) ) {
-            double result = (double) v.getDouble().getDouble();
-            sb.append( result );
-            return;
+            double result = (double) raw.getDouble().getDouble();
+            return result;
         }
 
         //case 5 - For this case use the asString() function of TypedValue because the Driver actually implements functionality for timezones
         if ( typeName.equals( "DATE" ) ) {
-            TypedValue tv = new TypedValue( v );
-            sb.append( "\"" ).append( tv.asString() ).append( "\"" );
-            return;
+            String result = tv.asString();
+            return result;
         }
 
         //case 9 - For this case use the asString() function of TypedValue because the Driver actually implements functionality for timezones
         if ( typeName.equals( "TIME" ) ) {
-            TypedValue tv = new TypedValue( v );
-            sb.append( "\"" ).append( tv.asString() ).append( "\"" );
-            return;
+            String result = tv.asString();
+            return result;
         }
-
         // case 10 - For this case use the asString() function of TypedValue because the Driver actually implements functionality for timezones
         if ( typeName.equals( "TIMESTAMP" ) ) {
-            TypedValue tv = new TypedValue( v );
-            sb.append( "\"" ).append( tv.asString() ).append( "\"" );
-            return;
+            String result = tv.asString();
+            return result;
         }
         // case 13
         if ( typeName.equals( "INTERVAL" ) ) {
+            if ( raw == null )
+                return null;
+
             // We return a 2-element array to keep BOTH components perfectly intact.
             // Index 0: Months (Year-Month interval)
             // Index 1: Milliseconds (Day-Time interval)
-            double[] result = new double[]{
-                    (double) v.getInterval().getMonths(),
-                    (double) v.getInterval().getMilliseconds()
+            return new double[]{
+                    (double) raw.getInterval().getMonths(),
+                    (double) raw.getInterval().getMilliseconds()
             };
-            sb.append( "[" ).append( result[0] ).append( "," ).append( result[1] ).append( "]" );
-            return;
         }
-
         // case 8
         if ( typeName.equals( "STRING" ) ) {
-            String result = v.getString().getString();
-            sb.append( "\"" ).append( escapeJson( result ) ).append( "\"" );
-            return;
+            String result = raw.getString().getString();
+            return result;
         }
 
         // case 4
         if ( typeName.equals( "BINARY" ) ) {
-            byte[] bits = v.getBinary().getBinary().toByteArray();
-            String encoded = Base64.getEncoder().encodeToString( bits );
-            sb.append( "\"" ).append( encoded ).append( "\"" );
-            return;
+            if ( instantiatedColumnTypes[colIndex] == "ByteBuffer" ) {
+                return raw.getBinary().getBinary().asReadOnlyByteBuffer(); // a view, the protobuf data is not copied
+            }
+            if ( instantiatedColumnTypes[colIndex] == "file" ) {
+                return blobFiles.write( colIndex, out -> {
+                    raw.getBinary().getBinary().writeTo( out );
+                    return raw.getBinary().getBinary().size();
+                } );
+            }
+            byte[] result = raw.getBinary().getBinary().toByteArray();
+            return result;
         }
 
         // case 11 
         if ( typeName.equals( "NULL" ) ) {
-            sb.append( "null" );
-            return;
+            if ( instantiatedColumnTypes[colIndex] == "String" ) {
+                return null;
+            }
+            if ( instantiatedColumnTypes[colIndex] == "byte[]" || instantiatedColumnTypes[colIndex] == "ByteBuffer" ) {
+                return null;
+            }
+            if ( instantiatedColumnTypes[colIndex] == "file" ) {
+                return blobFiles.skip( colIndex );
+            }
+            if ( instantiatedColumnTypes[colIndex] == "Double" ) {
+                return Double.NaN;
+            }
+            if ( instantiatedColumnTypes[colIndex] == "double[]" ) {
+                return new double[]{ Double.NaN, Double.NaN };
+            }
+            if ( instantiatedColumnTypes[colIndex] == "List" ) {
+                return null;
+            }
+
         }
         // case 16
         if ( typeName.equals( "LIST" ) ) {
-            // Use the binary walker to build the JSON string for the list
-            protoListToJson( v.getList(), sb );
-            return;
+            if ( raw != null && instantiatedColumnTypes[colIndex] == "List" ) {
+                // ARRAY column: numbers straight into a primitive array, no JSON round trip
+                Object numbers = protoListToNumbers( raw.getList() );
+                if ( numbers != null ) {
+                    return numbers;
+                }
+            }
+            return raw != null ? json.toJson( raw ) : "[]";
         }
         // case 18
         if ( typeName.equals( "DOCUMENT" ) ) {
-            protoDocumentToJson( v.getDocument(), sb );
-            return;
+            return raw != null ? json.toJson( raw ) : "{}";
         }
 
         // case 19
         if ( typeName.equals( "FILE" ) ) {
-            // Use the binary walker to build the JSON string for the list
-            byte[] bits = v.getFile().getBinary().toByteArray(); // the file is save in a byte array like the binary case
-            String encoded = Base64.getEncoder().encodeToString( bits );
-            sb.append( "\"" ).append( encoded ).append( "\"" );
-            return;
+            if ( instantiatedColumnTypes[colIndex] == "ByteBuffer" ) {
+                return raw.getFile().getBinary().asReadOnlyByteBuffer();
+            }
+            if ( instantiatedColumnTypes[colIndex] == "file" ) {
+                return blobFiles.write( colIndex, out -> {
+                    raw.getFile().getBinary().writeTo( out );
+                    return raw.getFile().getBinary().size();
+                } );
+            }
+            byte[] file = raw.getFile().getBinary().toByteArray();
+            return file;
         }
         // case 0
         if ( typeName.equals( "VALUE_NOT_SET" ) ) {
@@ -691,70 +2515,6 @@ public class QueryExecutor {
     }
 
 
-    /**
-     * This function converts an object of type ProtoList (which is what is used to represent arrays by Polypheny/the Driver) to a Json
-     * 
-     * @param list The ProtoList that we want to convert to Json (fetched in ProtoValueToJson)
-     * @param sb We pass the function a StringBuilder as the case LIST and DOCUMENT can be massively nested. Would we have a DOCUMENT with 10 000 entries that
-     * have a nesting level of 3 and each contain 10 000 items themselves we would instantiate >10 000^3 objects otherwise. This way we only
-     * instantiate 1 and if we don't need it we only wasted 1MB.
-     */
-    private void protoListToJson( org.polypheny.jdbc.dependency.prism.ProtoList list, StringBuilder sb ) throws Exception {
-        if ( list == null || list.getValuesCount() == 0 ) {
-            sb.append( "[]" );
-            return;
-        }
-        sb.append( "[" );
-        int size = list.getValuesCount();
-        for ( int i = 0; i < size; i++ ) {
-            protoValueToJson( list.getValues( i ), sb ); // RECURSE with the same SB
-
-            if ( i < size - 1 )
-                sb.append( "," );
-        }
-        sb.append( "]" );
-    }
-
-
-    /**
-     * @Description
-     * This function maps a ProtoDocument (which is a subtype of ProtoValue) to JSON which matlab can later jsondecode. There is a recursive call between protoValueToJson and protoDocumentToJson because protoValues can be
-     * protoDocuments which, in turn, contain ProtoValues.
-     * @param doc The ProtoDocument we want to convert to Json
-     * @param sb We pass the function a StringBuilder as the case LIST and DOCUMENT can be massively nested. Would we have a DOCUMENT with 10 000 entries that
-     * have a nesting level of 3 and each contain 10 000 items themselves we would instantiate >10 000^3 objects otherwise. This way we only
-     * instantiate 1 and if we don't need it we only wasted 1MB.
-     */
-    private void protoDocumentToJson( ProtoDocument doc, StringBuilder sb ) throws Exception {
-        if ( doc == null || doc.getEntriesCount() == 0 ) {
-            sb.append( "{}" );
-            return;
-        }
-
-        else {
-
-            sb.append( "{" );
-            // Use getEntriesList() to get the collection, then iterate
-            int count = doc.getEntriesCount();
-            for ( int i = 0; i < count; i++ ) {
-                // Most likely the entry type is now an inner class or named simply "Entry"
-                org.polypheny.jdbc.dependency.prism.ProtoEntry entry = doc.getEntries( i );
-
-                //sb.append( "\"" ).append( entry.getKey() ).append( "\":" );
-                protoValueToJson( entry.getKey(), sb );
-                sb.append( ":" );
-                protoValueToJson( entry.getValue(), sb );
-
-                if ( i < count - 1 ) {
-                    sb.append( "," );
-                }
-            }
-            sb.append( "}" );
-        }
-
-    }
-
-
     /**
      * @Description
      * This function returns the ArrayList<Type> that the column should have
@@ -835,8 +2595,9 @@ public class QueryExecutor {
                 typeDecision[colIndex] = "NULL";
                 return (ArrayList<T>) new ArrayList<String>();
             case "ARRAY": // case 33
-                typeDecision[colIndex] = "String";
-                return (ArrayList<T>) new ArrayList<String>();
+                // numeric lists are decoded to double[]/float[], the others to JSON text, see listColumnToPrimitive
+                typeDecision[colIndex] = "List";
+                return (ArrayList<T>) new ArrayList<Object>();
             case "MAP": // case 34
                 typeDecision[colIndex] = "String";
                 return (ArrayList<T>) new ArrayList<String>();
@@ -952,26 +2713,395 @@ public class QueryExecutor {
                 // ArrayList<double[]> -> double[][]
                 return list.toArray( new double[0][] );
 
-            case "NULL":
-                instantiatedColumnTypes[colIndex] = "NULL";
-                return new Object[list.size()];
+            case "List":
+                return listColumnToPrimitive( list, instantiatedColumnTypes, colIndex );
+
+            case "ByteBuffer":
+                // ArrayList<ByteBuffer> -> ByteBuffer[], the views themselves are not copied
+                return list.toArray( new java.nio.ByteBuffer[0] );
+
+            case "file":
+                // the files are written already, only paths and sizes cross to MATLAB
+                return BlobFiles.toColumn( list );
+
+            case "NULL":
+                instantiatedColumnTypes[colIndex] = "NULL";
+                return new Object[list.size()];
+
+            default:
+                instantiatedColumnTypes[colIndex] = "default case in mapArrayListToPrimitive";
+                return list.toArray();
+        }
+    }
+
+
+    /**
+     * @Description
+     * Materializes an ARRAY column. Its rows are the float[] and double[] that DriverToJava decoded numeric lists into, JSON Strings
+     * for every other list and null for NULL:
+     * - all rows numeric and of the same length n: one rows x n double[][] (float[][] if every row is float[]), which MATLAB receives
+     *   as a numeric matrix in one step. NULL rows become a row of NaN. The type is "double[]" ("float[]").
+     * - all rows numeric, different lengths: Object[]{ values, int[] offsets } with the values of all rows one after the other in one
+     *   double[] (float[]); row r holds values[offsets[r]] to values[offsets[r + 1] - 1], NULL rows are empty. The type is
+     *   "ragged double[]" ("ragged float[]").
+     * - any row not numeric (strings, nested lists, documents): String[] of JSON text as for every other nested value. Type "String".
+     */
+    static Object listColumnToPrimitive( List<?> list, String[] instantiatedColumnTypes, int colIndex ) {
+        boolean floats = true;
+        int width = -1;
+        boolean ragged = false;
+        long total = 0;
+        for ( Object row : list ) {
+            if ( row instanceof String ) {
+                instantiatedColumnTypes[colIndex] = "String";
+                return listToJson( list );
+            }
+            if ( row == null ) {
+                continue;
+            }
+            int length = java.lang.reflect.Array.getLength( row );
+            floats = floats && row instanceof float[];
+            ragged = ragged || ( width >= 0 && length != width );
+            width = length;
+            total += length;
+        }
+        int rows = list.size();
+        floats = floats && width >= 0; // only NULL rows: double, as for every other numeric column
+
+        if ( !ragged ) {
+            int n = Math.max( width, 0 );
+            Object matrix = floats ? new float[rows][] : new double[rows][];
+            for ( int r = 0; r < rows; r++ ) {
+                Object row = list.get( r );
+                if ( row == null ) {
+                    row = floats ? nanFloats( n ) : nanDoubles( n );
+                } else if ( !floats && row instanceof float[] ) {
+                    row = widen( (float[]) row );
+                }
+                java.lang.reflect.Array.set( matrix, r, row );
+            }
+            instantiatedColumnTypes[colIndex] = floats ? "float[]" : "double[]";
+            return matrix;
+        }
+
+        if ( total > Integer.MAX_VALUE - 8 ) {
+            throw new RuntimeException( "The ARRAY column holds " + total + " values, more than fit into one Java array. Read it with executeSqlPartitioned." );
+        }
+        Object values = floats ? new float[(int) total] : new double[(int) total];
+        int[] offsets = new int[rows + 1];
+        int offset = 0;
+        for ( int r = 0; r < rows; r++ ) {
+            offsets[r] = offset;
+            Object row = list.get( r );
+            if ( row == null ) {
+                continue;
+            }
+            if ( !floats && row instanceof float[] ) {
+                row = widen( (float[]) row );
+            }
+            int length = java.lang.reflect.Array.getLength( row );
+            System.arraycopy( row, 0, values, offset, length );
+            offset += length;
+        }
+        offsets[rows] = offset;
+        instantiatedColumnTypes[colIndex] = floats ? "ragged float[]" : "ragged double[]";
+        return new Object[]{ values, offsets };
+    }
+
+
+    /**
+     * The rows of an ARRAY column as JSON text, for columns that are not numeric throughout. Decoded numbers are written back the way
+     * JsonWriter writes them (NaN → null, booleans were already turned into 1/0).
+     */
+    private static String[] listToJson( List<?> list ) {
+        JsonWriter json = JsonWriter.local();
+        String[] column = new String[list.size()];
+        for ( int r = 0; r < column.length; r++ ) {
+            Object row = list.get( r );
+            if ( row instanceof double[] ) {
+                column[r] = json.toJson( (double[]) row );
+            } else if ( row instanceof float[] ) {
+                column[r] = json.toJson( (float[]) row );
+            } else {
+                column[r] = (String) row;
+            }
+        }
+        return column;
+    }
+
+
+    private static double[] widen( float[] floats ) {
+        double[] values = new double[floats.length];
+        for ( int i = 0; i < values.length; i++ ) {
+            values[i] = floats[i];
+        }
+        return values;
+    }
+
+
+    private static double[] nanDoubles( int length ) {
+        double[] values = new double[length];
+        Arrays.fill( values, Double.NaN );
+        return values;
+    }
+
+
+    private static float[] nanFloats( int length ) {
+        float[] values = new float[length];
+        Arrays.fill( values, Float.NaN );
+        return values;
+    }
+
+
+    /**
+     * @Description
+     * This function takes makes sure that the escapes of queries are handled correctly in Strings when appending.
+     * e.g. " C\mypath " must be converted into " C\\mypath " because "\" is an operator sign like in Latex. Quotes and control
+     * characters (e.g. line breaks) are escaped as well, all in one pass.
+     * @param string
+     * @return string: The string with the proper escape sequences
+     */
+    private static String escapeJson( String string ) {
+        return JsonWriter.escape( string );
+    }
+
+
+    /**
+     * @Description
+     * Runs a whole SQL script (DDL, DML and SELECT statements separated by ;) in one Matlab-Java crossing. The script is split with
+     * splitScript, i.e. ; inside quotes and comments do not end a statement, and the statements run in order on one Statement.
+     * 
+     * @param script The SQL script
+     * @return One entry per statement: the executeSql result package for statements with a result set (null for an empty result), the
+     * update count as Double for all others.
+     */
+    public Object[] executeScript( String script ) {
+        return executeScript( script, false );
+    }
+
+
+    /**
+     * @Description
+     * Same as executeScript( script ). With inTransaction the whole script runs in one transaction that is rolled back if any statement
+     * fails; otherwise every statement commits on its own and a failure leaves the statements before it in place. The error names the
+     * failing statement either way. If a transaction was opened with PolyphenyConnection.beginTransaction, the script runs inside it and
+     * a failure leaves it open for its owner to commit or roll back.
+     * 
+     * @param script The SQL script
+     * @param inTransaction true to run all statements in one transaction (all or nothing)
+     */
+    public Object[] executeScript( String script, boolean inTransaction ) {
+        List<String> statements = splitScript( script );
+        Object[] results = new Object[statements.size()];
+        polyconnection.openIfNeeded();
+        QueryDeadline deadline = beginExecution( defaultTimeoutMillis / 1000.0 );
+        traceStart( "sql", null, batchLabel( statements ) );
+        boolean joined = polyconnection.inTransaction();
+        boolean own = false;
+        int index = 0;
+        try {
+            if ( inTransaction ) {
+                own = polyconnection.beginOrJoinTransaction();
+            }
+            try ( Statement statement = polyconnection.getConnection().createStatement() ) {
+                deadline.attach( statement );
+                for ( ; index < results.length; index++ ) {
+                    deadline.check();
+                    boolean isResultSet = statement.execute( statements.get( index ) );
+                    traceLap( QueryTracer.Trace.EXECUTE );
+                    if ( isResultSet ) {
+                        try ( ResultSet resultSet = statement.getResultSet() ) {
+                            results[index] = handleResultSet( (PolyphenyResultSet) resultSet );
+                        }
+                    } else {
+                        results[index] = (double) statement.getLargeUpdateCount();
+                    }
+                }
+            }
+            if ( own ) {
+                polyconnection.commitTransaction();
+            }
+            return results;
+        } catch ( Exception e ) {
+            if ( own ) {
+                try {
+                    polyconnection.rollbackTransaction();
+                } catch ( Exception rollbackException ) {
+                    throw new RuntimeException( "SQL script failed AND rollback failed: " + rollbackException.getMessage(), e );
+                }
+            }
+            if ( deadline.isCancelled() ) {
+                throw deadline.cancellation( e );
+            }
+            RuntimeException failure = e instanceof SQLException ? translateException( (SQLException) e ) : e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException( e.getMessage(), e );
+            String where = index < statements.size()
+                    ? "Statement " + ( index + 1 ) + " of " + statements.size() + " (" + abbreviate( statements.get( index ) ) + ") failed: "
+                    : "Committing the script failed: ";
+            String state = own ? " The transaction was rolled back."
+                    : joined ? OPEN_TRANSACTION_KEPT : index > 0 ? " The " + index + " statements before it were committed." : "";
+            throw new RuntimeException( where + failure.getMessage() + state, failure );
+        } finally {
+            endExecution( deadline );
+        }
+    }
+
+
+    /**
+     * @Description
+     * Runs many SELECT queries (e.g. one small table per entity) in one Matlab-Java crossing, one after the other on one Statement.
+     * 
+     * @param selects The SELECT (or WITH) queries
+     * @return One executeSql result package per query, in query order (null for empty results)
+     */
+    public Object[] executeQueryBatch( String[] selects ) {
+        return executeQueryBatch( selects, 1 );
+    }
+
+
+    /**
+     * @Description
+     * Same as executeQueryBatch( selects ), with up to parallelism queries running at the same time on separate connections. Every
+     * worker takes the next query that is not taken yet, so a few slow queries do not hold up the others; the results are still
+     * returned in query order. The executor deadline covers the whole batch and cancelCurrent() cancels all workers.
+     * 
+     * @param parallelism The number of concurrent connections. 1 runs the queries on the connection of this executor, as does any value
+     * while a transaction is open.
+     */
+    public Object[] executeQueryBatch( String[] selects, int parallelism ) {
+        if ( parallelism <= 0 ) {
+            throw new IllegalArgumentException( "parallelism must be positive." );
+        }
+        // Check all queries up front so a non-SELECT anywhere in the batch fails before anything was executed.
+        for ( int i = 0; i < selects.length; i++ ) {
+            if ( !startsWithKeyword( selects[i], "SELECT" ) && !startsWithKeyword( selects[i], "WITH" ) ) {
+                throw new UnsupportedOperationException( "Query batches only support SELECT statements, query " + ( i + 1 ) + " is none: " + abbreviate( selects[i] ) );
+            }
+        }
+        // Sibling connections would not see the uncommitted writes of an open transaction, so inside one the queries run on its connection.
+        if ( parallelism > 1 && selects.length > 1 && !polyconnection.inTransaction() ) {
+            return runQueryBatchParallel( selects, Math.min( parallelism, selects.length ) );
+        }
+        try {
+            return runQueryBatch( selects );
+        } catch ( RuntimeException e ) {
+            // SELECTs can safely run twice: if the server dropped the connection, reconnect and retry once.
+            if ( !( e instanceof CancellationException ) && !( e instanceof MemoryGovernor.BudgetExceededException ) && polyconnection.reconnectIfLost() ) {
+                return runQueryBatch( selects );
+            }
+            throw e;
+        }
+    }
+
+
+    private Object[] runQueryBatch( String[] selects ) {
+        Object[] results = new Object[selects.length];
+        polyconnection.openIfNeeded();
+        QueryDeadline deadline = beginExecution( defaultTimeoutMillis / 1000.0 );
+        traceStart( "sql", null, batchLabel( Arrays.asList( selects ) ) );
+        int index = 0;
+        try ( Statement statement = polyconnection.getConnection().createStatement() ) {
+            deadline.attach( statement );
+            for ( ; index < selects.length; index++ ) {
+                deadline.check();
+                try ( ResultSet resultSet = statement.executeQuery( selects[index] ) ) {
+                    traceLap( QueryTracer.Trace.EXECUTE );
+                    results[index] = handleResultSet( (PolyphenyResultSet) resultSet );
+                }
+            }
+            return results;
+        } catch ( Exception e ) {
+            if ( deadline.isCancelled() ) {
+                throw deadline.cancellation( e );
+            }
+            if ( e instanceof MemoryGovernor.BudgetExceededException ) {
+                throw (MemoryGovernor.BudgetExceededException) e;
+            }
+            RuntimeException failure = e instanceof SQLException ? translateException( (SQLException) e ) : e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException( e.getMessage(), e );
+            if ( index >= selects.length ) {
+                throw failure;
+            }
+            throw new RuntimeException( "Query " + ( index + 1 ) + " of " + selects.length + " (" + abbreviate( selects[index] ) + ") failed: " + failure.getMessage(), failure );
+        } finally {
+            endExecution( deadline );
+        }
+    }
+
+
+    private Object[] runQueryBatchParallel( String[] selects, int workers ) {
+        Object[] results = new Object[selects.length];
+        AtomicInteger next = new AtomicInteger();
+        java.util.concurrent.ExecutorService pool = ExecutionThreads.newExecutor( "polypheny-query-batch", workers );
+        List<QueryExecutor> executors = new ArrayList<>( workers );
+        List<Future<Object>> futures = new ArrayList<>( workers );
+        QueryDeadline deadline = beginExecution( defaultTimeoutMillis / 1000.0 );
+        traceStart( "sql", null, batchLabel( Arrays.asList( selects ) ) );
+        // the directory first: setBlobMode sets it before the mode
+        java.nio.file.Path blobs = blobDirectory;
+        String mode = blobMode;
+        try {
+            for ( int w = 0; w < workers; w++ ) {
+                QueryExecutor executor = new QueryExecutor( polyconnection.openSibling() );
+                executor.setParallelDecode( parallelDecodeThreshold, decodeFrameRows );
+                executor.memory.inherit( memory );
+                executor.blobDirectory = blobs;
+                executor.blobMode = mode;
+                executor.tracer = tracer; // shared, only the parent closes it in disableTrace
+                executors.add( executor );
+                futures.add( pool.submit( () -> {
+                    try {
+                        for ( int i = next.getAndIncrement(); i < selects.length; i = next.getAndIncrement() ) {
+                            try {
+                                results[i] = executor.executeSql( selects[i] );
+                            } catch ( RuntimeException e ) {
+                                throw new RuntimeException( "Query " + ( i + 1 ) + " of " + selects.length + " (" + abbreviate( selects[i] ) + ") failed: " + e.getMessage(), e );
+                            }
+                        }
+                        return null;
+                    } finally {
+                        executor.polyconnection.close();
+                    }
+                } ) );
+            }
+
+            for ( Future<Object> future : futures ) {
+                while ( true ) {
+                    try {
+                        // wake up regularly so a deadline or cancelCurrent() reaches the workers
+                        future.get( 100, java.util.concurrent.TimeUnit.MILLISECONDS );
+                        break;
+                    } catch ( java.util.concurrent.TimeoutException e ) {
+                        deadline.check();
+                        for ( Future<Object> other : futures ) {
+                            if ( other.isDone() ) {
+                                other.get(); // the failure of any worker surfaces right away, not only when its turn comes
+                            }
+                        }
+                    }
+                }
+            }
+            return results; // Future.get() makes the writes of every worker visible here
 
-            default:
-                instantiatedColumnTypes[colIndex] = "default case in mapArrayListToPrimitive";
-                return list.toArray();
+        } catch ( Exception e ) {
+            next.set( selects.length ); // no worker takes another query
+            for ( QueryExecutor executor : executors ) {
+                executor.cancelCurrent();
+            }
+            pool.shutdownNow(); // interrupts the tasks that still wait, e.g. for a sibling connection
+            if ( deadline.isCancelled() ) {
+                throw deadline.cancellation( e );
+            }
+            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException( "Query batch failed: " + cause.getMessage(), cause );
+        } finally {
+            endExecution( deadline );
+            pool.shutdown();
         }
     }
 
 
-    /**
-     * @Description
-     * This function takes makes sure that the escapes of queries are handled correctly in Strings when appending.
-     * e.g. " C\mypath " must be converted into " C\\mypath " because "\" is an operator sign like in Latex
-     * @param string
-     * @return string: The string with the proper escape sequences
-     */
-    private static String escapeJson( String string ) {
-        return string.replace( "\\", "\\\\" ).replace( "\"", "\\\"" );
+    private static String abbreviate( String statement ) {
+        String flat = statement.replaceAll( "\\s+", " " );
+        return flat.length() <= 80 ? flat : flat.substring( 0, 77 ) + "...";
     }
 
 
@@ -981,47 +3111,254 @@ public class QueryExecutor {
      * This function is capable of executing a List of non-SELECT SQL statements in one single Matlab-Java crossing.
      * All SQL statements except SELECT are supported. For further information consult the Polypheny JDBC Driver documentation
      * → https://docs.polypheny.com/en/latest/drivers/jdbc/relational/statement
+     * The statements are sent in chunks of DEFAULT_BATCH_CHUNK_SIZE but committed in one single transaction (all or nothing). Inside a
+     * transaction opened with PolyphenyConnection.beginTransaction the batch becomes part of it and is committed with it.
      * 
      * @param queries The list of SQL query strings to be executed.
      * @return List<Integer> result A list of integers, where the i-th entry will denote for the i-th query how many rows were touched, e.g.
      * n: n rows were updated, 0: no rows were touched.
      */
     public int[] executeBatchSql( List<String> queries ) {
+        return executeBatchSql( queries, DEFAULT_BATCH_CHUNK_SIZE, false );
+    }
+
+
+    /**
+     * @Description
+     * Chunked version of executeBatchSql. The statements are added to the Statement batch and sent chunkSize at a time, so the client
+     * never builds one huge batch. With commitPerChunk = false all chunks run in one transaction that is rolled back as a whole on any
+     * failure. With commitPerChunk = true every chunk is committed on its own: on a failure only the failing chunk is rolled back, the
+     * chunks before it stay committed and the exception names the statement index to resume from. A cancel or timeout is thrown as
+     * the CancellationException it is, after the rollback of the running chunk; getBatchProgress() reports the progress of the running
+     * (or last) batch including the resume index.
+     * 
+     * @param queries The list of SQL query strings to be executed.
+     * @param chunkSize Number of statements per executeBatch() round trip (and per commit if commitPerChunk is set).
+     * @param commitPerChunk true: commit after every chunk, false: one transaction for the whole batch.
+     * @return The update counts of all statements in order.
+     */
+    public int[] executeBatchSql( List<String> queries, int chunkSize, boolean commitPerChunk ) {
+        if ( chunkSize <= 0 ) {
+            throw new IllegalArgumentException( "chunkSize must be positive." );
+        }
+        // Check all statements up front so a SELECT anywhere in the batch fails before anything was executed.
+        for ( String query : queries ) {
+            if ( startsWithKeyword( query, "SELECT" ) ) {
+                throw new UnsupportedOperationException( "Batch execution does not support SELECT statements." );
+            }
+        }
+
+        if ( commitPerChunk && polyconnection.inTransaction() ) {
+            throw new IllegalStateException( "commitPerChunk cannot be used inside an open transaction, it would commit the transaction after the first chunk. "
+                    + "Use commitPerChunk = false to add the batch to the transaction." );
+        }
+
+        int total = queries.size();
+        int chunkCount = ( total + chunkSize - 1 ) / chunkSize;
+        batchChunksTotal = chunkCount;
+        batchChunksDone = 0;
+        batchChunksCommitted = 0;
+        batchResumeIndex = 0;
+
         polyconnection.openIfNeeded();
+        int[] result = new int[total];
+        int chunk = 0;
+        QueryDeadline deadline = beginExecution( defaultTimeoutMillis / 1000.0 );
+        traceStart( "sql", null, batchLabel( queries ) );
         try {
-            polyconnection.beginTransaction();
-            try ( Statement stmt = polyconnection.getConnection().createStatement() ) {
-                for ( String query : queries ) {
-                    String first = query.trim().toUpperCase();
-                    if ( first.startsWith( "SELECT" ) ) {
-                        throw new UnsupportedOperationException( "Batch execution does not support SELECT statements." );
+            boolean own = polyconnection.beginOrJoinTransaction();
+            Connection connection = polyconnection.getConnection();
+            try ( Statement stmt = connection.createStatement() ) {
+                deadline.attach( stmt );
+                for ( ; chunk < chunkCount; chunk++ ) {
+                    deadline.check();
+                    int from = chunk * chunkSize;
+                    int to = Math.min( total, from + chunkSize );
+                    for ( int i = from; i < to; i++ ) {
+                        stmt.addBatch( queries.get( i ) );
+                    }
+                    int[] counts = stmt.executeBatch();
+                    stmt.clearBatch();
+                    System.arraycopy( counts, 0, result, from, Math.min( counts.length, to - from ) );
+                    if ( commitPerChunk ) {
+                        connection.commit();
+                        batchChunksCommitted = chunk + 1;
+                        batchResumeIndex = to;
                     }
-                    stmt.addBatch( query );
+                    batchChunksDone = chunk + 1;
+                }
+                if ( own ) {
+                    polyconnection.commitTransaction();
+                    batchChunksCommitted = chunkCount;
+                    batchResumeIndex = total;
                 }
-                int[] result = stmt.executeBatch();
-                polyconnection.commitTransaction();
                 return result;   // return directly
             } catch ( SQLException e ) {
-                try {
-                    polyconnection.rollbackTransaction();
-                } catch ( Exception rollbackException ) {
-                    // Propagate both the batch failure AND the rollback failure → User must be made
-                    throw new RuntimeException( "SQL batch failed AND rollback failed: " + rollbackException.getMessage(), e );
+                if ( own ) {
+                    try {
+                        polyconnection.rollbackTransaction();
+                    } catch ( Exception rollbackException ) {
+                        // Propagate both the batch failure AND the rollback failure → User must be made
+                        throw new RuntimeException( "SQL batch failed AND rollback failed: " + rollbackException.getMessage(), e );
+                    }
                 }
-                throw translateException( e );
+                RuntimeException failure = deadline.isCancelled() ? deadline.cancellation( e ) : translateException( e );
+                if ( commitPerChunk && !deadline.isCancelled() ) {
+                    // a cancel or timeout stays a CancellationException, getBatchProgress() has the resume index
+                    throw new RuntimeException( chunkFailureMessage( chunk, chunkSize, failure ), failure );
+                }
+                if ( !own && !deadline.isCancelled() ) {
+                    throw new RuntimeException( "SQL batch execution failed: " + failure.getMessage() + OPEN_TRANSACTION_KEPT, failure );
+                }
+                throw failure;
             } catch ( Exception e ) {
-                try {
-                    polyconnection.rollbackTransaction();
-                } catch ( Exception rollbackEx ) {
-                    // Propagate both the batch failure AND the rollback failure → User must be made
-                    throw new RuntimeException( "SQL batch failed AND rollback failed: " + rollbackEx.getMessage(), e );
+                if ( own ) {
+                    try {
+                        polyconnection.rollbackTransaction();
+                    } catch ( Exception rollbackEx ) {
+                        // Propagate both the batch failure AND the rollback failure → User must be made
+                        throw new RuntimeException( "SQL batch failed AND rollback failed: " + rollbackEx.getMessage(), e );
+                    }
+                }
+                if ( e instanceof CancellationException ) {
+                    throw (CancellationException) e;
+                }
+                if ( deadline.isCancelled() ) {
+                    throw deadline.cancellation( e );
+                }
+                if ( commitPerChunk ) {
+                    throw new RuntimeException( chunkFailureMessage( chunk, chunkSize, e ), e );
+                }
+                if ( !own ) {
+                    throw new RuntimeException( "SQL batch execution failed: " + e.getMessage() + OPEN_TRANSACTION_KEPT, e );
                 }
                 throw new RuntimeException( "SQL batch execution failed. Transaction was rolled back: " + e.getMessage(), e );
             }
 
         } catch ( SQLException e ) {
             throw new RuntimeException( "Failed to manage transaction", e );
+        } finally {
+            endExecution( deadline );
+        }
+    }
+
+
+    /**
+     * The query of a multi statement trace: the first statement and how many follow it.
+     */
+    private static String batchLabel( List<String> statements ) {
+        if ( statements.isEmpty() ) {
+            return "";
+        }
+        return statements.size() == 1 ? statements.get( 0 ) : statements.get( 0 ) + " /* +" + ( statements.size() - 1 ) + " more statements */";
+    }
+
+
+    private static String chunkFailureMessage( int chunk, int chunkSize, Exception e ) {
+        if ( chunk == 0 ) {
+            return "SQL batch failed in chunk 0, which was rolled back. Nothing was committed; resume from statement index 0: " + e.getMessage();
         }
+        return "SQL batch failed in chunk " + chunk + ", which was rolled back. Chunks 0.." + ( chunk - 1 ) + " (" + ( chunk * chunkSize )
+                + " statements) are committed; resume from statement index " + ( chunk * chunkSize ) + ": " + e.getMessage();
+    }
+
+
+    /**
+     * @Description
+     * Reports the progress of the running (or last) chunked executeBatchSql call. Can be polled from a second thread.
+     * 
+     * @return int[]{ chunksExecuted, chunksTotal, chunksCommitted, resumeIndex }, resumeIndex is the index of the first statement that
+     * is not committed, i.e. where to resume after a failed, cancelled or timed out batch.
+     */
+    public int[] getBatchProgress() {
+        return new int[]{ batchChunksDone, batchChunksTotal, batchChunksCommitted, batchResumeIndex };
+    }
+
+
+    /**
+     * @Description
+     * Splits a SQL script into its statements at every ; that is not inside a string literal ('it''s'), a quoted identifier ("a;b"), a
+     * line comment (-- ...) or a block comment. Pieces that only hold whitespace and comments are dropped, comments inside a statement
+     * are kept.
+     * 
+     * @param script The SQL script
+     * @return The trimmed statements in script order
+     */
+    static List<String> splitScript( String script ) {
+        List<String> statements = new ArrayList<>();
+        int length = script.length();
+        int start = 0;
+        boolean content = false; // anything but whitespace and comments since start
+        int i = 0;
+        while ( i < length ) {
+            char c = script.charAt( i );
+            if ( c == '\'' || c == '"' ) {
+                // a doubled quote inside the literal/identifier is an escaped quote
+                int close = i + 1;
+                while ( close < length && ( script.charAt( close ) != c || close + 1 < length && script.charAt( close + 1 ) == c ) ) {
+                    close += script.charAt( close ) == c ? 2 : 1;
+                }
+                if ( close >= length ) {
+                    throw new IllegalArgumentException( "Unterminated " + ( c == '\'' ? "string literal" : "quoted identifier" ) + " in the script at character " + i + "." );
+                }
+                i = close + 1;
+                content = true;
+            } else if ( c == '-' && i + 1 < length && script.charAt( i + 1 ) == '-' ) {
+                int newline = script.indexOf( '\n', i );
+                i = newline < 0 ? length : newline + 1;
+            } else if ( c == '/' && i + 1 < length && script.charAt( i + 1 ) == '*' ) {
+                int close = script.indexOf( "*/", i + 2 );
+                if ( close < 0 ) {
+                    throw new IllegalArgumentException( "Unterminated block comment in the script at character " + i + "." );
+                }
+                i = close + 2;
+            } else if ( c == ';' ) {
+                if ( content ) {
+                    statements.add( script.substring( start, i ).trim() );
+                }
+                start = ++i;
+                content = false;
+            } else {
+                content |= !Character.isWhitespace( c );
+                i++;
+            }
+        }
+        if ( content ) {
+            statements.add( script.substring( start ).trim() );
+        }
+        return statements;
+    }
+
+
+    /**
+     * @Description
+     * Cheap check whether a statement starts with the given keyword (case-insensitive). Leading whitespace, opening brackets and SQL
+     * comments are skipped. Unlike query.trim().toUpperCase() this does not copy the whole statement.
+     * 
+     * @param query The statement
+     * @param keyword The keyword in upper case, e.g. "SELECT"
+     * @return true if the first token of the statement is the keyword
+     */
+    static boolean startsWithKeyword( String query, String keyword ) {
+        int length = query.length();
+        int i = 0;
+        while ( i < length ) {
+            char c = query.charAt( i );
+            if ( Character.isWhitespace( c ) || c == '(' ) {
+                i++;
+            } else if ( c == '-' && i + 1 < length && query.charAt( i + 1 ) == '-' ) {
+                int newline = query.indexOf( '\n', i );
+                i = newline < 0 ? length : newline + 1;
+            } else if ( c == '/' && i + 1 < length && query.charAt( i + 1 ) == '*' ) {
+                int close = query.indexOf( "*/", i + 2 );
+                i = close < 0 ? length : close + 2;
+            } else {
+                break;
+            }
+        }
+        int end = i + keyword.length();
+        return query.regionMatches( true, i, keyword, 0, keyword.length() )
+                && ( end == length || !Character.isLetterOrDigit( query.charAt( end ) ) && query.charAt( end ) != '_' );
     }
 
 
@@ -1038,30 +3375,437 @@ public class QueryExecutor {
      * the documents or scalar results (as JSON strings) returned by the respective query.
      */
     public List<List<String>> executeBatchMongo( String namespace, List<String> queries ) {
+        return executeBatchMongo( namespace, queries, 1 );
+    }
+
+
+    /**
+     * @Description
+     * Pipelined version of executeBatchMongo. Instead of waiting for the response of every statement before the next one is sent, up to
+     * maxInFlight statements are kept outstanding on the PrismInterfaceClient. The responses are still collected strictly in query order,
+     * so the i-th entry of the result belongs to the i-th query. With maxInFlight = 1 this is the classic one-round-trip-per-statement
+     * execution. The whole batch runs in one transaction (all or nothing), or in the open transaction if there is one.
+     * 
+     * @param namespace The Mongo namespace (e.g. database / collection context).
+     * @param queries The list of Mongo query strings to be executed.
+     * @param maxInFlight The maximum number of statements sent but not yet answered.
+     * @return List<List<String>> result An outer list with one entry per query, see executeBatchMongo( namespace, queries ).
+     */
+    public List<List<String>> executeBatchMongo( String namespace, List<String> queries, int maxInFlight ) {
+        if ( maxInFlight <= 0 ) {
+            throw new IllegalArgumentException( "maxInFlight must be positive." );
+        }
         polyconnection.openIfNeeded();
-        List<List<String>> results = new ArrayList<>();
+        List<List<String>> results = new ArrayList<>( queries.size() );
+        ArrayDeque<org.polypheny.jdbc.utils.CallbackQueue<org.polypheny.jdbc.dependency.prism.StatementResponse>> inFlight = new ArrayDeque<>( maxInFlight );
+        QueryDeadline deadline = beginExecution( defaultTimeoutMillis / 1000.0 );
+        traceStart( "mongo", namespace, batchLabel( queries ) );
+        boolean own = false;
         try {
-            polyconnection.beginTransaction();
-
-            for ( String query : queries ) {
-                @SuppressWarnings("unchecked") List<String> result = (List<String>) executeMongo( "mongo", namespace, query );
+            own = polyconnection.beginOrJoinTransaction();
+            PolyConnection polyConnection = polyconnection.getConnection().unwrap( PolyConnection.class );
+            PrismInterfaceClient client = polyConnection.getPrismInterfaceClient();
+            int networkTimeout = polyConnection.getNetworkTimeout();
+
+            int next = 0;
+            while ( results.size() < queries.size() ) {
+                // keep the pipeline filled up to maxInFlight outstanding statements
+                while ( next < queries.size() && inFlight.size() < maxInFlight ) {
+                    deadline.check();
+                    inFlight.add( sendStatement( client, "mongo", namespace, queries.get( next++ ), deadline.prismTimeout( networkTimeout ) ) );
+                }
+                @SuppressWarnings("unchecked") List<String> result = (List<String>) awaitMongoResult( inFlight.poll(), deadline );
                 results.add( result );
             }
 
-            polyconnection.commitTransaction();  // commit if all succeeded
+            if ( own ) {
+                polyconnection.commitTransaction();  // commit if all succeeded
+            }
             return results;
 
         } catch ( Exception e ) {
-            try {
-                polyconnection.rollbackTransaction();  // rollback if anything failed
-            } catch ( Exception rollbackEx ) {
-                throw new RuntimeException( "Rollback failed after batch error", rollbackEx );
+            // Let the statements that are still in flight finish before rolling back, so the rollback covers all of them.
+            for ( org.polypheny.jdbc.utils.CallbackQueue<org.polypheny.jdbc.dependency.prism.StatementResponse> pending : inFlight ) {
+                try {
+                    pending.awaitCompletion();
+                } catch ( Exception ignored ) {
+                    // the batch already failed, the first error is the one reported
+                }
+            }
+            if ( own ) {
+                try {
+                    polyconnection.rollbackTransaction();  // rollback if anything failed
+                } catch ( Exception rollbackEx ) {
+                    throw new RuntimeException( "Rollback failed after batch error", rollbackEx );
+                }
+            }
+            if ( deadline.isCancelled() ) {
+                throw deadline.cancellation( e );
+            }
+            throw new RuntimeException( own ? "Batch execution failed" : "Batch execution failed." + OPEN_TRANSACTION_KEPT, e );
+        } finally {
+            endExecution( deadline );
+        }
+    }
+
+
+    /**
+     * @Description
+     * Inserts a MATLAB table (or any set of equally long columns) into a Mongo collection without any per-row work in MATLAB. The
+     * documents are assembled in Java straight from the primitive column arrays and sent as insertMany statements of batchSize
+     * documents each. While one batch is on the wire the next one is already being built. All batches run in one transaction, or in the
+     * open transaction if there is one.
+     * 
+     * Supported column types (as MATLAB passes them): double[] (NaN → null), float[], long[], int[], short[], byte[], boolean[], String[]
+     * (null/missing → null) and Object[] (e.g. a cell array of mixed scalars).
+     * 
+     * @param namespace The Mongo namespace the collection lives in
+     * @param collection The collection name
+     * @param fieldNames The document field names, one per column
+     * @param columns The columns, columns[i] holds the values of fieldNames[i] for all documents
+     * @param batchSize Documents per insertMany statement
+     * @return The number of inserted documents
+     */
+    public double mongoBulkInsert( String namespace, String collection, String[] fieldNames, Object[] columns, int batchSize ) {
+        if ( fieldNames.length != columns.length ) {
+            throw new IllegalArgumentException( "mongoBulkInsert got " + fieldNames.length + " field names but " + columns.length + " columns." );
+        }
+        if ( batchSize <= 0 ) {
+            throw new IllegalArgumentException( "batchSize must be positive." );
+        }
+        int rows = columns.length == 0 ? 0 : java.lang.reflect.Array.getLength( columns[0] );
+        for ( int c = 0; c < columns.length; c++ ) {
+            if ( java.lang.reflect.Array.getLength( columns[c] ) != rows ) {
+                throw new IllegalArgumentException( "Column " + fieldNames[c] + " has " + java.lang.reflect.Array.getLength( columns[c] ) + " entries, expected " + rows + "." );
+            }
+        }
+
+        // The keys are the same for every document, so they are escaped once up front.
+        String[] encodedKeys = new String[fieldNames.length];
+        for ( int c = 0; c < fieldNames.length; c++ ) {
+            encodedKeys[c] = "\"" + escapeJson( fieldNames[c] ) + "\":";
+        }
+
+        polyconnection.openIfNeeded();
+        ArrayDeque<org.polypheny.jdbc.utils.CallbackQueue<org.polypheny.jdbc.dependency.prism.StatementResponse>> inFlight = new ArrayDeque<>( 2 );
+        QueryDeadline deadline = beginExecution( defaultTimeoutMillis / 1000.0 );
+        traceStart( "mongo", namespace, "db." + collection + ".insertMany(" + rows + " documents)" );
+        boolean own = false;
+        try {
+            own = polyconnection.beginOrJoinTransaction();
+            PolyConnection polyConnection = polyconnection.getConnection().unwrap( PolyConnection.class );
+            PrismInterfaceClient client = polyConnection.getPrismInterfaceClient();
+            int networkTimeout = polyConnection.getNetworkTimeout();
+
+            StringBuilder sb = new StringBuilder( 1024 * 1024 );
+            for ( int from = 0; from < rows; from += batchSize ) {
+                deadline.check();
+                int to = Math.min( rows, from + batchSize );
+                sb.setLength( 0 );
+                sb.append( "db." ).append( collection ).append( ".insertMany([" );
+                for ( int row = from; row < to; row++ ) {
+                    if ( row > from ) {
+                        sb.append( ',' );
+                    }
+                    sb.append( '{' );
+                    for ( int c = 0; c < columns.length; c++ ) {
+                        if ( c > 0 ) {
+                            sb.append( ',' );
+                        }
+                        sb.append( encodedKeys[c] );
+                        appendColumnValueAsJson( columns[c], row, sb );
+                    }
+                    sb.append( '}' );
+                }
+                sb.append( "])" );
+
+                // At most one batch waits for its answer while the next one is built.
+                if ( inFlight.size() == 2 ) {
+                    awaitMongoResult( inFlight.poll(), deadline );
+                }
+                inFlight.add( sendStatement( client, "mongo", namespace, sb.toString(), deadline.prismTimeout( networkTimeout ) ) );
+            }
+            while ( !inFlight.isEmpty() ) {
+                awaitMongoResult( inFlight.poll(), deadline );
+            }
+
+            if ( own ) {
+                polyconnection.commitTransaction();
+            }
+            return rows;
+
+        } catch ( Exception e ) {
+            for ( org.polypheny.jdbc.utils.CallbackQueue<org.polypheny.jdbc.dependency.prism.StatementResponse> pending : inFlight ) {
+                try {
+                    pending.awaitCompletion();
+                } catch ( Exception ignored ) {
+                    // the insert already failed, the first error is the one reported
+                }
+            }
+            if ( own ) {
+                try {
+                    polyconnection.rollbackTransaction();
+                } catch ( Exception rollbackEx ) {
+                    throw new RuntimeException( "Rollback failed after bulk insert error", rollbackEx );
+                }
+            }
+            if ( deadline.isCancelled() ) {
+                throw deadline.cancellation( e );
+            }
+            throw new RuntimeException( "Mongo bulk insert into " + collection + " failed" + ( own ? ". Transaction was rolled back: " + e.getMessage() : ": " + e.getMessage() + OPEN_TRANSACTION_KEPT ), e );
+        } finally {
+            endExecution( deadline );
+        }
+    }
+
+
+    /**
+     * @Description
+     * Appends the row-th value of a primitive column as JSON value. Integral doubles are written without fraction so that MATLAB ids
+     * (which are always double) end up as integers in the document.
+     */
+    private static void appendColumnValueAsJson( Object column, int row, StringBuilder sb ) {
+        if ( column instanceof double[] ) {
+            appendJsonNumber( ( (double[]) column )[row], sb );
+        } else if ( column instanceof float[] ) {
+            appendJsonNumber( ( (float[]) column )[row], sb );
+        } else if ( column instanceof long[] ) {
+            sb.append( ( (long[]) column )[row] );
+        } else if ( column instanceof int[] ) {
+            sb.append( ( (int[]) column )[row] );
+        } else if ( column instanceof short[] ) {
+            sb.append( ( (short[]) column )[row] );
+        } else if ( column instanceof byte[] ) {
+            sb.append( ( (byte[]) column )[row] );
+        } else if ( column instanceof boolean[] ) {
+            sb.append( ( (boolean[]) column )[row] );
+        } else if ( column instanceof Object[] ) {
+            Object value = ( (Object[]) column )[row];
+            if ( value == null ) {
+                sb.append( "null" );
+            } else if ( value instanceof Boolean ) {
+                sb.append( value );
+            } else if ( value instanceof Number ) {
+                appendJsonNumber( ( (Number) value ).doubleValue(), sb );
+            } else {
+                sb.append( '"' ).append( escapeJson( value.toString() ) ).append( '"' );
+            }
+        } else {
+            throw new IllegalArgumentException( "Unsupported column type for mongoBulkInsert: " + column.getClass().getSimpleName() );
+        }
+    }
+
+
+    private static void appendJsonNumber( double value, StringBuilder sb ) {
+        if ( Double.isNaN( value ) || Double.isInfinite( value ) ) {
+            sb.append( "null" );
+        } else if ( value == Math.rint( value ) && Math.abs( value ) < 1e15 ) {
+            sb.append( (long) value );
+        } else {
+            sb.append( value );
+        }
+    }
+
+
+    /**
+     * @Description
+     * Streams a CSV or raw binary file straight into a table without the data ever entering the MATLAB workspace. The file is parsed
+     * in parallel, memory-mapped chunks and inserted through batched PreparedStatements. See FileImporter.importFile for the options.
+     *
+     * @param path The path of the file to import
+     * @param table The target table, e.g. "sensors.readings"
+     * @param format "csv" or "binary"
+     * @param options "key=value" Strings, e.g. { "types=double,double,int64", "commitInterval=1000000" }
+     * @return double[]{ rowsCommitted, bytesParsed, elapsedSeconds, rowsPerSecond, totalBytes, rowsInserted }
+     */
+    public double[] importFile( String path, String table, String format, String[] options ) {
+        polyconnection.openIfNeeded();
+        FileImporter importer = new FileImporter( polyconnection );
+        lastImport = importer;
+        // Imports run for minutes by design, so the executor deadline does not apply. cancelCurrent() still stops them.
+        QueryDeadline deadline = beginExecution( 0 );
+        try {
+            return importer.importFile( path, table, format, options, deadline );
+        } finally {
+            endExecution( deadline );
+        }
+    }
+
+
+    /**
+     * @Description
+     * Returns the progress counters of the running (or last) importFile call. Can be polled from a second thread.
+     *
+     * @return double[]{ rowsCommitted, bytesParsed, elapsedSeconds, rowsPerSecond, totalBytes, rowsInserted } or null if no import ran yet.
+     */
+    public double[] getImportProgress() {
+        FileImporter importer = lastImport;
+        return importer == null ? null : importer.getProgress();
+    }
+
+
+    /**
+     * @Description
+     * Opens a write-behind inserter into a table for rows that are produced one at a time. The rows are buffered in Java and written by
+     * a background thread on its own connection in batches of flushRows rows, or at the latest flushSeconds after they were added. At
+     * most 4 full batches wait for the server before addRow blocks. See BufferedInserter.
+     *
+     * @param table The target table, e.g. "sensors.readings"
+     * @param columns The target columns, null or empty for a positional insert
+     * @param types One column type per column as for importFile (double, int64, boolean, string, auto, ...)
+     * @param flushRows Rows per background batch
+     * @param flushSeconds Longest time a row waits in the buffer, 0 to flush by size only
+     * @return The inserter. The caller closes it, which flushes the remaining rows.
+     */
+    public BufferedInserter openInserter( String table, String[] columns, String[] types, int flushRows, double flushSeconds ) {
+        return openInserter( table, columns, types, flushRows, flushSeconds, 4 );
+    }
+
+
+    /**
+     * @Description
+     * Same as openInserter( table, columns, types, flushRows, flushSeconds ) with the number of full batches that may wait for the server
+     * before addRow blocks.
+     */
+    public BufferedInserter openInserter( String table, String[] columns, String[] types, int flushRows, double flushSeconds, int maxPendingBatches ) {
+        return new BufferedInserter( polyconnection.openSibling(), table, columns == null || columns.length == 0 ? null : columns, types, flushRows, flushSeconds, maxPendingBatches );
+    }
+
+
+    /**
+     * @Description
+     * Removes the first-query latency of a fresh session. The connection (and with it the gRPC channel) is opened, the driver and
+     * multimodel classes are loaded, the given statements are prepared on the server and DriverToJava plus the JSON walkers are run
+     * often enough on one row of every value type to get them JIT compiled. Prewarming is best effort: statements or types the server
+     * rejects are skipped, only a failing connection is reported.
+     * The decode runs on the first of the built-in type-covering queries that the server accepts and the decoder handles; decodeQuery
+     * tells which one (0 covers every type branch, higher indices are the fallbacks with fewer types, -1 means none worked).
+     * 
+     * @param representativeQueries SQL statements the session is going to run, they are prepared but not executed. May be null.
+     * @return double[]{ elapsedSeconds, preparedStatements, decodeCalls, decodeQuery }
+     */
+    public double[] prewarm( String[] representativeQueries ) {
+        long start = System.nanoTime();
+
+        polyconnection.beginUse();
+        try {
+            // 1. Connection and gRPC channel
+            polyconnection.openIfNeeded();
+            Connection connection = polyconnection.getConnection();
+
+            // 2. Classes. DriverAccess resolves its MethodHandles in its static initializer.
+            DriverAccess.isAvailable();
+            for ( String className : PREWARM_CLASSES ) {
+                try {
+                    Class.forName( className, true, QueryExecutor.class.getClassLoader() );
+                } catch ( ClassNotFoundException | LinkageError ignored ) {
+                    // class not present in this driver version
+                }
+            }
+
+            // 3. Server side: parse and plan the statements the session will run
+            int prepared = 0;
+            if ( representativeQueries != null ) {
+                for ( String query : representativeQueries ) {
+                    try ( PreparedStatement statement = connection.prepareStatement( query ) ) {
+                        prepared++;
+                    } catch ( SQLException ignored ) {
+                        // not preparable (e.g. DDL or a typo), the real call reports it
+                    }
+                }
+            }
+
+            // 4. JIT: decode one row of every type over and over
+            long decodeCalls = 0;
+            int decodeQuery = -1;
+            for ( int q = 0; q < PREWARM_QUERIES.length; q++ ) {
+                try {
+                    decodeCalls = prewarmDecode( connection, PREWARM_QUERIES[q] );
+                    decodeQuery = q;
+                    break;
+                } catch ( Exception ignored ) {
+                    // literal not supported by this server, try the next, simpler query
+                }
+            }
+            return new double[]{ ( System.nanoTime() - start ) / 1e9, prepared, decodeCalls, decodeQuery };
+        } finally {
+            polyconnection.endUse();
+        }
+    }
+
+
+    /**
+     * Runs the prewarm query through handleResultSet once and then feeds the TypedValues of its row PREWARM_DECODE_ITERATIONS times
+     * through DriverToJava and the JsonWriter.
+     * 
+     * @return The number of synthetic decode calls
+     */
+    private long prewarmDecode( Connection connection, String query ) throws Exception {
+        try ( Statement statement = connection.createStatement() ) {
+            try ( ResultSet resultSet = statement.executeQuery( query ) ) {
+                handleResultSet( (PolyphenyResultSet) resultSet );
+            }
+            if ( !DriverAccess.isAvailable() ) {
+                return 0; // JDBC fallback: nothing of our own decode path to warm up
+            }
+            try ( ResultSet resultSet = statement.executeQuery( query ) ) {
+                if ( !resultSet.next() ) {
+                    return 0;
+                }
+                ResultSetMetaData meta = resultSet.getMetaData();
+                int colCount = meta.getColumnCount();
+                String[] instantiatedColumnTypes = new String[colCount];
+                TypedValue[] row = new TypedValue[colCount];
+                for ( int i = 1; i <= colCount; i++ ) {
+                    createJavaTypeArrayList( meta.getColumnTypeName( i ), instantiatedColumnTypes, i - 1 );
+                    row[i - 1] = getTypedValue( (PolyphenyResultSet) resultSet, i );
+                }
+
+                JsonWriter json = JsonWriter.local();
+                long calls = 0;
+                for ( int n = 0; n < PREWARM_DECODE_ITERATIONS; n++ ) {
+                    for ( int c = 0; c < colCount; c++ ) {
+                        DriverToJava( row[c], json, instantiatedColumnTypes, c );
+                        json.toJson( getRawProto( row[c] ) );
+                        calls += 2;
+                    }
+                }
+                return calls;
             }
-            throw new RuntimeException( "Batch execution failed", e );
         }
     }
 
 
+    /**
+     * @Description
+     * Starts prewarm( representativeQueries ) on a daemon thread and returns right away, so MATLAB can construct the connector without
+     * waiting. isPrewarmed() tells when it is done.
+     * The background prewarm runs on its own sibling connection with a private QueryExecutor, which is closed afterwards: the queries
+     * MATLAB starts in the meantime keep their connection, deadline, memory reservation, trace and blob files to themselves. Classes,
+     * JIT compiled code and the statements prepared on the server are shared, so they are warm for this executor all the same.
+     */
+    public void prewarmAsync( String[] representativeQueries ) {
+        PolyphenyConnection sibling = polyconnection.openSibling();
+        prewarm = java.util.concurrent.CompletableFuture.supplyAsync( () -> {
+            try {
+                return new QueryExecutor( sibling ).prewarm( representativeQueries );
+            } finally {
+                sibling.close();
+            }
+        }, runnable -> ExecutionThreads.start( "polypheny-prewarm", runnable ) );
+    }
+
+
+    /**
+     * @Description
+     * Whether the background prewarm started by prewarmAsync(...) finished (successfully or not). false if none was started.
+     */
+    public boolean isPrewarmed() {
+        java.util.concurrent.CompletableFuture<double[]> task = prewarm;
+        return task != null && task.isDone();
+    }
+
+
     /**
      * @Description
      * This method ensures that exceptions thrown by Polypheny (and propagated through the JDBC driver) due to user fault when calling
@@ -1102,15 +3846,14 @@ public class QueryExecutor {
 
     /**
      * @Description
-     * This function determines the operation (e.g. "find" or "insertOne") of a Mongo query. This is important to distinguish
-     * whether to use executeUpdate or executeQuery. Functionality was moved to a function (instead of handling it like for SQL)
+     * This function determines the operation (e.g. "find" or "insertOne") of a Mongo query. It is used to decide whether a
+     * query is a read that may be retried after a lost connection. Functionality was moved to a function (instead of handling it like for SQL)
      * because in Mongo queries the operation isn't as easy to determine.
      * MQL queries are always of the form <db>.<namespace>.<operation>()
      * 
      * @param q The query text of type String
      * @return
      **/
-    /*
     private static String extractMongoOperation( String q ) {
         String query = q.trim();
         int paren = query.indexOf( '(' );                    // get the position of the first "(" in the query. 
@@ -1124,6 +3867,5 @@ public class QueryExecutor {
         String operation = query.substring( lastDot + 1, paren ).trim();
         return operation;                                       // return the <operation>
     }
-    */
 
 }
@@ -0,0 +1,467 @@
+package polyphenyconnector;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Opt-in slow query log (see QueryExecutor.enableTrace). Every execution of a tracing executor carries a Trace that collects the time
+ * spent per phase:
+ * - connect:     openIfNeeded (validation round trip, reconnect)
+ * - execute:     the server executes the statement and sends the first frame
+ * - fetch:       further frames (ResultSet.next() calls that go to the server)
+ * - decode:      turning the raw values into Java values (DriverToJava, JSON)
+ * - materialize: copying the decoded columns into the primitive arrays MATLAB receives
+ * Executions slower than the threshold, and a random sample of the faster ones, are written as one JSON line each to a local log file
+ * that is rotated by size. The executing thread only hands the finished Trace to a bounded queue (never blocking: if the queue is full
+ * the line is dropped and counted); normalizing the query, formatting and writing happen on one daemon writer thread per log file.
+ * The writer of a file lives as long as a tracer uses it: close() of the last one writes the queued lines, closes the file and ends
+ * the thread. A shutdown hook does the same for the files still open when the JVM (MATLAB) exits.
+ */
+
+final class QueryTracer {
+
+    private static final int MAX_QUERY_LENGTH = 500;
+
+    // One appender per log file, shared by all executors that trace into it, so rotation never races between two writers.
+    private static final Map<Path, Appender> APPENDERS = new HashMap<>();
+    private static boolean shutdownHookAdded; // guarded by APPENDERS
+
+    private final Appender appender;
+    private final long thresholdNanos;
+    private final double sampleRate;
+    private boolean closed; // guarded by APPENDERS
+
+
+    /**
+     * Per phase timings of one execution. Only touched by the executing thread until it is handed to the appender.
+     */
+    static final class Trace {
+
+        static final int CONNECT = 0, EXECUTE = 1, FETCH = 2, DECODE = 3, MATERIALIZE = 4;
+        private static final String[] PHASE_NAMES = { "connectMs", "executeMs", "fetchMs", "decodeMs", "materializeMs" };
+
+        final long startMillis = System.currentTimeMillis();
+        final long startNanos = System.nanoTime();
+        final String language;
+        final String namespace;
+        final String query;
+        final long[] phaseNanos = new long[PHASE_NAMES.length];
+        long rows;
+        long bytes;
+        long totalNanos;
+        boolean cancelled;
+        boolean sampled;
+
+        private long mark = startNanos;
+        private long pendingFetchNanos;
+
+
+        Trace( String language, String namespace, String query ) {
+            this.language = language;
+            this.namespace = namespace;
+            this.query = query;
+        }
+
+
+        /**
+         * Books the time since the last lap onto the phase, minus the fetch time measured inside it by next( resultSet ).
+         */
+        void lap( int phase ) {
+            long now = System.nanoTime();
+            phaseNanos[phase] += now - mark - pendingFetchNanos;
+            phaseNanos[FETCH] += pendingFetchNanos;
+            pendingFetchNanos = 0;
+            mark = now;
+        }
+
+
+        /**
+         * ResultSet.next() with its time booked as fetch: most calls only advance inside the current frame, the others go to the server.
+         */
+        boolean next( java.sql.ResultSet resultSet ) throws java.sql.SQLException {
+            long start = System.nanoTime();
+            try {
+                return resultSet.next();
+            } finally {
+                pendingFetchNanos += System.nanoTime() - start;
+            }
+        }
+
+
+        void addRows( long rows, long bytes ) {
+            this.rows += rows;
+            this.bytes += bytes;
+        }
+    }
+
+
+    QueryTracer( String path, double thresholdMs, double sampleRate, double maxFileMB, int maxFiles ) throws IOException {
+        if ( thresholdMs < 0 || sampleRate < 0 || sampleRate > 1 || maxFileMB <= 0 || maxFiles < 0 ) {
+            throw new IllegalArgumentException( "The trace needs thresholdMs >= 0, 0 <= sampleRate <= 1, maxFileMB > 0 and maxFiles >= 0." );
+        }
+        Path file = Paths.get( path ).toAbsolutePath().normalize();
+        synchronized ( APPENDERS ) {
+            Appender existing = APPENDERS.get( file );
+            if ( existing == null ) {
+                existing = new Appender( file );
+                APPENDERS.put( file, existing );
+                if ( !shutdownHookAdded ) {
+                    Runtime.getRuntime().addShutdownHook( new Thread( QueryTracer::closeAll, "polypheny-trace-shutdown" ) );
+                    shutdownHookAdded = true;
+                }
+            }
+            existing.configure( (long) ( maxFileMB * 1024 * 1024 ), maxFiles );
+            existing.users++;
+            this.appender = existing;
+        }
+        this.thresholdNanos = (long) ( thresholdMs * 1e6 );
+        this.sampleRate = sampleRate;
+    }
+
+
+    Trace start( String language, String namespace, String query ) {
+        return new Trace( language, namespace, query );
+    }
+
+
+    /**
+     * @Description
+     * - Ends a trace and queues it for the log if it was slower than the threshold or is part of the sample of fast executions. Never
+     * blocks.
+     */
+    void finish( Trace trace, boolean cancelled ) {
+        trace.totalNanos = System.nanoTime() - trace.startNanos;
+        trace.cancelled = cancelled;
+        if ( trace.totalNanos < thresholdNanos ) {
+            if ( sampleRate <= 0 || ThreadLocalRandom.current().nextDouble() >= sampleRate ) {
+                return;
+            }
+            trace.sampled = true;
+        }
+        appender.offer( trace );
+    }
+
+
+    /**
+     * @Description
+     * - Stops using the log file. The last tracer of a file removes its appender, which writes the lines still queued, closes the file
+     * and ends its thread. Calling close() again does nothing.
+     */
+    void close() {
+        Appender last = null;
+        synchronized ( APPENDERS ) {
+            if ( closed ) {
+                return;
+            }
+            closed = true;
+            if ( --appender.users == 0 ) {
+                APPENDERS.remove( appender.file );
+                last = appender;
+            }
+        }
+        if ( last != null ) {
+            last.shutdown();
+        }
+    }
+
+
+    /**
+     * Shutdown hook: flushes and closes every log file that is still open.
+     */
+    private static void closeAll() {
+        Appender[] open;
+        synchronized ( APPENDERS ) {
+            open = APPENDERS.values().toArray( new Appender[0] );
+            APPENDERS.clear();
+        }
+        for ( Appender appender : open ) {
+            appender.shutdown();
+        }
+    }
+
+
+    /**
+     * @return double[]{ linesWritten, linesDropped, currentFileBytes } of the log file this tracer writes to
+     */
+    double[] stats() {
+        return new double[]{ appender.written.get(), appender.dropped.get(), appender.size };
+    }
+
+
+    /**
+     * @Description
+     * - Collapses whitespace and replaces string and number literals with ?, so the same statement with different values yields the
+     * same line, and cuts the result at maxLength characters. '...' are string literals in every language.
+     */
+    static String normalize( String query, int maxLength ) {
+        return normalize( query, maxLength, false );
+    }
+
+
+    /**
+     * @Description
+     * - Same as normalize( query, maxLength ). With doubleQuotedStrings, "..." are string literals as well (Mongo and Cypher), except
+     * for document keys, i.e. a "..." followed by a colon. In SQL "..." are identifiers and stay.
+     */
+    static String normalize( String query, int maxLength, boolean doubleQuotedStrings ) {
+        if ( query == null ) {
+            return null;
+        }
+        int length = query.length();
+        StringBuilder sb = new StringBuilder( Math.min( length, maxLength ) + 3 );
+        boolean space = false;
+        int i = 0;
+        while ( i < length && sb.length() < maxLength ) {
+            char c = query.charAt( i );
+            if ( Character.isWhitespace( c ) ) {
+                space = true;
+                i++;
+                continue;
+            }
+            if ( space && sb.length() > 0 ) {
+                sb.append( ' ' );
+            }
+            space = false;
+            char previous = sb.length() == 0 ? ' ' : sb.charAt( sb.length() - 1 );
+            if ( c == '\'' ) {
+                // string literal, '' is an escaped quote inside it
+                i++;
+                while ( i < length ) {
+                    if ( query.charAt( i ) == '\'' ) {
+                        if ( i + 1 < length && query.charAt( i + 1 ) == '\'' ) {
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    i++;
+                }
+                i++; // the closing quote
+                sb.append( '?' );
+            } else if ( c == '"' && doubleQuotedStrings ) {
+                // string literal with backslash escapes
+                int start = i++;
+                while ( i < length && query.charAt( i ) != '"' ) {
+                    i += query.charAt( i ) == '\\' ? 2 : 1;
+                }
+                i = Math.min( i + 1, length ); // the closing quote
+                int next = i;
+                while ( next < length && Character.isWhitespace( query.charAt( next ) ) ) {
+                    next++;
+                }
+                if ( next < length && query.charAt( next ) == ':' ) {
+                    sb.append( query, start, i ); // a key, not a value
+                } else {
+                    sb.append( '?' );
+                }
+            } else if ( Character.isDigit( c ) && !Character.isLetterOrDigit( previous ) && previous != '_' ) {
+                // number literal, including fractions and exponents
+                while ( i < length && ( Character.isLetterOrDigit( query.charAt( i ) ) || query.charAt( i ) == '.' ) ) {
+                    i++;
+                }
+                sb.append( '?' );
+            } else {
+                sb.append( c );
+                i++;
+            }
+        }
+        while ( i < length && Character.isWhitespace( query.charAt( i ) ) ) {
+            i++;
+        }
+        if ( i < length ) {
+            sb.append( "..." );
+        }
+        return sb.toString();
+    }
+
+
+    /**
+     * @Description
+     * - One JSON line, e.g. {"ts":"2024-01-01T12:00:00.123Z","language":"sql","namespace":null,"query":"SELECT * FROM t WHERE id = ?",
+     * "rows":10,"bytes":1240,"totalMs":12.345,"connectMs":0.002,...,"cancelled":false,"sampled":false}
+     */
+    static String format( Trace trace ) {
+        StringBuilder sb = new StringBuilder( 256 + MAX_QUERY_LENGTH );
+        sb.append( "{\"ts\":\"" ).append( Instant.ofEpochMilli( trace.startMillis ) ).append( '"' );
+        appendString( sb, "language", trace.language );
+        appendString( sb, "namespace", trace.namespace );
+        appendString( sb, "query", normalize( trace.query, MAX_QUERY_LENGTH, !"sql".equalsIgnoreCase( trace.language ) ) );
+        sb.append( ",\"rows\":" ).append( trace.rows );
+        sb.append( ",\"bytes\":" ).append( trace.bytes );
+        appendMillis( sb, "totalMs", trace.totalNanos );
+        for ( int p = 0; p < Trace.PHASE_NAMES.length; p++ ) {
+            appendMillis( sb, Trace.PHASE_NAMES[p], trace.phaseNanos[p] );
+        }
+        sb.append( ",\"cancelled\":" ).append( trace.cancelled );
+        sb.append( ",\"sampled\":" ).append( trace.sampled );
+        return sb.append( '}' ).toString();
+    }
+
+
+    private static void appendString( StringBuilder sb, String key, String value ) {
+        sb.append( ",\"" ).append( key ).append( "\":" );
+        if ( value == null ) {
+            sb.append( "null" );
+        } else {
+            sb.append( '"' ).append( JsonWriter.escape( value ) ).append( '"' );
+        }
+    }
+
+
+    private static void appendMillis( StringBuilder sb, String key, long nanos ) {
+        sb.append( ",\"" ).append( key ).append( "\":" ).append( String.format( Locale.ROOT, "%.3f", nanos / 1e6 ) );
+    }
+
+
+    /**
+     * Asynchronous, size-rotated writer of one log file: log → log.1 → ... → log.maxFiles, the oldest file is deleted.
+     */
+    private static final class Appender implements Runnable {
+
+        private static final Trace STOP = new Trace( null, null, null ); // queued by shutdown(), ends the writer thread
+
+        private final Path file;
+        private final Thread thread;
+        private int users; // tracers writing to this file, guarded by APPENDERS
+        private final BlockingQueue<Trace> queue = new ArrayBlockingQueue<>( 8192 );
+        private final AtomicLong written = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+        private volatile long maxBytes;
+        private volatile int maxFiles;
+        private volatile long size;
+        private OutputStream out;
+
+
+        Appender( Path file ) throws IOException {
+            this.file = file;
+            Path parent = file.getParent();
+            if ( parent != null ) {
+                Files.createDirectories( parent );
+            }
+            this.size = Files.exists( file ) ? Files.size( file ) : 0;
+            this.thread = new Thread( this, "polypheny-trace-writer" );
+            thread.setDaemon( true );
+            thread.start();
+        }
+
+
+        /**
+         * Lets the writer write what is queued, close the file and end. Waits at most one second for it.
+         */
+        void shutdown() {
+            try {
+                if ( queue.offer( STOP, 1, java.util.concurrent.TimeUnit.SECONDS ) ) {
+                    thread.join( 1000 );
+                }
+            } catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+
+        void configure( long maxBytes, int maxFiles ) {
+            this.maxBytes = maxBytes;
+            this.maxFiles = maxFiles;
+        }
+
+
+        void offer( Trace trace ) {
+            if ( !queue.offer( trace ) ) {
+                dropped.incrementAndGet();
+            }
+        }
+
+
+        @Override
+        public void run() {
+            while ( true ) {
+                try {
+                    Trace trace = queue.poll();
+                    if ( trace == null ) {
+                        // Queue drained: make the lines visible on disk before waiting for the next one.
+                        if ( out != null ) {
+                            out.flush();
+                        }
+                        trace = queue.take();
+                    }
+                    if ( trace == STOP ) {
+                        closeQuietly();
+                        return;
+                    }
+                    write( ( format( trace ) + "\n" ).getBytes( StandardCharsets.UTF_8 ) );
+                } catch ( InterruptedException e ) {
+                    return;
+                } catch ( IOException | RuntimeException e ) {
+                    // Tracing must never fail a query: count the line as dropped and start with a fresh stream.
+                    dropped.incrementAndGet();
+                    closeQuietly();
+                }
+            }
+        }
+
+
+        private void write( byte[] line ) throws IOException {
+            if ( size > 0 && size + line.length > maxBytes ) {
+                rotate();
+            }
+            if ( out == null ) {
+                out = new BufferedOutputStream( Files.newOutputStream( file, StandardOpenOption.CREATE, StandardOpenOption.APPEND ), 64 * 1024 );
+                size = Files.size( file );
+            }
+            out.write( line );
+            size += line.length;
+            written.incrementAndGet();
+        }
+
+
+        private void rotate() throws IOException {
+            closeQuietly();
+            int keep = maxFiles;
+            if ( keep == 0 ) {
+                Files.deleteIfExists( file );
+            } else {
+                Files.deleteIfExists( rotated( keep ) );
+                for ( int i = keep - 1; i >= 1; i-- ) {
+                    if ( Files.exists( rotated( i ) ) ) {
+                        Files.move( rotated( i ), rotated( i + 1 ), StandardCopyOption.REPLACE_EXISTING );
+                    }
+                }
+                Files.move( file, rotated( 1 ), StandardCopyOption.REPLACE_EXISTING );
+            }
+            size = 0;
+        }
+
+
+        private Path rotated( int index ) {
+            return file.resolveSibling( file.getFileName() + "." + index );
+        }
+
+
+        private void closeQuietly() {
+            if ( out != null ) {
+                try {
+                    out.close();
+                } catch ( IOException ignored ) {
+                    // the stream is replaced anyway
+                }
+                out = null;
+            }
+        }
+    }
+
+}
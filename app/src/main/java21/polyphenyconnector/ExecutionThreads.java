@@ -0,0 +1,41 @@
+package polyphenyconnector;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+ * Java 21 version of ExecutionThreads, packaged under META-INF/versions/21 of the multi-release JAR. Same API as the Java 8 version in
+ * src/main/java, but every task gets its own virtual thread: a task that waits for the server only parks its virtual thread and frees
+ * the carrier thread, so the number of concurrent tasks is bounded by the callers (connections), not by a pool size.
+ */
+
+final class ExecutionThreads {
+
+    private ExecutionThreads() {
+    }
+
+
+    static boolean isVirtual() {
+        return true;
+    }
+
+
+    /**
+     * @Description
+     * - Executor that starts one virtual thread per task, named name-0, name-1, ... maxConcurrency needs no pool here, the callers only
+     * submit as many tasks as should run at the same time. shutdownNow() interrupts every running task.
+     */
+    static ExecutorService newExecutor( String name, int maxConcurrency ) {
+        return Executors.newThreadPerTaskExecutor( Thread.ofVirtual().name( name + "-", 0 ).factory() );
+    }
+
+
+    /**
+     * @Description
+     * - Starts one waiting task on a virtual thread (virtual threads are always daemon threads).
+     */
+    static Thread start( String name, Runnable task ) {
+        return Thread.ofVirtual().name( name ).start( task );
+    }
+
+}
@@ -0,0 +1,195 @@
+package polyphenyconnector;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.polypheny.jdbc.dependency.prism.*;
+
+/*
+ * Runs without a Polypheny server: the documents are built with the protobuf builders of the driver.
+ */
+public class JsonWriterTest {
+
+    private static ProtoValue string( String s ) {
+        return ProtoValue.newBuilder().setString( ProtoString.newBuilder().setString( s ) ).build();
+    }
+
+
+    private static ProtoValue integer( int i ) {
+        return ProtoValue.newBuilder().setInteger( ProtoInteger.newBuilder().setInteger( i ) ).build();
+    }
+
+
+    private static ProtoValue number( double d ) {
+        return ProtoValue.newBuilder().setDouble( ProtoDouble.newBuilder().setDouble( d ) ).build();
+    }
+
+
+    private static ProtoValue list( ProtoValue... values ) {
+        ProtoList.Builder list = ProtoList.newBuilder();
+        for ( ProtoValue v : values ) {
+            list.addValues( v );
+        }
+        return ProtoValue.newBuilder().setList( list ).build();
+    }
+
+
+    private static ProtoValue document( Object... keysAndValues ) {
+        ProtoDocument.Builder doc = ProtoDocument.newBuilder();
+        for ( int i = 0; i < keysAndValues.length; i += 2 ) {
+            doc.addEntries( ProtoEntry.newBuilder().setKey( string( (String) keysAndValues[i] ) ).setValue( (ProtoValue) keysAndValues[i + 1] ) );
+        }
+        return ProtoValue.newBuilder().setDocument( doc ).build();
+    }
+
+
+    /**
+     * A document with a nested address, a list of scores and a list of sub documents, i.e. the typical shape of a Mongo result.
+     */
+    private static ProtoValue nestedDocument( int id ) {
+        List<ProtoValue> orders = new ArrayList<>();
+        for ( int o = 0; o < 10; o++ ) {
+            orders.add( document( "item", string( "item-" + o ), "qty", integer( o ), "price", number( 9.95 + o ) ) );
+        }
+        return document(
+                "id", integer( id ),
+                "name", string( "Customer \"" + id + "\"" ),
+                "address", document( "city", string( "Basel" ), "zip", integer( 4051 ), "lines", list( string( "a\\b" ), string( "c" ) ) ),
+                "scores", list( integer( 1 ), integer( 2 ), number( 3.5 ) ),
+                "orders", list( orders.toArray( new ProtoValue[0] ) ),
+                "since", ProtoValue.newBuilder().setDate( ProtoDate.newBuilder().setDate( 19723 + id ) ).build(),
+                "seen", ProtoValue.newBuilder().setTimestamp( ProtoTimestamp.newBuilder().setTimestamp( 1704110400500L + id * 3_600_000L ) ).build(),
+                "active", ProtoValue.newBuilder().setBoolean( ProtoBoolean.newBuilder().setBoolean( id % 2 == 0 ) ).build(),
+                "note", ProtoValue.newBuilder().setNull( ProtoNull.newBuilder() ).build(),
+                "tags", list() );
+    }
+
+
+    @Test
+    void testFormatting() throws Exception {
+        JsonWriter json = JsonWriter.local();
+        ProtoValue doc = document( "i", integer( 42 ), "d", number( 0.1 ), "whole", number( 3.0 ), "nan", number( Double.NaN ), "l", list( integer( -7 ) ) );
+        assertEquals( "{\"i\":42,\"d\":0.1,\"whole\":3,\"nan\":null,\"l\":[-7]}", json.toJson( doc ) );
+
+        // Longs keep all their digits instead of going through double
+        ProtoValue big = ProtoValue.newBuilder().setLong( ProtoLong.newBuilder().setLong( 1111111111111111111L ) ).build();
+        assertEquals( "1111111111111111111", json.toJson( big ) );
+
+        // Dates and timestamps are converted by the driver, exactly as DriverToJava does for relational columns
+        ProtoValue date = ProtoValue.newBuilder().setDate( ProtoDate.newBuilder().setDate( 19723 ) ).build();
+        assertEquals( "\"" + new org.polypheny.jdbc.types.TypedValue( date ).asString() + "\"", json.toJson( date ) );
+        ProtoValue timestamp = ProtoValue.newBuilder().setTimestamp( ProtoTimestamp.newBuilder().setTimestamp( 1704110400500L ) ).build();
+        assertEquals( "\"" + new org.polypheny.jdbc.types.TypedValue( timestamp ).asString() + "\"", json.toJson( timestamp ) );
+    }
+
+
+    @Test
+    void testEscaping() throws Exception {
+        JsonWriter json = JsonWriter.local();
+        assertEquals( "\"a\\\"b\\\\c\\nd\\te\\u0001\"", json.toJson( string( "a\"b\\c\nd\te\u0001" ) ) );
+        assertEquals( "{\"k\\\"ey\":1}", json.toJson( document( "k\"ey", integer( 1 ) ) ) );
+        // The cached key must come out the same for the next document
+        assertEquals( "{\"k\\\"ey\":2}", json.toJson( document( "k\"ey", integer( 2 ) ) ) );
+
+        assertEquals( "plain", JsonWriter.escape( "plain" ) );
+        assertEquals( "line\\r\\nbreak", JsonWriter.escape( "line\r\nbreak" ) );
+    }
+
+
+    @Test
+    void testSameJsonAsLegacySerializer() throws Exception {
+        // A zone with an offset, so that dates and timestamps converted as UTC would show up as a difference
+        java.util.TimeZone previous = java.util.TimeZone.getDefault();
+        java.util.TimeZone.setDefault( java.util.TimeZone.getTimeZone( "America/New_York" ) );
+        try {
+            JsonWriter json = JsonWriter.local();
+            StringBuilder sb = new StringBuilder( 64 * 1024 );
+            for ( int i = 0; i < 200; i++ ) {
+                ProtoValue doc = nestedDocument( i );
+                sb.setLength( 0 );
+                legacyToJson( doc, sb );
+                // The legacy serializer wrote every INTEGER through double (42.0), the only intended difference
+                String legacy = sb.toString().replaceAll( "(?<=[\\[:,])(-?\\d+)\\.0(?=[,\\]}])", "$1" );
+                assertEquals( legacy, json.toJson( doc ), "Document " + i );
+            }
+        } finally {
+            java.util.TimeZone.setDefault( previous );
+        }
+    }
+
+
+    @Test
+    void testShortestDoubles() {
+        // Double.toString of Java 8 to 18 writes these with 16 and 17 digits
+        assertEquals( "1.0E23", JsonWriter.shortest( 1e23 ) );
+        assertEquals( "-2.0E23", JsonWriter.shortest( -2e23 ) );
+        // Values that need all 17 digits keep them
+        assertEquals( "0.30000000000000004", JsonWriter.shortest( 0.1 + 0.2 ) );
+        assertEquals( "4.9E-324", JsonWriter.shortest( Double.MIN_VALUE ) );
+    }
+
+
+    /**
+     * The serializer this connector used before JsonWriter (protoValueToJson, protoListToJson and protoDocumentToJson with
+     * escapeJson), for the value types of nestedDocument(...).
+     */
+    private static void legacyToJson( ProtoValue v, StringBuilder sb ) throws Exception {
+        switch ( v.getValueCase() ) {
+            case BOOLEAN:
+                sb.append( v.getBoolean().getBoolean() );
+                return;
+            case INTEGER:
+                sb.append( (double) v.getInteger().getInteger() );
+                return;
+            case DOUBLE:
+                sb.append( v.getDouble().getDouble() );
+                return;
+            case DATE:
+            case TIME:
+            case TIMESTAMP:
+                sb.append( "\"" ).append( new org.polypheny.jdbc.types.TypedValue( v ).asString() ).append( "\"" );
+                return;
+            case STRING:
+                sb.append( "\"" ).append( v.getString().getString().replace( "\\", "\\\\" ).replace( "\"", "\\\"" ) ).append( "\"" );
+                return;
+            case NULL:
+                sb.append( "null" );
+                return;
+            case LIST:
+                if ( v.getList().getValuesCount() == 0 ) {
+                    sb.append( "[]" );
+                    return;
+                }
+                sb.append( "[" );
+                for ( int i = 0; i < v.getList().getValuesCount(); i++ ) {
+                    legacyToJson( v.getList().getValues( i ), sb );
+                    if ( i < v.getList().getValuesCount() - 1 ) {
+                        sb.append( "," );
+                    }
+                }
+                sb.append( "]" );
+                return;
+            case DOCUMENT:
+                if ( v.getDocument().getEntriesCount() == 0 ) {
+                    sb.append( "{}" );
+                    return;
+                }
+                sb.append( "{" );
+                for ( int i = 0; i < v.getDocument().getEntriesCount(); i++ ) {
+                    legacyToJson( v.getDocument().getEntries( i ).getKey(), sb );
+                    sb.append( ":" );
+                    legacyToJson( v.getDocument().getEntries( i ).getValue(), sb );
+                    if ( i < v.getDocument().getEntriesCount() - 1 ) {
+                        sb.append( "," );
+                    }
+                }
+                sb.append( "}" );
+                return;
+            default:
+                throw new IllegalArgumentException( "Not used in nestedDocument: " + v.getValueCase() );
+        }
+    }
+
+}
@@ -98,6 +98,36 @@ public class PolyphenyConnectionTest {
     }
 
 
+    @Test
+    void testReconnectAfterConnectionLoss() throws SQLException {
+        conn.setValidationInterval( 0 ); // validate before every use
+        conn.openIfNeeded();
+        java.sql.Connection first = conn.getConnection();
+
+        // Simulates a connection dropped by the server: the next use must transparently get a new one.
+        first.close();
+        conn.openIfNeeded();
+        assertNotSame( first, conn.getConnection(), "A dead connection should be replaced on the next use" );
+        assertTrue( conn.getConnection().isValid( 2 ) );
+
+        // Inside a transaction a lost connection must not be replaced silently.
+        conn.beginTransaction();
+        conn.getConnection().close();
+        assertThrows( RuntimeException.class, conn::openIfNeeded, "Losing the connection inside a transaction should fail" );
+        assertFalse( conn.inTransaction() );
+    }
+
+
+    @Test
+    void testKeepalive() {
+        conn.openIfNeeded();
+        assertDoesNotThrow( () -> conn.startKeepalive( 0.05 ) );
+        assertThrows( IllegalArgumentException.class, () -> conn.startKeepalive( 0 ) );
+        conn.stopKeepalive();
+        assertDoesNotThrow( conn::stopKeepalive, "Stopping twice should not throw an exception" );
+    }
+
+
     @Test
     void testOpenWithInvalidCredentials() {
 
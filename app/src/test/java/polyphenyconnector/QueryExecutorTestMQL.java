@@ -178,7 +178,7 @@ public class QueryExecutorTestMQL {
         @SuppressWarnings("unchecked") List<String> docs = (List<String>) result;
         assertEquals( 1, docs.size() );
         System.out.println( docs.get( 0 ) );
-        assertEquals( "{\"count\":1.0}", docs.get( 0 ) );
+        assertEquals( "{\"count\":1}", docs.get( 0 ) );
     }
 
 
@@ -191,13 +191,30 @@ public class QueryExecutorTestMQL {
     }
 
 
+    @Test
+    void testExtractPaths() {
+        myexecutor.executeMongo( "mongo", "mongotest", "db.unittest_collection.insertOne({\"age\":30, \"adress\": {\"Country\": \"Switzerland\", \"Code\": 4051}, \"scores\":[1,2]})" );
+        myexecutor.executeMongo( "mongo", "mongotest", "db.unittest_collection.insertOne({\"age\":14, \"scores\":[7]})" );
+        String[] paths = { "adress.Code", "adress.Country", "scores[1]" };
+
+        Object[] result = (Object[]) myexecutor.executeMongo( "mongo", "mongotest", "db.unittest_collection.find({}).sort({\"age\":-1})", paths );
+
+        assertArrayEquals( paths, (String[]) result[0] );
+        Object[] columns = (Object[]) result[2];
+        assertArrayEquals( new double[]{ 4051, Double.NaN }, (double[]) columns[0], "Missing paths should be NaN" );
+        assertArrayEquals( new String[]{ "Switzerland", null }, (String[]) columns[1] );
+        assertArrayEquals( new double[]{ 2, Double.NaN }, (double[]) columns[2] );
+        assertArrayEquals( new Object[]{ "a", "b", 3, "c" }, DocumentPaths.parse( "a.b[3].c" ) );
+    }
+
+
     @Test
     void testArrayField() {
         myexecutor.executeMongo( "mongo", "mongotest", "db.unittest_collection.insertOne({\"scores\":[1,2,3]})" );
         Object result = myexecutor.executeMongo( "mongo", "mongotest", "db.unittest_collection.find({})" );
         @SuppressWarnings("unchecked") List<String> docs = (List<String>) result;
         assertEquals( 1, docs.size() );
-        assertTrue( docs.get( 0 ).contains( "\"scores\":[1.0,2.0,3.0]" ) );
+        assertTrue( docs.get( 0 ).contains( "\"scores\":[1,2,3]" ) );
     }
 
 
@@ -246,6 +263,47 @@ public class QueryExecutorTestMQL {
     }
 
 
+    @Test
+    void testPipelinedBatchKeepsOrder() {
+        List<String> queries = new ArrayList<>();
+        for ( int i = 0; i < 20; i++ ) {
+            queries.add( "db.unittest_collection.insertOne({\"seq\":" + i + "})" );
+        }
+        queries.add( "db.unittest_collection.countDocuments({})" );
+
+        // Up to 8 statements in flight; the results must still come back in query order.
+        List<List<String>> results = myexecutor.executeBatchMongo( "mongotest", queries, 8 );
+
+        assertEquals( 21, results.size(), "Expected one result per query" );
+        assertTrue( results.get( 20 ).get( 0 ).contains( "20" ), "The count must see all 20 inserts: " + results.get( 20 ) );
+    }
+
+
+    @Test
+    void testMongoBulkInsertFromColumns() {
+        String[] fields = { "id", "name", "score", "active" };
+        Object[] columns = {
+                new double[]{ 1, 2, 3 },
+                new String[]{ "Alice", "Bob", null },
+                new double[]{ 1.5, Double.NaN, 3.25 },
+                new boolean[]{ true, false, true }
+        };
+
+        // batchSize 2 → two insertMany statements
+        double inserted = myexecutor.mongoBulkInsert( "mongotest", "unittest_collection", fields, columns, 2 );
+        assertEquals( 3.0, inserted );
+
+        @SuppressWarnings("unchecked") List<String> docs = (List<String>) myexecutor.executeMongo( "mongo", "mongotest", "db.unittest_collection.find({\"id\":2})" );
+        assertEquals( 1, docs.size() );
+        assertTrue( docs.get( 0 ).contains( "Bob" ), "Document should contain Bob: " + docs.get( 0 ) );
+        assertTrue( docs.get( 0 ).contains( "\"score\":null" ), "NaN should be stored as null: " + docs.get( 0 ) );
+
+        // A null String element comes back as null, not as ""
+        docs = (List<String>) myexecutor.executeMongo( "mongo", "mongotest", "db.unittest_collection.find({\"id\":3})" );
+        assertTrue( docs.get( 0 ).contains( "\"name\":null" ), "A null string should be stored as null: " + docs.get( 0 ) );
+    }
+
+
     @Test
     void testBatchMixedOps() {
         List<String> queries = new ArrayList<>();
@@ -363,4 +421,48 @@ public class QueryExecutorTestMQL {
         assertEquals( 0, docs.size(), "Rollback should have undone all inserts when one failed" );
     }
 
+
+
+    @Test
+    void testMongoCursorPages() {
+        StringBuilder docs = new StringBuilder( "db.unittest_collection.insertMany([" );
+        for ( int i = 0; i < 250; i++ ) {
+            docs.append( i == 0 ? "" : "," ).append( "{\"id\":" ).append( i ).append( ",\"name\":\"n" ).append( i ).append( "\"}" );
+        }
+        myexecutor.executeMongo( "mongo", "mongotest", docs.append( "])" ).toString() );
+
+        // Pages of 100 over frames of 40: every document exactly once, the last page is short
+        MongoCursor cursor = myexecutor.openMongoCursor( "mongotest", "db.unittest_collection.find({})", 40 );
+        List<Integer> sizes = new ArrayList<>();
+        while ( cursor.hasNext() ) {
+            @SuppressWarnings("unchecked") List<String> page = (List<String>) cursor.next( 100 );
+            sizes.add( page.size() );
+        }
+        assertEquals( 250, cursor.getDocumentsReturned() );
+        assertEquals( 50, (int) sizes.get( sizes.size() - 1 ) );
+        assertEquals( 0, ((List<?>) cursor.next( 100 )).size(), "An exhausted cursor returns empty pages" );
+        cursor.close();
+
+        // Columnar pages
+        try ( MongoCursor columns = myexecutor.openMongoCursor( "mongotest", "db.unittest_collection.find({})", 40, new String[]{ "id", "name" } ) ) {
+            Object[] page = (Object[]) columns.next( 10 );
+            assertArrayEquals( new String[]{ "double", "String" }, (String[]) page[1] );
+            assertEquals( 10, ((double[]) ((Object[]) page[2])[0]).length );
+        }
+
+        // A closed cursor cannot be read, writes cannot be opened as cursor
+        MongoCursor closed = myexecutor.openMongoCursor( "mongotest", "db.unittest_collection.find({})", 40 );
+        closed.close();
+        assertThrows( IllegalStateException.class, () -> closed.next( 1 ) );
+        assertThrows( IllegalArgumentException.class, () -> myexecutor.openMongoCursor( "mongotest", "db.unittest_collection.deleteMany({})", 40 ) );
+
+        // The statement of a cursor dies with its connection: after a reconnect the cursor fails clearly
+        MongoCursor stale = myexecutor.openMongoCursor( "mongotest", "db.unittest_collection.find({})", 40 );
+        myconnection.close();
+        myconnection.openIfNeeded();
+        IllegalStateException e = assertThrows( IllegalStateException.class, () -> stale.next( 1 ) );
+        assertTrue( e.getMessage().contains( "reconnect" ), e.getMessage() );
+        assertFalse( stale.hasNext() );
+    }
+
 }
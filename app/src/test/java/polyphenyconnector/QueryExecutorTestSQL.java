@@ -8,6 +8,9 @@ import org.polypheny.jdbc.PolyConnection;
 import org.polypheny.jdbc.multimodel.*;
 import org.polypheny.jdbc.types.TypedValue;
 
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.Connection;
 
 public class QueryExecutorTestSQL {
@@ -127,6 +130,33 @@ public class QueryExecutorTestSQL {
     }
 
 
+    @Test
+    void testAccessorUsesMethodHandles() {
+        // With the bundled driver the private members must resolve, otherwise every query silently runs on the slow JDBC fallback.
+        assertTrue( QueryExecutor.getAccessorInfo().startsWith( "METHOD_HANDLE" ), "Unexpected accessor path: " + QueryExecutor.getAccessorInfo() );
+    }
+
+
+    @Test
+    void testParallelDecodeMatchesSequential() {
+        String sql = "SELECT 1 AS a, 'x' AS b, 1.5 AS c UNION ALL SELECT 2, 'y', 2.5 UNION ALL SELECT 3, 'z', 3.5";
+        Object[] sequential = (Object[]) myexecutor.executeSql( sql );
+
+        // Force parallel decoding with frames of 2 rows, so the 3 rows are decoded as one parallel and one partial frame.
+        QueryExecutor parallelExecutor = new QueryExecutor( myconnection );
+        parallelExecutor.setParallelDecode( 1, 2 );
+        Object[] parallel = (Object[]) parallelExecutor.executeSql( sql );
+
+        assertArrayEquals( (String[]) sequential[0], (String[]) parallel[0] );
+        assertArrayEquals( (String[]) sequential[1], (String[]) parallel[1] );
+        Object[] expected = (Object[]) sequential[2];
+        Object[] actual = (Object[]) parallel[2];
+        assertArrayEquals( (double[]) expected[0], (double[]) actual[0] );
+        assertArrayEquals( (String[]) expected[1], (String[]) actual[1] );
+        assertArrayEquals( (double[]) expected[2], (double[]) actual[2] );
+    }
+
+
     @Test
     void testAllPrimitiveMappings() {
         // We generate a row with: 
@@ -165,6 +195,78 @@ public class QueryExecutorTestSQL {
         assertEquals( 14.0, ((double[][]) columns[3])[0][0], 0.1 );
     }
 
+
+    @Test
+    void testNumericArrayColumns() {
+        Object[] arr = (Object[]) myexecutor.executeSql( "SELECT ARRAY[ 1, 2, 3 ] AS v, ARRAY[ 'a', 'b' ] AS s" );
+        String[] colTypes = (String[]) arr[1];
+        Object[] columns = (Object[]) arr[2];
+
+        // Numeric lists of equal length -> rows x n matrix, no JSON
+        assertEquals( "double[]", colTypes[0] );
+        assertArrayEquals( new double[]{ 1, 2, 3 }, ((double[][]) columns[0])[0] );
+
+        // Anything else stays JSON text
+        assertEquals( "String", colTypes[1] );
+        assertEquals( "[\"a\",\"b\"]", ((String[]) columns[1])[0] );
+
+        // Ragged rows -> values plus offsets, NULL rows are empty
+        String[] types = new String[1];
+        Object ragged = QueryExecutor.listColumnToPrimitive( Arrays.asList( new double[]{ 1, 2 }, null, new double[]{ 3 } ), types, 0 );
+        assertEquals( "ragged double[]", types[0] );
+        assertArrayEquals( new double[]{ 1, 2, 3 }, (double[]) ((Object[]) ragged)[0] );
+        assertArrayEquals( new int[]{ 0, 2, 2, 3 }, (int[]) ((Object[]) ragged)[1] );
+
+        // All rows float[] -> float matrix, a NULL row becomes NaN
+        Object floats = QueryExecutor.listColumnToPrimitive( Arrays.asList( new float[]{ 0.5f, 1.5f }, null ), types, 0 );
+        assertEquals( "float[]", types[0] );
+        assertTrue( Float.isNaN( ((float[][]) floats)[1][0] ) );
+    }
+
+
+    @Test
+    void testBlobModes() throws Exception {
+        String sql = "SELECT x'010203' AS b";
+        try {
+            // Views over the protobuf data instead of byte[] copies
+            myexecutor.setBlobMode( "buffer", null );
+            Object[] arr = (Object[]) myexecutor.executeSql( sql );
+            assertEquals( "ByteBuffer", ((String[]) arr[1])[0] );
+            java.nio.ByteBuffer view = ((java.nio.ByteBuffer[]) ((Object[]) arr[2])[0])[0];
+            assertTrue( view.isReadOnly() );
+            assertEquals( 3, view.remaining() );
+            assertEquals( 2, view.get( view.position() + 1 ) );
+
+            // Streamed to files: only paths and sizes come back
+            Path dir = Files.createTempDirectory( "polypheny-blobs" );
+            myexecutor.setBlobMode( "file", dir.toString() );
+            arr = (Object[]) myexecutor.executeSql( sql );
+            assertEquals( "file", ((String[]) arr[1])[0] );
+            Object[] column = (Object[]) ((Object[]) arr[2])[0];
+            Path file = java.nio.file.Paths.get( ((String[]) column[0])[0] );
+            assertEquals( dir, file.getParent().getParent() );
+            assertArrayEquals( new byte[]{ 1, 2, 3 }, Files.readAllBytes( file ) );
+            assertEquals( 3.0, ((double[]) column[1])[0] );
+
+            // A second result never touches the files of the first one
+            Object[] again = (Object[]) ((Object[]) ((Object[]) myexecutor.executeSql( sql ))[2])[0];
+            Path second = java.nio.file.Paths.get( ((String[]) again[0])[0] );
+            assertNotEquals( file.getParent(), second.getParent() );
+            assertArrayEquals( new byte[]{ 1, 2, 3 }, Files.readAllBytes( file ) );
+
+            // The workers of a parallel query batch use the blob mode of their parent
+            Object[] batch = myexecutor.executeQueryBatch( new String[]{ sql, sql }, 2 );
+            for ( Object result : batch ) {
+                assertEquals( "file", ((String[]) ((Object[]) result)[1])[0] );
+                Object[] paths = (Object[]) ((Object[]) ((Object[]) result)[2])[0];
+                assertArrayEquals( new byte[]{ 1, 2, 3 }, Files.readAllBytes( java.nio.file.Paths.get( ((String[]) paths[0])[0] ) ) );
+            }
+        } finally {
+            myexecutor.setBlobMode( "bytes", null );
+        }
+        assertThrows( IllegalArgumentException.class, () -> myexecutor.setBlobMode( "file", "" ) );
+    }
+
     // ─────────────────────────────
     // Realistic integration tests (use unittest_namespace.unittest_table)
     // ─────────────────────────────
@@ -391,6 +493,350 @@ public class QueryExecutorTestSQL {
     }
 
 
+    @Test
+    void testBatchCommitPerChunkKeepsEarlierChunks() {
+        List<String> queries = Arrays.asList(
+                "INSERT INTO unittest_namespace.batch_table VALUES (1, 'Alice', 'F', DATE '1990-01-15', 1001)",
+                "INSERT INTO unittest_namespace.batch_table VALUES (2, 'Bob', 'M', DATE '1989-05-12', 1002)",
+                "Intentional nonsense to make the second chunk fail"
+        );
+
+        // Chunks of 2 statements: chunk 0 commits, chunk 1 fails and is rolled back.
+        RuntimeException e = assertThrows( RuntimeException.class, () -> myexecutor.executeBatchSql( queries, 2, true ) );
+        assertTrue( e.getMessage().contains( "resume from statement index 2" ), "Message should name the resume point: " + e.getMessage() );
+        assertArrayEquals( new int[]{ 1, 2, 1, 2 }, myexecutor.getBatchProgress() );
+
+        Object[] arr = (Object[]) myexecutor.executeSql( "SELECT COUNT(*) FROM unittest_namespace.batch_table" );
+        assertEquals( 2.0, ((double[]) ((Object[]) arr[2])[0])[0], "The first chunk must stay committed" );
+
+        // A failure in the first chunk leaves nothing committed
+        e = assertThrows( RuntimeException.class, () -> myexecutor.executeBatchSql( Arrays.asList( "Intentional nonsense" ), 2, true ) );
+        assertTrue( e.getMessage().contains( "Nothing was committed" ), e.getMessage() );
+        assertArrayEquals( new int[]{ 0, 1, 0, 0 }, myexecutor.getBatchProgress() );
+    }
+
+
+    @Test
+    void testStartsWithKeyword() {
+        assertTrue( QueryExecutor.startsWithKeyword( "  select * from t", "SELECT" ) );
+        assertTrue( QueryExecutor.startsWithKeyword( "-- comment\n/* block */ (SELECT 1)", "SELECT" ) );
+        assertFalse( QueryExecutor.startsWithKeyword( "INSERT INTO t SELECT * FROM s", "SELECT" ) );
+        assertFalse( QueryExecutor.startsWithKeyword( "SELECTED_ROWS", "SELECT" ) );
+    }
+
+
+    @Test
+    void testCancelAndTimeout() {
+        assertFalse( myexecutor.cancelCurrent() ); // nothing running
+        assertThrows( IllegalArgumentException.class, () -> myexecutor.setQueryTimeout( -1 ) );
+
+        // A generous deadline must not change the result of a quick query
+        Object result = myexecutor.executeSql( "SELECT 1 AS x", 30 );
+        assertNotNull( result );
+
+        // A deadline that already expired cancels the query before its result is used
+        QueryDeadline deadline = QueryDeadline.start( 1 );
+        try {
+            Thread.sleep( 20 );
+            assertThrows( java.util.concurrent.CancellationException.class, deadline::check );
+        } catch ( InterruptedException e ) {
+            fail( e );
+        } finally {
+            deadline.finish();
+        }
+    }
+
+
+    /**
+     * Fills unittest_table so that a four-way cross join over it runs far longer than any of the bounds below.
+     */
+    private static String longRunningQuery() {
+        List<String> inserts = new ArrayList<>();
+        for ( int id = 1; id <= 300; id++ ) {
+            inserts.add( "INSERT INTO unittest_namespace.unittest_table VALUES (" + id + ", 'name" + id + "')" );
+        }
+        myexecutor.executeBatchSql( inserts );
+        return "SELECT COUNT(*) FROM unittest_namespace.unittest_table a, unittest_namespace.unittest_table b, "
+                + "unittest_namespace.unittest_table c, unittest_namespace.unittest_table d WHERE a.name <> d.name";
+    }
+
+
+    @Test
+    void testCancelRunningQueryFromSecondThread() throws Exception {
+        String query = longRunningQuery();
+        java.util.concurrent.atomic.AtomicReference<Throwable> failure = new java.util.concurrent.atomic.AtomicReference<>();
+        Thread worker = new Thread( () -> {
+            try {
+                myexecutor.executeSql( query );
+            } catch ( Throwable t ) {
+                failure.set( t );
+            }
+        } );
+        worker.start();
+
+        // Cancel as soon as the query is running
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        boolean cancelled = false;
+        while ( !cancelled && worker.isAlive() && System.nanoTime() < deadline ) {
+            Thread.sleep( 50 );
+            cancelled = myexecutor.cancelCurrent();
+        }
+        assertTrue( cancelled, "The running query should have been found and cancelled" );
+        long cancelledAt = System.nanoTime();
+        worker.join( 15_000 );
+        assertFalse( worker.isAlive(), "The cancelled query must return" );
+        assertTrue( System.nanoTime() - cancelledAt < 10_000_000_000L, "The query should stop soon after the cancel" );
+        assertTrue( failure.get() instanceof java.util.concurrent.CancellationException, "Expected a CancellationException, got " + failure.get() );
+
+        // The executor is free again
+        assertFalse( myexecutor.cancelCurrent() );
+        Object[] result = (Object[]) myexecutor.executeSql( "SELECT 1 AS x" );
+        assertArrayEquals( new String[]{ "x" }, (String[]) result[0] );
+    }
+
+
+    @Test
+    void testQueryTimeoutStopsRunningQuery() {
+        String query = longRunningQuery();
+        myexecutor.setQueryTimeout( 1 );
+        try {
+            long start = System.nanoTime();
+            assertThrows( java.util.concurrent.CancellationException.class, () -> myexecutor.executeSql( query ) );
+            assertTrue( System.nanoTime() - start < 10_000_000_000L, "The deadline of 1 s should stop the query long before 10 s" );
+        } finally {
+            myexecutor.setQueryTimeout( 0 );
+        }
+
+        // The next query runs normally, without the deadline
+        Object[] result = (Object[]) myexecutor.executeSql( "SELECT 1 AS x" );
+        assertArrayEquals( new String[]{ "x" }, (String[]) result[0] );
+    }
+
+
+    @Test
+    void testPrewarm() {
+        double[] stats = myexecutor.prewarm( new String[]{ "SELECT 1", "THIS IS NOT SQL" } );
+        assertEquals( 1, stats[1], "Only the valid statement should be prepared" );
+        assertTrue( stats[2] > 0, "The decoder should have been exercised" );
+        assertEquals( 0, stats[3], "The query covering every type branch should have been decoded, not a fallback" );
+
+        // Results after prewarming are unchanged
+        Object[] result = (Object[]) myexecutor.executeSql( "SELECT 1 AS x" );
+        assertArrayEquals( new String[]{ "x" }, (String[]) result[0] );
+
+        // Booleans decode into the double column like every other number
+        result = (Object[]) myexecutor.executeSql( "SELECT TRUE AS b UNION ALL SELECT FALSE" );
+        assertArrayEquals( new double[]{ 1, 0 }, (double[]) ( (Object[]) result[2] )[0] );
+    }
+
+
+    @Test
+    void testPackedNumericResult() {
+        Object[] packed = (Object[]) myexecutor.executeSqlPacked( "SELECT 1 AS a, 'x' AS s, 10 AS b UNION ALL SELECT 2, 'y', 20 UNION ALL SELECT 3, 'z', 30" );
+        assertArrayEquals( new String[]{ "a", "b" }, (String[]) packed[0] );
+        // column-major: first all values of a, then all values of b
+        assertArrayEquals( new double[]{ 1, 2, 3, 10, 20, 30 }, (double[]) packed[1] );
+        assertArrayEquals( new int[]{ 3, 2 }, (int[]) packed[2] );
+        assertArrayEquals( new String[]{ "s" }, (String[]) packed[3] );
+        assertArrayEquals( new String[]{ "x", "y", "z" }, (String[]) ( (Object[]) packed[4] )[0] );
+
+        // scalar fast path
+        assertEquals( 42.0, myexecutor.executeSqlPacked( "SELECT 42 AS answer" ) );
+
+        // Rows spread over several decode blocks land in the same column-major layout
+        QueryExecutor smallFrames = new QueryExecutor( myconnection );
+        smallFrames.setParallelDecode( 0, 2 );
+        packed = (Object[]) smallFrames.executeSqlPacked( "SELECT 1 AS a, 10 AS b UNION ALL SELECT 2, 20 UNION ALL SELECT 3, 30" );
+        assertArrayEquals( new double[]{ 1, 2, 3, 10, 20, 30 }, (double[]) packed[1] );
+        assertArrayEquals( new int[]{ 3, 2 }, (int[]) packed[2] );
+    }
+
+
+    @Test
+    void testPartitionedReadMatchesSingleScan() {
+        for ( int id = 1; id <= 10; id++ ) {
+            myexecutor.executeSql( "INSERT INTO unittest_namespace.unittest_table VALUES (" + id + ", 'name" + id + "')" );
+        }
+        String sql = "SELECT id, name FROM unittest_namespace.unittest_table";
+        Object[] partitioned = (Object[]) myexecutor.executeSqlPartitioned( sql, "id", 3 );
+
+        double[] ids = (double[]) ( (Object[]) partitioned[2] )[0];
+        String[] names = (String[]) ( (Object[]) partitioned[2] )[1];
+        assertEquals( 10, ids.length, "Every row must be read exactly once" );
+        Set<Double> distinct = new HashSet<>();
+        for ( int i = 0; i < ids.length; i++ ) {
+            distinct.add( ids[i] );
+            assertEquals( "name" + (int) ids[i], names[i] );
+        }
+        assertEquals( 10, distinct.size() );
+
+        // integral bounds give integral, disjoint ranges; the edge partitions are open-ended
+        String[] queries = QueryExecutor.partitionQueries( "SELECT 1", "id", 3, 1, 10 );
+        assertEquals( 3, queries.length );
+        assertTrue( queries[0].endsWith( "WHERE id < 4 OR id IS NULL" ), queries[0] );
+        assertTrue( queries[1].endsWith( "WHERE id >= 4 AND id < 7" ), queries[1] );
+        assertTrue( queries[2].endsWith( "WHERE id >= 7" ), queries[2] );
+
+        // BIGINT keys beyond 2^53 keep every digit
+        queries = QueryExecutor.partitionQueries( "SELECT 1", "id", 2, new java.math.BigDecimal( "9223372036854775800" ), new java.math.BigDecimal( "9223372036854775807" ), true );
+        assertTrue( queries[1].endsWith( "WHERE id >= 9223372036854775804" ), queries[1] );
+    }
+
+
+    @Test
+    void testExecuteScript() {
+        String script = "INSERT INTO unittest_namespace.unittest_table VALUES (1, 'a;b');\n"
+                + "-- a comment; with a semicolon\n"
+                + "INSERT INTO unittest_namespace.unittest_table VALUES (2, 'it''s');\n"
+                + "/* block ; comment */ SELECT id, name FROM unittest_namespace.unittest_table ORDER BY id;\n"
+                + "SELECT id FROM unittest_namespace.unittest_table WHERE id > 100;";
+        Object[] results = myexecutor.executeScript( script );
+
+        assertEquals( 4, results.length, "Quotes and comments must not split statements" );
+        assertEquals( 1.0, results[0] );
+        assertEquals( 1.0, results[1] );
+        String[] names = (String[]) ( (Object[]) ( (Object[]) results[2] )[2] )[1];
+        assertArrayEquals( new String[]{ "a;b", "it's" }, names );
+        assertNull( results[3], "An empty result stays null" );
+
+        // In a transaction a failing statement rolls back the statements before it
+        RuntimeException e = assertThrows( RuntimeException.class, () -> myexecutor.executeScript(
+                "INSERT INTO unittest_namespace.unittest_table VALUES (3, 'c'); INSERT INTO unittest_namespace.no_such_table VALUES (1)", true ) );
+        assertTrue( e.getMessage().startsWith( "Statement 2 of 2" ), e.getMessage() );
+        Object[] count = (Object[]) myexecutor.executeSql( "SELECT COUNT(*) FROM unittest_namespace.unittest_table" );
+        assertEquals( 2.0, ( (double[]) ( (Object[]) count[2] )[0] )[0] );
+
+        assertEquals( Arrays.asList( "SELECT 1", "SELECT 2" ), QueryExecutor.splitScript( "SELECT 1;; -- only a comment;\nSELECT 2" ) );
+    }
+
+
+    @Test
+    void testExecuteQueryBatch() throws Exception {
+        for ( int id = 1; id <= 6; id++ ) {
+            myexecutor.executeSql( "INSERT INTO unittest_namespace.unittest_table VALUES (" + id + ", 'name" + id + "')" );
+        }
+        String[] selects = new String[12];
+        for ( int i = 0; i < selects.length; i++ ) {
+            selects[i] = "SELECT id, name FROM unittest_namespace.unittest_table WHERE id = " + ( i + 1 );
+        }
+
+        for ( int parallelism : new int[]{ 1, 4 } ) {
+            Object[] results = myexecutor.executeQueryBatch( selects, parallelism );
+            assertEquals( selects.length, results.length );
+            for ( int i = 0; i < 6; i++ ) {
+                String[] names = (String[]) ( (Object[]) ( (Object[]) results[i] )[2] )[1];
+                assertArrayEquals( new String[]{ "name" + ( i + 1 ) }, names, "Results must come back in query order" );
+            }
+            for ( int i = 6; i < selects.length; i++ ) {
+                assertNull( results[i], "Queries without rows give null" );
+            }
+        }
+
+        // The workers trace into the log of their parent: one line per query plus the one of the whole batch
+        Path log = Files.createTempFile( "polypheny-trace", ".log" );
+        try {
+            myexecutor.enableTrace( log.toString(), 0 );
+            myexecutor.executeQueryBatch( selects, 4 );
+            myexecutor.disableTrace();
+            assertEquals( selects.length + 1, Files.readAllLines( log, StandardCharsets.UTF_8 ).size() );
+        } finally {
+            myexecutor.disableTrace();
+            Files.deleteIfExists( log );
+        }
+
+        assertThrows( UnsupportedOperationException.class, () -> myexecutor.executeQueryBatch( new String[]{ "SELECT 1", "DELETE FROM unittest_namespace.unittest_table" } ) );
+        RuntimeException e = assertThrows( RuntimeException.class, () -> myexecutor.executeQueryBatch( new String[]{ "SELECT 1", "SELECT * FROM unittest_namespace.no_such_table" }, 2 ) );
+        assertTrue( e.getMessage().startsWith( "Query 2 of 2" ), e.getMessage() );
+    }
+
+
+    @Test
+    void testMemoryBudget() {
+        for ( int id = 1; id <= 40; id++ ) {
+            myexecutor.executeSql( "INSERT INTO unittest_namespace.unittest_table VALUES (" + id + ", 'name" + id + "')" );
+        }
+        String sql = "SELECT id, name FROM unittest_namespace.unittest_table";
+        QueryExecutor governed = new QueryExecutor( myconnection );
+        governed.setParallelDecode( 0, 4 ); // budget checks every 4 rows
+
+        // The default budget (a share of the JVM heap) does not get in the way of normal results
+        Object[] result = (Object[]) governed.executeSql( sql );
+        assertEquals( 40, ( (double[]) ( (Object[]) result[2] )[0] ).length );
+
+        // A per query hard budget of ~2 KB stops the result early, with the projected size in the message
+        RuntimeException e = assertThrows( RuntimeException.class, () -> governed.executeSql( sql, 0, 0.002 ) );
+        assertTrue( e.getMessage().contains( "projected" ), e.getMessage() );
+
+        // At the soft budget the query continues (streaming) and leaves a warning, unless it should fail there
+        governed.setMemoryBudget( 0.0005, 100 );
+        result = (Object[]) governed.executeSql( sql );
+        assertEquals( 40, ( (double[]) ( (Object[]) result[2] )[0] ).length );
+        assertFalse( governed.getLastMemoryWarning().isEmpty() );
+        governed.setMemoryBudget( 0.0005, 100, true );
+        assertThrows( RuntimeException.class, () -> governed.executeSql( sql ) );
+
+        assertThrows( IllegalArgumentException.class, () -> governed.setMemoryBudget( 10, 1 ) );
+        double[] status = governed.getMemoryStatus();
+        assertEquals( 0, status[1], 1e-9, "Nothing is being decoded anymore" );
+        assertTrue( status[6] > 0, "The heap headroom is reported" );
+    }
+
+
+    @Test
+    void testLazyResultDecodesOnDemand() {
+        String sql = "SELECT 1 AS a, 'x' AS b, 1.5 AS c UNION ALL SELECT 2, 'y', 2.5";
+        Object[] eager = (Object[]) myexecutor.executeSql( sql );
+        LazyResult lazy = myexecutor.executeSqlLazy( sql );
+
+        assertEquals( 2, lazy.getRowCount() );
+        assertArrayEquals( (String[]) eager[0], lazy.getColumnNames() );
+        assertFalse( lazy.isDecoded( "b" ) );
+        assertArrayEquals( (String[]) ( (Object[]) eager[2] )[1], (String[]) lazy.getColumn( "b" ) );
+        assertTrue( lazy.isDecoded( "b" ) );
+        assertFalse( lazy.isDecoded( "a" ), "Columns that were not requested must stay undecoded" );
+        assertSame( lazy.getColumn( "b" ), lazy.getColumn( "b" ), "A decoded column is cached" );
+
+        Object[] all = lazy.toPackage();
+        assertArrayEquals( (String[]) eager[1], (String[]) all[1] );
+        assertArrayEquals( (double[]) ( (Object[]) eager[2] )[0], (double[]) ( (Object[]) all[2] )[0] );
+        assertThrows( IllegalArgumentException.class, () -> lazy.getColumn( "missing" ) );
+    }
+
+
+    @Test
+    void testGraphCsrOrder() {
+        GraphResult.IdIndex index = new GraphResult.IdIndex( 2 );
+        assertEquals( 0, index.putIfAbsent( "a", 0 ) );
+        assertEquals( 1, index.putIfAbsent( "b", 1 ) );
+        assertEquals( 0, index.putIfAbsent( "a", 2 ) );
+        assertEquals( -1, index.get( "c" ) );
+
+        // edges in arrival order: 2->0, 0->1, 2->1, 0->2
+        int[] source = { 2, 0, 2, 0 };
+        int[] offsets = new int[4];
+        int[] order = GraphResult.csrOrder( source, 3, offsets );
+        assertArrayEquals( new int[]{ 0, 2, 2, 4 }, offsets );
+        assertArrayEquals( new int[]{ 1, 3, 0, 2 }, order );
+    }
+
+
+    @Test
+    void testGraphPropertiesOnDemand() {
+        org.polypheny.jdbc.dependency.prism.ProtoValue key = org.polypheny.jdbc.dependency.prism.ProtoValue.newBuilder().setString( org.polypheny.jdbc.dependency.prism.ProtoString.newBuilder().setString( "age" ) ).build();
+        org.polypheny.jdbc.dependency.prism.ProtoValue age = org.polypheny.jdbc.dependency.prism.ProtoValue.newBuilder().setInteger( org.polypheny.jdbc.dependency.prism.ProtoInteger.newBuilder().setInteger( 42 ) ).build();
+        org.polypheny.jdbc.dependency.prism.ProtoNode node = org.polypheny.jdbc.dependency.prism.ProtoNode.newBuilder().setId( "n1" ).addLabels( "Person" )
+                .addProperties( org.polypheny.jdbc.dependency.prism.ProtoEntry.newBuilder().setKey( key ).setValue( age ) ).build();
+        // the second node is an edge endpoint that was not part of the node list
+        GraphResult graph = new GraphResult( new String[]{ "n1", "n2" }, new String[]{ "Person", "" }, new int[]{ 0, 1 }, new org.polypheny.jdbc.dependency.prism.ProtoNode[]{ node, null },
+                new int[0], new int[0], new int[0], new org.polypheny.jdbc.dependency.prism.ProtoEdge[0], new int[]{ 0, 0, 0 } );
+
+        assertArrayEquals( new String[]{ "Person", "" }, graph.getNodeLabels() );
+        assertArrayEquals( new String[]{ "{\"age\":42}", "{}" }, graph.getNodeProperties() );
+        assertArrayEquals( new double[]{ 42, Double.NaN }, (double[]) graph.getNodeProperty( "age" ) );
+        assertEquals( 0, graph.getEdgeIds().length );
+    }
+
+
     @Test
     void testConnectionFailure() {
         assertThrows( RuntimeException.class, () -> {
@@ -428,6 +874,148 @@ public class QueryExecutorTestSQL {
     }
 
 
+    @Test
+    void testUserTransaction() throws Exception {
+        try {
+            // Rolled back: neither the single statements nor the batch that joined the transaction may stay.
+            myconnection.beginTransaction();
+            myexecutor.executeSql( "INSERT INTO unittest_namespace.unittest_table VALUES (1, 'Alice')" );
+            myexecutor.executeBatchSql( Arrays.asList( "INSERT INTO unittest_namespace.unittest_table VALUES (2, 'Bob')", "INSERT INTO unittest_namespace.unittest_table VALUES (3, 'Carol')" ) );
+            assertTrue( myconnection.inTransaction(), "A batch must not commit the open transaction" );
+            assertThrows( IllegalStateException.class, () -> myexecutor.executeBatchSql( Arrays.asList( "INSERT INTO unittest_namespace.unittest_table VALUES (4, 'Dan')" ), 1, true ) );
+            assertThrows( IllegalStateException.class, myconnection::beginTransaction );
+            myconnection.rollbackTransaction();
+            assertNull( myexecutor.executeSql( "SELECT * FROM unittest_namespace.unittest_table" ), "The rollback should undo the batch as well" );
+
+            // Committed: everything written in the transaction is there afterwards.
+            myconnection.beginTransaction();
+            myexecutor.executeSql( "INSERT INTO unittest_namespace.unittest_table VALUES (1, 'Alice')" );
+            myexecutor.executeScript( "INSERT INTO unittest_namespace.unittest_table VALUES (2, 'Bob'); INSERT INTO unittest_namespace.unittest_table VALUES (3, 'Carol')", true );
+            assertTrue( myconnection.inTransaction(), "A script must not commit the open transaction" );
+            myconnection.commitTransaction();
+            Object[] result = (Object[]) myexecutor.executeSql( "SELECT id FROM unittest_namespace.unittest_table ORDER BY id" );
+            assertArrayEquals( new double[]{ 1, 2, 3 }, (double[]) ( (Object[]) result[2] )[0] );
+        } finally {
+            if ( myconnection.inTransaction() ) {
+                myconnection.rollbackTransaction();
+            }
+        }
+
+        assertThrows( IllegalStateException.class, myconnection::commitTransaction, "Commit without an open transaction should fail" );
+        assertThrows( IllegalStateException.class, () -> myconnection.setSavepoint( "s1" ), "Savepoints need an open transaction" );
+    }
+
+
+    @Test
+    void testBufferedInserter() throws Exception {
+        try ( BufferedInserter inserter = myexecutor.openInserter( "unittest_namespace.unittest_table", new String[]{ "id", "name" }, new String[]{ "int32", "string" }, 3, 0 ) ) {
+            for ( int id = 1; id <= 7; id++ ) {
+                inserter.addRow( new Object[]{ (double) id, "name" + id } );
+            }
+            inserter.addColumns( new Object[]{ new int[]{ 8, 9 }, new String[]{ "name8", null } } );
+            assertThrows( IllegalArgumentException.class, () -> inserter.addRow( new Object[]{ 10.0 } ) );
+            inserter.flush();
+            assertArrayEquals( new double[]{ 0, 9, 3, 0 }, inserter.getStats() );
+
+            // A duplicate key fails in the background and is reported by the next call, the inserter stays usable.
+            inserter.addRow( new Object[]{ 1.0, "duplicate" } );
+            RuntimeException e = assertThrows( RuntimeException.class, inserter::flush );
+            assertTrue( e.getMessage().contains( "1 rows were not inserted" ), e.getMessage() );
+            inserter.addRow( new double[]{ 10, Double.NaN } );
+        }
+
+        Object[] result = (Object[]) myexecutor.executeSql( "SELECT id FROM unittest_namespace.unittest_table ORDER BY id" );
+        assertEquals( 10, ( (double[]) ( (Object[]) result[2] )[0] ).length, "close() should flush the last row" );
+
+        // Time based flushing: a single row is written without flush().
+        try ( BufferedInserter inserter = myexecutor.openInserter( "unittest_namespace.unittest_table", null, new String[]{ "int64", "string" }, 1000, 0.05 ) ) {
+            inserter.addRow( new Object[]{ 11L, "late" } );
+            long deadline = System.nanoTime() + 5_000_000_000L;
+            while ( inserter.getStats()[1] < 1 && System.nanoTime() < deadline ) {
+                Thread.sleep( 10 );
+            }
+            assertEquals( 1, inserter.getStats()[1], "The row should have been flushed by the timer" );
+        }
+    }
+
+
+    @Test
+    void testImportFileCsv() throws Exception {
+        // Write a small CSV with a header line, a quoted field and an empty (NULL) field.
+        Path csv = Files.createTempFile( "polypheny-import", ".csv" );
+        Files.write( csv, Arrays.asList( "id,name", "1,Alice", "2,\"Bob, Jr.\"", "3," ), StandardCharsets.UTF_8 );
+
+        try {
+            // Use a tiny chunk size so the file is split into several chunks that are parsed in parallel.
+            double[] stats = myexecutor.importFile( csv.toString(), "unittest_namespace.unittest_table", "csv", new String[]{ "types=int32,string", "chunkSize=8", "batchSize=2", "commitInterval=2" } );
+
+            // Test all 3 rows were committed and the whole file was parsed.
+            assertEquals( 3.0, stats[0], "All 3 rows should be committed" );
+            assertEquals( (double) Files.size( csv ), stats[4], "The total file size should be reported" );
+
+            Object[] arr = (Object[]) myexecutor.executeSql( "SELECT id, name FROM unittest_namespace.unittest_table ORDER BY id" );
+            Object[] columns = (Object[]) arr[2];
+            assertArrayEquals( new double[]{ 1, 2, 3 }, (double[]) columns[0] );
+            assertArrayEquals( new String[]{ "Alice", "Bob, Jr.", null }, (String[]) columns[1] );
+        } finally {
+            Files.deleteIfExists( csv );
+        }
+    }
+
+
+    @Test
+    void testImportFileRejectsQuotedLineBreak() throws Exception {
+        // A line break inside quotes would cut the row in two, the import must fail instead.
+        Path csv = Files.createTempFile( "polypheny-import", ".csv" );
+        Files.write( csv, Arrays.asList( "id,name", "1,\"Alice", "Smith\"" ), StandardCharsets.UTF_8 );
+        try {
+            RuntimeException e = assertThrows( RuntimeException.class, () -> myexecutor.importFile( csv.toString(), "unittest_namespace.unittest_table", "csv", new String[]{ "types=int32,string" } ) );
+            assertTrue( e.getMessage().contains( "closing quote" ), e.getMessage() );
+            assertThrows( IllegalArgumentException.class, () -> myexecutor.importFile( csv.toString(), "unittest_namespace.unittest_table", "csv", new String[]{ "chunkSize=4294967296" } ) );
+        } finally {
+            Files.deleteIfExists( csv );
+        }
+    }
+
+
+    @Test
+    void testImportFileRejectsExtraFields() throws Exception {
+        // A row with more fields than columns must fail instead of silently dropping the extra field.
+        Path csv = Files.createTempFile( "polypheny-import", ".csv" );
+        Files.write( csv, Arrays.asList( "id,name", "1,Alice", "2,Bob,extra" ), StandardCharsets.UTF_8 );
+        try {
+            RuntimeException e = assertThrows( RuntimeException.class, () -> myexecutor.importFile( csv.toString(), "unittest_namespace.unittest_table", "csv", new String[]{ "types=int32,string" } ) );
+            assertTrue( e.getMessage().contains( "more than 2 fields" ), e.getMessage() );
+            assertNull( myexecutor.executeSql( "SELECT * FROM unittest_namespace.unittest_table" ), "The failed import should have been rolled back" );
+        } finally {
+            Files.deleteIfExists( csv );
+        }
+    }
+
+
+    @Test
+    void testImportFileInTransaction() throws Exception {
+        // Header names are quoted as identifiers, and the throughput is reported although nothing is committed by the import.
+        assertEquals( "INSERT INTO t (\"first name\", \"select\", \"a\"\"b\") VALUES (?, ?, ?)", FileImporter.insertStatement( "t", new String[]{ "first name", "select", "a\"b" }, 3 ) );
+
+        Path csv = Files.createTempFile( "polypheny-import", ".csv" );
+        Files.write( csv, Arrays.asList( "id,name", "1,Alice", "2,Bob" ), StandardCharsets.UTF_8 );
+        try {
+            myconnection.beginTransaction();
+            double[] stats = myexecutor.importFile( csv.toString(), "unittest_namespace.unittest_table", "csv", new String[]{ "types=int32,string" } );
+            assertEquals( 0, stats[0], "The import must not commit the open transaction" );
+            assertEquals( 2, stats[5], "Both rows should be inserted" );
+            assertTrue( stats[3] > 0, "rowsPerSecond should be computed from the inserted rows" );
+            myconnection.commitTransaction();
+        } finally {
+            if ( myconnection.inTransaction() ) {
+                myconnection.rollbackTransaction();
+            }
+            Files.deleteIfExists( csv );
+        }
+    }
+
+
     @Test
     // This test asserts that the column names aren't stored in the first row of the table for relational results.
     // Thought that this might maybe be how it's implemented for relational results in execute(...)
@@ -0,0 +1,94 @@
+package polyphenyconnector;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * Runs without a Polypheny server: the traces are filled by hand.
+ */
+public class QueryTracerTest {
+
+    @Test
+    void testNormalize() {
+        assertEquals( "SELECT * FROM t1 WHERE id = ? AND name = ? AND x > -?",
+                QueryTracer.normalize( "SELECT *\n  FROM t1\tWHERE id = 42 AND name = 'it''s' AND x > -1.5e3 ", 500 ) );
+        assertEquals( "SELECT a_1...", QueryTracer.normalize( "SELECT a_1 FROM t", 10 ) );
+        assertNull( QueryTracer.normalize( null, 500 ) );
+
+        // Mongo and Cypher: values in "..." are masked, document keys stay; in SQL "..." are identifiers
+        assertEquals( "db.users.find({\"name\": ?, \"age\": ?})",
+                QueryTracer.normalize( "db.users.find({\"name\": \"Alice \\\"A\\\"\", \"age\": 42})", 500, true ) );
+        assertEquals( "MATCH (n {name: ?}) RETURN n", QueryTracer.normalize( "MATCH (n {name: \"Bob\"}) RETURN n", 500, true ) );
+        assertEquals( "SELECT \"name\" FROM t", QueryTracer.normalize( "SELECT \"name\" FROM t", 500 ) );
+    }
+
+
+    @Test
+    void testFormat() {
+        QueryTracer.Trace trace = new QueryTracer.Trace( "mongo", "shop", "db.orders.find({\"qty\": 3})" );
+        trace.addRows( 2, 128 );
+        trace.lap( QueryTracer.Trace.EXECUTE );
+        String line = QueryTracer.format( trace );
+        assertTrue( line.startsWith( "{\"ts\":\"" ), line );
+        assertTrue( line.contains( "\"language\":\"mongo\",\"namespace\":\"shop\",\"query\":\"db.orders.find({\\\"qty\\\": ?})\",\"rows\":2,\"bytes\":128" ), line );
+        assertTrue( line.contains( "\"executeMs\":" ) && line.endsWith( "\"cancelled\":false,\"sampled\":false}" ), line );
+    }
+
+
+    @Test
+    void testThresholdAndRotation() throws Exception {
+        Path dir = Files.createTempDirectory( "polypheny-trace" );
+        Path log = dir.resolve( "slow.log" );
+
+        // Nothing is below a threshold of 0 ms, and the file is rotated after (roughly) every line.
+        QueryTracer tracer = new QueryTracer( log.toString(), 0, 0, 0.0002, 2 );
+        for ( int i = 0; i < 5; i++ ) {
+            tracer.finish( tracer.start( "sql", null, "SELECT " + i ), false );
+        }
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while ( tracer.stats()[0] < 5 && System.nanoTime() < deadline ) {
+            Thread.sleep( 10 );
+        }
+        assertEquals( 5, tracer.stats()[0] );
+        assertTrue( Files.exists( dir.resolve( "slow.log.1" ) ) && Files.exists( dir.resolve( "slow.log.2" ) ) );
+        assertFalse( Files.exists( dir.resolve( "slow.log.3" ) ), "Only maxFiles rotated files are kept" );
+
+        // A slow threshold without sampling logs nothing for fast executions.
+        QueryTracer quiet = new QueryTracer( dir.resolve( "quiet.log" ).toString(), 60_000, 0, 10, 1 );
+        quiet.finish( quiet.start( "sql", null, "SELECT 1" ), false );
+        Thread.sleep( 100 );
+        assertEquals( 0, quiet.stats()[0] );
+
+        List<String> lines = Files.readAllLines( log, StandardCharsets.UTF_8 );
+        assertFalse( lines.isEmpty() );
+        assertTrue( lines.get( lines.size() - 1 ).contains( "\"query\":\"SELECT ?\"" ) );
+        tracer.close();
+        quiet.close();
+    }
+
+
+    @Test
+    void testCloseFlushesAndEndsTheWriter() throws Exception {
+        Path log = Files.createTempDirectory( "polypheny-trace" ).resolve( "closed.log" );
+        QueryTracer first = new QueryTracer( log.toString(), 0, 0, 10, 1 );
+        QueryTracer second = new QueryTracer( log.toString(), 0, 0, 10, 1 );
+        first.finish( first.start( "sql", null, "SELECT 1" ), false );
+
+        // The file is shared: closing one tracer keeps the writer for the other
+        first.close();
+        second.finish( second.start( "sql", null, "SELECT 2" ), false );
+        second.close();
+        second.close(); // a second close does nothing
+
+        assertEquals( 2, Files.readAllLines( log, StandardCharsets.UTF_8 ).size(), "close() writes the queued lines" );
+        for ( Thread thread : Thread.getAllStackTraces().keySet() ) {
+            assertFalse( thread.getName().equals( "polypheny-trace-writer" ) && thread.isAlive(), "The writer thread should have ended" );
+        }
+    }
+
+}